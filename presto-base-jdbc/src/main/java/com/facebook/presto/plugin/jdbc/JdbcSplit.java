@@ -119,4 +119,11 @@ public class JdbcSplit
     {
         return this;
     }
+
+    @Override
+    public boolean isBlocking()
+    {
+        // reading the split waits for the rows fetched from the remote database
+        return true;
+    }
 }
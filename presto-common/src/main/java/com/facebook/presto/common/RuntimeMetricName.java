@@ -52,4 +52,10 @@ public class RuntimeMetricName
     public static final String STORAGE_READ_TIME_NANOS = "storageReadTimeNanos";
     // Size of the data retrieved by read call to storage
     public static final String STORAGE_READ_DATA_BYTES = "storageReadDataBytes";
+    // Size of the pages produced for the exchange before and after compression
+    public static final String EXCHANGE_UNCOMPRESSED_BYTES = "exchangeUncompressedBytes";
+    public static final String EXCHANGE_COMPRESSED_BYTES = "exchangeCompressedBytes";
+    // Rows each driver of a partitioned output sent to each partition, one value per driver and partition. The values are not
+    // summed across the drivers and tasks of a stage, but a maximum far above the average still shows a hot key sent to one partition
+    public static final String PARTITIONED_OUTPUT_ROWS_PER_PARTITION = "partitionedOutputRowsPerPartition";
 }
@@ -216,7 +216,11 @@ public class FilteringPageSource
         delegate.close();
     }
 
-    private static int filterBlock(Block block, Type type, TupleDomainFilter filter, int[] positions, int positionCount)
+    /**
+     * Keeps the first {@code positionCount} {@code positions} of the block that pass the filter,
+     * and returns the number of positions kept.
+     */
+    public static int filterBlock(Block block, Type type, TupleDomainFilter filter, int[] positions, int positionCount)
     {
         int outputPositionsCount = 0;
         for (int i = 0; i < positionCount; i++) {
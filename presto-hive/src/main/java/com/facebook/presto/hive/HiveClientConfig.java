@@ -124,6 +124,8 @@ public class HiveClientConfig
     private DataSize orcTinyStripeThreshold = new DataSize(8, MEGABYTE);
     private DataSize orcStreamBufferSize = new DataSize(8, MEGABYTE);
     private DataSize orcMaxReadBlockSize = new DataSize(16, MEGABYTE);
+    private DataSize orcMaxReadAheadSize = new DataSize(0, MEGABYTE);
+    private int orcMaxConcurrentReadAheads = 20;
     private boolean orcLazyReadSmallRanges = true;
     private boolean orcOptimizedWriterEnabled = true;
     private double orcWriterValidationPercentage;
@@ -217,6 +219,7 @@ public class HiveClientConfig
     private boolean userDefinedTypeEncodingEnabled;
 
     private boolean columnIndexFilterEnabled;
+    private boolean parquetBloomFilterEnabled;
     private boolean fileSplittable = true;
     private Protocol thriftProtocol = Protocol.BINARY;
     private DataSize thriftBufferSize = new DataSize(128, BYTE);
@@ -828,6 +831,34 @@ public class HiveClientConfig
         return this;
     }
 
+    @NotNull
+    public DataSize getOrcMaxReadAheadSize()
+    {
+        return orcMaxReadAheadSize;
+    }
+
+    @Config("hive.orc.max-read-ahead-size")
+    @ConfigDescription("Maximum size of the next stripe read in the background while the current one is decoded, 0 to disable")
+    public HiveClientConfig setOrcMaxReadAheadSize(DataSize orcMaxReadAheadSize)
+    {
+        this.orcMaxReadAheadSize = orcMaxReadAheadSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getOrcMaxConcurrentReadAheads()
+    {
+        return orcMaxConcurrentReadAheads;
+    }
+
+    @Config("hive.orc.max-concurrent-read-aheads")
+    @ConfigDescription("Maximum number of ORC stripes read ahead concurrently by all readers")
+    public HiveClientConfig setOrcMaxConcurrentReadAheads(int orcMaxConcurrentReadAheads)
+    {
+        this.orcMaxConcurrentReadAheads = orcMaxConcurrentReadAheads;
+        return this;
+    }
+
     @NotNull
     public DataSize getOrcMaxReadBlockSize()
     {
@@ -1768,6 +1799,19 @@ public class HiveClientConfig
         return this.columnIndexFilterEnabled;
     }
 
+    @Config("hive.parquet-bloom-filter-enabled")
+    @ConfigDescription("enable using parquet bloom filters to skip row groups")
+    public HiveClientConfig setParquetBloomFilterEnabled(boolean parquetBloomFilterEnabled)
+    {
+        this.parquetBloomFilterEnabled = parquetBloomFilterEnabled;
+        return this;
+    }
+
+    public boolean isParquetBloomFilterEnabled()
+    {
+        return parquetBloomFilterEnabled;
+    }
+
     @Config("hive.size-based-split-weights-enabled")
     public HiveClientConfig setSizeBasedSplitWeightsEnabled(boolean sizeBasedSplitWeightsEnabled)
     {
@@ -57,6 +57,7 @@ import com.facebook.presto.orc.cache.StorageOrcFileTailSource;
 import com.facebook.presto.orc.metadata.OrcFileTail;
 import com.facebook.presto.orc.metadata.RowGroupIndex;
 import com.facebook.presto.parquet.ParquetDataSourceId;
+import com.facebook.presto.parquet.cache.BloomFilterCacheKey;
 import com.facebook.presto.parquet.cache.CachingParquetMetadataSource;
 import com.facebook.presto.parquet.cache.MetadataReader;
 import com.facebook.presto.parquet.cache.ParquetCacheConfig;
@@ -79,12 +80,14 @@ import com.google.inject.Scopes;
 import com.google.inject.TypeLiteral;
 import com.google.inject.multibindings.Multibinder;
 import io.airlift.slice.Slice;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.weakref.jmx.MBeanExporter;
 
 import javax.inject.Singleton;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.function.Supplier;
 
@@ -277,6 +280,16 @@ public class HiveClientModule
                                 hiveClientConfig.getMaxConcurrentZeroRowFileCreations())));
     }
 
+    @ForOrcReadAhead
+    @Singleton
+    @Provides
+    public Executor createOrcReadAheadExecutor(HiveConnectorId hiveClientId, HiveClientConfig hiveClientConfig)
+    {
+        return new BoundedExecutor(
+                newCachedThreadPool(daemonThreadsNamed("hive-orc-read-ahead-" + hiveClientId + "-%s")),
+                hiveClientConfig.getOrcMaxConcurrentReadAheads());
+    }
+
     @Singleton
     @Provides
     public OrcFileTailSource createOrcFileTailSource(OrcCacheConfig orcCacheConfig, MBeanExporter exporter)
@@ -354,8 +367,20 @@ public class HiveClientModule
                     .recordStats()
                     .build();
             CacheStatsMBean cacheStatsMBean = new CacheStatsMBean(cache);
-            parquetMetadataSource = new CachingParquetMetadataSource(cache, parquetMetadataSource);
             exporter.export(generatedNameOf(CacheStatsMBean.class, connectorId + "_ParquetMetadata"), cacheStatsMBean);
+
+            Optional<Cache<BloomFilterCacheKey, Optional<BloomFilter>>> bloomFilterCache = Optional.empty();
+            if (parquetCacheConfig.getBloomFilterCacheSize().toBytes() > 0) {
+                bloomFilterCache = Optional.of(CacheBuilder.newBuilder()
+                        .maximumWeight(parquetCacheConfig.getBloomFilterCacheSize().toBytes())
+                        .weigher((key, bloomFilter) -> ((Optional<BloomFilter>) bloomFilter).map(BloomFilter::getBitsetSize).orElse(0))
+                        .expireAfterAccess(parquetCacheConfig.getMetadataCacheTtlSinceLastAccess().toMillis(), MILLISECONDS)
+                        .recordStats()
+                        .build());
+                CacheStatsMBean bloomFilterCacheStatsMBean = new CacheStatsMBean(bloomFilterCache.get());
+                exporter.export(generatedNameOf(CacheStatsMBean.class, connectorId + "_ParquetBloomFilter"), bloomFilterCacheStatsMBean);
+            }
+            parquetMetadataSource = new CachingParquetMetadataSource(cache, bloomFilterCache, parquetMetadataSource);
         }
         return parquetMetadataSource;
     }
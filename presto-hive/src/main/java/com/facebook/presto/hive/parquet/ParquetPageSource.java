@@ -151,7 +151,7 @@ public class ParquetPageSource
             Block[] blocks = new Block[fields.size()];
             for (int fieldId = 0; fieldId < blocks.length; fieldId++) {
                 if (isIndexColumn(fieldId)) {
-                    blocks[fieldId] = getRowIndexColumn(parquetReader.lastBatchStartRow(), batchSize);
+                    blocks[fieldId] = getRowIndexColumn(parquetReader.lastBatchRowIndexes());
                 }
                 else {
                     Optional<Field> field = fields.get(fieldId);
@@ -245,12 +245,8 @@ public class ParquetPageSource
         return rowIndexLocations.get(column);
     }
 
-    private static Block getRowIndexColumn(long baseIndex, int size)
+    private static Block getRowIndexColumn(long[] rowIndices)
     {
-        long[] rowIndices = new long[size];
-        for (int position = 0; position < size; position++) {
-            rowIndices[position] = baseIndex + position;
-        }
-        return new LongArrayBlock(size, Optional.empty(), rowIndices);
+        return new LongArrayBlock(rowIndices.length, Optional.empty(), rowIndices);
     }
 }
@@ -34,6 +34,7 @@ import com.facebook.presto.parquet.ParquetCorruptionException;
 import com.facebook.presto.parquet.ParquetDataSource;
 import com.facebook.presto.parquet.RichColumnDescriptor;
 import com.facebook.presto.parquet.cache.ParquetMetadataSource;
+import com.facebook.presto.parquet.predicate.BloomFilterSource;
 import com.facebook.presto.parquet.predicate.Predicate;
 import com.facebook.presto.parquet.reader.ColumnIndexFilterUtils;
 import com.facebook.presto.parquet.reader.ParquetReader;
@@ -107,6 +108,7 @@ import static com.facebook.presto.hive.HiveSessionProperties.columnIndexFilterEn
 import static com.facebook.presto.hive.HiveSessionProperties.getParquetMaxReadBlockSize;
 import static com.facebook.presto.hive.HiveSessionProperties.isParquetBatchReaderVerificationEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isParquetBatchReadsEnabled;
+import static com.facebook.presto.hive.HiveSessionProperties.isParquetBloomFilterEnabled;
 import static com.facebook.presto.hive.HiveSessionProperties.isUseParquetColumnNames;
 import static com.facebook.presto.hive.parquet.HdfsParquetDataSource.buildHdfsParquetDataSource;
 import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
@@ -213,7 +215,8 @@ public class ParquetPageSourceFactory
                 stats,
                 hiveFileContext,
                 parquetMetadataSource,
-                columnIndexFilterEnabled(session)));
+                columnIndexFilterEnabled(session),
+                isParquetBloomFilterEnabled(session)));
     }
 
     public static ConnectorPageSource createParquetPageSource(
@@ -236,7 +239,8 @@ public class ParquetPageSourceFactory
             FileFormatDataSourceStats stats,
             HiveFileContext hiveFileContext,
             ParquetMetadataSource parquetMetadataSource,
-            boolean columnIndexFilterEnabled)
+            boolean columnIndexFilterEnabled,
+            boolean bloomFilterEnabled)
     {
         AggregatedMemoryContext systemMemoryContext = newSimpleAggregatedMemoryContext();
 
@@ -271,55 +275,23 @@ public class ParquetPageSourceFactory
 
             MessageType requestedSchema = message.orElse(new MessageType(fileSchema.getName(), ImmutableList.of()));
 
-            ImmutableList.Builder<BlockMetaData> footerBlocks = ImmutableList.builder();
-            for (BlockMetaData block : parquetMetadata.getBlocks()) {
-                Optional<Integer> firstIndex = findFirstNonHiddenColumnId(block);
-                if (firstIndex.isPresent()) {
-                    long firstDataPage = block.getColumns().get(firstIndex.get()).getFirstDataPageOffset();
-                    if (firstDataPage >= start && firstDataPage < start + length) {
-                        footerBlocks.add(block);
-                    }
-                }
-            }
-            Map<List<String>, RichColumnDescriptor> descriptorsByPath = getDescriptors(fileSchema, requestedSchema);
-            TupleDomain<ColumnDescriptor> parquetTupleDomain = getParquetTupleDomain(descriptorsByPath, effectivePredicate);
-            Predicate parquetPredicate = buildPredicate(requestedSchema, parquetTupleDomain, descriptorsByPath);
-            final ParquetDataSource finalDataSource = dataSource;
-            ImmutableList.Builder<BlockMetaData> blocks = ImmutableList.builder();
-            List<ColumnIndexStore> blockIndexStores = new ArrayList<>();
-
-            long nextStart = 0;
-            ImmutableList.Builder<Long> blockStarts = ImmutableList.builder();
-            for (BlockMetaData block : footerBlocks.build()) {
-                Optional<ColumnIndexStore> columnIndexStore = ColumnIndexFilterUtils.getColumnIndexStore(parquetPredicate, finalDataSource, block, descriptorsByPath, columnIndexFilterEnabled);
-                if (predicateMatches(parquetPredicate, block, finalDataSource, descriptorsByPath, parquetTupleDomain, columnIndexStore, columnIndexFilterEnabled)) {
-                    blocks.add(block);
-                    blockStarts.add(nextStart);
-                    blockIndexStores.add(columnIndexStore.orElse(null));
-                    hiveFileContext.incrementCounter("parquet.blocksRead", NONE, 1);
-                    hiveFileContext.incrementCounter("parquet.rowsRead", NONE, block.getRowCount());
-                    hiveFileContext.incrementCounter("parquet.totalBytesRead", BYTE, block.getTotalByteSize());
-                }
-                else {
-                    hiveFileContext.incrementCounter("parquet.blocksSkipped", NONE, 1);
-                    hiveFileContext.incrementCounter("parquet.rowsSkipped", NONE, block.getRowCount());
-                    hiveFileContext.incrementCounter("parquet.totalBytesSkipped", BYTE, block.getTotalByteSize());
-                }
-                nextStart += block.getRowCount();
-            }
             MessageColumnIO messageColumnIO = getColumnIO(fileSchema, requestedSchema);
-            ParquetReader parquetReader = new ParquetReader(
-                    messageColumnIO,
-                    blocks.build(),
-                    Optional.of(blockStarts.build()),
+            ParquetReader parquetReader = createParquetReader(
                     dataSource,
+                    parquetMetadata,
+                    messageColumnIO,
+                    fileSchema,
+                    requestedSchema,
+                    start,
+                    length,
+                    effectivePredicate,
                     systemMemoryContext,
                     maxReadBlockSize,
                     batchReaderEnabled,
                     verificationEnabled,
-                    parquetPredicate,
-                    blockIndexStores,
+                    hiveFileContext,
                     columnIndexFilterEnabled,
+                    getBloomFilterSource(bloomFilterEnabled, parquetMetadataSource, dataSource, hiveFileContext, fileDecryptor),
                     fileDecryptor);
 
             ImmutableList.Builder<String> namesBuilder = ImmutableList.builder();
@@ -392,6 +364,94 @@ public class ParquetPageSourceFactory
         }
     }
 
+    /**
+     * Creates a reader for the row groups of the split that may match the predicate.
+     */
+    static ParquetReader createParquetReader(
+            ParquetDataSource dataSource,
+            ParquetMetadata parquetMetadata,
+            MessageColumnIO messageColumnIO,
+            MessageType fileSchema,
+            MessageType requestedSchema,
+            long start,
+            long length,
+            TupleDomain<HiveColumnHandle> effectivePredicate,
+            AggregatedMemoryContext systemMemoryContext,
+            DataSize maxReadBlockSize,
+            boolean batchReaderEnabled,
+            boolean verificationEnabled,
+            HiveFileContext hiveFileContext,
+            boolean columnIndexFilterEnabled,
+            BloomFilterSource bloomFilterSource,
+            Optional<InternalFileDecryptor> fileDecryptor)
+            throws ParquetCorruptionException
+    {
+        ImmutableList.Builder<BlockMetaData> footerBlocks = ImmutableList.builder();
+        for (BlockMetaData block : parquetMetadata.getBlocks()) {
+            Optional<Integer> firstIndex = findFirstNonHiddenColumnId(block);
+            if (firstIndex.isPresent()) {
+                long firstDataPage = block.getColumns().get(firstIndex.get()).getFirstDataPageOffset();
+                if (firstDataPage >= start && firstDataPage < start + length) {
+                    footerBlocks.add(block);
+                }
+            }
+        }
+        Map<List<String>, RichColumnDescriptor> descriptorsByPath = getDescriptors(fileSchema, requestedSchema);
+        TupleDomain<ColumnDescriptor> parquetTupleDomain = getParquetTupleDomain(descriptorsByPath, effectivePredicate);
+        Predicate parquetPredicate = buildPredicate(requestedSchema, parquetTupleDomain, descriptorsByPath);
+        ImmutableList.Builder<BlockMetaData> blocks = ImmutableList.builder();
+        List<ColumnIndexStore> blockIndexStores = new ArrayList<>();
+
+        long nextStart = 0;
+        ImmutableList.Builder<Long> blockStarts = ImmutableList.builder();
+        for (BlockMetaData block : footerBlocks.build()) {
+            Optional<ColumnIndexStore> columnIndexStore = ColumnIndexFilterUtils.getColumnIndexStore(parquetPredicate, dataSource, block, descriptorsByPath, columnIndexFilterEnabled);
+            if (predicateMatches(parquetPredicate, block, dataSource, descriptorsByPath, parquetTupleDomain, columnIndexStore, columnIndexFilterEnabled, bloomFilterSource)) {
+                blocks.add(block);
+                blockStarts.add(nextStart);
+                blockIndexStores.add(columnIndexStore.orElse(null));
+                hiveFileContext.incrementCounter("parquet.blocksRead", NONE, 1);
+                hiveFileContext.incrementCounter("parquet.rowsRead", NONE, block.getRowCount());
+                hiveFileContext.incrementCounter("parquet.totalBytesRead", BYTE, block.getTotalByteSize());
+            }
+            else {
+                hiveFileContext.incrementCounter("parquet.blocksSkipped", NONE, 1);
+                hiveFileContext.incrementCounter("parquet.rowsSkipped", NONE, block.getRowCount());
+                hiveFileContext.incrementCounter("parquet.totalBytesSkipped", BYTE, block.getTotalByteSize());
+            }
+            nextStart += block.getRowCount();
+        }
+        return new ParquetReader(
+                messageColumnIO,
+                blocks.build(),
+                Optional.of(blockStarts.build()),
+                dataSource,
+                systemMemoryContext,
+                maxReadBlockSize,
+                batchReaderEnabled,
+                verificationEnabled,
+                parquetPredicate,
+                blockIndexStores,
+                columnIndexFilterEnabled,
+                fileDecryptor);
+    }
+
+    /**
+     * Bloom filters of encrypted files are encrypted too, so they are only used for plaintext files.
+     */
+    static BloomFilterSource getBloomFilterSource(
+            boolean bloomFilterEnabled,
+            ParquetMetadataSource parquetMetadataSource,
+            ParquetDataSource dataSource,
+            HiveFileContext hiveFileContext,
+            Optional<InternalFileDecryptor> fileDecryptor)
+    {
+        if (!bloomFilterEnabled || fileDecryptor.isPresent()) {
+            return BloomFilterSource.NONE;
+        }
+        return columnMetaData -> parquetMetadataSource.getBloomFilter(dataSource, columnMetaData, hiveFileContext.isCacheable(), hiveFileContext.getModificationTime());
+    }
+
     public static TupleDomain<ColumnDescriptor> getParquetTupleDomain(Map<List<String>, RichColumnDescriptor> descriptorsByPath, TupleDomain<HiveColumnHandle> effectivePredicate)
     {
         if (effectivePredicate.isNone()) {
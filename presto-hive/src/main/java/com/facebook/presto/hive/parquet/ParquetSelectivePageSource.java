@@ -0,0 +1,353 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.common.InvalidFunctionArgumentException;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.LazyBlock;
+import com.facebook.presto.common.block.LazyBlockLoader;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.predicate.FilterFunction;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.hive.HiveCoercer;
+import com.facebook.presto.parquet.Field;
+import com.facebook.presto.parquet.ParquetCorruptionException;
+import com.facebook.presto.parquet.reader.ParquetReader;
+import com.facebook.presto.spi.ConnectorPageSource;
+import com.facebook.presto.spi.PrestoException;
+import com.google.common.collect.ImmutableList;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static com.facebook.presto.hive.FilteringPageSource.filterBlock;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_BAD_DATA;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_CURSOR_ERROR;
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_FUNCTION_ARGUMENT;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Page source for Parquet files that applies the pushed down filters while reading.
+ * <p>
+ * For each batch, the columns with a {@link TupleDomainFilter} are read first, one at a time,
+ * and each filter is only tested on the positions that passed the previous ones. Then the
+ * remaining filter functions are evaluated on the surviving positions. The other output columns
+ * are not read at all if no position survives, and are otherwise loaded lazily and reduced to
+ * the surviving positions, so columns that are not used downstream are never decoded.
+ */
+public class ParquetSelectivePageSource
+        implements ConnectorPageSource
+{
+    private final ParquetReader parquetReader;
+    // types of the table schema, which the blocks are coerced to before filtering
+    private final Type[] types;
+    private final Optional<Field>[] fields;
+    // single value block for columns with the same value at every position (e.g. partition keys), null otherwise
+    private final Block[] constantValues;
+    private final HiveCoercer[] coercers;
+    // channels with a domain filter, in the order the filters are applied
+    private final int[] filterChannels;
+    private final TupleDomainFilter[] filters;
+    private final List<FilterFunction> filterFunctions;
+    private final int[] outputChannels;
+    private final RuntimeStats runtimeStats;
+
+    private int[] positions = new int[0];
+    private RuntimeException[] errors = new RuntimeException[0];
+    private int batchId;
+    private long completedPositions;
+    private boolean closed;
+
+    public ParquetSelectivePageSource(
+            ParquetReader parquetReader,
+            List<Type> types,
+            List<Optional<Field>> fields,
+            Map<Integer, Block> constantValues,
+            Map<Integer, HiveCoercer> coercers,
+            Map<Integer, TupleDomainFilter> filters,
+            List<FilterFunction> filterFunctions,
+            List<Integer> outputChannels,
+            RuntimeStats runtimeStats)
+    {
+        this.parquetReader = requireNonNull(parquetReader, "parquetReader is null");
+        requireNonNull(types, "types is null");
+        requireNonNull(fields, "fields is null");
+        checkArgument(types.size() == fields.size(), "types and fields must have the same size");
+        this.types = types.toArray(new Type[0]);
+        //noinspection unchecked
+        this.fields = fields.toArray(new Optional[0]);
+
+        int channelCount = types.size();
+        this.constantValues = new Block[channelCount];
+        requireNonNull(constantValues, "constantValues is null").forEach((channel, value) -> this.constantValues[channel] = value);
+        this.coercers = new HiveCoercer[channelCount];
+        requireNonNull(coercers, "coercers is null").forEach((channel, coercer) -> this.coercers[channel] = coercer);
+        for (int channel = 0; channel < channelCount; channel++) {
+            checkArgument(this.fields[channel].isPresent() || this.constantValues[channel] != null, "column %s is neither read nor constant", channel);
+        }
+
+        // test the filters on constant columns first, as these do not need to read anything
+        requireNonNull(filters, "filters is null");
+        this.filterChannels = filters.keySet().stream()
+                .sorted((left, right) -> Boolean.compare(this.constantValues[right] != null, this.constantValues[left] != null))
+                .mapToInt(Integer::intValue)
+                .toArray();
+        this.filters = new TupleDomainFilter[filterChannels.length];
+        for (int i = 0; i < filterChannels.length; i++) {
+            this.filters[i] = filters.get(filterChannels[i]);
+        }
+
+        this.filterFunctions = ImmutableList.copyOf(requireNonNull(filterFunctions, "filterFunctions is null"));
+        this.outputChannels = requireNonNull(outputChannels, "outputChannels is null").stream().mapToInt(Integer::intValue).toArray();
+        this.runtimeStats = requireNonNull(runtimeStats, "runtimeStats is null");
+    }
+
+    @Override
+    public RuntimeStats getRuntimeStats()
+    {
+        return runtimeStats;
+    }
+
+    @Override
+    public long getCompletedBytes()
+    {
+        return parquetReader.getDataSource().getReadBytes();
+    }
+
+    @Override
+    public long getCompletedPositions()
+    {
+        return completedPositions;
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        return parquetReader.getDataSource().getReadTimeNanos();
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return closed;
+    }
+
+    @Override
+    public long getSystemMemoryUsage()
+    {
+        return parquetReader.getSystemMemoryContext().getBytes();
+    }
+
+    @Override
+    public Page getNextPage()
+    {
+        try {
+            while (!closed) {
+                batchId++;
+                int batchSize = parquetReader.nextBatch();
+                if (batchSize <= 0) {
+                    close();
+                    return null;
+                }
+                completedPositions += batchSize;
+
+                Page page = readFilteredBatch(batchSize);
+                if (page != null) {
+                    return page;
+                }
+            }
+            return null;
+        }
+        catch (InvalidFunctionArgumentException e) {
+            closeWithSuppression(e);
+            throw new PrestoException(INVALID_FUNCTION_ARGUMENT, e.getMessage(), e);
+        }
+        catch (PrestoException e) {
+            closeWithSuppression(e);
+            throw e;
+        }
+        catch (RuntimeException e) {
+            closeWithSuppression(e);
+            throw new PrestoException(HIVE_CURSOR_ERROR, e);
+        }
+    }
+
+    /**
+     * Returns the positions of the current batch that pass all filters, or null if there are none.
+     */
+    private Page readFilteredBatch(int batchSize)
+    {
+        if (positions.length < batchSize) {
+            positions = new int[batchSize];
+            errors = new RuntimeException[batchSize];
+        }
+        else {
+            Arrays.fill(errors, null);
+        }
+        for (int i = 0; i < batchSize; i++) {
+            positions[i] = i;
+        }
+        int positionCount = batchSize;
+
+        Block[] blocks = new Block[types.length];
+        for (int i = 0; i < filterChannels.length; i++) {
+            int channel = filterChannels[i];
+            blocks[channel] = readBlock(channel, batchSize);
+            positionCount = filterBlock(blocks[channel], types[channel], filters[i], positions, positionCount);
+            if (positionCount == 0) {
+                return null;
+            }
+        }
+
+        for (FilterFunction filterFunction : filterFunctions) {
+            int[] inputChannels = filterFunction.getInputChannels();
+            Block[] inputBlocks = new Block[inputChannels.length];
+            for (int i = 0; i < inputChannels.length; i++) {
+                int channel = inputChannels[i];
+                if (blocks[channel] == null) {
+                    blocks[channel] = readBlock(channel, batchSize);
+                }
+                inputBlocks[i] = blocks[channel];
+            }
+
+            // errors are kept along with the positions, and only raised for the positions that pass the other filters
+            positionCount = filterFunction.filter(new Page(batchSize, inputBlocks), positions, positionCount, errors);
+            if (positionCount == 0) {
+                return null;
+            }
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            if (errors[i] != null) {
+                throw errors[i];
+            }
+        }
+
+        int[] outputPositions = positionCount == batchSize ? null : Arrays.copyOf(positions, positionCount);
+        Block[] outputBlocks = new Block[outputChannels.length];
+        for (int i = 0; i < outputChannels.length; i++) {
+            int channel = outputChannels[i];
+            if (blocks[channel] != null) {
+                outputBlocks[i] = selectPositions(blocks[channel], outputPositions);
+            }
+            else if (constantValues[channel] != null) {
+                outputBlocks[i] = new RunLengthEncodedBlock(constantValues[channel], positionCount);
+            }
+            else {
+                outputBlocks[i] = new LazyBlock(positionCount, new ParquetBlockLoader(channel, batchSize, outputPositions));
+            }
+        }
+        return new Page(positionCount, outputBlocks);
+    }
+
+    private Block readBlock(int channel, int batchSize)
+    {
+        if (constantValues[channel] != null) {
+            return new RunLengthEncodedBlock(constantValues[channel], batchSize);
+        }
+
+        Block block;
+        try {
+            block = parquetReader.readBlock(fields[channel].get());
+        }
+        catch (ParquetCorruptionException e) {
+            throw new PrestoException(HIVE_BAD_DATA, e);
+        }
+        catch (IOException e) {
+            throw new PrestoException(HIVE_CURSOR_ERROR, e);
+        }
+
+        if (coercers[channel] != null) {
+            block = coercers[channel].apply(block);
+        }
+        return block;
+    }
+
+    private static Block selectPositions(Block block, int[] positions)
+    {
+        if (positions == null) {
+            return block;
+        }
+        return block.getPositions(positions, 0, positions.length);
+    }
+
+    private void closeWithSuppression(Throwable throwable)
+    {
+        requireNonNull(throwable, "throwable is null");
+        try {
+            close();
+        }
+        catch (RuntimeException e) {
+            // Self-suppression not permitted
+            if (e != throwable) {
+                throwable.addSuppressed(e);
+            }
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+
+        try {
+            parquetReader.close();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private final class ParquetBlockLoader
+            implements LazyBlockLoader<LazyBlock>
+    {
+        private final int expectedBatchId = batchId;
+        private final int channel;
+        private final int batchSize;
+        private final int[] positions;
+        private boolean loaded;
+
+        public ParquetBlockLoader(int channel, int batchSize, int[] positions)
+        {
+            this.channel = channel;
+            this.batchSize = batchSize;
+            this.positions = positions;
+        }
+
+        @Override
+        public final void load(LazyBlock lazyBlock)
+        {
+            if (loaded) {
+                return;
+            }
+
+            checkState(batchId == expectedBatchId);
+
+            lazyBlock.setBlock(selectPositions(readBlock(channel, batchSize), positions));
+            loaded = true;
+        }
+    }
+}
@@ -14,32 +14,104 @@
 package com.facebook.presto.hive.parquet;
 
 import com.facebook.presto.common.Subfield;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.predicate.FilterFunction;
 import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.TypeManager;
+import com.facebook.presto.expressions.DynamicFilters.DynamicFilterExtractResult;
 import com.facebook.presto.hive.BucketAdaptation;
 import com.facebook.presto.hive.EncryptionInformation;
+import com.facebook.presto.hive.FileFormatDataSourceStats;
+import com.facebook.presto.hive.HdfsEnvironment;
 import com.facebook.presto.hive.HiveCoercer;
 import com.facebook.presto.hive.HiveColumnHandle;
 import com.facebook.presto.hive.HiveFileContext;
 import com.facebook.presto.hive.HiveSelectivePageSourceFactory;
 import com.facebook.presto.hive.metastore.Storage;
+import com.facebook.presto.hive.orc.TupleDomainFilterCache;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.parquet.Field;
+import com.facebook.presto.parquet.ParquetCorruptionException;
+import com.facebook.presto.parquet.ParquetDataSource;
+import com.facebook.presto.parquet.cache.ParquetMetadataSource;
+import com.facebook.presto.parquet.reader.ParquetReader;
 import com.facebook.presto.spi.ConnectorPageSource;
 import com.facebook.presto.spi.ConnectorSession;
 import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.StandardFunctionResolution;
+import com.facebook.presto.spi.relation.InputReferenceExpression;
 import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.spi.relation.RowExpressionService;
+import com.facebook.presto.spi.relation.VariableReferenceExpression;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.security.AccessControlException;
+import org.apache.parquet.crypto.InternalFileDecryptor;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.io.ColumnIO;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.schema.MessageType;
 import org.joda.time.DateTimeZone;
 
 import javax.inject.Inject;
 
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 
+import static com.facebook.presto.common.Utils.nativeValueToBlock;
+import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
+import static com.facebook.presto.expressions.LogicalRowExpressions.TRUE_CONSTANT;
+import static com.facebook.presto.expressions.LogicalRowExpressions.and;
+import static com.facebook.presto.expressions.RowExpressionNodeInliner.replaceExpression;
+import static com.facebook.presto.hive.HiveColumnHandle.ColumnType.AGGREGATED;
+import static com.facebook.presto.hive.HiveColumnHandle.ColumnType.REGULAR;
+import static com.facebook.presto.hive.HiveColumnHandle.getPushedDownSubfield;
+import static com.facebook.presto.hive.HiveColumnHandle.isPushedDownSubfield;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_BAD_DATA;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_CANNOT_OPEN_SPLIT;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_MISSING_DATA;
+import static com.facebook.presto.hive.HiveErrorCode.HIVE_PARTITION_SCHEMA_MISMATCH;
+import static com.facebook.presto.hive.HiveSessionProperties.columnIndexFilterEnabled;
+import static com.facebook.presto.hive.HiveSessionProperties.getParquetMaxReadBlockSize;
+import static com.facebook.presto.hive.HiveSessionProperties.isParquetBatchReaderVerificationEnabled;
+import static com.facebook.presto.hive.HiveSessionProperties.isParquetBatchReadsEnabled;
+import static com.facebook.presto.hive.HiveSessionProperties.isParquetBloomFilterEnabled;
+import static com.facebook.presto.hive.HiveSessionProperties.isUseParquetColumnNames;
+import static com.facebook.presto.hive.HiveUtil.typedPartitionKey;
+import static com.facebook.presto.hive.parquet.HdfsParquetDataSource.buildHdfsParquetDataSource;
+import static com.facebook.presto.hive.parquet.ParquetPageSourceFactory.checkSchemaMatch;
+import static com.facebook.presto.hive.parquet.ParquetPageSourceFactory.createDecryptor;
+import static com.facebook.presto.hive.parquet.ParquetPageSourceFactory.createParquetReader;
+import static com.facebook.presto.hive.parquet.ParquetPageSourceFactory.getBloomFilterSource;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.facebook.presto.parquet.ParquetTypeUtils.getColumnIO;
+import static com.facebook.presto.parquet.ParquetTypeUtils.getParquetTypeByName;
+import static com.facebook.presto.parquet.ParquetTypeUtils.getSubfieldType;
+import static com.facebook.presto.parquet.ParquetTypeUtils.lookupColumnByName;
+import static com.facebook.presto.parquet.ParquetTypeUtils.nestedColumnPath;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
+import static com.facebook.presto.spi.StandardErrorCode.PERMISSION_DENIED;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Strings.nullToEmpty;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static java.lang.String.format;
+import static java.util.Objects.requireNonNull;
+import static org.apache.parquet.io.ColumnIOConverter.constructField;
+import static org.apache.parquet.io.ColumnIOConverter.findNestedColumnIO;
 
 public class ParquetSelectivePageSourceFactory
         implements HiveSelectivePageSourceFactory
@@ -49,9 +121,31 @@ public class ParquetSelectivePageSourceFactory
             .add("parquet.hive.serde.ParquetHiveSerDe")
             .build();
 
+    private final TypeManager typeManager;
+    private final StandardFunctionResolution functionResolution;
+    private final RowExpressionService rowExpressionService;
+    private final HdfsEnvironment hdfsEnvironment;
+    private final FileFormatDataSourceStats stats;
+    private final ParquetMetadataSource parquetMetadataSource;
+    private final TupleDomainFilterCache tupleDomainFilterCache;
+
     @Inject
-    public ParquetSelectivePageSourceFactory()
+    public ParquetSelectivePageSourceFactory(
+            TypeManager typeManager,
+            StandardFunctionResolution functionResolution,
+            RowExpressionService rowExpressionService,
+            HdfsEnvironment hdfsEnvironment,
+            FileFormatDataSourceStats stats,
+            ParquetMetadataSource parquetMetadataSource,
+            TupleDomainFilterCache tupleDomainFilterCache)
     {
+        this.typeManager = requireNonNull(typeManager, "typeManager is null");
+        this.functionResolution = requireNonNull(functionResolution, "functionResolution is null");
+        this.rowExpressionService = requireNonNull(rowExpressionService, "rowExpressionService is null");
+        this.hdfsEnvironment = requireNonNull(hdfsEnvironment, "hdfsEnvironment is null");
+        this.stats = requireNonNull(stats, "stats is null");
+        this.parquetMetadataSource = requireNonNull(parquetMetadataSource, "parquetMetadataSource is null");
+        this.tupleDomainFilterCache = requireNonNull(tupleDomainFilterCache, "tupleDomainFilterCache is null");
     }
 
     @Override
@@ -79,6 +173,231 @@ public class ParquetSelectivePageSourceFactory
             return Optional.empty();
         }
         checkState(!appendRowNumberEnabled, "append row number is not supported for Parquet Reader");
-        throw new PrestoException(NOT_SUPPORTED, "Parquet reader doesn't support filter pushdown yet");
+        checkArgument(!domainPredicate.isNone(), "Unexpected NONE domain");
+        if (bucketAdaptation.isPresent()) {
+            throw new PrestoException(NOT_SUPPORTED, "Parquet reader doesn't support filter pushdown on tables with bucket conversion yet");
+        }
+        if (domainPredicate.getDomains().get().keySet().stream().anyMatch(subfield -> !subfield.getPath().isEmpty())) {
+            throw new PrestoException(NOT_SUPPORTED, "Parquet reader doesn't support filter pushdown on nested subfields yet");
+        }
+
+        boolean useParquetColumnNames = isUseParquetColumnNames(session);
+        AggregatedMemoryContext systemMemoryContext = newSimpleAggregatedMemoryContext();
+
+        ParquetDataSource dataSource = null;
+        try {
+            FSDataInputStream inputStream = hdfsEnvironment.getFileSystem(session.getUser(), path, configuration).openFile(path, hiveFileContext);
+            // Lambda expression below requires final variable, so we define a new variable parquetDataSource.
+            final ParquetDataSource parquetDataSource = buildHdfsParquetDataSource(inputStream, path, stats);
+            dataSource = parquetDataSource;
+            Optional<InternalFileDecryptor> fileDecryptor = createDecryptor(configuration, path);
+            ParquetMetadata parquetMetadata = hdfsEnvironment.doAs(session.getUser(), () -> parquetMetadataSource.getParquetMetadata(
+                    parquetDataSource,
+                    fileSize,
+                    hiveFileContext.isCacheable(),
+                    hiveFileContext.getModificationTime(),
+                    fileDecryptor).getParquetMetadata());
+
+            if (!columns.isEmpty() && columns.stream().allMatch(hiveColumnHandle -> hiveColumnHandle.getColumnType() == AGGREGATED)) {
+                return Optional.of(new AggregatedParquetPageSource(columns, parquetMetadata, typeManager, functionResolution));
+            }
+
+            MessageType fileSchema = parquetMetadata.getFileMetaData().getSchema();
+
+            // channel i of the page source reads columns.get(i)
+            List<Type> types = columns.stream()
+                    .map(column -> typeManager.getType(column.getTypeSignature()))
+                    .collect(toImmutableList());
+            List<Optional<org.apache.parquet.schema.Type>> parquetTypes = new ArrayList<>(columns.size());
+            for (int channel = 0; channel < columns.size(); channel++) {
+                HiveColumnHandle column = columns.get(channel);
+                if (prefilledValues.containsKey(column.getHiveColumnIndex()) || (column.getColumnType() != REGULAR && !isPushedDownSubfield(column))) {
+                    parquetTypes.add(Optional.empty());
+                }
+                else {
+                    parquetTypes.add(getParquetType(types.get(channel), fileSchema, useParquetColumnNames, column, path));
+                }
+            }
+
+            MessageType requestedSchema = parquetTypes.stream()
+                    .filter(Optional::isPresent)
+                    .map(Optional::get)
+                    .map(type -> new MessageType(fileSchema.getName(), type))
+                    .reduce(MessageType::union)
+                    .orElse(new MessageType(fileSchema.getName(), ImmutableList.of()));
+            MessageColumnIO messageColumnIO = getColumnIO(fileSchema, requestedSchema);
+
+            ImmutableMap.Builder<Integer, Integer> channels = ImmutableMap.builder();
+            ImmutableMap.Builder<String, Integer> channelsByName = ImmutableMap.builder();
+            ImmutableList.Builder<Type> tableTypes = ImmutableList.builder();
+            ImmutableList.Builder<Optional<Field>> fields = ImmutableList.builder();
+            Map<Integer, Block> constantValues = new HashMap<>();
+            Map<Integer, HiveCoercer> channelCoercers = new HashMap<>();
+            ImmutableMap.Builder<VariableReferenceExpression, InputReferenceExpression> variableToInput = ImmutableMap.builder();
+            for (int channel = 0; channel < columns.size(); channel++) {
+                HiveColumnHandle column = columns.get(channel);
+                Type type = types.get(channel);
+                int hiveColumnIndex = column.getHiveColumnIndex();
+                channels.put(hiveColumnIndex, channel);
+                channelsByName.put(column.getName(), channel);
+
+                HiveCoercer coercer = coercers.get(hiveColumnIndex);
+                if (coercer != null) {
+                    channelCoercers.put(channel, coercer);
+                }
+
+                // use column types from the current table schema; these types might be different from this partition's schema
+                Type tableType = coercer == null ? type : coercer.getToType();
+                tableTypes.add(tableType);
+                variableToInput.put(
+                        new VariableReferenceExpression(Optional.empty(), column.getName(), tableType),
+                        new InputReferenceExpression(Optional.empty(), channel, tableType));
+
+                Optional<Field> field = Optional.empty();
+                if (parquetTypes.get(channel).isPresent()) {
+                    if (isPushedDownSubfield(column)) {
+                        Subfield pushedDownSubfield = getPushedDownSubfield(column);
+                        Optional<ColumnIO> columnIO = findNestedColumnIO(lookupColumnByName(messageColumnIO, pushedDownSubfield.getRootName()), nestedColumnPath(pushedDownSubfield));
+                        if (columnIO.isPresent()) {
+                            field = constructField(type, columnIO.get());
+                        }
+                    }
+                    else {
+                        field = constructField(type, lookupColumnByName(messageColumnIO, parquetTypes.get(channel).get().getName()));
+                    }
+                }
+                fields.add(field);
+
+                if (!field.isPresent()) {
+                    // partition keys and columns missing from the file have the same value at every position
+                    Object value = prefilledValues.containsKey(hiveColumnIndex) ?
+                            typedPartitionKey(prefilledValues.get(hiveColumnIndex), tableType, column.getName(), hiveStorageTimeZone) :
+                            null;
+                    constantValues.put(channel, nativeValueToBlock(tableType, value));
+                    channelCoercers.remove(channel);
+                }
+            }
+            Map<String, Integer> channelIndices = channelsByName.build();
+            Map<Integer, Integer> channelsByHiveColumnIndex = channels.build();
+
+            // filters are tested on the coerced blocks, so they use the table type and need no coercion
+            Map<Integer, TupleDomainFilter> filters = new HashMap<>();
+            domainPredicate.getDomains().get().forEach((subfield, domain) -> filters.put(channelIndices.get(subfield.getRootName()), tupleDomainFilterCache.getFilter(domain)));
+
+            List<FilterFunction> filterFunctions = toFilterFunctions(replaceExpression(remainingPredicate, variableToInput.build()), session);
+
+            // prune row groups using the statistics of the columns read without coercion
+            Map<String, HiveColumnHandle> columnsByName = columns.stream()
+                    .filter(column -> column.getColumnType() == REGULAR && !coercers.containsKey(column.getHiveColumnIndex()))
+                    .collect(toImmutableMap(HiveColumnHandle::getName, column -> column));
+            TupleDomain<HiveColumnHandle> effectivePredicate = domainPredicate.transform(subfield -> columnsByName.get(subfield.getRootName()));
+
+            ParquetReader parquetReader = createParquetReader(
+                    dataSource,
+                    parquetMetadata,
+                    messageColumnIO,
+                    fileSchema,
+                    requestedSchema,
+                    start,
+                    length,
+                    effectivePredicate,
+                    systemMemoryContext,
+                    getParquetMaxReadBlockSize(session),
+                    isParquetBatchReadsEnabled(session),
+                    isParquetBatchReaderVerificationEnabled(session),
+                    hiveFileContext,
+                    columnIndexFilterEnabled(session),
+                    getBloomFilterSource(isParquetBloomFilterEnabled(session), parquetMetadataSource, dataSource, hiveFileContext, fileDecryptor),
+                    fileDecryptor);
+
+            return Optional.of(new ParquetSelectivePageSource(
+                    parquetReader,
+                    tableTypes.build(),
+                    fields.build(),
+                    constantValues,
+                    channelCoercers,
+                    filters,
+                    filterFunctions,
+                    outputColumns.stream().map(channelsByHiveColumnIndex::get).collect(toImmutableList()),
+                    hiveFileContext.getStats()));
+        }
+        catch (Exception e) {
+            try {
+                if (dataSource != null) {
+                    dataSource.close();
+                }
+            }
+            catch (IOException ignored) {
+            }
+            if (e instanceof PrestoException) {
+                throw (PrestoException) e;
+            }
+            if (e instanceof ParquetCorruptionException) {
+                throw new PrestoException(HIVE_BAD_DATA, e);
+            }
+            if (e instanceof AccessControlException) {
+                throw new PrestoException(PERMISSION_DENIED, e.getMessage(), e);
+            }
+            if (nullToEmpty(e.getMessage()).trim().equals("Filesystem closed") ||
+                    e instanceof FileNotFoundException) {
+                throw new PrestoException(HIVE_CANNOT_OPEN_SPLIT, e);
+            }
+            String message = format("Error opening Hive split %s (offset=%s, length=%s): %s", path, start, length, e.getMessage());
+            if (e.getClass().getSimpleName().equals("BlockMissingException")) {
+                throw new PrestoException(HIVE_MISSING_DATA, message, e);
+            }
+            throw new PrestoException(HIVE_CANNOT_OPEN_SPLIT, message, e);
+        }
+    }
+
+    private static Optional<org.apache.parquet.schema.Type> getParquetType(Type prestoType, MessageType fileSchema, boolean useParquetColumnNames, HiveColumnHandle column, Path path)
+    {
+        if (isPushedDownSubfield(column)) {
+            if (!useParquetColumnNames) {
+                return Optional.empty();
+            }
+            Subfield pushedDownSubfield = getPushedDownSubfield(column);
+            return getSubfieldType(fileSchema, pushedDownSubfield.getRootName(), nestedColumnPath(pushedDownSubfield));
+        }
+
+        org.apache.parquet.schema.Type type = null;
+        if (useParquetColumnNames) {
+            type = getParquetTypeByName(column.getName(), fileSchema);
+        }
+        else if (column.getHiveColumnIndex() < fileSchema.getFieldCount()) {
+            type = fileSchema.getType(column.getHiveColumnIndex());
+        }
+
+        if (type == null) {
+            return Optional.empty();
+        }
+        if (!checkSchemaMatch(type, prestoType)) {
+            throw new PrestoException(HIVE_PARTITION_SCHEMA_MISMATCH, format("The column %s is declared as type %s, but the Parquet file (%s) declares the column as type %s",
+                    column.getName(),
+                    column.getHiveType(),
+                    path,
+                    type));
+        }
+        return Optional.of(type);
+    }
+
+    private List<FilterFunction> toFilterFunctions(RowExpression filter, ConnectorSession session)
+    {
+        if (TRUE_CONSTANT.equals(filter)) {
+            return ImmutableList.of();
+        }
+
+        DynamicFilterExtractResult extractDynamicFilterResult = extractDynamicFilters(filter);
+
+        // dynamic filter will be added through subfield pushdown
+        filter = and(extractDynamicFilterResult.getStaticConjuncts());
+        if (TRUE_CONSTANT.equals(filter)) {
+            return ImmutableList.of();
+        }
+
+        return ImmutableList.of(new FilterFunction(
+                session.getSqlFunctionProperties(),
+                rowExpressionService.getDeterminismEvaluator().isDeterministic(filter),
+                rowExpressionService.getPredicateCompiler().compilePredicate(session.getSqlFunctionProperties(), session.getSessionFunctions(), filter).get()));
     }
 }
@@ -98,6 +98,8 @@ public class TestHiveClientConfig
                 .setOrcStreamBufferSize(new DataSize(8, Unit.MEGABYTE))
                 .setOrcTinyStripeThreshold(new DataSize(8, Unit.MEGABYTE))
                 .setOrcMaxReadBlockSize(new DataSize(16, Unit.MEGABYTE))
+                .setOrcMaxReadAheadSize(new DataSize(0, Unit.MEGABYTE))
+                .setOrcMaxConcurrentReadAheads(20)
                 .setOrcLazyReadSmallRanges(true)
                 .setRcfileOptimizedWriterEnabled(true)
                 .setRcfileWriterValidate(false)
@@ -161,6 +163,7 @@ public class TestHiveClientConfig
                 .setMaterializedViewMissingPartitionsThreshold(100)
                 .setLooseMemoryAccountingEnabled(false)
                 .setReadColumnIndexFilter(false)
+                .setParquetBloomFilterEnabled(false)
                 .setSizeBasedSplitWeightsEnabled(true)
                 .setMinimumAssignedSplitWeight(0.05)
                 .setUserDefinedTypeEncodingEnabled(false)
@@ -226,6 +229,8 @@ public class TestHiveClientConfig
                 .put("hive.orc.stream-buffer-size", "55kB")
                 .put("hive.orc.tiny-stripe-threshold", "61kB")
                 .put("hive.orc.max-read-block-size", "66kB")
+                .put("hive.orc.max-read-ahead-size", "32MB")
+                .put("hive.orc.max-concurrent-read-aheads", "5")
                 .put("hive.orc.lazy-read-small-ranges", "false")
                 .put("hive.rcfile-optimized-writer.enabled", "false")
                 .put("hive.rcfile.writer.validate", "true")
@@ -290,6 +295,7 @@ public class TestHiveClientConfig
                 .put("hive.verbose-runtime-stats-enabled", "true")
                 .put("hive.materialized-view-missing-partitions-threshold", "50")
                 .put("hive.parquet-column-index-filter-enabled", "true")
+                .put("hive.parquet-bloom-filter-enabled", "true")
                 .put("hive.size-based-split-weights-enabled", "false")
                 .put("hive.user-defined-type-encoding-enabled", "true")
                 .put("hive.minimum-assigned-split-weight", "1.0")
@@ -351,6 +357,8 @@ public class TestHiveClientConfig
                 .setOrcStreamBufferSize(new DataSize(55, Unit.KILOBYTE))
                 .setOrcTinyStripeThreshold(new DataSize(61, Unit.KILOBYTE))
                 .setOrcMaxReadBlockSize(new DataSize(66, Unit.KILOBYTE))
+                .setOrcMaxReadAheadSize(new DataSize(32, Unit.MEGABYTE))
+                .setOrcMaxConcurrentReadAheads(5)
                 .setOrcLazyReadSmallRanges(false)
                 .setRcfileOptimizedWriterEnabled(false)
                 .setRcfileWriterValidate(true)
@@ -415,6 +423,7 @@ public class TestHiveClientConfig
                 .setMaterializedViewMissingPartitionsThreshold(50)
                 .setLooseMemoryAccountingEnabled(true)
                 .setReadColumnIndexFilter(true)
+                .setParquetBloomFilterEnabled(true)
                 .setSizeBasedSplitWeightsEnabled(false)
                 .setMinimumAssignedSplitWeight(1.0)
                 .setUserDefinedTypeEncodingEnabled(true)
@@ -5480,7 +5480,7 @@ public class TestHiveIntegrationSmokeTest
     }
 
     @Test
-    public void testParquetSelectivePageSourceFails()
+    public void testParquetSelectivePageSource()
     {
         assertUpdate("CREATE TABLE test_parquet_filter_pushdoown (a BIGINT, b BOOLEAN) WITH (format = 'parquet')");
         assertUpdate(getSession(), "INSERT INTO test_parquet_filter_pushdoown VALUES (1, true)", 1);
@@ -5505,9 +5505,20 @@ public class TestHiveIntegrationSmokeTest
                 .setCatalogSessionProperty("hive", "pushdown_filter_enabled", "true")
                 .setCatalogSessionProperty("hive", "parquet_pushdown_filter_enabled", "true")
                 .build();
-        assertQueryFails(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown", "Parquet reader doesn't support filter pushdown yet");
-        assertQueryFails(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = true", "Parquet reader doesn't support filter pushdown yet");
-        assertQueryFails(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = false", "Parquet reader doesn't support filter pushdown yet");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown", "select 1");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = true", "select 1");
+        assertQueryReturnsEmptyResult(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b = false");
+
+        assertUpdate(getSession(), "INSERT INTO test_parquet_filter_pushdoown VALUES (2, false), (3, true), (4, null), (null, true)", 4);
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b", "VALUES 1, 3, null");
+        assertQuery(parquetFilterPushdownSession, "SELECT b FROM test_parquet_filter_pushdoown WHERE a > 1", "VALUES false, true, null");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE a > 1 AND b", "select 3");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE b IS NULL", "select 4");
+        assertQuery(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE a % 2 = 0 OR b IS NULL", "VALUES 2, 4");
+        assertQuery(parquetFilterPushdownSession, "SELECT count(*) FROM test_parquet_filter_pushdoown WHERE a IS NULL", "select 1");
+        assertQueryReturnsEmptyResult(parquetFilterPushdownSession, "SELECT a FROM test_parquet_filter_pushdoown WHERE a > 10");
+
+        assertUpdate("DROP TABLE test_parquet_filter_pushdoown");
     }
 
     private void testPageFileCompression(String compression)
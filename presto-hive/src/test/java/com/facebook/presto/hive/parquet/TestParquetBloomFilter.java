@@ -0,0 +1,212 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.common.predicate.TupleDomain;
+import com.facebook.presto.hive.HiveFileContext;
+import com.facebook.presto.parquet.FileParquetDataSource;
+import com.facebook.presto.parquet.ParquetDataSource;
+import com.facebook.presto.parquet.ParquetDataSourceId;
+import com.facebook.presto.parquet.RichColumnDescriptor;
+import com.facebook.presto.parquet.cache.BloomFilterCacheKey;
+import com.facebook.presto.parquet.cache.CachingParquetMetadataSource;
+import com.facebook.presto.parquet.cache.MetadataReader;
+import com.facebook.presto.parquet.cache.ParquetFileMetadata;
+import com.facebook.presto.parquet.predicate.BloomFilterSource;
+import com.facebook.presto.parquet.predicate.Predicate;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.apache.hadoop.fs.Path;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.example.data.Group;
+import org.apache.parquet.example.data.simple.SimpleGroupFactory;
+import org.apache.parquet.hadoop.ParquetWriter;
+import org.apache.parquet.hadoop.example.ExampleParquetWriter;
+import org.apache.parquet.hadoop.metadata.BlockMetaData;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.schema.MessageType;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+
+import static com.facebook.presto.common.predicate.Domain.singleValue;
+import static com.facebook.presto.common.predicate.TupleDomain.withColumnDomains;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.hive.CacheQuota.NO_CACHE_CONSTRAINTS;
+import static com.facebook.presto.hive.parquet.ParquetPageSourceFactory.getBloomFilterSource;
+import static com.facebook.presto.parquet.ParquetTypeUtils.getDescriptors;
+import static com.facebook.presto.parquet.predicate.PredicateUtils.buildPredicate;
+import static com.facebook.presto.parquet.predicate.PredicateUtils.predicateMatches;
+import static com.google.common.io.Files.createTempDir;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static org.apache.parquet.schema.MessageTypeParser.parseMessageType;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestParquetBloomFilter
+{
+    private static final int ROW_COUNT = 20_000;
+    private static final MessageType SCHEMA = parseMessageType("message test { required int64 a; }");
+
+    private File temporaryDirectory;
+    private File parquetFile;
+    private ParquetMetadata parquetMetadata;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        temporaryDirectory = createTempDir();
+        parquetFile = new File(temporaryDirectory, "data.parquet");
+
+        // the values are the even numbers, so an odd number is in the range of the statistics of a row group but not in the row group
+        SimpleGroupFactory groupFactory = new SimpleGroupFactory(SCHEMA);
+        try (ParquetWriter<Group> writer = ExampleParquetWriter.builder(new Path(parquetFile.toURI()))
+                .withType(SCHEMA)
+                .withRowGroupSize(16 * 1024)
+                .withDictionaryEncoding(false)
+                .withBloomFilterEnabled(true)
+                .build()) {
+            for (long row = 0; row < ROW_COUNT; row++) {
+                writer.write(groupFactory.newGroup().append("a", row * 2));
+            }
+        }
+
+        try (ParquetDataSource dataSource = new FileParquetDataSource(parquetFile)) {
+            parquetMetadata = MetadataReader.readFooter(dataSource, parquetFile.length(), Optional.empty()).getParquetMetadata();
+        }
+        assertTrue(parquetMetadata.getBlocks().size() > 1, "expected more than one row group");
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        deleteRecursively(temporaryDirectory.toPath(), ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testReadBloomFilter()
+            throws IOException
+    {
+        try (ParquetDataSource dataSource = new FileParquetDataSource(parquetFile)) {
+            long firstRow = 0;
+            for (BlockMetaData block : parquetMetadata.getBlocks()) {
+                Optional<BloomFilter> bloomFilter = MetadataReader.readBloomFilter(dataSource, getOnlyColumn(block));
+                assertTrue(bloomFilter.isPresent());
+                for (long row = firstRow; row < firstRow + block.getRowCount(); row++) {
+                    assertTrue(bloomFilter.get().findHash(bloomFilter.get().hash(row * 2)));
+                }
+                firstRow += block.getRowCount();
+            }
+        }
+    }
+
+    @Test
+    public void testRowGroupPruning()
+            throws IOException
+    {
+        try (ParquetDataSource dataSource = new FileParquetDataSource(parquetFile)) {
+            HiveFileContext hiveFileContext = hiveFileContext(false);
+            BloomFilterSource bloomFilterSource = getBloomFilterSource(true, new MetadataReader(), dataSource, hiveFileContext, Optional.empty());
+            BloomFilterSource disabled = getBloomFilterSource(false, new MetadataReader(), dataSource, hiveFileContext, Optional.empty());
+
+            // a value in the file is in one row group, with or without bloom filters
+            assertEquals(countMatchingRowGroups(dataSource, 5000, bloomFilterSource), 1);
+            assertEquals(countMatchingRowGroups(dataSource, 5000, disabled), 1);
+
+            // a value that is not in the file is only pruned with bloom filters
+            assertEquals(countMatchingRowGroups(dataSource, 5001, bloomFilterSource), 0);
+            assertEquals(countMatchingRowGroups(dataSource, 5001, disabled), 1);
+        }
+    }
+
+    @Test
+    public void testBloomFilterCache()
+            throws IOException
+    {
+        Cache<ParquetDataSourceId, ParquetFileMetadata> metadataCache = CacheBuilder.newBuilder().build();
+        Cache<BloomFilterCacheKey, Optional<BloomFilter>> bloomFilterCache = CacheBuilder.newBuilder().recordStats().build();
+        CachingParquetMetadataSource metadataSource = new CachingParquetMetadataSource(metadataCache, Optional.of(bloomFilterCache), new MetadataReader());
+
+        try (ParquetDataSource dataSource = new FileParquetDataSource(parquetFile)) {
+            BloomFilterSource bloomFilterSource = getBloomFilterSource(true, metadataSource, dataSource, hiveFileContext(true), Optional.empty());
+            // only the row group whose statistics match the value needs its bloom filter
+            assertEquals(countMatchingRowGroups(dataSource, 5001, bloomFilterSource), 0);
+            assertEquals(bloomFilterCache.stats().missCount(), 1);
+            assertEquals(bloomFilterCache.stats().hitCount(), 0);
+
+            // the second lookup does not read the file
+            long readBytes = dataSource.getReadBytes();
+            assertEquals(countMatchingRowGroups(dataSource, 5001, bloomFilterSource), 0);
+            assertEquals(bloomFilterCache.stats().missCount(), 1);
+            assertEquals(bloomFilterCache.stats().hitCount(), 1);
+            assertEquals(dataSource.getReadBytes(), readBytes);
+
+            // files that are not cacheable are always read
+            BloomFilterSource uncachedBloomFilterSource = getBloomFilterSource(true, metadataSource, dataSource, hiveFileContext(false), Optional.empty());
+            assertEquals(countMatchingRowGroups(dataSource, 5001, uncachedBloomFilterSource), 0);
+            assertEquals(bloomFilterCache.stats().requestCount(), 2);
+            assertFalse(dataSource.getReadBytes() == readBytes);
+        }
+    }
+
+    private int countMatchingRowGroups(ParquetDataSource dataSource, long value, BloomFilterSource bloomFilterSource)
+            throws IOException
+    {
+        Map<List<String>, RichColumnDescriptor> descriptorsByPath = getDescriptors(SCHEMA, SCHEMA);
+        TupleDomain<ColumnDescriptor> tupleDomain = withColumnDomains(ImmutableMap.of(descriptorsByPath.get(ImmutableList.of("a")), singleValue(BIGINT, value)));
+        Predicate predicate = buildPredicate(SCHEMA, tupleDomain, descriptorsByPath);
+
+        int matchingRowGroups = 0;
+        for (BlockMetaData block : parquetMetadata.getBlocks()) {
+            if (predicateMatches(predicate, block, dataSource, descriptorsByPath, tupleDomain, Optional.empty(), false, bloomFilterSource)) {
+                matchingRowGroups++;
+            }
+        }
+        return matchingRowGroups;
+    }
+
+    private static ColumnChunkMetaData getOnlyColumn(BlockMetaData block)
+    {
+        assertEquals(block.getColumns().size(), 1);
+        return block.getColumns().get(0);
+    }
+
+    private HiveFileContext hiveFileContext(boolean cacheable)
+    {
+        return new HiveFileContext(
+                cacheable,
+                NO_CACHE_CONSTRAINTS,
+                Optional.empty(),
+                OptionalLong.of(parquetFile.length()),
+                OptionalLong.empty(),
+                OptionalLong.empty(),
+                parquetFile.lastModified(),
+                false);
+    }
+}
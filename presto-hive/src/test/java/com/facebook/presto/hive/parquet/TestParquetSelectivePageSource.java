@@ -0,0 +1,245 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.hive.parquet;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.function.SqlFunctionProperties;
+import com.facebook.presto.common.predicate.FilterFunction;
+import com.facebook.presto.common.predicate.TupleDomainFilter;
+import com.facebook.presto.common.predicate.TupleDomainFilter.BigintRange;
+import com.facebook.presto.common.relation.Predicate;
+import com.facebook.presto.parquet.Field;
+import com.facebook.presto.parquet.FileParquetDataSource;
+import com.facebook.presto.parquet.cache.MetadataReader;
+import com.facebook.presto.parquet.reader.ParquetReader;
+import com.facebook.presto.spi.PrestoException;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.units.DataSize;
+import org.apache.parquet.hadoop.metadata.ParquetMetadata;
+import org.apache.parquet.io.ColumnIOConverter;
+import org.apache.parquet.io.MessageColumnIO;
+import org.apache.parquet.schema.MessageType;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.LongPredicate;
+import java.util.stream.LongStream;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.hive.HiveTestUtils.SESSION;
+import static com.facebook.presto.hive.parquet.ParquetTester.writeParquetFileFromPresto;
+import static com.facebook.presto.memory.context.AggregatedMemoryContext.newSimpleAggregatedMemoryContext;
+import static com.facebook.presto.parquet.ParquetTypeUtils.getColumnIO;
+import static com.facebook.presto.spi.StandardErrorCode.DIVISION_BY_ZERO;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.io.Files.createTempDir;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static org.apache.parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.fail;
+
+public class TestParquetSelectivePageSource
+{
+    private static final int ROW_COUNT = 5000;
+
+    private File temporaryDirectory;
+    private File parquetFile;
+    private File emptyParquetFile;
+
+    @BeforeClass
+    public void setUp()
+            throws Exception
+    {
+        temporaryDirectory = createTempDir();
+        parquetFile = new File(temporaryDirectory, "data.parquet");
+        // column b is column a times 10
+        writeParquetFileFromPresto(
+                parquetFile,
+                ImmutableList.of(BIGINT, BIGINT),
+                ImmutableList.of("a", "b"),
+                new Iterator<?>[] {LongStream.range(0, ROW_COUNT).iterator(), LongStream.range(0, ROW_COUNT).map(value -> value * 10).iterator()},
+                ROW_COUNT,
+                UNCOMPRESSED);
+
+        emptyParquetFile = new File(temporaryDirectory, "empty.parquet");
+        writeParquetFileFromPresto(
+                emptyParquetFile,
+                ImmutableList.of(BIGINT, BIGINT),
+                ImmutableList.of("a", "b"),
+                new Iterator<?>[] {LongStream.empty().iterator(), LongStream.empty().iterator()},
+                0,
+                UNCOMPRESSED);
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+            throws IOException
+    {
+        deleteRecursively(temporaryDirectory.toPath(), ALLOW_INSECURE);
+    }
+
+    @Test
+    public void testFilterOrder()
+            throws IOException
+    {
+        // the domain filter on a runs first, and each filter function only sees the positions passing the filters before it
+        List<Long> firstFunctionInput = new ArrayList<>();
+        List<Long> secondFunctionInput = new ArrayList<>();
+        FilterFunction lessThan4000 = filterFunction(0, value -> {
+            firstFunctionInput.add(value);
+            return value < 4000;
+        });
+        FilterFunction even = filterFunction(0, value -> {
+            secondFunctionInput.add(value);
+            return value % 2 == 0;
+        });
+
+        List<Long> values = readColumn(
+                parquetFile,
+                ImmutableMap.of(0, BigintRange.of(1000, Long.MAX_VALUE, false)),
+                ImmutableList.of(lessThan4000, even),
+                1);
+
+        assertEquals(firstFunctionInput, range(1000, ROW_COUNT, value -> true));
+        assertEquals(secondFunctionInput, range(1000, 4000, value -> true));
+        assertEquals(values, range(1000, 4000, value -> value % 2 == 0).stream().map(value -> value * 10).collect(toImmutableList()));
+    }
+
+    @Test
+    public void testErrorOnFilteredPosition()
+            throws IOException
+    {
+        // the error of the first function is only raised if the position passes the second one
+        FilterFunction failOnOdd = filterFunction(0, value -> {
+            if (value % 2 != 0) {
+                throw new PrestoException(DIVISION_BY_ZERO, "odd value " + value);
+            }
+            return true;
+        });
+        FilterFunction evenA = filterFunction(1, value -> value % 20 == 0);
+
+        List<Long> values = readColumn(parquetFile, ImmutableMap.of(), ImmutableList.of(failOnOdd, evenA), 0);
+        assertEquals(values, range(0, ROW_COUNT, value -> value % 2 == 0));
+
+        // the error is raised for a position that passes all filters
+        FilterFunction aLessThan100 = filterFunction(1, value -> value < 1000);
+        try {
+            readColumn(parquetFile, ImmutableMap.of(), ImmutableList.of(failOnOdd, aLessThan100), 0);
+            fail("expected exception");
+        }
+        catch (PrestoException e) {
+            assertEquals(e.getErrorCode(), DIVISION_BY_ZERO.toErrorCode());
+        }
+
+        // the positions dropped by a domain filter are not evaluated by the filter functions
+        values = readColumn(parquetFile, ImmutableMap.of(1, BigintRange.of(0, 0, false)), ImmutableList.of(failOnOdd), 0);
+        assertEquals(values, ImmutableList.of(0L));
+    }
+
+    @Test
+    public void testEmptyBatch()
+            throws IOException
+    {
+        // no position passes the filters
+        assertEquals(readColumn(parquetFile, ImmutableMap.of(0, BigintRange.of(ROW_COUNT, Long.MAX_VALUE, false)), ImmutableList.of(), 1), ImmutableList.of());
+        assertEquals(readColumn(parquetFile, ImmutableMap.of(), ImmutableList.of(filterFunction(0, value -> false)), 1), ImmutableList.of());
+
+        // no rows at all
+        assertEquals(readColumn(emptyParquetFile, ImmutableMap.of(), ImmutableList.of(filterFunction(0, value -> true)), 1), ImmutableList.of());
+    }
+
+    private static List<Long> readColumn(File file, Map<Integer, TupleDomainFilter> filters, List<FilterFunction> filterFunctions, int outputChannel)
+            throws IOException
+    {
+        ImmutableList.Builder<Long> values = ImmutableList.builder();
+        try (ParquetSelectivePageSource pageSource = createPageSource(file, filters, filterFunctions, outputChannel)) {
+            while (!pageSource.isFinished()) {
+                Page page = pageSource.getNextPage();
+                if (page == null) {
+                    continue;
+                }
+                Block block = page.getBlock(0).getLoadedBlock();
+                for (int position = 0; position < block.getPositionCount(); position++) {
+                    values.add(BIGINT.getLong(block, position));
+                }
+            }
+            assertNull(pageSource.getNextPage());
+        }
+        return values.build();
+    }
+
+    private static ParquetSelectivePageSource createPageSource(File file, Map<Integer, TupleDomainFilter> filters, List<FilterFunction> filterFunctions, int outputChannel)
+            throws IOException
+    {
+        FileParquetDataSource dataSource = new FileParquetDataSource(file);
+        ParquetMetadata parquetMetadata = MetadataReader.readFooter(dataSource, file.length(), Optional.empty()).getParquetMetadata();
+        MessageType schema = parquetMetadata.getFileMetaData().getSchema();
+        MessageColumnIO messageColumnIO = getColumnIO(schema, schema);
+
+        List<Optional<Field>> fields = ImmutableList.of(
+                ColumnIOConverter.constructField(BIGINT, messageColumnIO.getChild(0)),
+                ColumnIOConverter.constructField(BIGINT, messageColumnIO.getChild(1)));
+        ParquetReader parquetReader = new ParquetReader(messageColumnIO, parquetMetadata.getBlocks(), Optional.empty(), dataSource, newSimpleAggregatedMemoryContext(), new DataSize(16, MEGABYTE), true, false, null, null, false, Optional.empty());
+        return new ParquetSelectivePageSource(
+                parquetReader,
+                ImmutableList.of(BIGINT, BIGINT),
+                fields,
+                ImmutableMap.of(),
+                ImmutableMap.of(),
+                filters,
+                filterFunctions,
+                ImmutableList.of(outputChannel),
+                new RuntimeStats());
+    }
+
+    private static FilterFunction filterFunction(int channel, LongPredicate predicate)
+    {
+        return new FilterFunction(SESSION.getSqlFunctionProperties(), true, new Predicate()
+        {
+            @Override
+            public int[] getInputChannels()
+            {
+                return new int[] {channel};
+            }
+
+            @Override
+            public boolean evaluate(SqlFunctionProperties properties, Page page, int position)
+            {
+                return predicate.test(BIGINT.getLong(page.getBlock(0), position));
+            }
+        });
+    }
+
+    private static List<Long> range(long start, long end, LongPredicate predicate)
+    {
+        return LongStream.range(start, end)
+                .filter(predicate)
+                .boxed()
+                .collect(toImmutableList());
+    }
+}
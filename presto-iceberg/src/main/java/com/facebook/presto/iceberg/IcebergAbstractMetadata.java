@@ -68,6 +68,7 @@ import static com.facebook.presto.iceberg.IcebergUtil.getColumns;
 import static com.facebook.presto.iceberg.IcebergUtil.getFileFormat;
 import static com.facebook.presto.iceberg.IcebergUtil.resolveSnapshotIdByName;
 import static com.facebook.presto.iceberg.PartitionFields.toPartitionFields;
+import static com.facebook.presto.iceberg.TableType.DATA;
 import static com.facebook.presto.iceberg.TypeConverter.toIcebergType;
 import static com.facebook.presto.iceberg.TypeConverter.toPrestoType;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
@@ -149,6 +150,17 @@ public abstract class IcebergAbstractMetadata
 
     protected abstract ConnectorTableMetadata getTableMetadata(ConnectorSession session, SchemaTableName table);
 
+    @Override
+    public Optional<String> getTableVersion(ConnectorSession session, ConnectorTableHandle tableHandle)
+    {
+        // the snapshot is resolved when the handle is created, and the data of a snapshot never changes
+        IcebergTableHandle table = (IcebergTableHandle) tableHandle;
+        if (table.getTableType() != DATA) {
+            return Optional.empty();
+        }
+        return table.getSnapshotId().map(String::valueOf);
+    }
+
     @Override
     public Map<SchemaTableName, List<ColumnMetadata>> listTableColumns(ConnectorSession session, SchemaTablePrefix prefix)
     {
@@ -16,6 +16,7 @@ package com.facebook.presto;
 import com.facebook.presto.execution.QueryManagerConfig;
 import com.facebook.presto.execution.QueryManagerConfig.ExchangeMaterializationStrategy;
 import com.facebook.presto.execution.TaskManagerConfig;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.execution.scheduler.NodeSchedulerConfig;
 import com.facebook.presto.execution.scheduler.NodeSchedulerConfig.ResourceAwareSchedulingStrategy;
 import com.facebook.presto.execution.warnings.WarningCollectorConfig;
@@ -110,6 +111,10 @@ public final class SystemSessionProperties
     public static final String PUSH_TABLE_WRITE_THROUGH_UNION = "push_table_write_through_union";
     public static final String EXECUTION_POLICY = "execution_policy";
     public static final String DICTIONARY_AGGREGATION = "dictionary_aggregation";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION = "adaptive_partial_aggregation";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS = "adaptive_partial_aggregation_min_rows";
+    public static final String ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD = "adaptive_partial_aggregation_unique_rows_ratio_threshold";
+    public static final String LOCK_FREE_LOCAL_EXCHANGE = "lock_free_local_exchange";
     public static final String PLAN_WITH_TABLE_NODE_PARTITIONING = "plan_with_table_node_partitioning";
     public static final String SPATIAL_JOIN = "spatial_join";
     public static final String SPATIAL_PARTITIONING_TABLE_NAME = "spatial_partitioning_table_name";
@@ -125,6 +130,7 @@ public final class SystemSessionProperties
     public static final String OPTIMIZE_METADATA_QUERIES_IGNORE_STATS = "optimize_metadata_queries_ignore_stats";
     public static final String OPTIMIZE_METADATA_QUERIES_CALL_THRESHOLD = "optimize_metadata_queries_call_threshold";
     public static final String FAST_INEQUALITY_JOINS = "fast_inequality_joins";
+    public static final String JOIN_OFF_HEAP_HASH_TABLE_ENABLED = "join_off_heap_hash_table_enabled";
     public static final String QUERY_PRIORITY = "query_priority";
     public static final String SPILL_ENABLED = "spill_enabled";
     public static final String JOIN_SPILL_ENABLED = "join_spill_enabled";
@@ -136,7 +142,12 @@ public final class SystemSessionProperties
     public static final String ORDER_BY_AGGREGATION_SPILL_ENABLED = "order_by_aggregation_spill_enabled";
     public static final String WINDOW_SPILL_ENABLED = "window_spill_enabled";
     public static final String ORDER_BY_SPILL_ENABLED = "order_by_spill_enabled";
+    public static final String TOPN_ROW_NUMBER_SPILL_ENABLED = "topn_row_number_spill_enabled";
+    public static final String MARK_DISTINCT_SPILL_ENABLED = "mark_distinct_spill_enabled";
+    public static final String DISTINCT_LIMIT_SPILL_ENABLED = "distinct_limit_spill_enabled";
     public static final String AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT = "aggregation_operator_unspill_memory_limit";
+    public static final String NESTED_LOOP_JOIN_SPILL_BLOCK_SIZE = "nested_loop_join_spill_block_size";
+    public static final String SPILL_PARTITION_COUNT = "spill_partition_count";
     public static final String QUERY_MAX_REVOCABLE_MEMORY_PER_NODE = "query_max_revocable_memory_per_node";
     public static final String TEMP_STORAGE_SPILLER_BUFFER_SIZE = "temp_storage_spiller_buffer_size";
     public static final String OPTIMIZE_DISTINCT_AGGREGATIONS = "optimize_mixed_distinct_aggregations";
@@ -148,6 +159,9 @@ public final class SystemSessionProperties
     public static final String RUNTIME_OPTIMIZER_ENABLED = "runtime_optimizer_enabled";
     public static final String EXCHANGE_COMPRESSION = "exchange_compression";
     public static final String EXCHANGE_CHECKSUM = "exchange_checksum";
+    public static final String EXCHANGE_COMPRESSION_CODEC = "exchange_compression_codec";
+    public static final String EXCHANGE_ZSTD_COMPRESSION_LEVEL = "exchange_zstd_compression_level";
+    public static final String EXCHANGE_ADAPTIVE_COMPRESSION = "exchange_adaptive_compression";
     public static final String LEGACY_TIMESTAMP = "legacy_timestamp";
     public static final String ENABLE_INTERMEDIATE_AGGREGATIONS = "enable_intermediate_aggregations";
     public static final String PUSH_AGGREGATION_THROUGH_JOIN = "push_aggregation_through_join";
@@ -172,6 +186,8 @@ public final class SystemSessionProperties
     public static final String IGNORE_STATS_CALCULATOR_FAILURES = "ignore_stats_calculator_failures";
     public static final String PRINT_STATS_FOR_NON_JOIN_QUERY = "print_stats_for_non_join_query";
     public static final String MAX_DRIVERS_PER_TASK = "max_drivers_per_task";
+    public static final String TASK_SCHEDULING_WEIGHT = "task_scheduling_weight";
+    public static final String RESOURCE_GROUP = "resource_group";
     public static final String MAX_TASKS_PER_STAGE = "max_tasks_per_stage";
     public static final String DEFAULT_FILTER_FACTOR_ENABLED = "default_filter_factor_enabled";
     public static final String PUSH_LIMIT_THROUGH_OUTER_JOIN = "push_limit_through_outer_join";
@@ -180,6 +196,7 @@ public final class SystemSessionProperties
     public static final String TABLE_WRITER_MERGE_OPERATOR_ENABLED = "table_writer_merge_operator_enabled";
     public static final String INDEX_LOADER_TIMEOUT = "index_loader_timeout";
     public static final String OPTIMIZED_REPARTITIONING_ENABLED = "optimized_repartitioning";
+    public static final String OPTIMIZED_REPARTITIONING_PRESERVE_DICTIONARIES = "optimized_repartitioning_preserve_dictionaries";
     public static final String AGGREGATION_PARTITIONING_MERGING_STRATEGY = "aggregation_partitioning_merging_strategy";
     public static final String LIST_BUILT_IN_FUNCTIONS_ONLY = "list_built_in_functions_only";
     public static final String PARTITIONING_PRECISION_STRATEGY = "partitioning_precision_strategy";
@@ -195,7 +212,9 @@ public final class SystemSessionProperties
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_ROW_COUNT = "dynamic_filtering_max_per_driver_row_count";
     public static final String DYNAMIC_FILTERING_MAX_PER_DRIVER_SIZE = "dynamic_filtering_max_per_driver_size";
     public static final String DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER = "dynamic_filtering_range_row_limit_per_driver";
+    public static final String DYNAMIC_FILTERING_BLOOM_FILTER_SIZE = "dynamic_filtering_bloom_filter_size";
     public static final String FRAGMENT_RESULT_CACHING_ENABLED = "fragment_result_caching_enabled";
+    public static final String QUERY_RESULT_CACHING_ENABLED = "query_result_caching_enabled";
     public static final String LEGACY_TYPE_COERCION_WARNING_ENABLED = "legacy_type_coercion_warning_enabled";
     public static final String INLINE_SQL_FUNCTIONS = "inline_sql_functions";
     public static final String REMOTE_FUNCTIONS_ENABLED = "remote_functions_enabled";
@@ -532,6 +551,26 @@ public final class SystemSessionProperties
                         "Enable optimization for aggregations on dictionaries",
                         featuresConfig.isDictionaryAggregation(),
                         false),
+                booleanProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION,
+                        "Experimental: Skip partial aggregation when it does not reduce the number of rows enough",
+                        featuresConfig.isAdaptivePartialAggregationEnabled(),
+                        false),
+                longProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS,
+                        "Experimental: Minimum number of rows partially aggregated before partial aggregation may be skipped",
+                        featuresConfig.getAdaptivePartialAggregationMinRows(),
+                        false),
+                doubleProperty(
+                        ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD,
+                        "Experimental: Skip partial aggregation when the ratio of its output rows to its input rows is above this threshold",
+                        featuresConfig.getAdaptivePartialAggregationUniqueRowsRatioThreshold(),
+                        false),
+                booleanProperty(
+                        LOCK_FREE_LOCAL_EXCHANGE,
+                        "Experimental: Use lock-free buffers for the consumers of local exchanges",
+                        featuresConfig.isLockFreeLocalExchangeEnabled(),
+                        false),
                 integerProperty(
                         INITIAL_SPLITS_PER_NODE,
                         "The number of splits each node will run per task, initially",
@@ -620,6 +659,11 @@ public final class SystemSessionProperties
                         "Use faster handling of inequality join if it is possible",
                         featuresConfig.isFastInequalityJoins(),
                         false),
+                booleanProperty(
+                        JOIN_OFF_HEAP_HASH_TABLE_ENABLED,
+                        "Experimental: Store the hash tables of hash joins in off-heap memory",
+                        featuresConfig.isJoinOffHeapHashTableEnabled(),
+                        false),
                 booleanProperty(
                         COLOCATED_JOIN,
                         "Experimental: Use a colocated join when possible",
@@ -708,6 +752,21 @@ public final class SystemSessionProperties
                         "Enable order by spilling if spill_enabled",
                         featuresConfig.isOrderBySpillEnabled(),
                         false),
+                booleanProperty(
+                        TOPN_ROW_NUMBER_SPILL_ENABLED,
+                        "Enable top N row number spilling if spill_enabled",
+                        featuresConfig.isTopNRowNumberSpillEnabled(),
+                        false),
+                booleanProperty(
+                        MARK_DISTINCT_SPILL_ENABLED,
+                        "Enable mark distinct spilling if spill_enabled",
+                        featuresConfig.isMarkDistinctSpillEnabled(),
+                        false),
+                booleanProperty(
+                        DISTINCT_LIMIT_SPILL_ENABLED,
+                        "Enable distinct limit spilling if spill_enabled",
+                        featuresConfig.isDistinctLimitSpillEnabled(),
+                        false),
                 new PropertyMetadata<>(
                         AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT,
                         "Experimental: How much memory can should be allocated per aggregation operator in unspilling process",
@@ -717,6 +776,20 @@ public final class SystemSessionProperties
                         false,
                         value -> DataSize.valueOf((String) value),
                         DataSize::toString),
+                new PropertyMetadata<>(
+                        NESTED_LOOP_JOIN_SPILL_BLOCK_SIZE,
+                        "Experimental: Maximum size of a block of rows that a nested loop join with a spilled build side joins at a time",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getNestedLoopJoinSpillBlockSize(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
+                integerProperty(
+                        SPILL_PARTITION_COUNT,
+                        "Experimental: Number of hash partitions spilled operator data is split into",
+                        featuresConfig.getSpillPartitionCount(),
+                        false),
                 new PropertyMetadata<>(
                         QUERY_MAX_REVOCABLE_MEMORY_PER_NODE,
                         "Maximum amount of revocable memory a query can use",
@@ -788,6 +861,38 @@ public final class SystemSessionProperties
                         "Enable checksum in exchanges",
                         featuresConfig.isExchangeChecksumEnabled(),
                         false),
+                new PropertyMetadata<>(
+                        EXCHANGE_COMPRESSION_CODEC,
+                        format("Codec used to compress pages in exchanges, if exchange compression is enabled. Options are %s",
+                                Stream.of(CompressionCodec.values())
+                                        .map(CompressionCodec::name)
+                                        .collect(joining(","))),
+                        VARCHAR,
+                        CompressionCodec.class,
+                        featuresConfig.getExchangeCompressionCodec(),
+                        false,
+                        value -> CompressionCodec.valueOf(((String) value).toUpperCase()),
+                        CompressionCodec::name),
+                new PropertyMetadata<>(
+                        EXCHANGE_ZSTD_COMPRESSION_LEVEL,
+                        "Compression level used by the ZSTD exchange compression codec",
+                        INTEGER,
+                        Integer.class,
+                        featuresConfig.getExchangeZstdCompressionLevel(),
+                        false,
+                        value -> {
+                            int level = ((Number) value).intValue();
+                            if (level < 1 || level > 22) {
+                                throw new PrestoException(INVALID_SESSION_PROPERTY, format("%s must be between 1 and 22: %s", EXCHANGE_ZSTD_COMPRESSION_LEVEL, level));
+                            }
+                            return level;
+                        },
+                        value -> value),
+                booleanProperty(
+                        EXCHANGE_ADAPTIVE_COMPRESSION,
+                        "Stop compressing pages in exchanges for a while after a page did not compress well",
+                        featuresConfig.isExchangeAdaptiveCompressionEnabled(),
+                        false),
                 booleanProperty(
                         LEGACY_TIMESTAMP,
                         "Use legacy TIME & TIMESTAMP semantics (warning: this will be removed)",
@@ -918,6 +1023,20 @@ public final class SystemSessionProperties
                         false,
                         value -> min(taskManagerConfig.getMaxDriversPerTask(), validateNullablePositiveIntegerValue(value, MAX_DRIVERS_PER_TASK)),
                         object -> object),
+                new PropertyMetadata<>(
+                        TASK_SCHEDULING_WEIGHT,
+                        "Share of the worker threads given to the tasks of the query relative to other queries, when task.task-priority-tracking is WEIGHTED_QUERY_FAIR",
+                        INTEGER,
+                        Integer.class,
+                        1,
+                        false,
+                        value -> validateIntegerValue(value, TASK_SCHEDULING_WEIGHT, 1, false),
+                        object -> object),
+                stringProperty(
+                        RESOURCE_GROUP,
+                        "Resource group the query runs in, set by the coordinator",
+                        null,
+                        true),
                 booleanProperty(
                         IGNORE_STATS_CALCULATOR_FAILURES,
                         "Ignore statistics calculator failures",
@@ -972,6 +1091,11 @@ public final class SystemSessionProperties
                         "Experimental: Use optimized repartitioning",
                         featuresConfig.isOptimizedRepartitioningEnabled(),
                         false),
+                booleanProperty(
+                        OPTIMIZED_REPARTITIONING_PRESERVE_DICTIONARIES,
+                        "Experimental: Keep the dictionary and RLE encoding of variable width columns in optimized repartitioning",
+                        featuresConfig.isOptimizedRepartitioningPreserveDictionaries(),
+                        false),
                 new PropertyMetadata<>(
                         AGGREGATION_PARTITIONING_MERGING_STRATEGY,
                         format("Strategy to merge partition preference in aggregation node. Options are %s",
@@ -1071,11 +1195,25 @@ public final class SystemSessionProperties
                         "Maximum number of build-side rows per driver up to which min and max values will be collected for dynamic filtering",
                         featuresConfig.getDynamicFilteringRangeRowLimitPerDriver(),
                         false),
+                new PropertyMetadata<>(
+                        DYNAMIC_FILTERING_BLOOM_FILTER_SIZE,
+                        "Size of the bloom filter of build-side values collected per driver for dynamic filtering, 0 disables bloom filters",
+                        VARCHAR,
+                        DataSize.class,
+                        featuresConfig.getDynamicFilteringBloomFilterSize(),
+                        false,
+                        value -> DataSize.valueOf((String) value),
+                        DataSize::toString),
                 booleanProperty(
                         FRAGMENT_RESULT_CACHING_ENABLED,
                         "Enable fragment result caching and read/write leaf fragment result pages from/to cache when applicable",
                         featuresConfig.isFragmentResultCachingEnabled(),
                         false),
+                booleanProperty(
+                        QUERY_RESULT_CACHING_ENABLED,
+                        "Serve the results of repeated deterministic queries from the coordinator query result cache when applicable",
+                        featuresConfig.isQueryResultCachingEnabled(),
+                        false),
                 booleanProperty(
                         LEGACY_TYPE_COERCION_WARNING_ENABLED,
                         "Enable warning for query relying on legacy type coercion",
@@ -1510,6 +1648,26 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DICTIONARY_AGGREGATION, Boolean.class);
     }
 
+    public static boolean isAdaptivePartialAggregationEnabled(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION, Boolean.class);
+    }
+
+    public static long getAdaptivePartialAggregationMinRows(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_MIN_ROWS, Long.class);
+    }
+
+    public static double getAdaptivePartialAggregationUniqueRowsRatioThreshold(Session session)
+    {
+        return session.getSystemProperty(ADAPTIVE_PARTIAL_AGGREGATION_UNIQUE_ROWS_RATIO_THRESHOLD, Double.class);
+    }
+
+    public static boolean isLockFreeLocalExchangeEnabled(Session session)
+    {
+        return session.getSystemProperty(LOCK_FREE_LOCAL_EXCHANGE, Boolean.class);
+    }
+
     public static boolean isOptimizeMetadataQueries(Session session)
     {
         return session.getSystemProperty(OPTIMIZE_METADATA_QUERIES, Boolean.class);
@@ -1580,6 +1738,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(FAST_INEQUALITY_JOINS, Boolean.class);
     }
 
+    public static boolean isJoinOffHeapHashTableEnabled(Session session)
+    {
+        return session.getSystemProperty(JOIN_OFF_HEAP_HASH_TABLE_ENABLED, Boolean.class);
+    }
+
     public static JoinReorderingStrategy getJoinReorderingStrategy(Session session)
     {
         Boolean reorderJoins = session.getSystemProperty(REORDER_JOINS, Boolean.class);
@@ -1716,6 +1879,21 @@ public final class SystemSessionProperties
         return session.getSystemProperty(ORDER_BY_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
     }
 
+    public static boolean isTopNRowNumberSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(TOPN_ROW_NUMBER_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isMarkDistinctSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(MARK_DISTINCT_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
+    public static boolean isDistinctLimitSpillEnabled(Session session)
+    {
+        return session.getSystemProperty(DISTINCT_LIMIT_SPILL_ENABLED, Boolean.class) && isSpillEnabled(session);
+    }
+
     public static DataSize getAggregationOperatorUnspillMemoryLimit(Session session)
     {
         DataSize memoryLimitForMerge = session.getSystemProperty(AGGREGATION_OPERATOR_UNSPILL_MEMORY_LIMIT, DataSize.class);
@@ -1723,6 +1901,20 @@ public final class SystemSessionProperties
         return memoryLimitForMerge;
     }
 
+    public static DataSize getNestedLoopJoinSpillBlockSize(Session session)
+    {
+        DataSize blockSize = session.getSystemProperty(NESTED_LOOP_JOIN_SPILL_BLOCK_SIZE, DataSize.class);
+        checkArgument(blockSize.toBytes() > 0, "%s must be positive", NESTED_LOOP_JOIN_SPILL_BLOCK_SIZE);
+        return blockSize;
+    }
+
+    public static int getSpillPartitionCount(Session session)
+    {
+        int partitionCount = session.getSystemProperty(SPILL_PARTITION_COUNT, Integer.class);
+        checkArgument(partitionCount > 0, "%s must be positive", SPILL_PARTITION_COUNT);
+        return partitionCount;
+    }
+
     public static DataSize getQueryMaxRevocableMemoryPerNode(Session session)
     {
         return session.getSystemProperty(QUERY_MAX_REVOCABLE_MEMORY_PER_NODE, DataSize.class);
@@ -1786,6 +1978,21 @@ public final class SystemSessionProperties
         return session.getSystemProperty(EXCHANGE_CHECKSUM, Boolean.class);
     }
 
+    public static CompressionCodec getExchangeCompressionCodec(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_COMPRESSION_CODEC, CompressionCodec.class);
+    }
+
+    public static int getExchangeZstdCompressionLevel(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_ZSTD_COMPRESSION_LEVEL, Integer.class);
+    }
+
+    public static boolean isExchangeAdaptiveCompressionEnabled(Session session)
+    {
+        return session.getSystemProperty(EXCHANGE_ADAPTIVE_COMPRESSION, Boolean.class);
+    }
+
     public static boolean isEnableIntermediateAggregations(Session session)
     {
         return session.getSystemProperty(ENABLE_INTERMEDIATE_AGGREGATIONS, Boolean.class);
@@ -1873,6 +2080,16 @@ public final class SystemSessionProperties
         return session.getSystemProperty(LEGACY_UNNEST, Boolean.class);
     }
 
+    public static int getTaskSchedulingWeight(Session session)
+    {
+        return session.getSystemProperty(TASK_SCHEDULING_WEIGHT, Integer.class);
+    }
+
+    public static Optional<String> getResourceGroup(Session session)
+    {
+        return Optional.ofNullable(session.getSystemProperty(RESOURCE_GROUP, String.class));
+    }
+
     public static OptionalInt getMaxDriversPerTask(Session session)
     {
         Integer value = session.getSystemProperty(MAX_DRIVERS_PER_TASK, Integer.class);
@@ -1989,6 +2206,11 @@ public final class SystemSessionProperties
         return session.getSystemProperty(OPTIMIZED_REPARTITIONING_ENABLED, Boolean.class);
     }
 
+    public static boolean isOptimizedRepartitioningPreserveDictionaries(Session session)
+    {
+        return session.getSystemProperty(OPTIMIZED_REPARTITIONING_PRESERVE_DICTIONARIES, Boolean.class);
+    }
+
     public static AggregationPartitioningMergingStrategy getAggregationPartitioningMergingStrategy(Session session)
     {
         return session.getSystemProperty(AGGREGATION_PARTITIONING_MERGING_STRATEGY, AggregationPartitioningMergingStrategy.class);
@@ -2060,11 +2282,21 @@ public final class SystemSessionProperties
         return session.getSystemProperty(DYNAMIC_FILTERING_RANGE_ROW_LIMIT_PER_DRIVER, Integer.class);
     }
 
+    public static DataSize getDynamicFilteringBloomFilterSize(Session session)
+    {
+        return session.getSystemProperty(DYNAMIC_FILTERING_BLOOM_FILTER_SIZE, DataSize.class);
+    }
+
     public static boolean isFragmentResultCachingEnabled(Session session)
     {
         return session.getSystemProperty(FRAGMENT_RESULT_CACHING_ENABLED, Boolean.class);
     }
 
+    public static boolean isQueryResultCachingEnabled(Session session)
+    {
+        return session.getSystemProperty(QUERY_RESULT_CACHING_ENABLED, Boolean.class);
+    }
+
     public static boolean isLegacyTypeCoercionWarningEnabled(Session session)
     {
         return session.getSystemProperty(LEGACY_TYPE_COERCION_WARNING_ENABLED, Boolean.class);
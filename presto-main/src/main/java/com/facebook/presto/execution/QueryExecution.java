@@ -20,6 +20,7 @@ import com.facebook.presto.execution.StateMachine.StateChangeListener;
 import com.facebook.presto.memory.VersionedMemoryPoolId;
 import com.facebook.presto.server.BasicQueryInfo;
 import com.facebook.presto.spi.WarningCollector;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.resourceGroups.QueryType;
 import com.facebook.presto.spi.resourceGroups.ResourceGroupQueryLimits;
 import com.facebook.presto.sql.planner.Plan;
@@ -118,13 +119,28 @@ public interface QueryExecution
         private final List<Type> columnTypes;
         private final Map<URI, TaskId> bufferLocations;
         private final boolean noMoreBufferLocations;
+        private final Optional<List<SerializedPage>> cachedPages;
+        private final Optional<String> resultCacheKey;
 
         public QueryOutputInfo(List<String> columnNames, List<Type> columnTypes, Map<URI, TaskId> bufferLocations, boolean noMoreBufferLocations)
+        {
+            this(columnNames, columnTypes, bufferLocations, noMoreBufferLocations, Optional.empty(), Optional.empty());
+        }
+
+        public QueryOutputInfo(
+                List<String> columnNames,
+                List<Type> columnTypes,
+                Map<URI, TaskId> bufferLocations,
+                boolean noMoreBufferLocations,
+                Optional<List<SerializedPage>> cachedPages,
+                Optional<String> resultCacheKey)
         {
             this.columnNames = ImmutableList.copyOf(requireNonNull(columnNames, "columnNames is null"));
             this.columnTypes = ImmutableList.copyOf(requireNonNull(columnTypes, "columnTypes is null"));
             this.bufferLocations = ImmutableMap.copyOf(requireNonNull(bufferLocations, "bufferLocations is null"));
             this.noMoreBufferLocations = noMoreBufferLocations;
+            this.cachedPages = requireNonNull(cachedPages, "cachedPages is null");
+            this.resultCacheKey = requireNonNull(resultCacheKey, "resultCacheKey is null");
         }
 
         public List<String> getColumnNames()
@@ -146,5 +162,21 @@ public interface QueryExecution
         {
             return noMoreBufferLocations;
         }
+
+        /**
+         * Result of the query served from the {@link QueryResultCache}, in which case there are no buffer locations.
+         */
+        public Optional<List<SerializedPage>> getCachedPages()
+        {
+            return cachedPages;
+        }
+
+        /**
+         * Key the result of the query is to be added to the {@link QueryResultCache} under, if the query is cacheable.
+         */
+        public Optional<String> getResultCacheKey()
+        {
+            return resultCacheKey;
+        }
     }
 }
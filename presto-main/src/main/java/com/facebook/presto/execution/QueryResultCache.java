@@ -0,0 +1,114 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import org.weakref.jmx.Managed;
+
+import javax.annotation.concurrent.ThreadSafe;
+import javax.inject.Inject;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static java.lang.Math.min;
+import static java.util.Objects.requireNonNull;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+
+/**
+ * Serialized results of recently finished queries on the coordinator, keyed by
+ * {@link QueryResultCacheKeyGenerator}. Entries expire after the configured TTL and
+ * are evicted by their retained size once the cache is full.
+ */
+@ThreadSafe
+public class QueryResultCache
+{
+    private final DataSize maxResultSize;
+    private final Cache<String, List<SerializedPage>> cache;
+
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    @Inject
+    public QueryResultCache(QueryResultCacheConfig config)
+    {
+        requireNonNull(config, "config is null");
+        this.maxResultSize = config.getMaxResultSize();
+        this.cache = CacheBuilder.newBuilder()
+                .maximumWeight(config.getMaxCacheSize().toBytes())
+                .weigher((Weigher<String, List<SerializedPage>>) (key, pages) -> (int) min(key.length() + getRetainedSizeInBytes(pages), Integer.MAX_VALUE))
+                .expireAfterWrite(config.getCacheTtl().toMillis(), MILLISECONDS)
+                .build();
+    }
+
+    public DataSize getMaxResultSize()
+    {
+        return maxResultSize;
+    }
+
+    public Optional<List<SerializedPage>> get(String key)
+    {
+        requireNonNull(key, "key is null");
+        List<SerializedPage> pages = cache.getIfPresent(key);
+        if (pages == null) {
+            missCount.incrementAndGet();
+            return Optional.empty();
+        }
+        hitCount.incrementAndGet();
+        return Optional.of(pages);
+    }
+
+    public void put(String key, List<SerializedPage> pages)
+    {
+        requireNonNull(key, "key is null");
+        requireNonNull(pages, "pages is null");
+        if (getRetainedSizeInBytes(pages) > maxResultSize.toBytes()) {
+            return;
+        }
+        cache.put(key, ImmutableList.copyOf(pages));
+    }
+
+    public static long getRetainedSizeInBytes(List<SerializedPage> pages)
+    {
+        long retainedSizeInBytes = 0;
+        for (SerializedPage page : pages) {
+            retainedSizeInBytes += page.getRetainedSizeInBytes();
+        }
+        return retainedSizeInBytes;
+    }
+
+    @Managed
+    public long getHitCount()
+    {
+        return hitCount.get();
+    }
+
+    @Managed
+    public long getMissCount()
+    {
+        return missCount.get();
+    }
+
+    @Managed
+    public long getEntryCount()
+    {
+        return cache.size();
+    }
+}
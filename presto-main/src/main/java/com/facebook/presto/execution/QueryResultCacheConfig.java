@@ -0,0 +1,73 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.airlift.configuration.Config;
+import com.facebook.airlift.configuration.ConfigDescription;
+import io.airlift.units.DataSize;
+import io.airlift.units.Duration;
+import io.airlift.units.MinDataSize;
+import io.airlift.units.MinDuration;
+
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+public class QueryResultCacheConfig
+{
+    private Duration cacheTtl = new Duration(1, MINUTES);
+    private DataSize maxCacheSize = new DataSize(256, MEGABYTE);
+    private DataSize maxResultSize = new DataSize(1, MEGABYTE);
+
+    @MinDuration("0s")
+    public Duration getCacheTtl()
+    {
+        return cacheTtl;
+    }
+
+    @Config("query-result-cache.cache-ttl")
+    @ConfigDescription("Time-to-live for a cached query result")
+    public QueryResultCacheConfig setCacheTtl(Duration cacheTtl)
+    {
+        this.cacheTtl = cacheTtl;
+        return this;
+    }
+
+    @MinDataSize("0B")
+    public DataSize getMaxCacheSize()
+    {
+        return maxCacheSize;
+    }
+
+    @Config("query-result-cache.max-cache-size")
+    @ConfigDescription("Maximum in-memory size of all cached query results")
+    public QueryResultCacheConfig setMaxCacheSize(DataSize maxCacheSize)
+    {
+        this.maxCacheSize = maxCacheSize;
+        return this;
+    }
+
+    @MinDataSize("0B")
+    public DataSize getMaxResultSize()
+    {
+        return maxResultSize;
+    }
+
+    @Config("query-result-cache.max-result-size")
+    @ConfigDescription("Maximum serialized size of the result of a query to be cached")
+    public QueryResultCacheConfig setMaxResultSize(DataSize maxResultSize)
+    {
+        this.maxResultSize = maxResultSize;
+        return this;
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.connector.system.GlobalSystemConnector;
+import com.facebook.presto.metadata.IndexHandle;
+import com.facebook.presto.metadata.Metadata;
+import com.facebook.presto.spi.ConnectorId;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.plan.PlanNode;
+import com.facebook.presto.spi.plan.TableScanNode;
+import com.facebook.presto.spi.relation.RowExpression;
+import com.facebook.presto.sql.analyzer.Analysis;
+import com.facebook.presto.sql.relational.RowExpressionDeterminismEvaluator;
+import com.facebook.presto.sql.tree.CurrentTime;
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
+
+import javax.inject.Inject;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.TreeMap;
+
+import static com.facebook.presto.spi.ConnectorId.isInternalSystemConnector;
+import static com.facebook.presto.sql.planner.ExpressionExtractor.extractExpressions;
+import static com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher.searchFrom;
+import static com.fasterxml.jackson.databind.SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
+import static com.google.common.hash.Hashing.sha256;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Computes the {@link QueryResultCache} key of a query from its optimized plan.
+ * <p>
+ * The key covers the plan, the version of each table read, as reported by the
+ * connector (e.g. a table snapshot), and the parts of the session the result may
+ * depend on. The transaction handles are left out, since they differ for every
+ * query. Queries that read a table without a version, that read system tables,
+ * or that call nondeterministic or time dependent functions, are not cacheable.
+ */
+public class QueryResultCacheKeyGenerator
+{
+    private static final Set<String> TIME_DEPENDENT_FUNCTIONS = ImmutableSet.of(
+            "current_date",
+            "current_time",
+            "current_timestamp",
+            "current_timezone",
+            "localtime",
+            "localtimestamp",
+            "now");
+
+    private final ObjectMapper objectMapper;
+    private final Metadata metadata;
+    private final RowExpressionDeterminismEvaluator determinismEvaluator;
+
+    @Inject
+    public QueryResultCacheKeyGenerator(ObjectMapper objectMapper, Metadata metadata)
+    {
+        requireNonNull(objectMapper, "objectMapper is null");
+        this.objectMapper = objectMapper.copy()
+                .configure(ORDER_MAP_ENTRIES_BY_KEYS, true)
+                .addMixIn(TableHandle.class, IgnoreTransactionHandle.class)
+                .addMixIn(IndexHandle.class, IgnoreTransactionHandle.class);
+        this.metadata = requireNonNull(metadata, "metadata is null");
+        this.determinismEvaluator = new RowExpressionDeterminismEvaluator(metadata);
+    }
+
+    public Optional<String> generateKey(Session session, Analysis analysis, PlanNode root)
+    {
+        if (!isDeterministic(root) || isTimeDependent(analysis)) {
+            return Optional.empty();
+        }
+        Optional<List<String>> tableVersions = getTableVersions(session, root);
+        if (!tableVersions.isPresent()) {
+            return Optional.empty();
+        }
+
+        Map<String, Object> key = ImmutableMap.<String, Object>builder()
+                .put("user", session.getUser())
+                .put("timeZoneKey", session.getTimeZoneKey().getId())
+                .put("systemProperties", new TreeMap<>(session.getSystemProperties()))
+                .put("connectorProperties", session.getConnectorProperties().entrySet().stream()
+                        .collect(toImmutableMap(entry -> entry.getKey().getCatalogName(), entry -> new TreeMap<>(entry.getValue()))))
+                .put("tableVersions", tableVersions.get())
+                .put("plan", root)
+                .build();
+        try {
+            return Optional.of(sha256().hashString(objectMapper.writeValueAsString(key), UTF_8).toString());
+        }
+        catch (JsonProcessingException e) {
+            // some connector handle can not be serialized, so the query can not be identified
+            return Optional.empty();
+        }
+    }
+
+    private Optional<List<String>> getTableVersions(Session session, PlanNode root)
+    {
+        ImmutableList.Builder<String> tableVersions = ImmutableList.builder();
+        for (TableScanNode tableScan : searchFrom(root).where(TableScanNode.class::isInstance).<TableScanNode>findAll()) {
+            TableHandle table = tableScan.getTable();
+            if (isSystemConnector(table.getConnectorId())) {
+                return Optional.empty();
+            }
+            Optional<String> tableVersion = metadata.getTableVersion(session, table);
+            if (!tableVersion.isPresent()) {
+                // the data may have changed since the result was cached
+                return Optional.empty();
+            }
+            tableVersions.add(tableVersion.get());
+        }
+        return Optional.of(tableVersions.build());
+    }
+
+    private boolean isDeterministic(PlanNode root)
+    {
+        for (RowExpression expression : extractExpressions(root)) {
+            if (!determinismEvaluator.isDeterministic(expression)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean isTimeDependent(Analysis analysis)
+    {
+        // the optimizer folds these functions into the start time of the query, so they are not visible in the plan
+        if (analysis.getTypes().keySet().stream().anyMatch(expression -> expression.getNode() instanceof CurrentTime)) {
+            return true;
+        }
+        return analysis.getFunctionHandles().values().stream()
+                .map(functionHandle -> metadata.getFunctionAndTypeManager().getFunctionMetadata(functionHandle).getName().getObjectName())
+                .anyMatch(TIME_DEPENDENT_FUNCTIONS::contains);
+    }
+
+    private static boolean isSystemConnector(ConnectorId connectorId)
+    {
+        return isInternalSystemConnector(connectorId) || connectorId.getCatalogName().equals(GlobalSystemConnector.NAME);
+    }
+
+    @JsonIgnoreProperties({"transaction", "transactionHandle"})
+    private abstract static class IgnoreTransactionHandle
+    {
+    }
+}
@@ -31,6 +31,7 @@ import com.facebook.presto.spi.WarningCollector;
 import com.facebook.presto.spi.connector.ConnectorCommitHandle;
 import com.facebook.presto.spi.function.SqlFunctionId;
 import com.facebook.presto.spi.function.SqlInvokedFunction;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.resourceGroups.QueryType;
 import com.facebook.presto.spi.resourceGroups.ResourceGroupId;
 import com.facebook.presto.spi.security.SelectedRole;
@@ -513,6 +514,16 @@ public class QueryStateMachine
         outputManager.setColumns(columnNames, columnTypes);
     }
 
+    public void setCachedPages(List<SerializedPage> cachedPages)
+    {
+        outputManager.setCachedPages(cachedPages);
+    }
+
+    public void setResultCacheKey(String resultCacheKey)
+    {
+        outputManager.setResultCacheKey(resultCacheKey);
+    }
+
     public void updateOutputLocations(Map<URI, TaskId> newExchangeLocations, boolean noMoreExchangeLocations)
     {
         outputManager.updateOutputLocations(newExchangeLocations, noMoreExchangeLocations);
@@ -1084,6 +1095,10 @@ public class QueryStateMachine
         private final Map<URI, TaskId> exchangeLocations = new LinkedHashMap<>();
         @GuardedBy("this")
         private boolean noMoreExchangeLocations;
+        @GuardedBy("this")
+        private Optional<List<SerializedPage>> cachedPages = Optional.empty();
+        @GuardedBy("this")
+        private Optional<String> resultCacheKey = Optional.empty();
 
         public QueryOutputManager(Executor executor)
         {
@@ -1121,6 +1136,20 @@ public class QueryStateMachine
             queryOutputInfo.ifPresent(info -> fireStateChanged(info, outputInfoListeners));
         }
 
+        public synchronized void setCachedPages(List<SerializedPage> cachedPages)
+        {
+            requireNonNull(cachedPages, "cachedPages is null");
+            checkState(this.columnNames == null, "cached pages must be set before the output fields");
+            this.cachedPages = Optional.of(ImmutableList.copyOf(cachedPages));
+        }
+
+        public synchronized void setResultCacheKey(String resultCacheKey)
+        {
+            requireNonNull(resultCacheKey, "resultCacheKey is null");
+            checkState(this.columnNames == null, "result cache key must be set before the output fields");
+            this.resultCacheKey = Optional.of(resultCacheKey);
+        }
+
         public void updateOutputLocations(Map<URI, TaskId> newExchangeLocations, boolean noMoreExchangeLocations)
         {
             requireNonNull(newExchangeLocations, "newExchangeLocations is null");
@@ -1146,7 +1175,7 @@ public class QueryStateMachine
             if (columnNames == null || columnTypes == null) {
                 return Optional.empty();
             }
-            return Optional.of(new QueryOutputInfo(columnNames, columnTypes, exchangeLocations, noMoreExchangeLocations));
+            return Optional.of(new QueryOutputInfo(columnNames, columnTypes, exchangeLocations, noMoreExchangeLocations, cachedPages, resultCacheKey));
         }
 
         private void fireStateChanged(QueryOutputInfo queryOutputInfo, List<Consumer<QueryOutputInfo>> outputInfoListeners)
@@ -27,6 +27,14 @@ public interface SplitRunner
 
     String getInfo();
 
+    /**
+     * Whether the split mostly blocks on I/O, see {@link com.facebook.presto.spi.ConnectorSplit#isBlocking()}.
+     */
+    default boolean isBlocking()
+    {
+        return false;
+    }
+
     @Override
     void close();
 }
@@ -37,6 +37,7 @@ import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spi.TableHandle;
 import com.facebook.presto.spi.WarningCollector;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.facebook.presto.spi.plan.PlanNodeIdAllocator;
 import com.facebook.presto.spi.resourceGroups.QueryType;
 import com.facebook.presto.spi.resourceGroups.ResourceGroupQueryLimits;
@@ -60,6 +61,8 @@ import com.facebook.presto.sql.planner.optimizations.PlanOptimizer;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.sanity.PlanChecker;
 import com.facebook.presto.sql.tree.Explain;
+import com.facebook.presto.sql.tree.Query;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.DataSize;
@@ -80,6 +83,7 @@ import java.util.function.Consumer;
 
 import static com.facebook.presto.SystemSessionProperties.getExecutionPolicy;
 import static com.facebook.presto.SystemSessionProperties.getQueryAnalyzerTimeout;
+import static com.facebook.presto.SystemSessionProperties.isQueryResultCachingEnabled;
 import static com.facebook.presto.SystemSessionProperties.isSpoolingOutputBufferEnabled;
 import static com.facebook.presto.SystemSessionProperties.isUseLegacyScheduler;
 import static com.facebook.presto.common.RuntimeMetricName.FRAGMENT_PLAN_TIME_NANOS;
@@ -129,6 +133,8 @@ public class SqlQueryExecution
     private final PlanNodeIdAllocator idAllocator = new PlanNodeIdAllocator();
     private final AtomicReference<PlanVariableAllocator> variableAllocator = new AtomicReference<>();
     private final PartialResultQueryManager partialResultQueryManager;
+    private final QueryResultCache queryResultCache;
+    private final QueryResultCacheKeyGenerator queryResultCacheKeyGenerator;
     private final AtomicReference<Optional<ResourceGroupQueryLimits>> resourceGroupQueryLimits = new AtomicReference<>(Optional.empty());
 
     private SqlQueryExecution(
@@ -156,7 +162,9 @@ public class SqlQueryExecution
             CostCalculator costCalculator,
             WarningCollector warningCollector,
             PlanChecker planChecker,
-            PartialResultQueryManager partialResultQueryManager)
+            PartialResultQueryManager partialResultQueryManager,
+            QueryResultCache queryResultCache,
+            QueryResultCacheKeyGenerator queryResultCacheKeyGenerator)
     {
         try (SetThreadName ignored = new SetThreadName("Query-%s", stateMachine.getQueryId())) {
             this.slug = requireNonNull(slug, "slug is null");
@@ -222,6 +230,8 @@ public class SqlQueryExecution
 
             this.remoteTaskFactory = new TrackingRemoteTaskFactory(requireNonNull(remoteTaskFactory, "remoteTaskFactory is null"), stateMachine);
             this.partialResultQueryManager = requireNonNull(partialResultQueryManager, "partialResultQueryManager is null");
+            this.queryResultCache = requireNonNull(queryResultCache, "queryResultCache is null");
+            this.queryResultCacheKeyGenerator = requireNonNull(queryResultCacheKeyGenerator, "queryResultCacheKeyGenerator is null");
         }
     }
 
@@ -401,6 +411,11 @@ public class SqlQueryExecution
 
                 metadata.beginQuery(getSession(), plan.getConnectors());
 
+                // serve the result from the cache without scheduling the query, if it is there
+                if (serveFromResultCache(plan)) {
+                    return;
+                }
+
                 // plan distribution of query
                 planDistribution(plan);
 
@@ -502,6 +517,39 @@ public class SqlQueryExecution
         return new PlanRoot(fragmentedPlan, !explainAnalyze, extractConnectors(analysis));
     }
 
+    private boolean serveFromResultCache(PlanRoot plan)
+    {
+        if (!isQueryResultCachingEnabled(getSession())) {
+            return false;
+        }
+        if (!(analysis.getStatement() instanceof Query) || analysis.getUpdateType() != null) {
+            return false;
+        }
+
+        Optional<String> resultCacheKey = queryResultCacheKeyGenerator.generateKey(getSession(), analysis, queryPlan.get().getRoot());
+        if (!resultCacheKey.isPresent()) {
+            return false;
+        }
+
+        Optional<List<SerializedPage>> cachedPages = queryResultCache.get(resultCacheKey.get());
+        if (!cachedPages.isPresent()) {
+            // the output is added to the cache by the client protocol once the query finishes
+            stateMachine.setResultCacheKey(resultCacheKey.get());
+            return false;
+        }
+
+        SubPlan outputStagePlan = plan.getRoot();
+        stateMachine.setCachedPages(cachedPages.get());
+        stateMachine.setColumns(((OutputNode) outputStagePlan.getFragment().getRoot()).getColumnNames(), outputStagePlan.getFragment().getTypes());
+        stateMachine.updateOutputLocations(ImmutableMap.of(), true);
+
+        if (stateMachine.transitionToStarting()) {
+            stateMachine.transitionToRunning();
+            stateMachine.transitionToFinishing();
+        }
+        return true;
+    }
+
     private static Set<ConnectorId> extractConnectors(Analysis analysis)
     {
         ImmutableSet.Builder<ConnectorId> connectors = ImmutableSet.builder();
@@ -770,6 +818,8 @@ public class SqlQueryExecution
         private final CostCalculator costCalculator;
         private final PlanChecker planChecker;
         private final PartialResultQueryManager partialResultQueryManager;
+        private final QueryResultCache queryResultCache;
+        private final QueryResultCacheKeyGenerator queryResultCacheKeyGenerator;
 
         @Inject
         SqlQueryExecutionFactory(QueryManagerConfig config,
@@ -791,7 +841,9 @@ public class SqlQueryExecution
                 StatsCalculator statsCalculator,
                 CostCalculator costCalculator,
                 PlanChecker planChecker,
-                PartialResultQueryManager partialResultQueryManager)
+                PartialResultQueryManager partialResultQueryManager,
+                QueryResultCache queryResultCache,
+                QueryResultCacheKeyGenerator queryResultCacheKeyGenerator)
         {
             requireNonNull(config, "config is null");
             this.schedulerStats = requireNonNull(schedulerStats, "schedulerStats is null");
@@ -815,6 +867,8 @@ public class SqlQueryExecution
             this.costCalculator = requireNonNull(costCalculator, "costCalculator is null");
             this.planChecker = requireNonNull(planChecker, "planChecker is null");
             this.partialResultQueryManager = requireNonNull(partialResultQueryManager, "partialResultQueryManager is null");
+            this.queryResultCache = requireNonNull(queryResultCache, "queryResultCache is null");
+            this.queryResultCacheKeyGenerator = requireNonNull(queryResultCacheKeyGenerator, "queryResultCacheKeyGenerator is null");
         }
 
         @Override
@@ -855,7 +909,9 @@ public class SqlQueryExecution
                     costCalculator,
                     warningCollector,
                     planChecker,
-                    partialResultQueryManager);
+                    partialResultQueryManager,
+                    queryResultCache,
+                    queryResultCacheKeyGenerator);
 
             return execution;
         }
@@ -65,7 +65,9 @@ import java.util.stream.Collectors;
 
 import static com.facebook.presto.SystemSessionProperties.getInitialSplitsPerNode;
 import static com.facebook.presto.SystemSessionProperties.getMaxDriversPerTask;
+import static com.facebook.presto.SystemSessionProperties.getResourceGroup;
 import static com.facebook.presto.SystemSessionProperties.getSplitConcurrencyAdjustmentInterval;
+import static com.facebook.presto.SystemSessionProperties.getTaskSchedulingWeight;
 import static com.facebook.presto.execution.SqlTaskExecution.SplitsState.ADDING_SPLITS;
 import static com.facebook.presto.execution.SqlTaskExecution.SplitsState.FINISHED;
 import static com.facebook.presto.execution.SqlTaskExecution.SplitsState.NO_MORE_SPLITS;
@@ -264,7 +266,9 @@ public class SqlTaskExecution
                 outputBuffer::getUtilization,
                 getInitialSplitsPerNode(taskContext.getSession()),
                 getSplitConcurrencyAdjustmentInterval(taskContext.getSession()),
-                getMaxDriversPerTask(taskContext.getSession()));
+                getMaxDriversPerTask(taskContext.getSession()),
+                getResourceGroup(taskContext.getSession()),
+                getTaskSchedulingWeight(taskContext.getSession()));
         taskStateMachine.addStateChangeListener(state -> {
             if (state.isDone()) {
                 taskExecutor.removeTask(taskHandle);
@@ -1085,6 +1089,12 @@ public class SqlTaskExecution
             return (partitionedSplit == null) ? "" : partitionedSplit.getSplit().getInfo().toString();
         }
 
+        @Override
+        public boolean isBlocking()
+        {
+            return partitionedSplit != null && partitionedSplit.getSplit().getConnectorSplit().isBlocking();
+        }
+
         @Override
         public void close()
         {
@@ -53,6 +53,7 @@ public class TaskManagerConfig
     private DataSize maxIndexMemoryUsage = new DataSize(64, Unit.MEGABYTE);
     private boolean shareIndexLoading;
     private int maxWorkerThreads = Runtime.getRuntime().availableProcessors() * 2;
+    private int blockingSplitThreads;
     private Integer minDrivers;
     private Integer initialSplitsPerNode;
     private int minDriversPerTask = 3;
@@ -275,6 +276,21 @@ public class TaskManagerConfig
         return this;
     }
 
+    @Min(0)
+    public int getBlockingSplitThreads()
+    {
+        return blockingSplitThreads;
+    }
+
+    @Config("task.blocking-split-threads")
+    @ConfigDescription("Number of threads running the splits that their connector declares as blocking on I/O. " +
+            "When set to 0, these splits run on the worker threads like any other split")
+    public TaskManagerConfig setBlockingSplitThreads(int blockingSplitThreads)
+    {
+        this.blockingSplitThreads = blockingSplitThreads;
+        return this;
+    }
+
     @Min(1)
     public int getInitialSplitsPerNode()
     {
@@ -560,6 +576,8 @@ public class TaskManagerConfig
     {
         TASK_FAIR,
         QUERY_FAIR,
+        // like QUERY_FAIR, with the scheduled time of each query divided by its task_scheduling_weight
+        WEIGHTED_QUERY_FAIR,
     }
 
     @MinDuration("1s")
@@ -13,25 +13,42 @@
  */
 package com.facebook.presto.execution.buffer;
 
+import com.facebook.presto.Session;
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.spi.page.PageCompressor;
 import com.facebook.presto.spi.page.PageDecompressor;
 import com.facebook.presto.spi.page.PagesSerde;
 import com.facebook.presto.spi.spiller.SpillCipher;
+import com.github.luben.zstd.Zstd;
 import io.airlift.compress.Compressor;
 import io.airlift.compress.Decompressor;
 import io.airlift.compress.lz4.Lz4Compressor;
 import io.airlift.compress.lz4.Lz4Decompressor;
+import io.airlift.compress.snappy.SnappyCompressor;
+import io.airlift.compress.snappy.SnappyDecompressor;
 
 import java.nio.ByteBuffer;
 import java.util.Optional;
+import java.util.OptionalInt;
 
+import static com.facebook.presto.SystemSessionProperties.getExchangeCompressionCodec;
+import static com.facebook.presto.SystemSessionProperties.getExchangeZstdCompressionLevel;
+import static com.facebook.presto.SystemSessionProperties.isExchangeAdaptiveCompressionEnabled;
+import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnabled;
+import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
+import static com.facebook.presto.execution.buffer.CompressionCodec.LZ4;
+import static com.facebook.presto.execution.buffer.CompressionCodec.NONE;
+import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
 public class PagesSerdeFactory
 {
+    private static final int DEFAULT_ZSTD_COMPRESSION_LEVEL = 3;
+
     private final BlockEncodingSerde blockEncodingSerde;
-    private final boolean compressionEnabled;
+    private final CompressionCodec compressionCodec;
+    private final OptionalInt compressionLevel;
+    private final boolean adaptiveCompression;
     private final boolean checksumEnabled;
 
     public PagesSerdeFactory(BlockEncodingSerde blockEncodingSerde, boolean compressionEnabled)
@@ -40,12 +57,41 @@ public class PagesSerdeFactory
     }
 
     public PagesSerdeFactory(BlockEncodingSerde blockEncodingSerde, boolean compressionEnabled, boolean checksumEnabled)
+    {
+        this(blockEncodingSerde, compressionEnabled ? LZ4 : NONE, OptionalInt.empty(), false, checksumEnabled);
+    }
+
+    /**
+     * @param compressionLevel level of the codec, only used by {@link CompressionCodec#ZSTD}
+     * @param adaptiveCompression skip compression for a while after a page did not compress well
+     */
+    public PagesSerdeFactory(
+            BlockEncodingSerde blockEncodingSerde,
+            CompressionCodec compressionCodec,
+            OptionalInt compressionLevel,
+            boolean adaptiveCompression,
+            boolean checksumEnabled)
     {
         this.blockEncodingSerde = requireNonNull(blockEncodingSerde, "blockEncodingSerde is null");
-        this.compressionEnabled = compressionEnabled;
+        this.compressionCodec = requireNonNull(compressionCodec, "compressionCodec is null");
+        this.compressionLevel = requireNonNull(compressionLevel, "compressionLevel is null");
+        this.adaptiveCompression = adaptiveCompression;
         this.checksumEnabled = checksumEnabled;
     }
 
+    /**
+     * Creates the factory for the pages exchanged between tasks of the query, and returned to the client.
+     */
+    public static PagesSerdeFactory createExchangePagesSerdeFactory(BlockEncodingSerde blockEncodingSerde, Session session)
+    {
+        return new PagesSerdeFactory(
+                blockEncodingSerde,
+                isExchangeCompressionEnabled(session) ? getExchangeCompressionCodec(session) : NONE,
+                OptionalInt.of(getExchangeZstdCompressionLevel(session)),
+                isExchangeAdaptiveCompressionEnabled(session),
+                isExchangeChecksumEnabled(session));
+    }
+
     public PagesSerde createPagesSerde()
     {
         return createPagesSerdeInternal(Optional.empty());
@@ -58,60 +104,152 @@ public class PagesSerdeFactory
 
     private PagesSerde createPagesSerdeInternal(Optional<SpillCipher> spillCipher)
     {
-        if (compressionEnabled) {
-            return new PagesSerde(
-                    blockEncodingSerde,
-                    Optional.of(new PageCompressor()
-                    {
-                        Compressor compressor = new Lz4Compressor();
-                        @Override
-                        public int maxCompressedLength(int uncompressedSize)
-                        {
-                            return compressor.maxCompressedLength(uncompressedSize);
-                        }
-
-                        @Override
-                        public int compress(
-                                byte[] input,
-                                int inputOffset,
-                                int inputLength,
-                                byte[] output,
-                                int outputOffset,
-                                int maxOutputLength)
-                        {
-                            return compressor.compress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
-                        }
-
-                        @Override
-                        public void compress(ByteBuffer input, ByteBuffer output)
-                        {
-                            compressor.compress(input, output);
-                        }
-                    }),
-                    Optional.of(new PageDecompressor()
-                    {
-                        Decompressor decompressor = new Lz4Decompressor();
-                        @Override
-                        public int decompress(
-                                byte[] input,
-                                int inputOffset,
-                                int inputLength,
-                                byte[] output,
-                                int outputOffset,
-                                int maxOutputLength)
-                        {
-                            return decompressor.decompress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
-                        }
-
-                        @Override
-                        public void decompress(ByteBuffer input, ByteBuffer output)
-                        {
-                            decompressor.decompress(input, output);
-                        }
-                    }),
-                    spillCipher, checksumEnabled);
+        switch (compressionCodec) {
+            case NONE:
+                return new PagesSerde(blockEncodingSerde, Optional.empty(), Optional.empty(), spillCipher, checksumEnabled);
+            case LZ4:
+                return createPagesSerde(new AirliftPageCompressor(new Lz4Compressor()), new AirliftPageDecompressor(new Lz4Decompressor()), spillCipher);
+            case SNAPPY:
+                return createPagesSerde(new AirliftPageCompressor(new SnappyCompressor()), new AirliftPageDecompressor(new SnappyDecompressor()), spillCipher);
+            case ZSTD:
+                return createPagesSerde(new ZstdPageCompressor(compressionLevel.orElse(DEFAULT_ZSTD_COMPRESSION_LEVEL)), new ZstdPageDecompressor(), spillCipher);
+            default:
+                throw new IllegalArgumentException("Unsupported compression codec: " + compressionCodec);
+        }
+    }
+
+    private PagesSerde createPagesSerde(PageCompressor compressor, PageDecompressor decompressor, Optional<SpillCipher> spillCipher)
+    {
+        return new PagesSerde(blockEncodingSerde, Optional.of(compressor), Optional.of(decompressor), spillCipher, checksumEnabled, adaptiveCompression);
+    }
+
+    private static class AirliftPageCompressor
+            implements PageCompressor
+    {
+        private final Compressor compressor;
+
+        public AirliftPageCompressor(Compressor compressor)
+        {
+            this.compressor = requireNonNull(compressor, "compressor is null");
+        }
+
+        @Override
+        public int maxCompressedLength(int uncompressedSize)
+        {
+            return compressor.maxCompressedLength(uncompressedSize);
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+        {
+            return compressor.compress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
+        }
+
+        @Override
+        public void compress(ByteBuffer input, ByteBuffer output)
+        {
+            compressor.compress(input, output);
+        }
+    }
+
+    private static class AirliftPageDecompressor
+            implements PageDecompressor
+    {
+        private final Decompressor decompressor;
+
+        public AirliftPageDecompressor(Decompressor decompressor)
+        {
+            this.decompressor = requireNonNull(decompressor, "decompressor is null");
+        }
+
+        @Override
+        public int decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+        {
+            return decompressor.decompress(input, inputOffset, inputLength, output, outputOffset, maxOutputLength);
         }
 
-        return new PagesSerde(blockEncodingSerde, Optional.empty(), Optional.empty(), spillCipher, checksumEnabled);
+        @Override
+        public void decompress(ByteBuffer input, ByteBuffer output)
+        {
+            decompressor.decompress(input, output);
+        }
+    }
+
+    private static class ZstdPageCompressor
+            implements PageCompressor
+    {
+        private final int compressionLevel;
+
+        public ZstdPageCompressor(int compressionLevel)
+        {
+            this.compressionLevel = compressionLevel;
+        }
+
+        @Override
+        public int maxCompressedLength(int uncompressedSize)
+        {
+            return toIntExact(Zstd.compressBound(uncompressedSize));
+        }
+
+        @Override
+        public int compress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+        {
+            long size = Zstd.compressByteArray(output, outputOffset, maxOutputLength, input, inputOffset, inputLength, compressionLevel);
+            if (Zstd.isError(size)) {
+                throw new RuntimeException("Zstd JNI compressor failed with " + Zstd.getErrorName(size));
+            }
+            return toIntExact(size);
+        }
+
+        @Override
+        public void compress(ByteBuffer input, ByteBuffer output)
+        {
+            checkHeapBuffers(input, output);
+            int written = compress(
+                    input.array(),
+                    input.arrayOffset() + input.position(),
+                    input.remaining(),
+                    output.array(),
+                    output.arrayOffset() + output.position(),
+                    output.remaining());
+            input.position(input.limit());
+            output.position(output.position() + written);
+        }
+    }
+
+    private static class ZstdPageDecompressor
+            implements PageDecompressor
+    {
+        @Override
+        public int decompress(byte[] input, int inputOffset, int inputLength, byte[] output, int outputOffset, int maxOutputLength)
+        {
+            long size = Zstd.decompressByteArray(output, outputOffset, maxOutputLength, input, inputOffset, inputLength);
+            if (Zstd.isError(size)) {
+                throw new RuntimeException("Zstd JNI decompressor failed with " + Zstd.getErrorName(size));
+            }
+            return toIntExact(size);
+        }
+
+        @Override
+        public void decompress(ByteBuffer input, ByteBuffer output)
+        {
+            checkHeapBuffers(input, output);
+            int written = decompress(
+                    input.array(),
+                    input.arrayOffset() + input.position(),
+                    input.remaining(),
+                    output.array(),
+                    output.arrayOffset() + output.position(),
+                    output.remaining());
+            input.position(input.limit());
+            output.position(output.position() + written);
+        }
+    }
+
+    private static void checkHeapBuffers(ByteBuffer input, ByteBuffer output)
+    {
+        if (input.isDirect() || output.isDirect() || !input.hasArray() || !output.hasArray()) {
+            throw new IllegalArgumentException("Non-direct byte buffer backed by byte array required");
+        }
     }
 }
@@ -75,6 +75,14 @@ import static com.google.common.util.concurrent.Futures.transformAsync;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Output buffer that writes the pages to {@link TempStorage} once the pages in memory reach the threshold.
+ * <p>
+ * The files are written asynchronously, each containing all the pages that were in memory. Files at the front
+ * of the buffer, i.e. the ones the client reads next, are kept in memory up to the prefetch size: a file that
+ * fits when it is written keeps its pages in memory, and the other files are read ahead asynchronously as
+ * the client acknowledges the pages before them. Files that do not fit are streamed from storage on every read.
+ */
 @SuppressWarnings("UnstableApiUsage")
 public class SpoolingOutputBuffer
         implements OutputBuffer
@@ -86,6 +94,7 @@ public class SpoolingOutputBuffer
     private final TempDataOperationContext tempDataOperationContext;
     private final TempStorage tempStorage;
     private final DataSize threshold;
+    private final DataSize prefetchSize;
     private final FinalizerService finalizerService;
     private final ListeningExecutorService executor;
 
@@ -104,6 +113,7 @@ public class SpoolingOutputBuffer
     private final AtomicLong startPage = new AtomicLong();
     private final AtomicLong totalPagesRemaining = new AtomicLong();
     private final AtomicLong totalInMemoryBytes = new AtomicLong();
+    private final AtomicLong totalPrefetchedBytes = new AtomicLong();
     private final AtomicLong peakMemoryUsage = new AtomicLong();
 
     private final AtomicLong totalStorageBytesAdded = new AtomicLong();
@@ -125,6 +135,7 @@ public class SpoolingOutputBuffer
             StateMachine<BufferState> state,
             TempStorage tempStorage,
             DataSize threshold,
+            DataSize prefetchSize,
             ListeningExecutorService executor,
             FinalizerService finalizerService)
     {
@@ -134,6 +145,7 @@ public class SpoolingOutputBuffer
         this.state = requireNonNull(state, "state is null");
         this.tempStorage = requireNonNull(tempStorage, "tempStorage is null");
         this.threshold = requireNonNull(threshold, "threshold is null");
+        this.prefetchSize = requireNonNull(prefetchSize, "prefetchSize is null");
         this.executor = requireNonNull(executor, "executor is null");
         this.finalizerService = requireNonNull(finalizerService, "finalizerService is null");
         this.finalizerService.addFinalizer(this, this::close);
@@ -230,7 +242,7 @@ public class SpoolingOutputBuffer
             totalInMemoryBytes.addAndGet(bytesAdded);
 
             totalPagesRemaining.addAndGet(pagesAdded);
-            peakMemoryUsage.accumulateAndGet(totalInMemoryBytes.get(), Math::max);
+            peakMemoryUsage.accumulateAndGet(totalInMemoryBytes.get() + totalPrefetchedBytes.get(), Math::max);
 
             if (totalInMemoryBytes.get() >= threshold.toBytes()) {
                 flush();
@@ -254,7 +266,8 @@ public class SpoolingOutputBuffer
 
     private synchronized void flush()
     {
-        List<DataOutput> dataOutputs = pages.stream()
+        List<SerializedPage> flushedPages = ImmutableList.copyOf(pages);
+        List<DataOutput> dataOutputs = flushedPages.stream()
                 .map(PageDataOutput::new)
                 .collect(toImmutableList());
 
@@ -275,6 +288,12 @@ public class SpoolingOutputBuffer
                 pageCount);
         handleInfoQueue.add(handleInfo);
 
+        // keep the pages in memory if the file is read soon, so that they are not read back from storage
+        if (getStorageBytes() <= prefetchSize.toBytes()) {
+            handleInfo.setPrefetchedPages(immediateFuture(flushedPages));
+            totalPrefetchedBytes.addAndGet(bytes);
+        }
+
         // update cutoff for file pages
         currentMemorySequenceId.addAndGet(pageCount);
 
@@ -287,6 +306,41 @@ public class SpoolingOutputBuffer
         totalInMemoryBytes.set(0);
     }
 
+    /**
+     * Reads ahead the files at the front of the buffer that fit in the prefetch size.
+     */
+    private synchronized void prefetch()
+    {
+        long bytes = 0;
+        for (HandleInfo handleInfo : handleInfoQueue) {
+            bytes += handleInfo.getBytes();
+            if (bytes > prefetchSize.toBytes()) {
+                return;
+            }
+            if (!handleInfo.isPrefetched()) {
+                handleInfo.setPrefetchedPages(transform(handleInfo.getHandleFuture(), this::readPages, executor));
+                totalPrefetchedBytes.addAndGet(handleInfo.getBytes());
+            }
+        }
+    }
+
+    private List<SerializedPage> readPages(TempStorageHandle handle)
+    {
+        try (SliceInput inputStream = new InputStreamSliceInput(tempStorage.open(tempDataOperationContext, handle))) {
+            return ImmutableList.copyOf(readSerializedPages(inputStream));
+        }
+        catch (IOException e) {
+            throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read file from TempStorage", e);
+        }
+    }
+
+    private synchronized long getStorageBytes()
+    {
+        return handleInfoQueue.stream()
+                .mapToLong(HandleInfo::getBytes)
+                .sum();
+    }
+
     @Override
     public synchronized ListenableFuture<BufferResult> get(OutputBufferId bufferId, long startSequenceId, DataSize maxSize)
     {
@@ -381,44 +435,53 @@ public class SpoolingOutputBuffer
         }
 
         Iterator<HandleInfo> handleInfoIterator = getTracker.getHandleInfos().iterator();
-        HandleInfo handleInfo = handleInfoIterator.next();
-        ListenableFuture<TempStorageHandle> handleFuture = handleInfo.getHandleFuture();
-        return transformAsync(handleFuture, input -> getPagesFromStorage(ImmutableList.builder(), handleInfoIterator, input, getTracker), executor);
+        return getPagesFromStorage(ImmutableList.builder(), handleInfoIterator.next(), handleInfoIterator, getTracker);
     }
 
-    private ListenableFuture<List<SerializedPage>> getPagesFromStorage(ImmutableList.Builder<SerializedPage> resultBuilder, Iterator<HandleInfo> handleIterator, TempStorageHandle handle, GetTracker getTracker)
+    private ListenableFuture<List<SerializedPage>> getPagesFromStorage(ImmutableList.Builder<SerializedPage> resultBuilder, HandleInfo handleInfo, Iterator<HandleInfo> handleIterator, GetTracker getTracker)
+    {
+        Optional<ListenableFuture<List<SerializedPage>>> prefetchedPages = handleInfo.getPrefetchedPages();
+        if (prefetchedPages.isPresent()) {
+            return transformAsync(prefetchedPages.get(), input -> getPagesFromStorage(resultBuilder, input.iterator(), handleIterator, getTracker), executor);
+        }
+
+        return transformAsync(handleInfo.getHandleFuture(), input -> {
+            try (SliceInput inputStream = new InputStreamSliceInput(tempStorage.open(tempDataOperationContext, input))) {
+                return getPagesFromStorage(resultBuilder, readSerializedPages(inputStream), handleIterator, getTracker);
+            }
+            catch (IOException e) {
+                throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read file from TempStorage", e);
+            }
+        }, executor);
+    }
+
+    private ListenableFuture<List<SerializedPage>> getPagesFromStorage(ImmutableList.Builder<SerializedPage> resultBuilder, Iterator<SerializedPage> serializedPages, Iterator<HandleInfo> handleIterator, GetTracker getTracker)
     {
         long maxBytes = getTracker.getMaxSize().toBytes();
         long bytes = getTracker.getBytes();
         long pageCount = getTracker.getPageCount();
 
-        try (SliceInput inputStream = new InputStreamSliceInput(tempStorage.open(tempDataOperationContext, handle))) {
-            Iterator<SerializedPage> serializedPages = readSerializedPages(inputStream);
-            advance(serializedPages, getTracker.getStartPage());
-
-            while (serializedPages.hasNext()) {
-                SerializedPage page = serializedPages.next();
-                long bytesRead = bytes;
-                bytes += page.getRetainedSizeInBytes();
-
-                if (pageCount != 0 && bytes > maxBytes) {
-                    getTracker.update(bytesRead, pageCount);
-                    return immediateFuture(resultBuilder.build());
-                }
-                resultBuilder.add(page);
-                pageCount++;
-            }
+        advance(serializedPages, getTracker.getStartPage());
 
-            getTracker.update(bytes, pageCount);
+        while (serializedPages.hasNext()) {
+            SerializedPage page = serializedPages.next();
+            long bytesRead = bytes;
+            bytes += page.getRetainedSizeInBytes();
 
-            if (!handleIterator.hasNext()) {
+            if (pageCount != 0 && bytes > maxBytes) {
+                getTracker.update(bytesRead, pageCount);
                 return immediateFuture(resultBuilder.build());
             }
-            return transformAsync(handleIterator.next().getHandleFuture(), input -> getPagesFromStorage(resultBuilder, handleIterator, input, getTracker), executor);
+            resultBuilder.add(page);
+            pageCount++;
         }
-        catch (IOException e) {
-            throw new PrestoException(SPOOLING_STORAGE_ERROR, "Failed to read file from TempStorage", e);
+
+        getTracker.update(bytes, pageCount);
+
+        if (!handleIterator.hasNext()) {
+            return immediateFuture(resultBuilder.build());
         }
+        return getPagesFromStorage(resultBuilder, handleIterator.next(), handleIterator, getTracker);
     }
 
     private List<SerializedPage> getPagesFromMemory(long startSequenceId, GetTracker getTracker)
@@ -489,6 +552,9 @@ public class SpoolingOutputBuffer
                 pagesAcknowledged += handleInfo.getPageCount() - startPage.get();
                 pagesRemoved += handleInfo.getPageCount();
                 bytesRemoved += handleInfo.getBytes();
+                if (handleInfo.isPrefetched()) {
+                    totalPrefetchedBytes.addAndGet(-handleInfo.getBytes());
+                }
 
                 startPage.set(0);
             }
@@ -503,6 +569,11 @@ public class SpoolingOutputBuffer
         totalBufferedBytes.addAndGet(-bytesRemoved);
         totalPagesRemaining.addAndGet(-pagesAcknowledged);
 
+        if (pagesRemoved > 0) {
+            // read ahead the files that now fit in the prefetch size
+            prefetch();
+        }
+
         return pagesAcknowledged;
     }
 
@@ -598,6 +669,7 @@ public class SpoolingOutputBuffer
         totalBufferedPages.set(0);
         totalBufferedBytes.set(0);
         totalPagesRemaining.set(0);
+        totalPrefetchedBytes.set(0);
     }
 
     @Override
@@ -635,6 +707,9 @@ public class SpoolingOutputBuffer
         private final long bytes;
         private final int pageCount;
 
+        // pages of the file kept in memory, null if the pages are read from storage
+        private volatile ListenableFuture<List<SerializedPage>> prefetchedPages;
+
         public HandleInfo(Range<Long> range, ListenableFuture<TempStorageHandle> handleFuture, long bytes, int pageCount)
         {
             this.range = requireNonNull(range, "range is null");
@@ -663,6 +738,21 @@ public class SpoolingOutputBuffer
             return handleFuture;
         }
 
+        public boolean isPrefetched()
+        {
+            return prefetchedPages != null;
+        }
+
+        public Optional<ListenableFuture<List<SerializedPage>>> getPrefetchedPages()
+        {
+            return Optional.ofNullable(prefetchedPages);
+        }
+
+        public void setPrefetchedPages(ListenableFuture<List<SerializedPage>> prefetchedPages)
+        {
+            this.prefetchedPages = requireNonNull(prefetchedPages, "prefetchedPages is null");
+        }
+
         public void removeFile()
         {
             executor.execute(() -> {
@@ -93,6 +93,7 @@ public class SpoolingOutputBufferFactory
                 state,
                 tempStorageManager.getTempStorage(LocalTempStorage.NAME),
                 featuresConfig.getSpoolingOutputBufferThreshold(),
+                featuresConfig.getSpoolingOutputBufferPrefetchSize(),
                 executor,
                 finalizerService);
     }
@@ -122,6 +122,11 @@ public class PrioritizedSplitRunner
         }
     }
 
+    public boolean isBlocking()
+    {
+        return split.isBlocking();
+    }
+
     public long getCreatedNanos()
     {
         return createdNanos;
@@ -171,6 +176,7 @@ public class PrioritizedSplitRunner
             scheduledNanos.addAndGet(quantaScheduledNanos);
 
             priority.set(taskHandle.addScheduledNanos(quantaScheduledNanos));
+            taskHandle.recordQuanta(quantaScheduledNanos, quantaCpuNanos);
             lastRun.set(ticker.read());
 
             if (blocked == NOT_BLOCKED) {
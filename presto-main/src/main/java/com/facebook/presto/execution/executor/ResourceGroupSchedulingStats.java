@@ -0,0 +1,86 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution.executor;
+
+import com.facebook.airlift.stats.CounterStat;
+import org.weakref.jmx.Managed;
+import org.weakref.jmx.Nested;
+
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Time the splits of the tasks of a resource group ran for on this worker. The stats only
+ * cover the time since the group last had no tasks on this worker.
+ */
+@ThreadSafe
+public class ResourceGroupSchedulingStats
+{
+    private final String resourceGroup;
+    private final CounterStat scheduledTimeMicros = new CounterStat();
+    private final CounterStat cpuTimeMicros = new CounterStat();
+    private final AtomicInteger tasks = new AtomicInteger();
+
+    ResourceGroupSchedulingStats(String resourceGroup)
+    {
+        this.resourceGroup = requireNonNull(resourceGroup, "resourceGroup is null");
+    }
+
+    String getResourceGroup()
+    {
+        return resourceGroup;
+    }
+
+    void taskAdded()
+    {
+        tasks.incrementAndGet();
+    }
+
+    /**
+     * @return the number of tasks left
+     */
+    int taskRemoved()
+    {
+        return tasks.decrementAndGet();
+    }
+
+    void recordQuanta(long scheduledNanos, long cpuNanos)
+    {
+        scheduledTimeMicros.update(scheduledNanos / 1000);
+        cpuTimeMicros.update(cpuNanos / 1000);
+    }
+
+    @Managed
+    public int getTasks()
+    {
+        return tasks.get();
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getScheduledTimeMicros()
+    {
+        return scheduledTimeMicros;
+    }
+
+    @Managed
+    @Nested
+    public CounterStat getCpuTimeMicros()
+    {
+        return cpuTimeMicros;
+    }
+}
@@ -36,8 +36,10 @@ import com.google.common.cache.LoadingCache;
 import com.google.common.collect.ComparisonChain;
 import com.google.common.util.concurrent.ListenableFuture;
 import io.airlift.units.Duration;
+import org.weakref.jmx.MBeanExporter;
 import org.weakref.jmx.Managed;
 import org.weakref.jmx.Nested;
+import org.weakref.jmx.ObjectNames;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
@@ -46,25 +48,29 @@ import javax.annotation.concurrent.ThreadSafe;
 import javax.inject.Inject;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
 import java.util.SortedSet;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.BiFunction;
 import java.util.function.DoubleSupplier;
-import java.util.function.Function;
 import java.util.function.Predicate;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
@@ -104,6 +110,7 @@ public class TaskExecutor
     private final ThreadPoolExecutorMBean executorMBean;
 
     private final int runnerThreads;
+    private final int blockingRunnerThreads;
     private final int minimumNumberOfDrivers;
     private final int guaranteedNumberOfDriversPerTask;
     private final int maximumNumberOfDriversPerTask;
@@ -139,9 +146,23 @@ public class TaskExecutor
     private final MultilevelSplitQueue waitingSplits;
 
     /**
-     * Per query priority trackers
+     * Leaf splits that their connector declares as blocking on I/O, waiting for a blocking runner thread.
+     * These threads mostly wait, so the splits are simply run in turn.
      */
-    private final Function<QueryId, TaskPriorityTracker> taskPriorityTrackerFactory;
+    private final BlockingQueue<PrioritizedSplitRunner> waitingBlockingSplits = new LinkedBlockingQueue<>();
+
+    /**
+     * Per query priority trackers, created from the query and the scheduling weight of the task
+     */
+    private final BiFunction<QueryId, Integer, TaskPriorityTracker> taskPriorityTrackerFactory;
+
+    /**
+     * Scheduling stats of the resource groups with tasks on this worker. The stats of a group are exported
+     * when its first task is added, and unexported when its last task is removed.
+     */
+    @GuardedBy("this")
+    private final Map<String, ResourceGroupSchedulingStats> resourceGroupStats = new HashMap<>();
+    private final Optional<MBeanExporter> exporter;
 
     /**
      * Splits running on a thread.
@@ -181,9 +202,10 @@ public class TaskExecutor
     private volatile boolean closed;
 
     @Inject
-    public TaskExecutor(TaskManagerConfig config, EmbedVersion embedVersion, MultilevelSplitQueue splitQueue)
+    public TaskExecutor(TaskManagerConfig config, EmbedVersion embedVersion, MultilevelSplitQueue splitQueue, MBeanExporter exporter)
     {
         this(requireNonNull(config, "config is null").getMaxWorkerThreads(),
+                config.getBlockingSplitThreads(),
                 config.getMinDrivers(),
                 config.getMinDriversPerTask(),
                 config.getMaxDriversPerTask(),
@@ -193,7 +215,8 @@ public class TaskExecutor
                 DEFAULT_INTERRUPT_SPLIT_INTERVAL,
                 embedVersion,
                 splitQueue,
-                Ticker.systemTicker());
+                Ticker.systemTicker(),
+                Optional.of(requireNonNull(exporter, "exporter is null")));
     }
 
     @VisibleForTesting
@@ -218,6 +241,32 @@ public class TaskExecutor
                 new MultilevelSplitQueue(2), ticker);
     }
 
+    @VisibleForTesting
+    public TaskExecutor(
+            int runnerThreads,
+            int blockingRunnerThreads,
+            int minDrivers,
+            int guaranteedNumberOfDriversPerTask,
+            int maximumNumberOfDriversPerTask,
+            TaskPriorityTracking taskPriorityTracking,
+            Ticker ticker)
+    {
+        this(
+                runnerThreads,
+                blockingRunnerThreads,
+                minDrivers,
+                guaranteedNumberOfDriversPerTask,
+                maximumNumberOfDriversPerTask,
+                taskPriorityTracking,
+                new TaskManagerConfig().getInterruptRunawaySplitsTimeout(),
+                DEFAULT_INTERRUPTIBLE_SPLIT_PREDICATE,
+                DEFAULT_INTERRUPT_SPLIT_INTERVAL,
+                new EmbedVersion(new ServerConfig()),
+                new MultilevelSplitQueue(2),
+                ticker,
+                Optional.empty());
+    }
+
     @VisibleForTesting
     public TaskExecutor(
             int runnerThreads,
@@ -255,8 +304,40 @@ public class TaskExecutor
             EmbedVersion embedVersion,
             MultilevelSplitQueue splitQueue,
             Ticker ticker)
+    {
+        this(
+                runnerThreads,
+                0,
+                minDrivers,
+                guaranteedNumberOfDriversPerTask,
+                maximumNumberOfDriversPerTask,
+                taskPriorityTracking,
+                interruptRunawaySplitsTimeout,
+                interruptibleSplitPredicate,
+                interruptSplitInterval,
+                embedVersion,
+                splitQueue,
+                ticker,
+                Optional.empty());
+    }
+
+    private TaskExecutor(
+            int runnerThreads,
+            int blockingRunnerThreads,
+            int minDrivers,
+            int guaranteedNumberOfDriversPerTask,
+            int maximumNumberOfDriversPerTask,
+            TaskPriorityTracking taskPriorityTracking,
+            Duration interruptRunawaySplitsTimeout,
+            Predicate<List<StackTraceElement>> interruptibleSplitPredicate,
+            Duration interruptSplitInterval,
+            EmbedVersion embedVersion,
+            MultilevelSplitQueue splitQueue,
+            Ticker ticker,
+            Optional<MBeanExporter> exporter)
     {
         checkArgument(runnerThreads > 0, "runnerThreads must be at least 1");
+        checkArgument(blockingRunnerThreads >= 0, "blockingRunnerThreads is negative");
         checkArgument(guaranteedNumberOfDriversPerTask > 0, "guaranteedNumberOfDriversPerTask must be at least 1");
         checkArgument(maximumNumberOfDriversPerTask > 0, "maximumNumberOfDriversPerTask must be at least 1");
         checkArgument(guaranteedNumberOfDriversPerTask <= maximumNumberOfDriversPerTask, "guaranteedNumberOfDriversPerTask cannot be greater than maximumNumberOfDriversPerTask");
@@ -267,6 +348,7 @@ public class TaskExecutor
         this.executor = newCachedThreadPool(threadsNamed("task-processor-%s"));
         this.executorMBean = new ThreadPoolExecutorMBean((ThreadPoolExecutor) executor);
         this.runnerThreads = runnerThreads;
+        this.blockingRunnerThreads = blockingRunnerThreads;
         this.embedVersion = requireNonNull(embedVersion, "embedVersion is null");
 
         this.ticker = requireNonNull(ticker, "ticker is null");
@@ -275,16 +357,24 @@ public class TaskExecutor
         this.guaranteedNumberOfDriversPerTask = guaranteedNumberOfDriversPerTask;
         this.maximumNumberOfDriversPerTask = maximumNumberOfDriversPerTask;
         this.waitingSplits = requireNonNull(splitQueue, "splitQueue is null");
-        Function<QueryId, TaskPriorityTracker> taskPriorityTrackerFactory;
+        BiFunction<QueryId, Integer, TaskPriorityTracker> taskPriorityTrackerFactory;
         switch (taskPriorityTracking) {
             case TASK_FAIR:
-                taskPriorityTrackerFactory = (queryId) -> new TaskPriorityTracker(splitQueue);
+                taskPriorityTrackerFactory = (queryId, schedulingWeight) -> new TaskPriorityTracker(splitQueue);
                 break;
             case QUERY_FAIR:
                 LoadingCache<QueryId, TaskPriorityTracker> cache = CacheBuilder.newBuilder()
                         .weakValues()
                         .build(CacheLoader.from(queryId -> new TaskPriorityTracker(splitQueue)));
-                taskPriorityTrackerFactory = cache::getUnchecked;
+                taskPriorityTrackerFactory = (queryId, schedulingWeight) -> cache.getUnchecked(queryId);
+                break;
+            case WEIGHTED_QUERY_FAIR:
+                // all the tasks of a query are created with the same scheduling weight
+                Map<QueryId, TaskPriorityTracker> weightedTrackers = CacheBuilder.newBuilder()
+                        .weakValues()
+                        .<QueryId, TaskPriorityTracker>build()
+                        .asMap();
+                taskPriorityTrackerFactory = (queryId, schedulingWeight) -> weightedTrackers.computeIfAbsent(queryId, id -> new TaskPriorityTracker(splitQueue, schedulingWeight));
                 break;
             default:
                 throw new IllegalArgumentException("Unexpected taskPriorityTracking: " + taskPriorityTracking);
@@ -294,6 +384,7 @@ public class TaskExecutor
         this.interruptRunawaySplitsTimeout = interruptRunawaySplitsTimeout;
         this.interruptibleSplitPredicate = interruptibleSplitPredicate;
         this.interruptSplitInterval = interruptSplitInterval;
+        this.exporter = requireNonNull(exporter, "exporter is null");
     }
 
     @PostConstruct
@@ -301,7 +392,10 @@ public class TaskExecutor
     {
         checkState(!closed, "TaskExecutor is closed");
         for (int i = 0; i < runnerThreads; i++) {
-            addRunnerThread();
+            addRunnerThread(false);
+        }
+        for (int i = 0; i < blockingRunnerThreads; i++) {
+            addRunnerThread(true);
         }
         if (interruptRunawaySplitsTimeout != null) {
             long interval = (long) interruptSplitInterval.getValue(SECONDS);
@@ -315,6 +409,11 @@ public class TaskExecutor
         closed = true;
         executor.shutdownNow();
         splitMonitorExecutor.shutdownNow();
+        exporter.ifPresent(mbeanExporter -> {
+            for (String resourceGroup : resourceGroupStats.keySet()) {
+                mbeanExporter.unexport(getResourceGroupStatsName(resourceGroup));
+            }
+        });
     }
 
     @Override
@@ -325,15 +424,16 @@ public class TaskExecutor
                 .add("allSplits", allSplits.size())
                 .add("intermediateSplits", intermediateSplits.size())
                 .add("waitingSplits", waitingSplits.size())
+                .add("waitingBlockingSplits", waitingBlockingSplits.size())
                 .add("runningSplits", runningSplits.size())
                 .add("blockedSplits", blockedSplits.size())
                 .toString();
     }
 
-    private synchronized void addRunnerThread()
+    private synchronized void addRunnerThread(boolean blocking)
     {
         try {
-            executor.execute(embedVersion.embedVersion(new TaskRunner()));
+            executor.execute(embedVersion.embedVersion(new TaskRunner(blocking)));
         }
         catch (RejectedExecutionException ignored) {
         }
@@ -345,26 +445,73 @@ public class TaskExecutor
             int initialSplitConcurrency,
             Duration splitConcurrencyAdjustFrequency,
             OptionalInt maxDriversPerTask)
+    {
+        return addTask(taskId, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, maxDriversPerTask, Optional.empty(), 1);
+    }
+
+    /**
+     * @param resourceGroup resource group of the query of the task, whose scheduled time is accounted to the group
+     * @param schedulingWeight weight of the task in the {@link TaskPriorityTracking#WEIGHTED_QUERY_FAIR} mode
+     */
+    public synchronized TaskHandle addTask(
+            TaskId taskId,
+            DoubleSupplier utilizationSupplier,
+            int initialSplitConcurrency,
+            Duration splitConcurrencyAdjustFrequency,
+            OptionalInt maxDriversPerTask,
+            Optional<String> resourceGroup,
+            int schedulingWeight)
     {
         requireNonNull(taskId, "taskId is null");
         requireNonNull(utilizationSupplier, "utilizationSupplier is null");
+        requireNonNull(resourceGroup, "resourceGroup is null");
         checkArgument(!maxDriversPerTask.isPresent() || maxDriversPerTask.getAsInt() <= maximumNumberOfDriversPerTask,
                 "maxDriversPerTask cannot be greater than the configured value");
+        checkArgument(schedulingWeight > 0, "schedulingWeight must be positive");
 
         log.debug("Task scheduled " + taskId);
 
+        Optional<ResourceGroupSchedulingStats> stats = resourceGroup.map(this::getResourceGroupStats);
+        stats.ifPresent(ResourceGroupSchedulingStats::taskAdded);
+
         TaskHandle taskHandle = new TaskHandle(
                 taskId,
-                taskPriorityTrackerFactory.apply(taskId.getQueryId()),
+                taskPriorityTrackerFactory.apply(taskId.getQueryId(), schedulingWeight),
                 utilizationSupplier,
                 initialSplitConcurrency,
                 splitConcurrencyAdjustFrequency,
-                maxDriversPerTask);
+                maxDriversPerTask,
+                stats);
 
         tasks.add(taskHandle);
         return taskHandle;
     }
 
+    @GuardedBy("this")
+    private ResourceGroupSchedulingStats getResourceGroupStats(String resourceGroup)
+    {
+        return resourceGroupStats.computeIfAbsent(resourceGroup, group -> {
+            ResourceGroupSchedulingStats stats = new ResourceGroupSchedulingStats(group);
+            exporter.ifPresent(mbeanExporter -> mbeanExporter.export(getResourceGroupStatsName(group), stats));
+            return stats;
+        });
+    }
+
+    @GuardedBy("this")
+    private void removeResourceGroupTask(ResourceGroupSchedulingStats stats)
+    {
+        // the stats of groups without tasks are dropped, so that the groups of past queries are not retained
+        if (stats.taskRemoved() == 0) {
+            resourceGroupStats.remove(stats.getResourceGroup());
+            exporter.ifPresent(mbeanExporter -> mbeanExporter.unexport(getResourceGroupStatsName(stats.getResourceGroup())));
+        }
+    }
+
+    private static String getResourceGroupStatsName(String resourceGroup)
+    {
+        return ObjectNames.builder(ResourceGroupSchedulingStats.class, resourceGroup).build();
+    }
+
     public void removeTask(TaskHandle taskHandle)
     {
         try (SetThreadName ignored = new SetThreadName("Task-%s", taskHandle.getTaskId())) {
@@ -379,7 +526,9 @@ public class TaskExecutor
     {
         List<PrioritizedSplitRunner> splits;
         synchronized (this) {
-            tasks.remove(taskHandle);
+            if (tasks.remove(taskHandle)) {
+                taskHandle.getResourceGroupStats().ifPresent(this::removeResourceGroupTask);
+            }
             splits = taskHandle.destroy();
 
             // stop tracking splits (especially blocked splits which may never unblock)
@@ -387,6 +536,7 @@ public class TaskExecutor
             intermediateSplits.removeAll(splits);
             blockedSplits.keySet().removeAll(splits);
             waitingSplits.removeAll(splits);
+            waitingBlockingSplits.removeAll(splits);
         }
 
         // call destroy outside of synchronized block as it is expensive and doesn't need a lock on the task executor
@@ -521,7 +671,18 @@ public class TaskExecutor
     private synchronized void startSplit(PrioritizedSplitRunner split)
     {
         allSplits.add(split);
-        waitingSplits.offer(split);
+        offerWaitingSplit(split);
+    }
+
+    private void offerWaitingSplit(PrioritizedSplitRunner split)
+    {
+        if (blockingRunnerThreads > 0 && split.isBlocking()) {
+            split.setReady();
+            waitingBlockingSplits.offer(split);
+        }
+        else {
+            waitingSplits.offer(split);
+        }
     }
 
     private synchronized PrioritizedSplitRunner pollNextSplitWorker()
@@ -572,16 +733,22 @@ public class TaskExecutor
             implements Runnable
     {
         private final long runnerId = NEXT_RUNNER_ID.getAndIncrement();
+        private final boolean blocking;
+
+        private TaskRunner(boolean blocking)
+        {
+            this.blocking = blocking;
+        }
 
         @Override
         public void run()
         {
-            try (SetThreadName runnerName = new SetThreadName("SplitRunner-%s", runnerId)) {
+            try (SetThreadName runnerName = new SetThreadName(blocking ? "BlockingSplitRunner-%s" : "SplitRunner-%s", runnerId)) {
                 while (!closed && !Thread.currentThread().isInterrupted()) {
                     // select next worker
                     final PrioritizedSplitRunner split;
                     try {
-                        split = waitingSplits.take();
+                        split = blocking ? waitingBlockingSplits.take() : waitingSplits.take();
                     }
                     catch (InterruptedException e) {
                         Thread.currentThread().interrupt();
@@ -609,7 +776,7 @@ public class TaskExecutor
                         }
                         else {
                             if (blocked.isDone()) {
-                                waitingSplits.offer(split);
+                                offerWaitingSplit(split);
                             }
                             else {
                                 blockedSplits.put(split, blocked);
@@ -617,7 +784,7 @@ public class TaskExecutor
                                     blockedSplits.remove(split);
                                     // reset the level priority to prevent previously-blocked splits from starving existing splits
                                     split.resetLevelPriority();
-                                    waitingSplits.offer(split);
+                                    offerWaitingSplit(split);
                                 }, executor);
                             }
                         }
@@ -640,7 +807,7 @@ public class TaskExecutor
             finally {
                 // unless we have been closed, we need to replace this thread
                 if (!closed) {
-                    addRunnerThread();
+                    addRunnerThread(blocking);
                 }
             }
         }
@@ -680,12 +847,24 @@ public class TaskExecutor
         return intermediateSplits.size();
     }
 
+    @Managed
+    public int getBlockingRunnerThreads()
+    {
+        return blockingRunnerThreads;
+    }
+
     @Managed
     public int getWaitingSplits()
     {
         return waitingSplits.size();
     }
 
+    @Managed
+    public int getWaitingBlockingSplits()
+    {
+        return waitingBlockingSplits.size();
+    }
+
     @Managed
     public int getRunningSplits()
     {
@@ -24,6 +24,7 @@ import javax.annotation.concurrent.ThreadSafe;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -40,6 +41,7 @@ public class TaskHandle
     private final DoubleSupplier utilizationSupplier;
     private final TaskPriorityTracker priorityTracker;
     private final OptionalInt maxDriversPerTask;
+    private final Optional<ResourceGroupSchedulingStats> resourceGroupStats;
 
     @GuardedBy("this")
     protected final Queue<PrioritizedSplitRunner> queuedLeafSplits = new ArrayDeque<>(10);
@@ -61,11 +63,24 @@ public class TaskHandle
             int initialSplitConcurrency,
             Duration splitConcurrencyAdjustFrequency,
             OptionalInt maxDriversPerTask)
+    {
+        this(taskId, priorityTracker, utilizationSupplier, initialSplitConcurrency, splitConcurrencyAdjustFrequency, maxDriversPerTask, Optional.empty());
+    }
+
+    public TaskHandle(
+            TaskId taskId,
+            TaskPriorityTracker priorityTracker,
+            DoubleSupplier utilizationSupplier,
+            int initialSplitConcurrency,
+            Duration splitConcurrencyAdjustFrequency,
+            OptionalInt maxDriversPerTask,
+            Optional<ResourceGroupSchedulingStats> resourceGroupStats)
     {
         this.taskId = requireNonNull(taskId, "taskId is null");
         this.utilizationSupplier = requireNonNull(utilizationSupplier, "utilizationSupplier is null");
         this.priorityTracker = requireNonNull(priorityTracker, "queryPriorityTracker is null");
         this.maxDriversPerTask = requireNonNull(maxDriversPerTask, "maxDriversPerTask is null");
+        this.resourceGroupStats = requireNonNull(resourceGroupStats, "resourceGroupStats is null");
         this.concurrencyController = new SplitConcurrencyController(
                 initialSplitConcurrency,
                 requireNonNull(splitConcurrencyAdjustFrequency, "splitConcurrencyAdjustFrequency is null"));
@@ -77,6 +92,11 @@ public class TaskHandle
         return priorityTracker.updatePriority(durationNanos);
     }
 
+    public void recordQuanta(long scheduledNanos, long cpuNanos)
+    {
+        resourceGroupStats.ifPresent(stats -> stats.recordQuanta(scheduledNanos, cpuNanos));
+    }
+
     public synchronized Priority resetLevelPriority()
     {
         return priorityTracker.resetLevelPriority();
@@ -102,6 +122,11 @@ public class TaskHandle
         return maxDriversPerTask;
     }
 
+    public Optional<ResourceGroupSchedulingStats> getResourceGroupStats()
+    {
+        return resourceGroupStats;
+    }
+
     // Returns any remaining splits. The caller must destroy these.
     public synchronized List<PrioritizedSplitRunner> destroy()
     {
@@ -15,27 +15,48 @@ package com.facebook.presto.execution.executor;
 
 import javax.annotation.concurrent.GuardedBy;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Tracks the priority of the splits of a task, or of all the tasks of a query.
+ * <p>
+ * The scheduled time is charged to the level and the level priority divided by the
+ * scheduling weight. Splits with a higher weight therefore stay in the lower levels,
+ * and ahead of the other splits of their level, for longer, which gives them a larger
+ * share of the runner threads.
+ */
 public class TaskPriorityTracker
 {
     private final MultilevelSplitQueue splitQueue;
+    private final int schedulingWeight;
 
     @GuardedBy("this")
     private long scheduledNanos;
     @GuardedBy("this")
+    private long weightedScheduledNanos;
+    @GuardedBy("this")
     private volatile Priority priority = new Priority(0, 0);
 
     public TaskPriorityTracker(MultilevelSplitQueue splitQueue)
     {
+        this(splitQueue, 1);
+    }
+
+    public TaskPriorityTracker(MultilevelSplitQueue splitQueue, int schedulingWeight)
+    {
+        checkArgument(schedulingWeight > 0, "schedulingWeight must be positive");
         this.splitQueue = requireNonNull(splitQueue, "splitQueue is null");
+        this.schedulingWeight = schedulingWeight;
     }
 
     public synchronized Priority updatePriority(long durationNanos)
     {
         scheduledNanos += durationNanos;
+        long weightedDurationNanos = durationNanos / schedulingWeight;
+        weightedScheduledNanos += weightedDurationNanos;
 
-        Priority newPriority = splitQueue.updatePriority(priority, durationNanos, scheduledNanos);
+        Priority newPriority = splitQueue.updatePriority(priority, weightedDurationNanos, weightedScheduledNanos);
 
         priority = newPriority;
         return newPriority;
@@ -43,7 +64,7 @@ public class TaskPriorityTracker
 
     public synchronized Priority resetLevelPriority()
     {
-        long levelMinPriority = splitQueue.getLevelMinPriority(priority.getLevel(), scheduledNanos);
+        long levelMinPriority = splitQueue.getLevelMinPriority(priority.getLevel(), weightedScheduledNanos);
         if (priority.getLevelPriority() < levelMinPriority) {
             Priority newPriority = new Priority(priority.getLevel(), levelMinPriority);
             priority = newPriority;
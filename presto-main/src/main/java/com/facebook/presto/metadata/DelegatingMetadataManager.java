@@ -169,6 +169,12 @@ public abstract class DelegatingMetadataManager
         return delegate.getInfo(session, handle);
     }
 
+    @Override
+    public Optional<String> getTableVersion(Session session, TableHandle tableHandle)
+    {
+        return delegate.getTableVersion(session, tableHandle);
+    }
+
     @Override
     public TableMetadata getTableMetadata(Session session, TableHandle tableHandle)
     {
@@ -135,6 +135,11 @@ public interface Metadata
 
     Optional<Object> getInfo(Session session, TableHandle handle);
 
+    /**
+     * Returns the version of the data read through the specified table handle, if the connector identifies it.
+     */
+    Optional<String> getTableVersion(Session session, TableHandle tableHandle);
+
     /**
      * Return the metadata for the specified table handle.
      *
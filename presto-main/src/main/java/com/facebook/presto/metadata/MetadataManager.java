@@ -492,6 +492,14 @@ public class MetadataManager
         return handle.getLayout().flatMap(tableLayout -> metadata.getInfo(tableLayout));
     }
 
+    @Override
+    public Optional<String> getTableVersion(Session session, TableHandle tableHandle)
+    {
+        ConnectorId connectorId = tableHandle.getConnectorId();
+        ConnectorMetadata metadata = getMetadata(session, connectorId);
+        return metadata.getTableVersion(session.toConnectorSession(connectorId), tableHandle.getConnectorHandle());
+    }
+
     @Override
     public TableMetadata getTableMetadata(Session session, TableHandle tableHandle)
     {
@@ -0,0 +1,124 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import javax.annotation.concurrent.NotThreadSafe;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+
+/**
+ * Sizes the buffer of an {@link ExchangeClient} and the multiplier of its concurrent requests from how
+ * the buffer is used. Both start at their minimum.
+ * <p>
+ * When the consumer finds the buffer empty although responses arrived since the last adjustment, the
+ * client does not fetch data as fast as it is consumed, so the buffer capacity doubles and the multiplier
+ * is incremented. When the buffer is full, the data is consumed slower than it is fetched, so the capacity
+ * shrinks by a quarter and the multiplier is decremented, releasing memory that only holds pages waiting
+ * for the consumer. Adjustments are made at most once per received response.
+ */
+@NotThreadSafe
+class AdaptiveExchangeController
+{
+    private final long minBufferCapacity;
+    private final long maxBufferCapacity;
+    private final int minConcurrentRequestMultiplier;
+    private final int maxConcurrentRequestMultiplier;
+
+    private long bufferCapacity;
+    private int concurrentRequestMultiplier;
+
+    private long responses;
+    private long responsesAtLastAdjustment;
+
+    public static AdaptiveExchangeController fixed(long bufferCapacity, int concurrentRequestMultiplier)
+    {
+        return new AdaptiveExchangeController(bufferCapacity, bufferCapacity, concurrentRequestMultiplier, concurrentRequestMultiplier);
+    }
+
+    public AdaptiveExchangeController(long minBufferCapacity, long maxBufferCapacity, int minConcurrentRequestMultiplier, int maxConcurrentRequestMultiplier)
+    {
+        checkArgument(minBufferCapacity > 0, "minBufferCapacity must be positive: %s", minBufferCapacity);
+        checkArgument(maxBufferCapacity >= minBufferCapacity, "maxBufferCapacity must be at least minBufferCapacity: %s < %s", maxBufferCapacity, minBufferCapacity);
+        checkArgument(minConcurrentRequestMultiplier > 0, "minConcurrentRequestMultiplier must be positive: %s", minConcurrentRequestMultiplier);
+        checkArgument(
+                maxConcurrentRequestMultiplier >= minConcurrentRequestMultiplier,
+                "maxConcurrentRequestMultiplier must be at least minConcurrentRequestMultiplier: %s < %s",
+                maxConcurrentRequestMultiplier,
+                minConcurrentRequestMultiplier);
+        this.minBufferCapacity = minBufferCapacity;
+        this.maxBufferCapacity = maxBufferCapacity;
+        this.minConcurrentRequestMultiplier = minConcurrentRequestMultiplier;
+        this.maxConcurrentRequestMultiplier = maxConcurrentRequestMultiplier;
+        this.bufferCapacity = minBufferCapacity;
+        this.concurrentRequestMultiplier = minConcurrentRequestMultiplier;
+    }
+
+    public boolean isAdaptive()
+    {
+        return minBufferCapacity < maxBufferCapacity || minConcurrentRequestMultiplier < maxConcurrentRequestMultiplier;
+    }
+
+    public long getBufferCapacity()
+    {
+        return bufferCapacity;
+    }
+
+    public int getConcurrentRequestMultiplier()
+    {
+        return concurrentRequestMultiplier;
+    }
+
+    public void responseReceived()
+    {
+        responses++;
+    }
+
+    /**
+     * @return true if the buffer capacity or the concurrent request multiplier increased
+     */
+    public boolean bufferDrained()
+    {
+        if (!startAdjustment()) {
+            return false;
+        }
+
+        long newBufferCapacity = bufferCapacity > maxBufferCapacity / 2 ? maxBufferCapacity : bufferCapacity * 2;
+        int newConcurrentRequestMultiplier = min(concurrentRequestMultiplier + 1, maxConcurrentRequestMultiplier);
+        boolean increased = newBufferCapacity > bufferCapacity || newConcurrentRequestMultiplier > concurrentRequestMultiplier;
+        bufferCapacity = newBufferCapacity;
+        concurrentRequestMultiplier = newConcurrentRequestMultiplier;
+        return increased;
+    }
+
+    public void bufferFull()
+    {
+        if (!startAdjustment()) {
+            return;
+        }
+
+        bufferCapacity = max(bufferCapacity - bufferCapacity / 4, minBufferCapacity);
+        concurrentRequestMultiplier = max(concurrentRequestMultiplier - 1, minConcurrentRequestMultiplier);
+    }
+
+    private boolean startAdjustment()
+    {
+        if (!isAdaptive() || responses == responsesAtLastAdjustment) {
+            return false;
+        }
+        responsesAtLastAdjustment = responses;
+        return true;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.IntArrayBlock;
+import com.facebook.presto.common.block.LongArrayBlock;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.block.VariableWidthBlock;
+import com.facebook.presto.common.type.AbstractIntType;
+import com.facebook.presto.common.type.AbstractLongType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.common.type.VarcharType;
+import com.facebook.presto.type.TypeUtils;
+
+import java.util.Arrays;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.TypeUtils.NULL_HASH_CODE;
+import static com.facebook.presto.sql.planner.optimizations.HashGenerationOptimizer.INITIAL_HASH_VALUE;
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Computes the hashes of many rows at once, one channel at a time. The result for every row
+ * is the same as combining {@link TypeUtils#hashPosition(Type, Block, int)} of its channels
+ * with {@link com.facebook.presto.operator.scalar.CombineHashFunction}, but the per row virtual
+ * calls are replaced by a tight loop over the block for the most common block encodings.
+ */
+public final class BlockHashes
+{
+    private BlockHashes() {}
+
+    /**
+     * Resets the hashes of the first {@code positionCount} rows before the channels are combined into them.
+     */
+    public static void initialize(long[] hashes, int positionCount)
+    {
+        checkArgument(hashes.length >= positionCount, "hashes is too small");
+        Arrays.fill(hashes, 0, positionCount, INITIAL_HASH_VALUE);
+    }
+
+    /**
+     * Combines the hashes of the first {@code positionCount} positions of the block into {@code hashes}.
+     */
+    public static void combineHashes(Type type, Block block, int positionCount, long[] hashes)
+    {
+        checkArgument(hashes.length >= positionCount, "hashes is too small");
+
+        if (block instanceof RunLengthEncodedBlock) {
+            long hash = TypeUtils.hashPosition(type, ((RunLengthEncodedBlock) block).getValue(), 0);
+            for (int position = 0; position < positionCount; position++) {
+                hashes[position] = combine(hashes[position], hash);
+            }
+        }
+        else if (block instanceof DictionaryBlock && ((DictionaryBlock) block).getDictionary().getPositionCount() <= positionCount) {
+            // hash every dictionary entry once, as long as there are fewer entries than rows
+            DictionaryBlock dictionaryBlock = (DictionaryBlock) block;
+            Block dictionary = dictionaryBlock.getDictionary();
+            long[] dictionaryHashes = new long[dictionary.getPositionCount()];
+            initialize(dictionaryHashes, dictionaryHashes.length);
+            combineHashes(type, dictionary, dictionaryHashes.length, dictionaryHashes);
+            for (int position = 0; position < positionCount; position++) {
+                hashes[position] = combine(hashes[position], dictionaryHashes[dictionaryBlock.getId(position)]);
+            }
+        }
+        else if (block instanceof LongArrayBlock && type.equals(BIGINT)) {
+            combineLongHashes((LongArrayBlock) block, positionCount, hashes);
+        }
+        else if (block instanceof IntArrayBlock && (type.equals(INTEGER) || type.equals(DATE))) {
+            combineIntHashes((IntArrayBlock) block, positionCount, hashes);
+        }
+        else if (block instanceof VariableWidthBlock && type instanceof VarcharType) {
+            combineVariableWidthHashes((VariableWidthBlock) block, positionCount, hashes);
+        }
+        else {
+            for (int position = 0; position < positionCount; position++) {
+                hashes[position] = combine(hashes[position], TypeUtils.hashPosition(type, block, position));
+            }
+        }
+    }
+
+    private static void combineLongHashes(LongArrayBlock block, int positionCount, long[] hashes)
+    {
+        boolean mayHaveNull = block.mayHaveNull();
+        for (int position = 0; position < positionCount; position++) {
+            long hash = mayHaveNull && block.isNull(position) ? NULL_HASH_CODE : AbstractLongType.hash(block.getLong(position));
+            hashes[position] = combine(hashes[position], hash);
+        }
+    }
+
+    private static void combineIntHashes(IntArrayBlock block, int positionCount, long[] hashes)
+    {
+        boolean mayHaveNull = block.mayHaveNull();
+        for (int position = 0; position < positionCount; position++) {
+            long hash = mayHaveNull && block.isNull(position) ? NULL_HASH_CODE : AbstractIntType.hash(block.getInt(position));
+            hashes[position] = combine(hashes[position], hash);
+        }
+    }
+
+    private static void combineVariableWidthHashes(VariableWidthBlock block, int positionCount, long[] hashes)
+    {
+        boolean mayHaveNull = block.mayHaveNull();
+        for (int position = 0; position < positionCount; position++) {
+            long hash = mayHaveNull && block.isNull(position) ? NULL_HASH_CODE : block.hash(position, 0, block.getSliceLength(position));
+            hashes[position] = combine(hashes[position], hash);
+        }
+    }
+
+    private static long combine(long previousHashValue, long value)
+    {
+        // must match CombineHashFunction.getHash
+        return 31 * previousHashValue + value;
+    }
+}
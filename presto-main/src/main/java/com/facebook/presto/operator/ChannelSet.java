@@ -14,12 +14,15 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -86,6 +89,11 @@ public class ChannelSet
         private final LocalMemoryContext localMemoryContext;
 
         public ChannelSetBuilder(Type type, Optional<Integer> hashChannel, int expectedPositions, OperatorContext operatorContext, JoinCompiler joinCompiler)
+        {
+            this(type, hashChannel, expectedPositions, operatorContext, joinCompiler, operatorContext.localUserMemoryContext());
+        }
+
+        public ChannelSetBuilder(Type type, Optional<Integer> hashChannel, int expectedPositions, OperatorContext operatorContext, JoinCompiler joinCompiler, LocalMemoryContext localMemoryContext)
         {
             List<Type> types = ImmutableList.of(type);
             this.hash = createGroupByHash(
@@ -98,12 +106,45 @@ public class ChannelSet
                     this::updateMemoryReservation);
             this.nullBlockPage = new Page(type.createBlockBuilder(null, 1, UNKNOWN.getFixedSize()).appendNull().build());
             this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
-            this.localMemoryContext = operatorContext.localUserMemoryContext();
+            this.localMemoryContext = requireNonNull(localMemoryContext, "localMemoryContext is null");
         }
 
         public ChannelSet build()
         {
-            return new ChannelSet(hash, hash.contains(0, nullBlockPage, HASH_CHANNELS), HASH_CHANNELS);
+            return new ChannelSet(hash, containsNull(), HASH_CHANNELS);
+        }
+
+        public boolean containsNull()
+        {
+            return hash.contains(0, nullBlockPage, HASH_CHANNELS);
+        }
+
+        /**
+         * Returns the distinct values added so far as single channel pages.
+         */
+        public Iterator<Page> getValuePages()
+        {
+            return new AbstractIterator<Page>()
+            {
+                private final PageBuilder pageBuilder = new PageBuilder(hash.getTypes());
+                private int groupId;
+
+                @Override
+                protected Page computeNext()
+                {
+                    if (groupId == hash.getGroupCount()) {
+                        return endOfData();
+                    }
+                    pageBuilder.reset();
+                    while (!pageBuilder.isFull() && groupId < hash.getGroupCount()) {
+                        pageBuilder.declarePosition();
+                        hash.appendValuesTo(groupId, pageBuilder, 0);
+                        groupId++;
+                    }
+                    // drop the hash channel, if any
+                    return pageBuilder.build().extractChannel(0);
+                }
+            };
         }
 
         public long getEstimatedSize()
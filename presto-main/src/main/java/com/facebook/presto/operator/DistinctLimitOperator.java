@@ -18,17 +18,22 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
@@ -51,6 +56,9 @@ public class DistinctLimitOperator
         private final Optional<Integer> hashChannel;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final int spillPartitionCount;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public DistinctLimitOperatorFactory(
                 int operatorId,
@@ -59,7 +67,10 @@ public class DistinctLimitOperator
                 List<Integer> distinctChannels,
                 long limit,
                 Optional<Integer> hashChannel,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                int spillPartitionCount,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -70,6 +81,10 @@ public class DistinctLimitOperator
             this.limit = limit;
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            checkArgument(spillPartitionCount > 0, "spillPartitionCount must be positive");
+            this.spillPartitionCount = spillPartitionCount;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         @Override
@@ -80,7 +95,7 @@ public class DistinctLimitOperator
             List<Type> distinctTypes = distinctChannels.stream()
                     .map(sourceTypes::get)
                     .collect(toImmutableList());
-            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler);
+            return new DistinctLimitOperator(operatorContext, distinctChannels, distinctTypes, limit, hashChannel, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
         }
 
         @Override
@@ -92,32 +107,64 @@ public class DistinctLimitOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler);
+            return new DistinctLimitOperatorFactory(operatorId, planNodeId, sourceTypes, distinctChannels, limit, hashChannel, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
-
+    private final LocalMemoryContext localRevocableMemoryContext;
+    private final List<Type> distinctTypes;
+    private final Optional<Integer> hashChannel;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final int spillPartitionCount;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
+
+    // input page projected to the output channels; null if the distinct rows of the unfinished work are not part of the output
     private Page inputPage;
     private long remainingLimit;
 
     private boolean finishing;
 
     private final int[] outputChannels;
-    private final GroupByHash groupByHash;
+    // groups on the distinct channels of the projected pages; null after the hash has been spilled
+    private GroupByHash groupByHash;
     private long nextDistinctId;
 
     // for yield when memory is not available
     private GroupByIdBlock groupByIds;
     private Work<GroupByIdBlock> unfinishedWork;
 
-    public DistinctLimitOperator(OperatorContext operatorContext, List<Integer> distinctChannels, List<Type> distinctTypes, long limit, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    private Optional<PartitionedDistinctSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+
+    // spilled partition that is processed after all input has been received
+    private int currentPartition;
+    private Iterator<Page> partitionDistinctValues;
+    private Iterator<Page> partitionInput;
+
+    public DistinctLimitOperator(
+            OperatorContext operatorContext,
+            List<Integer> distinctChannels,
+            List<Type> distinctTypes,
+            long limit,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            int spillPartitionCount,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         checkArgument(limit >= 0, "limit must be at least zero");
-        requireNonNull(hashChannel, "hashChannel is null");
+        this.distinctTypes = ImmutableList.copyOf(requireNonNull(distinctTypes, "distinctTypes is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.spillPartitionCount = spillPartitionCount;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
 
         int[] distinctChannelInts = Ints.toArray(requireNonNull(distinctChannels, "distinctChannels is null"));
         if (hashChannel.isPresent()) {
@@ -125,18 +172,11 @@ public class DistinctLimitOperator
             outputChannels[distinctChannelInts.length] = hashChannel.get();
         }
         else {
-            outputChannels = distinctChannelInts.clone(); // defensive copy since this is passed into createGroupByHash
+            outputChannels = distinctChannelInts.clone();
         }
 
-        this.groupByHash = createGroupByHash(
-                distinctTypes,
-                distinctChannelInts,
-                hashChannel,
-                min((int) limit, 10_000),
-                isDictionaryAggregationEnabled(operatorContext.getSession()),
-                joinCompiler,
-                this::updateMemoryReservation);
         remainingLimit = limit;
+        this.groupByHash = createProjectedGroupByHash(min((int) limit, 10_000));
     }
 
     @Override
@@ -148,28 +188,63 @@ public class DistinctLimitOperator
     @Override
     public void finish()
     {
+        if (finishing) {
+            return;
+        }
         finishing = true;
+
+        // Convert revocable memory to user memory as the hash can no longer be revoked once all input has been received.
+        if (localRevocableMemoryContext.getBytes() > 0) {
+            long currentRevocableBytes = localRevocableMemoryContext.getBytes();
+            localRevocableMemoryContext.setBytes(0);
+            if (!localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + currentRevocableBytes)) {
+                // TODO: this might fail (even though we have just released memory), but we don't
+                // have a proper way to atomically convert memory reservations
+                localRevocableMemoryContext.setBytes(currentRevocableBytes);
+                if (remainingLimit > 0 && !hasUnfinishedInput()) {
+                    // spill since revocable memory could not be converted to user memory immediately,
+                    // and release the hash once spilling is finished
+                    spillToDisk();
+                }
+            }
+        }
     }
 
     @Override
     public boolean isFinished()
     {
-        return !hasUnfinishedInput() && (finishing || remainingLimit == 0);
+        if (hasUnfinishedInput() || !spillInProgress.isDone()) {
+            return false;
+        }
+        return remainingLimit == 0 || (finishing && (!spiller.isPresent() || currentPartition == spiller.get().getPartitionCount()));
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishing && remainingLimit > 0 && !hasUnfinishedInput();
+        return !finishing && remainingLimit > 0 && !hasUnfinishedInput() && spillInProgress.isDone();
     }
 
     @Override
     public void addInput(Page page)
     {
         checkState(needsInput());
+        checkSpillSucceeded(spillInProgress);
 
-        inputPage = page;
-        unfinishedWork = groupByHash.getGroupIds(page);
+        if (spiller.isPresent()) {
+            // the distinct values seen so far are on disk, so the new distinct rows can only be found after all input is received
+            spillInProgress = spiller.get().spillInput(page.extractChannels(outputChannels));
+            return;
+        }
+
+        inputPage = page.extractChannels(outputChannels);
+        unfinishedWork = groupByHash.getGroupIds(inputPage);
         processUnfinishedWork();
         updateMemoryReservation();
     }
@@ -177,6 +252,10 @@ public class DistinctLimitOperator
     @Override
     public Page getOutput()
     {
+        if (unfinishedWork == null && groupByIds == null && finishing && spiller.isPresent() && remainingLimit > 0) {
+            processNextSpilledPage();
+        }
+
         if (unfinishedWork != null && !processUnfinishedWork()) {
             return null;
         }
@@ -185,7 +264,13 @@ public class DistinctLimitOperator
             return null;
         }
 
-        verify(inputPage != null);
+        if (inputPage == null) {
+            // values that were produced before spilling must not be produced again
+            nextDistinctId = groupByIds.getGroupCount();
+            groupByIds = null;
+            updateMemoryReservation();
+            return null;
+        }
 
         long resultingPositions = min(groupByIds.getGroupCount() - nextDistinctId, remainingLimit);
         Page result = null;
@@ -200,7 +285,7 @@ public class DistinctLimitOperator
             }
             verify(distinctCount == distinctPositions.length);
             remainingLimit -= distinctCount;
-            result = inputPage.extractChannels(outputChannels).getPositions(distinctPositions, 0, distinctPositions.length);
+            result = inputPage.getPositions(distinctPositions, 0, distinctPositions.length);
         }
 
         groupByIds = null;
@@ -210,6 +295,105 @@ public class DistinctLimitOperator
         return result;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (!spillInProgress.isDone()) {
+            // the hash or an input page is already being spilled
+            return spillInProgress;
+        }
+        if (finishing || remainingLimit == 0 || spiller.isPresent() || hasUnfinishedInput()) {
+            // nothing to spill, the memory is released once the unfinished work is done
+            return NOT_BLOCKED;
+        }
+        return spillToDisk();
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        // the hash may already have been replaced by the one of the first spilled partition
+        if (spiller.isPresent() && currentPartition == 0 && partitionDistinctValues == null) {
+            checkSpillSucceeded(spillInProgress);
+            groupByHash = null;
+            updateMemoryReservation();
+        }
+    }
+
+    @Override
+    public void close()
+            throws Exception
+    {
+        groupByHash = null;
+        if (spiller.isPresent()) {
+            spiller.get().close();
+        }
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        spiller = Optional.of(new PartitionedDistinctSpiller(
+                groupByHash.getTypes(),
+                distinctTypes,
+                groupByHash.getTypes(),
+                IntStream.range(0, distinctTypes.size()).toArray(),
+                spillPartitionCount,
+                partitioningSpillerFactory,
+                operatorContext));
+        spillInProgress = spiller.get().spillDistinctValues(PartitionedDistinctSpiller.getDistinctValuePages(groupByHash));
+        return spillInProgress;
+    }
+
+    private void processNextSpilledPage()
+    {
+        if (!spillInProgress.isDone()) {
+            return;
+        }
+        checkSpillSucceeded(spillInProgress);
+        // the hash is still present if it was spilled on finish
+        finishMemoryRevoke();
+
+        PartitionedDistinctSpiller spiller = this.spiller.get();
+        while (currentPartition < spiller.getPartitionCount()) {
+            if (partitionDistinctValues == null) {
+                groupByHash = createProjectedGroupByHash((int) min(remainingLimit, 10_000));
+                nextDistinctId = 0;
+                partitionDistinctValues = spiller.getDistinctValues(currentPartition);
+                partitionInput = spiller.getInput(currentPartition);
+            }
+
+            if (partitionDistinctValues.hasNext()) {
+                unfinishedWork = groupByHash.getGroupIds(partitionDistinctValues.next());
+                return;
+            }
+            if (partitionInput.hasNext()) {
+                inputPage = partitionInput.next();
+                unfinishedWork = groupByHash.getGroupIds(inputPage);
+                return;
+            }
+
+            groupByHash = null;
+            partitionDistinctValues = null;
+            partitionInput = null;
+            currentPartition++;
+            updateMemoryReservation();
+        }
+    }
+
+    private GroupByHash createProjectedGroupByHash(int expectedSize)
+    {
+        // input pages are projected to the output channels, so the distinct channels come first, followed by the hash channel, if any
+        int[] channels = IntStream.range(0, distinctTypes.size()).toArray();
+        return createGroupByHash(
+                distinctTypes,
+                channels,
+                hashChannel.map(ignored -> channels.length),
+                expectedSize,
+                isDictionaryAggregationEnabled(operatorContext.getSession()),
+                joinCompiler,
+                this::updateMemoryReservation);
+    }
+
     private boolean processUnfinishedWork()
     {
         verify(unfinishedWork != null);
@@ -223,7 +407,7 @@ public class DistinctLimitOperator
 
     private boolean hasUnfinishedInput()
     {
-        return inputPage != null || unfinishedWork != null;
+        return inputPage != null || unfinishedWork != null || groupByIds != null;
     }
 
     /**
@@ -236,9 +420,16 @@ public class DistinctLimitOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
-        // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
+        long estimatedSize = groupByHash == null ? 0 : groupByHash.getEstimatedSize();
+        // Operator/driver will be blocked on memory after we call setBytes().
         // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(groupByHash.getEstimatedSize());
+        if (spillEnabled && !finishing && !spiller.isPresent()) {
+            localRevocableMemoryContext.setBytes(estimatedSize);
+        }
+        else {
+            localRevocableMemoryContext.setBytes(0);
+            localUserMemoryContext.setBytes(estimatedSize);
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
@@ -0,0 +1,188 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.type.TypeUtils;
+import io.airlift.units.DataSize;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static com.google.common.base.Preconditions.checkArgument;
+import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.max;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Bloom filter over the values of a join key on the build side of a join. It is used as a dynamic
+ * filter for the probe side when the build side has too many distinct values to be described by a
+ * {@link com.facebook.presto.common.predicate.TupleDomain}. Filters of the same size can be combined,
+ * so that the filters collected by all build drivers of a join are merged into a single one.
+ * <p>
+ * Values are hashed with {@link TypeUtils#hashPosition(Type, Block, int)} of the type of the filter,
+ * so a filter may only be probed with values of the same type.
+ */
+public final class DynamicFilterBloomFilter
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DynamicFilterBloomFilter.class).instanceSize();
+
+    private static final int HASH_FUNCTIONS = 4;
+    private static final long MAX_BIT_COUNT = 1L << 31;
+    // keeps the false positive rate of a single filter at about 2.5%
+    private static final int MIN_BITS_PER_VALUE = 8;
+    // with more bits set, more than (1/2)^HASH_FUNCTIONS of the values not in the filter pass it
+    private static final double MAX_FILL_RATIO = 0.5;
+
+    private final Type type;
+    private final long[] bits;
+    private final int mask;
+    // includes duplicates, so it may overestimate the number of distinct values
+    private long valueCount;
+
+    public DynamicFilterBloomFilter(Type type, DataSize size)
+    {
+        this.type = requireNonNull(type, "type is null");
+        // the number of bits is a power of two, so that it can be addressed with a mask
+        long bitCount = Long.highestOneBit(min(max(size.toBytes() * Byte.SIZE, Long.SIZE), MAX_BIT_COUNT));
+        this.bits = new long[toIntExact(bitCount / Long.SIZE)];
+        this.mask = toIntExact(bitCount - 1);
+    }
+
+    private DynamicFilterBloomFilter(Type type, long[] bits, long valueCount)
+    {
+        this.type = type;
+        this.bits = bits;
+        this.mask = toIntExact((long) bits.length * Long.SIZE - 1);
+        this.valueCount = valueCount;
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public void add(Block block, int position)
+    {
+        // joins never match null keys
+        if (block.isNull(position)) {
+            return;
+        }
+        long hash = mix(TypeUtils.hashPosition(type, block, position));
+        int firstHash = (int) hash;
+        int secondHash = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (firstHash + i * secondHash) & mask;
+            bits[bit >>> 6] |= 1L << bit;
+        }
+        valueCount++;
+    }
+
+    public boolean mightContain(Block block, int position)
+    {
+        if (block.isNull(position)) {
+            return false;
+        }
+        long hash = mix(TypeUtils.hashPosition(type, block, position));
+        int firstHash = (int) hash;
+        int secondHash = (int) (hash >>> 32);
+        for (int i = 0; i < HASH_FUNCTIONS; i++) {
+            int bit = (firstHash + i * secondHash) & mask;
+            if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Returns true if so many values were added that the filter is about to lose its selectivity.
+     */
+    public boolean isFull()
+    {
+        return valueCount > (mask + 1L) / MIN_BITS_PER_VALUE;
+    }
+
+    /**
+     * Returns true if so many bits are set that applying the filter is not worth its cost.
+     */
+    public boolean isSaturated()
+    {
+        long setBits = 0;
+        for (long word : bits) {
+            setBits += Long.bitCount(word);
+        }
+        return setBits > (mask + 1L) * MAX_FILL_RATIO;
+    }
+
+    /**
+     * Returns a filter that contains the values of both filters.
+     */
+    public DynamicFilterBloomFilter union(DynamicFilterBloomFilter other)
+    {
+        checkCompatible(other);
+        long[] result = new long[bits.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bits[i] | other.bits[i];
+        }
+        return new DynamicFilterBloomFilter(type, result, valueCount + other.valueCount);
+    }
+
+    /**
+     * Returns a filter that contains (at least) the values contained by both filters.
+     */
+    public DynamicFilterBloomFilter intersect(DynamicFilterBloomFilter other)
+    {
+        checkCompatible(other);
+        long[] result = new long[bits.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bits[i] & other.bits[i];
+        }
+        return new DynamicFilterBloomFilter(type, result, min(valueCount, other.valueCount));
+    }
+
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(bits);
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("type", type)
+                .add("bitCount", mask + 1L)
+                .add("valueCount", valueCount)
+                .toString();
+    }
+
+    private void checkCompatible(DynamicFilterBloomFilter other)
+    {
+        checkArgument(type.equals(other.type), "bloom filters have different types: %s and %s", type, other.type);
+        checkArgument(bits.length == other.bits.length, "bloom filters have different sizes: %s and %s", bits.length, other.bits.length);
+    }
+
+    private static long mix(long hash)
+    {
+        // finalisation step of MurmurHash3, so that every bit of the hash depends on all bits of the value hash
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -29,6 +29,7 @@ import io.airlift.units.DataSize;
 import javax.annotation.Nullable;
 
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Consumer;
 
@@ -47,6 +48,8 @@ import static java.util.stream.Collectors.toSet;
  * The collected pages' value are used for creating a run-time filtering constraint (for probe-side table scan in an inner join).
  * We record all values for the run-time filter only for small build-side pages (which should be the case when using "broadcast" join).
  * For large inputs on build side, we can optionally record the min and max values per channel for orderable types (except Double and Real).
+ * When enabled, a bloom filter of all values is recorded per channel as well (except Double and Real), which still filters
+ * the probe side after the recorded values became too many to be described by a {@link TupleDomain}.
  */
 public class DynamicFilterSourceOperator
         implements Operator
@@ -92,6 +95,8 @@ public class DynamicFilterSourceOperator
         private final int maxFilterPositionsCount;
         private final DataSize maxFilterSize;
         private final int minMaxCollectionLimit;
+        private final Consumer<Map<String, DynamicFilterBloomFilter>> bloomFilterConsumer;
+        private final DataSize bloomFilterSize;
 
         private boolean closed;
 
@@ -102,7 +107,9 @@ public class DynamicFilterSourceOperator
                 List<Channel> channels,
                 int maxFilterPositionsCount,
                 DataSize maxFilterSize,
-                int minMaxCollectionLimit)
+                int minMaxCollectionLimit,
+                Consumer<Map<String, DynamicFilterBloomFilter>> bloomFilterConsumer,
+                DataSize bloomFilterSize)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -117,6 +124,8 @@ public class DynamicFilterSourceOperator
             this.maxFilterPositionsCount = maxFilterPositionsCount;
             this.maxFilterSize = maxFilterSize;
             this.minMaxCollectionLimit = minMaxCollectionLimit;
+            this.bloomFilterConsumer = requireNonNull(bloomFilterConsumer, "bloomFilterConsumer is null");
+            this.bloomFilterSize = requireNonNull(bloomFilterSize, "bloomFilterSize is null");
         }
 
         @Override
@@ -130,7 +139,9 @@ public class DynamicFilterSourceOperator
                     planNodeId,
                     maxFilterPositionsCount,
                     maxFilterSize,
-                    minMaxCollectionLimit);
+                    minMaxCollectionLimit,
+                    bloomFilterConsumer,
+                    bloomFilterSize);
         }
 
         @Override
@@ -153,6 +164,8 @@ public class DynamicFilterSourceOperator
     private final long maxFilterSizeInBytes;
     private final List<Channel> channels;
     private final List<Integer> minMaxChannels;
+    private final Consumer<Map<String, DynamicFilterBloomFilter>> bloomFilterConsumer;
+    private final List<Integer> bloomFilterChannels;
 
     private boolean finished;
     private Page current;
@@ -169,6 +182,10 @@ public class DynamicFilterSourceOperator
     @Nullable
     private Block[] maxValues;
 
+    // null for channels without a bloom filter; a filter is dropped once it holds too many values
+    // and handed over to the consumer when the operator finishes
+    private final DynamicFilterBloomFilter[] bloomFilters;
+
     private DynamicFilterSourceOperator(
             OperatorContext context,
             Consumer<TupleDomain<String>> dynamicPredicateConsumer,
@@ -176,7 +193,9 @@ public class DynamicFilterSourceOperator
             PlanNodeId planNodeId,
             int maxFilterPositionsCount,
             DataSize maxFilterSize,
-            int minMaxCollectionLimit)
+            int minMaxCollectionLimit,
+            Consumer<Map<String, DynamicFilterBloomFilter>> bloomFilterConsumer,
+            DataSize bloomFilterSize)
     {
         this.context = requireNonNull(context, "context is null");
         this.maxFilterPositionsCount = maxFilterPositionsCount;
@@ -187,13 +206,21 @@ public class DynamicFilterSourceOperator
 
         this.blockBuilders = new BlockBuilder[channels.size()];
         this.valueSets = new TypedSet[channels.size()];
+        this.bloomFilterConsumer = requireNonNull(bloomFilterConsumer, "bloomFilterConsumer is null");
+        this.bloomFilters = new DynamicFilterBloomFilter[channels.size()];
         ImmutableList.Builder<Integer> minMaxChannelsBuilder = ImmutableList.builder();
+        ImmutableList.Builder<Integer> bloomFilterChannelsBuilder = ImmutableList.builder();
         for (int channelIndex = 0; channelIndex < channels.size(); ++channelIndex) {
             Type type = channels.get(channelIndex).getType();
             // Skipping DOUBLE and REAL in collectMinMaxValues to avoid dealing with NaN values
             if (minMaxCollectionLimit > 0 && type.isOrderable() && type != DOUBLE && type != REAL) {
                 minMaxChannelsBuilder.add(channelIndex);
             }
+            // Skipping DOUBLE and REAL in bloom filters as well, since NaN and negative zero values hash inconsistently with equality
+            if (bloomFilterSize.toBytes() > 0 && type != DOUBLE && type != REAL) {
+                bloomFilterChannelsBuilder.add(channelIndex);
+                bloomFilters[channelIndex] = new DynamicFilterBloomFilter(type, bloomFilterSize);
+            }
             this.blockBuilders[channelIndex] = type.createBlockBuilder(null, EXPECTED_BLOCK_BUILDER_SIZE);
             this.valueSets[channelIndex] = new TypedSet(
                     type,
@@ -204,6 +231,7 @@ public class DynamicFilterSourceOperator
         }
         this.minMaxCollectionLimit = minMaxCollectionLimit;
         minMaxChannels = minMaxChannelsBuilder.build();
+        bloomFilterChannels = bloomFilterChannelsBuilder.build();
         if (!minMaxChannels.isEmpty()) {
             minValues = new Block[channels.size()];
             maxValues = new Block[channels.size()];
@@ -227,6 +255,7 @@ public class DynamicFilterSourceOperator
     {
         verify(!finished, "DynamicFilterSourceOperator: addInput() shouldn't not be called after finish()");
         current = page;
+        updateBloomFilters(page);
         if (valueSets == null) {
             // the exact predicate became too large.
             if (minValues == null) {
@@ -265,6 +294,24 @@ public class DynamicFilterSourceOperator
         }
     }
 
+    private void updateBloomFilters(Page page)
+    {
+        for (int channelIndex : bloomFilterChannels) {
+            DynamicFilterBloomFilter bloomFilter = bloomFilters[channelIndex];
+            if (bloomFilter == null) {
+                continue;
+            }
+            Block block = page.getBlock(channels.get(channelIndex).getIndex());
+            for (int position = 0; position < block.getPositionCount(); ++position) {
+                bloomFilter.add(block, position);
+            }
+            if (bloomFilter.isFull()) {
+                // the filter would let most of the probe-side values pass
+                bloomFilters[channelIndex] = null;
+            }
+        }
+    }
+
     private void handleTooLargePredicate()
     {
         // The resulting predicate is too large
@@ -359,6 +406,7 @@ public class DynamicFilterSourceOperator
             return;
         }
         finished = true;
+        publishBloomFilters();
         ImmutableMap.Builder<String, Domain> domainsBuilder = ImmutableMap.builder();
         if (valueSets == null) {
             if (minValues == null) {
@@ -399,6 +447,21 @@ public class DynamicFilterSourceOperator
         dynamicPredicateConsumer.accept(TupleDomain.withColumnDomains(domainsBuilder.build()));
     }
 
+    private void publishBloomFilters()
+    {
+        if (bloomFilterChannels.isEmpty()) {
+            return;
+        }
+        ImmutableMap.Builder<String, DynamicFilterBloomFilter> bloomFiltersBuilder = ImmutableMap.builder();
+        for (int channelIndex : bloomFilterChannels) {
+            if (bloomFilters[channelIndex] != null) {
+                bloomFiltersBuilder.put(channels.get(channelIndex).getFilterId(), bloomFilters[channelIndex]);
+                bloomFilters[channelIndex] = null;
+            }
+        }
+        bloomFilterConsumer.accept(bloomFiltersBuilder.build());
+    }
+
     private Domain convertToDomain(Type type, Block block)
     {
         ImmutableList.Builder<Object> values = ImmutableList.builder();
@@ -83,9 +83,7 @@ public class ExchangeClient
     private static final SerializedPage NO_MORE_PAGES = new SerializedPage(EMPTY_SLICE, PageCodecMarker.none(), 0, 0, 0);
     private static final ListenableFuture<?> NOT_BLOCKED = immediateFuture(null);
 
-    private final long bufferCapacity;
     private final DataSize maxResponseSize;
-    private final int concurrentRequestMultiplier;
     private final Duration maxErrorDuration;
     private final boolean acknowledgePages;
     private final HttpClient httpClient;
@@ -118,6 +116,8 @@ public class ExchangeClient
     private long successfulRequests;
     @GuardedBy("this")
     private final ExponentialMovingAverage responseSizeExponentialMovingAverage;
+    @GuardedBy("this")
+    private final AdaptiveExchangeController adaptiveController;
 
     private final AtomicBoolean closed = new AtomicBoolean();
     private final AtomicReference<Throwable> failure = new AtomicReference<>();
@@ -125,8 +125,6 @@ public class ExchangeClient
     private final LocalMemoryContext systemMemoryContext;
     private final Executor pageBufferClientCallbackExecutor;
 
-    // ExchangeClientStatus.mergeWith assumes all clients have the same bufferCapacity.
-    // Please change that method accordingly when this assumption becomes not true.
     public ExchangeClient(
             DataSize bufferCapacity,
             DataSize maxResponseSize,
@@ -140,11 +138,57 @@ public class ExchangeClient
             ScheduledExecutorService scheduler,
             LocalMemoryContext systemMemoryContext,
             Executor pageBufferClientCallbackExecutor)
+    {
+        this(
+                bufferCapacity,
+                maxResponseSize,
+                concurrentRequestMultiplier,
+                false,
+                bufferCapacity,
+                maxErrorDuration,
+                acknowledgePages,
+                asyncPageTransportEnabled,
+                responseSizeExponentialMovingAverageDecayingAlpha,
+                httpClient,
+                driftClient,
+                scheduler,
+                systemMemoryContext,
+                pageBufferClientCallbackExecutor);
+    }
+
+    /**
+     * @param adaptiveConcurrencyEnabled start with a buffer of {@code minBufferCapacity} and one request per response
+     * that fits in it, and adapt both up to {@code bufferCapacity} and {@code concurrentRequestMultiplier}
+     * (see {@link AdaptiveExchangeController})
+     */
+    public ExchangeClient(
+            DataSize bufferCapacity,
+            DataSize maxResponseSize,
+            int concurrentRequestMultiplier,
+            boolean adaptiveConcurrencyEnabled,
+            DataSize minBufferCapacity,
+            Duration maxErrorDuration,
+            boolean acknowledgePages,
+            boolean asyncPageTransportEnabled,
+            double responseSizeExponentialMovingAverageDecayingAlpha,
+            HttpClient httpClient,
+            DriftClient<ThriftTaskClient> driftClient,
+            ScheduledExecutorService scheduler,
+            LocalMemoryContext systemMemoryContext,
+            Executor pageBufferClientCallbackExecutor)
     {
         checkArgument(responseSizeExponentialMovingAverageDecayingAlpha >= 0.0 && responseSizeExponentialMovingAverageDecayingAlpha <= 1.0, "responseSizeExponentialMovingAverageDecayingAlpha must be between 0 and 1: %s", responseSizeExponentialMovingAverageDecayingAlpha);
-        this.bufferCapacity = bufferCapacity.toBytes();
         this.maxResponseSize = maxResponseSize;
-        this.concurrentRequestMultiplier = concurrentRequestMultiplier;
+        if (adaptiveConcurrencyEnabled) {
+            this.adaptiveController = new AdaptiveExchangeController(
+                    min(minBufferCapacity.toBytes(), bufferCapacity.toBytes()),
+                    bufferCapacity.toBytes(),
+                    1,
+                    concurrentRequestMultiplier);
+        }
+        else {
+            this.adaptiveController = AdaptiveExchangeController.fixed(bufferCapacity.toBytes(), concurrentRequestMultiplier);
+        }
         this.maxErrorDuration = maxErrorDuration;
         this.acknowledgePages = acknowledgePages;
         this.asyncPageTransportEnabled = asyncPageTransportEnabled;
@@ -172,7 +216,16 @@ public class ExchangeClient
             if (bufferedPages > 0 && pageBuffer.peekLast() == NO_MORE_PAGES) {
                 bufferedPages--;
             }
-            return new ExchangeClientStatus(bufferRetainedSizeInBytes, maxBufferRetainedSizeInBytes, responseSizeExponentialMovingAverage.get(), successfulRequests, bufferedPages, noMoreLocations, pageBufferClientStatus);
+            return new ExchangeClientStatus(
+                    bufferRetainedSizeInBytes,
+                    maxBufferRetainedSizeInBytes,
+                    responseSizeExponentialMovingAverage.get(),
+                    successfulRequests,
+                    bufferedPages,
+                    noMoreLocations,
+                    pageBufferClientStatus,
+                    adaptiveController.getBufferCapacity(),
+                    adaptiveController.getConcurrentRequestMultiplier());
         }
     }
 
@@ -294,6 +347,14 @@ public class ExchangeClient
 
         SerializedPage page = pageBuffer.poll();
         if (page == null) {
+            if (adaptiveController.isAdaptive()) {
+                synchronized (this) {
+                    // the consumer waits for data, so fetch more data at once
+                    if (adaptiveController.bufferDrained()) {
+                        scheduleRequestIfNecessary();
+                    }
+                }
+            }
             return null;
         }
 
@@ -367,12 +428,13 @@ public class ExchangeClient
             return;
         }
 
-        long neededBytes = bufferCapacity - bufferRetainedSizeInBytes;
+        long neededBytes = adaptiveController.getBufferCapacity() - bufferRetainedSizeInBytes;
         if (neededBytes <= 0) {
+            adaptiveController.bufferFull();
             return;
         }
         long averageResponseSize = max(1, responseSizeExponentialMovingAverage.get());
-        int clientCount = (int) ((1.0 * neededBytes / averageResponseSize) * concurrentRequestMultiplier);
+        int clientCount = (int) ((1.0 * neededBytes / averageResponseSize) * adaptiveController.getConcurrentRequestMultiplier());
         clientCount = max(clientCount, 1);
 
         int pendingClients = allClients.size() - queuedClients.size() - completedClients.size();
@@ -442,6 +504,7 @@ public class ExchangeClient
 
             successfulRequests++;
             responseSizeExponentialMovingAverage.update(responseSize);
+            adaptiveController.responseReceived();
         }
         // Trigger notifications after releasing the lock
         notifyListeners(notify);
@@ -30,6 +30,8 @@ public class ExchangeClientConfig
 {
     private DataSize maxBufferSize = new DataSize(32, Unit.MEGABYTE);
     private int concurrentRequestMultiplier = 3;
+    private boolean adaptiveConcurrencyEnabled;
+    private DataSize minBufferSize = new DataSize(4, Unit.MEGABYTE);
     private Duration minErrorDuration = new Duration(1, TimeUnit.MINUTES);
     private Duration maxErrorDuration = new Duration(5, TimeUnit.MINUTES);
     private Duration asyncPageTransportTimeout = new Duration(60, TimeUnit.SECONDS);
@@ -66,6 +68,31 @@ public class ExchangeClientConfig
         return this;
     }
 
+    public boolean isAdaptiveConcurrencyEnabled()
+    {
+        return adaptiveConcurrencyEnabled;
+    }
+
+    @Config("exchange.adaptive-concurrency-enabled")
+    public ExchangeClientConfig setAdaptiveConcurrencyEnabled(boolean adaptiveConcurrencyEnabled)
+    {
+        this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
+        return this;
+    }
+
+    @NotNull
+    public DataSize getMinBufferSize()
+    {
+        return minBufferSize;
+    }
+
+    @Config("exchange.min-buffer-size")
+    public ExchangeClientConfig setMinBufferSize(DataSize minBufferSize)
+    {
+        this.minBufferSize = minBufferSize;
+        return this;
+    }
+
     @Deprecated
     public Duration getMinErrorDuration()
     {
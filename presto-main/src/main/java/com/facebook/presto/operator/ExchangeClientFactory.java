@@ -41,6 +41,8 @@ public class ExchangeClientFactory
 {
     private final DataSize maxBufferedBytes;
     private final int concurrentRequestMultiplier;
+    private final boolean adaptiveConcurrencyEnabled;
+    private final DataSize minBufferedBytes;
     private final Duration maxErrorDuration;
     private final HttpClient httpClient;
     private final DriftClient<ThriftTaskClient> driftClient;
@@ -63,6 +65,8 @@ public class ExchangeClientFactory
                 config.getMaxBufferSize(),
                 config.getMaxResponseSize(),
                 config.getConcurrentRequestMultiplier(),
+                config.isAdaptiveConcurrencyEnabled(),
+                config.getMinBufferSize(),
                 config.getMaxErrorDuration(),
                 config.isAcknowledgePages(),
                 config.isAsyncPageTransportEnabled(),
@@ -77,6 +81,8 @@ public class ExchangeClientFactory
             DataSize maxBufferedBytes,
             DataSize maxResponseSize,
             int concurrentRequestMultiplier,
+            boolean adaptiveConcurrencyEnabled,
+            DataSize minBufferedBytes,
             Duration maxErrorDuration,
             boolean acknowledgePages,
             boolean asyncPageTransportEnabled,
@@ -88,6 +94,8 @@ public class ExchangeClientFactory
     {
         this.maxBufferedBytes = requireNonNull(maxBufferedBytes, "maxBufferedBytes is null");
         this.concurrentRequestMultiplier = concurrentRequestMultiplier;
+        this.adaptiveConcurrencyEnabled = adaptiveConcurrencyEnabled;
+        this.minBufferedBytes = requireNonNull(minBufferedBytes, "minBufferedBytes is null");
         this.maxErrorDuration = requireNonNull(maxErrorDuration, "maxErrorDuration is null");
         this.acknowledgePages = acknowledgePages;
         this.asyncPageTransportEnabled = asyncPageTransportEnabled;
@@ -108,6 +116,7 @@ public class ExchangeClientFactory
         this.responseSizeExponentialMovingAverageDecayingAlpha = responseSizeExponentialMovingAverageDecayingAlpha;
 
         checkArgument(maxBufferedBytes.toBytes() > 0, "maxBufferSize must be at least 1 byte: %s", maxBufferedBytes);
+        checkArgument(minBufferedBytes.toBytes() > 0, "minBufferSize must be at least 1 byte: %s", minBufferedBytes);
         checkArgument(maxResponseSize.toBytes() > 0, "maxResponseSize must be at least 1 byte: %s", maxResponseSize);
         checkArgument(concurrentRequestMultiplier > 0, "concurrentRequestMultiplier must be at least 1: %s", concurrentRequestMultiplier);
         checkArgument(responseSizeExponentialMovingAverageDecayingAlpha >= 0.0 && responseSizeExponentialMovingAverageDecayingAlpha <= 1.0, "responseSizeExponentialMovingAverageDecayingAlpha must be between 0 and 1: %s", responseSizeExponentialMovingAverageDecayingAlpha);
@@ -133,6 +142,8 @@ public class ExchangeClientFactory
                 maxBufferedBytes,
                 maxResponseSize,
                 concurrentRequestMultiplier,
+                adaptiveConcurrencyEnabled,
+                minBufferedBytes,
                 maxErrorDuration,
                 acknowledgePages,
                 asyncPageTransportEnabled,
@@ -37,6 +37,8 @@ public class ExchangeClientStatus
     private final int bufferedPages;
     private final boolean noMoreLocations;
     private final List<PageBufferClientStatus> pageBufferClientStatuses;
+    private final long bufferCapacity;
+    private final int concurrentRequestMultiplier;
 
     @JsonCreator
     @ThriftConstructor
@@ -47,7 +49,9 @@ public class ExchangeClientStatus
             @JsonProperty("successfulRequestsCount") long successfulRequestsCount,
             @JsonProperty("bufferedPages") int bufferedPages,
             @JsonProperty("noMoreLocations") boolean noMoreLocations,
-            @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses)
+            @JsonProperty("pageBufferClientStatuses") List<PageBufferClientStatus> pageBufferClientStatuses,
+            @JsonProperty("bufferCapacity") long bufferCapacity,
+            @JsonProperty("concurrentRequestMultiplier") int concurrentRequestMultiplier)
     {
         this.bufferedBytes = bufferedBytes;
         this.maxBufferedBytes = maxBufferedBytes;
@@ -56,6 +60,8 @@ public class ExchangeClientStatus
         this.bufferedPages = bufferedPages;
         this.noMoreLocations = noMoreLocations;
         this.pageBufferClientStatuses = ImmutableList.copyOf(requireNonNull(pageBufferClientStatuses, "pageBufferClientStatuses is null"));
+        this.bufferCapacity = bufferCapacity;
+        this.concurrentRequestMultiplier = concurrentRequestMultiplier;
     }
 
     @JsonProperty
@@ -107,6 +113,20 @@ public class ExchangeClientStatus
         return pageBufferClientStatuses;
     }
 
+    @JsonProperty
+    @ThriftField(8)
+    public long getBufferCapacity()
+    {
+        return bufferCapacity;
+    }
+
+    @JsonProperty
+    @ThriftField(9)
+    public int getConcurrentRequestMultiplier()
+    {
+        return concurrentRequestMultiplier;
+    }
+
     @Override
     public boolean isFinal()
     {
@@ -124,6 +144,8 @@ public class ExchangeClientStatus
                 .add("bufferedPages", bufferedPages)
                 .add("noMoreLocations", noMoreLocations)
                 .add("pageBufferClientStatuses", pageBufferClientStatuses)
+                .add("bufferCapacity", bufferCapacity)
+                .add("concurrentRequestMultiplier", concurrentRequestMultiplier)
                 .toString();
     }
 
@@ -131,13 +153,15 @@ public class ExchangeClientStatus
     public ExchangeClientStatus mergeWith(ExchangeClientStatus other)
     {
         return new ExchangeClientStatus(
-                (bufferedBytes + other.bufferedBytes) / 2, // this is correct as long as all clients have the same buffer size (capacity)
+                (bufferedBytes + other.bufferedBytes) / 2, // an approximation when adaptive clients have grown their buffers to different capacities
                 Math.max(maxBufferedBytes, other.maxBufferedBytes),
                 mergeAvgs(averageBytesPerRequest, successfulRequestsCount, other.averageBytesPerRequest, other.successfulRequestsCount),
                 successfulRequestsCount + other.successfulRequestsCount,
                 bufferedPages + other.bufferedPages,
                 noMoreLocations && other.noMoreLocations, // if at least one has some locations, merge has some too
-                ImmutableList.of()); // pageBufferClientStatuses may be long, so we don't want to combine the lists
+                ImmutableList.of(), // pageBufferClientStatuses may be long, so we don't want to combine the lists
+                Math.max(bufferCapacity, other.bufferCapacity), // the largest capacity any client has adapted to
+                Math.max(concurrentRequestMultiplier, other.concurrentRequestMultiplier));
     }
 
     private static long mergeAvgs(long value1, long count1, long value2, long count2)
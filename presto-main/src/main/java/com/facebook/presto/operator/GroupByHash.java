@@ -53,6 +53,10 @@ public interface GroupByHash
         if (hashTypes.size() == 1 && hashTypes.get(0).equals(BIGINT) && hashChannels.length == 1) {
             return new BigintGroupByHash(hashChannels[0], inputHashChannel.isPresent(), expectedSize, updateMemory);
         }
+        // a single dictionary encoded channel is better handled by the dictionary processing of MultiChannelGroupByHash
+        if (PackedGroupByHash.isSupported(hashTypes) && (hashTypes.size() > 1 || !processDictionary)) {
+            return new PackedGroupByHash(hashTypes, hashChannels, inputHashChannel, expectedSize, updateMemory);
+        }
         return new MultiChannelGroupByHash(hashTypes, hashChannels, inputHashChannel, expectedSize, processDictionary, joinCompiler, updateMemory);
     }
 
@@ -15,14 +15,18 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.IntBigArray;
+import com.facebook.presto.common.array.LongBigArray;
 import com.facebook.presto.common.array.ObjectBigArray;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.ints.AbstractIntIterator;
 import it.unimi.dsi.fastutil.ints.IntArrayFIFOQueue;
 import it.unimi.dsi.fastutil.ints.IntIterator;
+import it.unimi.dsi.fastutil.ints.IntIterators;
 import it.unimi.dsi.fastutil.ints.IntOpenHashSet;
 import it.unimi.dsi.fastutil.ints.IntSet;
 import it.unimi.dsi.fastutil.objects.ObjectHeapPriorityQueue;
@@ -105,7 +109,47 @@ public class GroupedTopNBuilder
 
     public Iterator<Page> buildResult()
     {
-        return new ResultIterator();
+        return new ResultIterator(IntIterators.fromTo(0, groupByHash.getGroupCount()), produceRowNumber);
+    }
+
+    /**
+     * Returns the top N rows of each group without row numbers. Groups are ordered by the hash
+     * {@param hashGenerator} computes for their rows, which is the order {@link MergeHashSort}
+     * expects when merging spilled results.
+     */
+    public Iterator<Page> buildHashSortedResult(HashGenerator hashGenerator)
+    {
+        int groupCount = groupByHash.getGroupCount();
+        LongBigArray groupHashes = new LongBigArray();
+        groupHashes.ensureCapacity(groupCount);
+        IntBigArray groupIds = new IntBigArray();
+        groupIds.ensureCapacity(groupCount);
+        for (int groupId = 0; groupId < groupCount; groupId++) {
+            // all rows of a group share the same partition key, so any of them can be hashed
+            Row row = groupedRows.get(groupId).first();
+            groupHashes.set(groupId, hashGenerator.hashPosition(row.getPosition(), pageReferences.get(row.getPageId()).getPage()));
+            groupIds.set(groupId, groupId);
+        }
+        groupIds.sort(0, groupCount, (leftGroupId, rightGroupId) -> Long.compare(groupHashes.get(leftGroupId), groupHashes.get(rightGroupId)));
+
+        return new ResultIterator(
+                new AbstractIntIterator()
+                {
+                    private int position;
+
+                    @Override
+                    public boolean hasNext()
+                    {
+                        return position < groupCount;
+                    }
+
+                    @Override
+                    public int nextInt()
+                    {
+                        return groupIds.get(position++);
+                    }
+                },
+                false);
     }
 
     public long getEstimatedSizeInBytes()
@@ -399,9 +443,9 @@ public class GroupedTopNBuilder
 
         private final PageBuilder pageBuilder;
         // we may have 0 groups if there is no input page processed
-        private final int groupCount = groupByHash.getGroupCount();
+        private final IntIterator groupIds;
+        private final boolean produceRowNumber;
 
-        private int currentGroupNumber;
         private long currentGroupSizeInBytes;
 
         // the row number of the current position in the group
@@ -411,8 +455,10 @@ public class GroupedTopNBuilder
 
         private ObjectBigArray<Row> currentRows;
 
-        ResultIterator()
+        ResultIterator(IntIterator groupIds, boolean produceRowNumber)
         {
+            this.groupIds = requireNonNull(groupIds, "groupIds is null");
+            this.produceRowNumber = produceRowNumber;
             if (produceRowNumber) {
                 pageBuilder = new PageBuilder(new ImmutableList.Builder<Type>().add(sourceTypes).add(BIGINT).build());
             }
@@ -471,11 +517,10 @@ public class GroupedTopNBuilder
 
         private void nextGroupedRows()
         {
-            if (currentGroupNumber < groupCount) {
-                RowHeap rows = groupedRows.getAndSet(currentGroupNumber, null);
+            if (groupIds.hasNext()) {
+                RowHeap rows = groupedRows.getAndSet(groupIds.nextInt(), null);
                 verify(rows != null && !rows.isEmpty(), "impossible to have inserted a group without a witness row");
                 currentGroupSizeInBytes = rows.getEstimatedSizeInBytes();
-                currentGroupNumber++;
                 currentGroupSize = rows.size();
 
                 // sort output rows in a big array in case there are too many rows
@@ -21,6 +21,8 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.builder.HashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder;
+import com.facebook.presto.operator.aggregation.builder.PartialAggregationController;
+import com.facebook.presto.operator.aggregation.builder.SkipAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.SpillableHashAggregationBuilder;
 import com.facebook.presto.operator.scalar.CombineHashFunction;
 import com.facebook.presto.spi.function.aggregation.Accumulator;
@@ -38,11 +40,13 @@ import io.airlift.units.DataSize;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.OptionalLong;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder.toTypes;
 import static com.facebook.presto.sql.planner.optimizations.HashGenerationOptimizer.INITIAL_HASH_VALUE;
 import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -78,6 +82,7 @@ public class HashAggregationOperator
         private final SpillerFactory spillerFactory;
         private final JoinCompiler joinCompiler;
         private final boolean useSystemMemory;
+        private final Optional<PartialAggregationController> partialAggregationController;
 
         private boolean closed;
 
@@ -140,6 +145,48 @@ public class HashAggregationOperator
                 SpillerFactory spillerFactory,
                 JoinCompiler joinCompiler,
                 boolean useSystemMemory)
+        {
+            this(operatorId,
+                    planNodeId,
+                    groupByTypes,
+                    groupByChannels,
+                    preGroupedChannels,
+                    globalAggregationGroupIds,
+                    step,
+                    produceDefaultOutput,
+                    accumulatorFactories,
+                    hashChannel,
+                    groupIdChannel,
+                    expectedGroups,
+                    maxPartialMemory,
+                    spillEnabled,
+                    unspillMemoryLimit,
+                    spillerFactory,
+                    joinCompiler,
+                    useSystemMemory,
+                    Optional.empty());
+        }
+
+        public HashAggregationOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> groupByTypes,
+                List<Integer> groupByChannels,
+                List<Integer> preGroupedChannels,
+                List<Integer> globalAggregationGroupIds,
+                Step step,
+                boolean produceDefaultOutput,
+                List<AccumulatorFactory> accumulatorFactories,
+                Optional<Integer> hashChannel,
+                Optional<Integer> groupIdChannel,
+                int expectedGroups,
+                Optional<DataSize> maxPartialMemory,
+                boolean spillEnabled,
+                DataSize unspillMemoryLimit,
+                SpillerFactory spillerFactory,
+                JoinCompiler joinCompiler,
+                boolean useSystemMemory,
+                Optional<PartialAggregationController> partialAggregationController)
         {
             this(operatorId,
                     planNodeId,
@@ -159,7 +206,8 @@ public class HashAggregationOperator
                     DataSize.succinctBytes((long) (unspillMemoryLimit.toBytes() * MERGE_WITH_MEMORY_RATIO)),
                     spillerFactory,
                     joinCompiler,
-                    useSystemMemory);
+                    useSystemMemory,
+                    partialAggregationController);
         }
 
         @VisibleForTesting
@@ -183,6 +231,51 @@ public class HashAggregationOperator
                 SpillerFactory spillerFactory,
                 JoinCompiler joinCompiler,
                 boolean useSystemMemory)
+        {
+            this(operatorId,
+                    planNodeId,
+                    groupByTypes,
+                    groupByChannels,
+                    preGroupedChannels,
+                    globalAggregationGroupIds,
+                    step,
+                    produceDefaultOutput,
+                    accumulatorFactories,
+                    hashChannel,
+                    groupIdChannel,
+                    expectedGroups,
+                    maxPartialMemory,
+                    spillEnabled,
+                    memoryLimitForMerge,
+                    memoryLimitForMergeWithMemory,
+                    spillerFactory,
+                    joinCompiler,
+                    useSystemMemory,
+                    Optional.empty());
+        }
+
+        @VisibleForTesting
+        HashAggregationOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                List<? extends Type> groupByTypes,
+                List<Integer> groupByChannels,
+                List<Integer> preGroupedChannels,
+                List<Integer> globalAggregationGroupIds,
+                Step step,
+                boolean produceDefaultOutput,
+                List<AccumulatorFactory> accumulatorFactories,
+                Optional<Integer> hashChannel,
+                Optional<Integer> groupIdChannel,
+                int expectedGroups,
+                Optional<DataSize> maxPartialMemory,
+                boolean spillEnabled,
+                DataSize memoryLimitForMerge,
+                DataSize memoryLimitForMergeWithMemory,
+                SpillerFactory spillerFactory,
+                JoinCompiler joinCompiler,
+                boolean useSystemMemory,
+                Optional<PartialAggregationController> partialAggregationController)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -203,6 +296,9 @@ public class HashAggregationOperator
             this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
             this.useSystemMemory = useSystemMemory;
+            this.partialAggregationController = requireNonNull(partialAggregationController, "partialAggregationController is null");
+            checkArgument(!partialAggregationController.isPresent() || (step.isInputRaw() && step.isOutputPartial()), "partial aggregation can only be skipped for a partial step");
+            checkArgument(!partialAggregationController.isPresent() || preGroupedChannels.isEmpty(), "partial aggregation can not be skipped in segmented aggregation mode");
         }
 
         @Override
@@ -229,7 +325,8 @@ public class HashAggregationOperator
                     memoryLimitForMergeWithMemory,
                     spillerFactory,
                     joinCompiler,
-                    useSystemMemory);
+                    useSystemMemory,
+                    partialAggregationController);
             return hashAggregationOperator;
         }
 
@@ -261,7 +358,8 @@ public class HashAggregationOperator
                     memoryLimitForMergeWithMemory,
                     spillerFactory,
                     joinCompiler,
-                    useSystemMemory);
+                    useSystemMemory,
+                    partialAggregationController.map(PartialAggregationController::duplicate));
         }
     }
 
@@ -284,6 +382,7 @@ public class HashAggregationOperator
     private final JoinCompiler joinCompiler;
     private final boolean useSystemMemory;
     private final Optional<PagesHashStrategy> preGroupedHashStrategy;
+    private final Optional<PartialAggregationController> partialAggregationController;
 
     private final List<Type> types;
     private final HashCollisionsCounter hashCollisionsCounter;
@@ -295,6 +394,9 @@ public class HashAggregationOperator
     private boolean finished;
     private Page firstUnfinishedSegment;
     private Page remainingPageForSegmentedAggregation;
+    // rows added to the current aggregation builder, reported to the partial aggregation controller when it is flushed
+    private long inputRowsProcessed;
+    private long outputRowsProduced;
 
     // for yield when memory is not available
     private Work<?> unfinishedWork;
@@ -317,7 +419,8 @@ public class HashAggregationOperator
             DataSize memoryLimitForMergeWithMemory,
             SpillerFactory spillerFactory,
             JoinCompiler joinCompiler,
-            boolean useSystemMemory)
+            boolean useSystemMemory,
+            Optional<PartialAggregationController> partialAggregationController)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         requireNonNull(step, "step is null");
@@ -344,6 +447,7 @@ public class HashAggregationOperator
         this.hashCollisionsCounter = new HashCollisionsCounter(operatorContext);
         operatorContext.setInfoSupplier(hashCollisionsCounter);
         this.useSystemMemory = useSystemMemory;
+        this.partialAggregationController = requireNonNull(partialAggregationController, "partialAggregationController is null");
 
         checkState(ImmutableSet.copyOf(groupByChannels).containsAll(preGroupedChannels), "groupByChannels must include all channels in preGroupedChannels");
         this.preGroupedHashStrategy = preGroupedChannels.isEmpty()
@@ -396,6 +500,7 @@ public class HashAggregationOperator
         inputProcessed = true;
 
         initializeAggregationBuilderIfNeeded();
+        inputRowsProcessed += page.getPositionCount();
         processInputPage(page);
 
         // process the current page; save the unfinished work if we are waiting for memory
@@ -465,12 +570,15 @@ public class HashAggregationOperator
         }
 
         if (outputPages.isFinished()) {
+            reportFlush();
             closeAggregationBuilder();
             processRemainingPageForSegmentedAggregation();
             return null;
         }
 
-        return outputPages.getResult();
+        Page result = outputPages.getResult();
+        outputRowsProduced += result.getPositionCount();
+        return result;
     }
 
     @Override
@@ -546,6 +654,16 @@ public class HashAggregationOperator
         operatorContext.localRevocableMemoryContext().setBytes(0);
     }
 
+    private void reportFlush()
+    {
+        if (partialAggregationController.isPresent()) {
+            OptionalLong uniqueRowsProduced = aggregationBuilder instanceof SkipAggregationBuilder ? OptionalLong.empty() : OptionalLong.of(outputRowsProduced);
+            partialAggregationController.get().onFlush(inputRowsProcessed, uniqueRowsProduced);
+        }
+        inputRowsProcessed = 0;
+        outputRowsProduced = 0;
+    }
+
     private void processRemainingPageForSegmentedAggregation()
     {
         // Running in segmented aggregation mode, reopen the aggregation builder and process the remaining page.
@@ -563,7 +681,10 @@ public class HashAggregationOperator
             return;
         }
 
-        if (step.isOutputPartial() || !spillEnabled) {
+        if (partialAggregationController.isPresent() && partialAggregationController.get().isPartialAggregationDisabled()) {
+            aggregationBuilder = new SkipAggregationBuilder(groupByChannels, hashChannel, accumulatorFactories);
+        }
+        else if (step.isOutputPartial() || !spillEnabled) {
             aggregationBuilder = new InMemoryHashAggregationBuilder(
                     accumulatorFactories,
                     step,
@@ -597,6 +718,7 @@ public class HashAggregationOperator
     // Flush if one of the following is true:
     // - received finish() signal (no more input to come).
     // - it is a partial aggregation and has reached memory limit
+    // - it is a partial aggregation that is skipped and the last input page has been converted
     // - running in segmented aggregation mode and at least one segment has been fully processed
     private boolean shouldFlush()
     {
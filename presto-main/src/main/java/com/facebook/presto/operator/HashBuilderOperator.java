@@ -409,7 +409,7 @@ public class HashBuilderOperator
                 localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
                 localRevocableMemoryContext.setBytes(0);
                 lookupSourceChecksum = OptionalLong.of(lookupSourceSupplier.checksum());
-                lookupSourceSupplier = null;
+                releaseLookupSourceSupplier();
                 state = State.INPUT_SPILLED;
             });
             return spillIndex();
@@ -506,11 +506,12 @@ public class HashBuilderOperator
         }
 
         LookupSourceSupplier partition = buildLookupSource();
+        long lookupSourceSize = getInMemorySizeInBytes(partition);
         if (spillEnabled) {
-            localRevocableMemoryContext.setBytes(partition.get().getInMemorySizeInBytes());
+            localRevocableMemoryContext.setBytes(lookupSourceSize);
         }
         else {
-            localUserMemoryContext.setBytes(partition.get().getInMemorySizeInBytes(), enforceBroadcastMemoryLimit);
+            localUserMemoryContext.setBytes(lookupSourceSize, enforceBroadcastMemoryLimit);
         }
         lookupSourceNotNeeded = Optional.of(lookupSourceFactory.lendPartitionLookupSource(partitionIndex, partition));
 
@@ -528,7 +529,7 @@ public class HashBuilderOperator
         index.clear();
         localRevocableMemoryContext.setBytes(0);
         localUserMemoryContext.setBytes(index.getEstimatedSize().toBytes(), enforceBroadcastMemoryLimit);
-        lookupSourceSupplier = null;
+        releaseLookupSourceSupplier();
         close();
     }
 
@@ -596,7 +597,7 @@ public class HashBuilderOperator
         LookupSourceSupplier partition = buildLookupSource();
         lookupSourceChecksum.ifPresent(checksum ->
                 checkState(partition.checksum() == checksum, "Unspilled lookupSource checksum does not match original one"));
-        localUserMemoryContext.setBytes(partition.get().getInMemorySizeInBytes(), enforceBroadcastMemoryLimit);
+        localUserMemoryContext.setBytes(getInMemorySizeInBytes(partition), enforceBroadcastMemoryLimit);
 
         spilledLookupSourceHandle.setLookupSource(partition);
 
@@ -626,6 +627,21 @@ public class HashBuilderOperator
         return partition;
     }
 
+    private static long getInMemorySizeInBytes(LookupSourceSupplier partition)
+    {
+        try (LookupSource lookupSource = partition.get()) {
+            return lookupSource.getInMemorySizeInBytes();
+        }
+    }
+
+    private void releaseLookupSourceSupplier()
+    {
+        if (lookupSourceSupplier != null) {
+            lookupSourceSupplier.close();
+            lookupSourceSupplier = null;
+        }
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -650,7 +666,7 @@ public class HashBuilderOperator
             return;
         }
         // close() can be called in any state, due for example to query failure, and must clean resource up unconditionally
-        lookupSourceSupplier = null;
+        releaseLookupSourceSupplier();
         unspillInProgress = Optional.empty();
         state = State.CLOSED;
         finishMemoryRevoke = finishMemoryRevoke.map(ifPresent -> () -> {});
@@ -19,6 +19,17 @@ public interface HashGenerator
 {
     long hashPosition(int position, Page page);
 
+    /**
+     * Computes the hashes of all positions of the page into {@code hashes}.
+     * The result for every position must match {@link #hashPosition(int, Page)}.
+     */
+    default void hashPositions(Page page, long[] hashes)
+    {
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            hashes[position] = hashPosition(position, page);
+        }
+    }
+
     default int getPartition(int partitionCount, int position, Page page)
     {
         long rawHash = hashPosition(position, page);
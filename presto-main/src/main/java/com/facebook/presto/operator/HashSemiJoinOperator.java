@@ -19,17 +19,26 @@ import com.facebook.presto.common.block.BlockBuilder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.operator.SetBuilderOperator.SetSupplier;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 
+import java.io.IOException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
-import static com.facebook.airlift.concurrent.MoreFutures.tryGetFutureValue;
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Collections.emptyIterator;
 import static java.util.Objects.requireNonNull;
 
 public class HashSemiJoinOperator
@@ -46,9 +55,17 @@ public class HashSemiJoinOperator
         private final List<Type> probeTypes;
         private final int probeJoinChannel;
         private final Optional<Integer> probeJoinHashChannel;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
         private boolean closed;
 
-        public HashSemiJoinOperatorFactory(int operatorId, PlanNodeId planNodeId, SetSupplier setSupplier, List<? extends Type> probeTypes, int probeJoinChannel, Optional<Integer> probeJoinHashChannel)
+        public HashSemiJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                SetSupplier setSupplier,
+                List<? extends Type> probeTypes,
+                int probeJoinChannel,
+                Optional<Integer> probeJoinHashChannel,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -57,6 +74,8 @@ public class HashSemiJoinOperator
             checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
             this.probeJoinChannel = probeJoinChannel;
             this.probeJoinHashChannel = probeJoinHashChannel;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+            setSupplier.incrementProbeFactoryCount();
         }
 
         @Override
@@ -64,41 +83,66 @@ public class HashSemiJoinOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, HashSemiJoinOperator.class.getSimpleName());
-            return new HashSemiJoinOperator(operatorContext, setSupplier, probeJoinChannel, probeJoinHashChannel);
+            setSupplier.probeOperatorCreated();
+            return new HashSemiJoinOperator(operatorContext, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, partitioningSpillerFactory);
         }
 
         @Override
         public void noMoreOperators()
         {
+            if (closed) {
+                return;
+            }
             closed = true;
+            setSupplier.probeFactoryClosed();
         }
 
         @Override
         public OperatorFactory duplicate()
         {
-            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel);
+            return new HashSemiJoinOperatorFactory(operatorId, planNodeId, setSupplier, probeTypes, probeJoinChannel, probeJoinHashChannel, partitioningSpillerFactory);
         }
     }
 
+    private final SetSupplier setSupplier;
+    private final List<Type> probeTypes;
     private final int probeJoinChannel;
-    private final ListenableFuture<ChannelSet> channelSetFuture;
     private final Optional<Integer> probeHashChannel;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
     private ChannelSet channelSet;
     private Page outputPage;
     private boolean finishing;
+    private boolean closed;
+
+    // set when the build side has been spilled; input is then spilled with the same
+    // partitioning and joined partition by partition once the input is finished
+    private Optional<SpilledChannelSet> spilledChannelSet = Optional.empty();
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private int unspilledPartition;
+    private ListenableFuture<ChannelSet> unspilledPartitionSet;
+    private Iterator<Page> unspilledPages;
 
-    public HashSemiJoinOperator(OperatorContext operatorContext, SetSupplier channelSetFuture, int probeJoinChannel, Optional<Integer> probeHashChannel)
+    public HashSemiJoinOperator(
+            OperatorContext operatorContext,
+            SetSupplier setSupplier,
+            List<Type> probeTypes,
+            int probeJoinChannel,
+            Optional<Integer> probeHashChannel,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
         // todo pass in desired projection
-        requireNonNull(channelSetFuture, "hashProvider is null");
+        requireNonNull(setSupplier, "setSupplier is null");
         checkArgument(probeJoinChannel >= 0, "probeJoinChannel is negative");
 
-        this.channelSetFuture = channelSetFuture.getChannelSet();
+        this.setSupplier = setSupplier;
+        this.probeTypes = ImmutableList.copyOf(requireNonNull(probeTypes, "probeTypes is null"));
         this.probeJoinChannel = probeJoinChannel;
         this.probeHashChannel = probeHashChannel;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
     }
 
     @Override
@@ -116,26 +160,44 @@ public class HashSemiJoinOperator
     @Override
     public boolean isFinished()
     {
-        return finishing && outputPage == null;
+        if (!finishing || outputPage != null) {
+            return false;
+        }
+        // all spilled input has to be joined before the operator finishes
+        return !spilledChannelSet.isPresent() || unspilledPartition == spilledChannelSet.get().getPartitionCount();
     }
 
     @Override
     public ListenableFuture<?> isBlocked()
     {
-        return channelSetFuture;
+        if (!setSupplier.whenSetBuilt().isDone()) {
+            return setSupplier.whenSetBuilt();
+        }
+        if (unspilledPartitionSet != null && !unspilledPartitionSet.isDone()) {
+            // another probe is loading the partition
+            return unspilledPartitionSet;
+        }
+        return spillInProgress;
     }
 
     @Override
     public boolean needsInput()
     {
-        if (finishing || outputPage != null) {
+        if (finishing || outputPage != null || !spillInProgress.isDone()) {
             return false;
         }
 
-        if (channelSet == null) {
-            channelSet = tryGetFutureValue(channelSetFuture).orElse(null);
+        if (channelSet == null && !spilledChannelSet.isPresent()) {
+            if (!setSupplier.whenSetBuilt().isDone()) {
+                return false;
+            }
+            channelSet = setSupplier.getChannelSet().orElse(null);
+            if (channelSet == null) {
+                spilledChannelSet = setSupplier.acquireSpilledChannelSet();
+                verify(spilledChannelSet.isPresent(), "set is neither in memory nor spilled");
+            }
         }
-        return channelSet != null;
+        return true;
     }
 
     @Override
@@ -143,11 +205,99 @@ public class HashSemiJoinOperator
     {
         requireNonNull(page, "page is null");
         checkState(!finishing, "Operator is finishing");
-        // use an effectively-final local variable instead of the non-final instance field inside of the loop
-        ChannelSet channelSet = this.channelSet;
-        checkState(channelSet != null, "Set has not been built yet");
+        checkState(channelSet != null || spilledChannelSet.isPresent(), "Set has not been built yet");
         checkState(outputPage == null, "Operator still has pending output");
+        checkSpillSucceeded(spillInProgress);
+
+        if (spilledChannelSet.isPresent()) {
+            spillInProgress = spillInput(page);
+            return;
+        }
 
+        outputPage = probe(page, channelSet, channelSet.containsNull(), channelSet.isEmpty(), probeHashChannel);
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        if (outputPage == null && finishing && spilledChannelSet.isPresent()) {
+            return unspillAndProbe();
+        }
+
+        Page result = outputPage;
+        outputPage = null;
+        return result;
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        unspilledPartitionSet = null;
+        unspilledPages = null;
+        try (Closer closer = Closer.create()) {
+            closer.register(() -> setSupplier.probeOperatorClosed(spilledChannelSet.isPresent()));
+            closer.register(() -> {
+                // let other probes drop the partitions this operator has not gone through
+                if (spilledChannelSet.isPresent()) {
+                    for (int partition = unspilledPartition; partition < spilledChannelSet.get().getPartitionCount(); partition++) {
+                        spilledChannelSet.get().releasePartition(partition);
+                    }
+                }
+            });
+            spiller.ifPresent(closer::register);
+        }
+    }
+
+    private ListenableFuture<?> spillInput(Page page)
+    {
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(partitioningSpillerFactory.create(
+                    probeTypes,
+                    spilledChannelSet.get().createPartitionFunction(probeJoinChannel),
+                    operatorContext.getSpillContext().newLocalSpillContext(),
+                    operatorContext.aggregateSystemMemoryContext()));
+        }
+        return spiller.get().spill(page);
+    }
+
+    private Page unspillAndProbe()
+    {
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        SpilledChannelSet spilledChannelSet = this.spilledChannelSet.get();
+        while (unspilledPartition < spilledChannelSet.getPartitionCount()) {
+            if (unspilledPartitionSet == null) {
+                unspilledPartitionSet = spilledChannelSet.loadPartition(unspilledPartition);
+            }
+            if (!unspilledPartitionSet.isDone()) {
+                return null;
+            }
+            if (unspilledPages == null) {
+                unspilledPages = spiller.isPresent() ? spiller.get().getSpilledPages(unspilledPartition) : emptyIterator();
+            }
+            if (unspilledPages.hasNext()) {
+                // the probe hash channel is not used since the partition set is built without one
+                return probe(unspilledPages.next(), getFutureValue(unspilledPartitionSet), spilledChannelSet.containsNull(), false, Optional.empty());
+            }
+
+            spilledChannelSet.releasePartition(unspilledPartition);
+            unspilledPartition++;
+            unspilledPartitionSet = null;
+            unspilledPages = null;
+        }
+        return null;
+    }
+
+    private Page probe(Page page, ChannelSet channelSet, boolean containsNull, boolean isEmpty, Optional<Integer> probeHashChannel)
+    {
         // create the block builder for the new boolean column
         // we know the exact size required for the block
         BlockBuilder blockBuilder = BOOLEAN.createFixedSizeBlockBuilder(page.getPositionCount());
@@ -159,7 +309,7 @@ public class HashSemiJoinOperator
         // update hashing strategy to use probe cursor
         for (int position = 0; position < page.getPositionCount(); position++) {
             if (probeJoinNulls != null && probeJoinNulls.isNull(position)) {
-                if (channelSet.isEmpty()) {
+                if (isEmpty) {
                     BOOLEAN.writeBoolean(blockBuilder, false);
                 }
                 else {
@@ -175,7 +325,7 @@ public class HashSemiJoinOperator
                 else {
                     contains = channelSet.contains(position, probeJoinPage);
                 }
-                if (!contains && channelSet.containsNull()) {
+                if (!contains && containsNull) {
                     blockBuilder.appendNull();
                 }
                 else {
@@ -185,14 +335,6 @@ public class HashSemiJoinOperator
         }
 
         // add the new boolean column to the page
-        outputPage = page.appendColumn(blockBuilder.build());
-    }
-
-    @Override
-    public Page getOutput()
-    {
-        Page result = outputPage;
-        outputPage = null;
-        return result;
+        return page.appendColumn(blockBuilder.build());
     }
 }
@@ -0,0 +1,74 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.Arrays;
+
+import static io.airlift.slice.SizeOf.sizeOf;
+
+public final class HeapPagesHashTable
+        implements PagesHashTable
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(HeapPagesHashTable.class).instanceSize();
+
+    private final int[] key;
+    // Native array of hashes for faster collisions resolution compared
+    // to accessing values in blocks. We use bytes to reduce memory foot print
+    // and there is no performance gain from storing full hashes
+    private final byte[] positionToHashes;
+
+    public HeapPagesHashTable(int hashSize, int positionCount)
+    {
+        key = new int[hashSize];
+        Arrays.fill(key, -1);
+        positionToHashes = new byte[positionCount];
+    }
+
+    @Override
+    public int getKey(int slot)
+    {
+        return key[slot];
+    }
+
+    @Override
+    public void setKey(int slot, int position)
+    {
+        key[slot] = position;
+    }
+
+    @Override
+    public byte getPositionHash(int position)
+    {
+        return positionToHashes[position];
+    }
+
+    @Override
+    public void setPositionHash(int position, byte hash)
+    {
+        positionToHashes[position] = hash;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        return INSTANCE_SIZE + sizeOf(key) + sizeOf(positionToHashes);
+    }
+
+    @Override
+    public void close()
+    {
+    }
+}
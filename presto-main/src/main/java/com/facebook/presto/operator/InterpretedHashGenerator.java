@@ -90,6 +90,18 @@ public class InterpretedHashGenerator
         return result;
     }
 
+    @Override
+    public void hashPositions(Page page, long[] hashes)
+    {
+        // Note: this must logically match hashPosition(position, Page page)
+        int positionCount = page.getPositionCount();
+        BlockHashes.initialize(hashes, positionCount);
+        for (int i = 0; i < hashChannelTypes.length; i++) {
+            Block block = page.getBlock(hashChannels == null ? i : hashChannels[i]);
+            BlockHashes.combineHashes(hashChannelTypes[i], block, positionCount, hashes);
+        }
+    }
+
     @Override
     public String toString()
     {
@@ -41,6 +41,11 @@ public final class JoinHash
     @Nullable
     private final PositionLinks positionLinks;
 
+    private boolean closed;
+
+    /**
+     * The join hash takes over a reference to {@code pagesHash}, which it releases when it is closed.
+     */
     public JoinHash(PagesHash pagesHash, Optional<JoinFilterFunction> filterFunction, Optional<PositionLinks> positionLinks)
     {
         this.pagesHash = requireNonNull(pagesHash, "pagesHash is null");
@@ -127,5 +132,10 @@ public final class JoinHash
     @Override
     public void close()
     {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pagesHash.release();
     }
 }
@@ -24,6 +24,7 @@ import java.util.List;
 import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isFastInequalityJoin;
+import static com.facebook.presto.SystemSessionProperties.isJoinOffHeapHashTableEnabled;
 import static com.facebook.presto.operator.JoinUtils.channelsToPages;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.ImmutableList.toImmutableList;
@@ -39,6 +40,7 @@ public class JoinHashSupplier
     private final Optional<PositionLinks.Factory> positionLinks;
     private final Optional<JoinFilterFunctionFactory> filterFunctionFactory;
     private final List<JoinFilterFunctionFactory> searchFunctionFactories;
+    private boolean closed;
 
     public JoinHashSupplier(
             Session session,
@@ -71,7 +73,7 @@ public class JoinHashSupplier
         }
 
         this.pages = channelsToPages(channels);
-        this.pagesHash = new PagesHash(addresses, positionCount, pagesHashStrategy, positionLinksFactoryBuilder);
+        this.pagesHash = new PagesHash(addresses, positionCount, pagesHashStrategy, positionLinksFactoryBuilder, isJoinOffHeapHashTableEnabled(session));
         this.positionLinks = positionLinksFactoryBuilder.isEmpty() ? Optional.empty() : Optional.of(positionLinksFactoryBuilder.build());
     }
 
@@ -98,6 +100,7 @@ public class JoinHashSupplier
     {
         // We need to create new JoinFilterFunction per each thread using it, since those functions
         // are not thread safe...
+        pagesHash.retain();
         Optional<JoinFilterFunction> filterFunction =
                 filterFunctionFactory.map(factory -> factory.create(session.getSqlFunctionProperties(), addresses, pages));
         return new JoinHash(
@@ -110,4 +113,14 @@ public class JoinHashSupplier
                     return links.create(searchFunctions);
                 }));
     }
+
+    @Override
+    public synchronized void close()
+    {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pagesHash.release();
+    }
 }
@@ -15,6 +15,7 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
 import com.google.common.primitives.Ints;
 
 import javax.annotation.Nullable;
@@ -23,6 +24,8 @@ import java.util.List;
 import java.util.OptionalInt;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
 
 public class JoinProbe
 {
@@ -31,18 +34,30 @@ public class JoinProbe
         private final int[] probeOutputChannels;
         private final int[] probeJoinChannels;
         private final int probeHashChannel; // only valid when >= 0
+        private final HashGenerator probeHashGenerator;
 
-        public JoinProbeFactory(int[] probeOutputChannels, List<Integer> probeJoinChannels, OptionalInt probeHashChannel)
+        public JoinProbeFactory(int[] probeOutputChannels, List<Integer> probeJoinChannels, OptionalInt probeHashChannel, List<Type> probeTypes)
         {
             this.probeOutputChannels = probeOutputChannels;
             this.probeJoinChannels = Ints.toArray(probeJoinChannels);
             this.probeHashChannel = probeHashChannel.orElse(-1);
+            requireNonNull(probeTypes, "probeTypes is null");
+            // hashes the join channels of the loaded probe page
+            this.probeHashGenerator = InterpretedHashGenerator.createPositionalWithTypes(probeJoinChannels.stream()
+                    .map(probeTypes::get)
+                    .collect(toImmutableList()));
         }
 
         public JoinProbe createJoinProbe(Page page)
         {
             Page probePage = page.getLoadedPage(probeJoinChannels);
-            return new JoinProbe(probeOutputChannels, page, probePage, probeHashChannel >= 0 ? page.getBlock(probeHashChannel).getLoadedBlock() : null);
+            if (probeHashChannel >= 0) {
+                return new JoinProbe(probeOutputChannels, page, probePage, page.getBlock(probeHashChannel).getLoadedBlock(), null);
+            }
+            // the hashes of all rows are computed column by column upfront, which is much cheaper than hashing each row on lookup
+            long[] probeHashes = new long[probePage.getPositionCount()];
+            probeHashGenerator.hashPositions(probePage, probeHashes);
+            return new JoinProbe(probeOutputChannels, page, probePage, null, probeHashes);
         }
     }
 
@@ -52,17 +67,20 @@ public class JoinProbe
     private final Page probePage;
     @Nullable
     private final Block probeHashBlock;
+    @Nullable
+    private final long[] probeHashes;
     private final boolean probeMayHaveNull;
 
     private int position = -1;
 
-    private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock)
+    private JoinProbe(int[] probeOutputChannels, Page page, Page probePage, @Nullable Block probeHashBlock, @Nullable long[] probeHashes)
     {
         this.probeOutputChannels = probeOutputChannels;
         this.positionCount = page.getPositionCount();
         this.page = page;
         this.probePage = probePage;
         this.probeHashBlock = probeHashBlock;
+        this.probeHashes = probeHashes;
         this.probeMayHaveNull = probeMayHaveNull(probePage);
     }
 
@@ -81,11 +99,8 @@ public class JoinProbe
         if (probeMayHaveNull && currentRowContainsNull()) {
             return -1;
         }
-        if (probeHashBlock != null) {
-            long rawHash = BIGINT.getLong(probeHashBlock, position);
-            return lookupSource.getJoinPosition(position, probePage, page, rawHash);
-        }
-        return lookupSource.getJoinPosition(position, probePage, page);
+        long rawHash = probeHashBlock != null ? BIGINT.getLong(probeHashBlock, position) : probeHashes[position];
+        return lookupSource.getJoinPosition(position, probePage, page, rawHash);
     }
 
     public int getPosition()
@@ -109,7 +109,7 @@ public class LookupJoinOperators
                 probeOutputChannelTypes,
                 lookupSourceFactoryManager.getBuildOutputTypes(),
                 joinType,
-                new JoinProbeFactory(probeOutputChannels.stream().mapToInt(i -> i).toArray(), probeJoinChannel, probeHashChannel),
+                new JoinProbeFactory(probeOutputChannels.stream().mapToInt(i -> i).toArray(), probeJoinChannel, probeHashChannel, probeTypes),
                 totalOperatorsCount,
                 probeJoinChannel,
                 probeHashChannel,
@@ -26,4 +26,10 @@ public interface LookupSourceSupplier
      * @return checksum of this entity for heuristic checking equivalence of two instances
      */
     long checksum();
+
+    /**
+     * Releases the supplier. The memory it shares with the lookup sources it supplied
+     * is freed once they are closed too.
+     */
+    default void close() {}
 }
@@ -23,6 +23,7 @@ import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
 
@@ -66,6 +67,20 @@ public class MarkDistinctHash
         return groupByHash.getBufferedPages();
     }
 
+    /**
+     * Types of the pages returned by {@link #getDistinctValuePages()}: the distinct
+     * channels followed by the hash channel, if any.
+     */
+    public List<Type> getTypes()
+    {
+        return groupByHash.getTypes();
+    }
+
+    public Iterator<Page> getDistinctValuePages()
+    {
+        return PartitionedDistinctSpiller.getDistinctValuePages(groupByHash);
+    }
+
     private Block processNextGroupIds(GroupByIdBlock ids)
     {
         int positions = ids.getPositionCount();
@@ -18,16 +18,21 @@ import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.IntStream;
 
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
 import static java.util.Objects.requireNonNull;
@@ -44,6 +49,9 @@ public class MarkDistinctOperator
         private final List<Integer> markDistinctChannels;
         private final List<Type> types;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final int spillPartitionCount;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
         private boolean closed;
 
         public MarkDistinctOperatorFactory(
@@ -52,7 +60,10 @@ public class MarkDistinctOperator
                 List<? extends Type> sourceTypes,
                 Collection<Integer> markDistinctChannels,
                 Optional<Integer> hashChannel,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                int spillPartitionCount,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -60,6 +71,10 @@ public class MarkDistinctOperator
             checkArgument(!markDistinctChannels.isEmpty(), "markDistinctChannels is empty");
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            checkArgument(spillPartitionCount > 0, "spillPartitionCount must be positive");
+            this.spillPartitionCount = spillPartitionCount;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
             this.types = ImmutableList.<Type>builder()
                     .addAll(sourceTypes)
                     .add(BOOLEAN)
@@ -71,7 +86,7 @@ public class MarkDistinctOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MarkDistinctOperator.class.getSimpleName());
-            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperator(operatorContext, types, markDistinctChannels, hashChannel, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
         }
 
         @Override
@@ -83,21 +98,51 @@ public class MarkDistinctOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler);
+            return new MarkDistinctOperatorFactory(operatorId, planNodeId, types.subList(0, types.size() - 1), markDistinctChannels, hashChannel, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
-    private final MarkDistinctHash markDistinctHash;
+    private final List<Type> sourceTypes;
+    private final List<Type> distinctTypes;
+    private final int[] markDistinctChannels;
+    private final int[] hashInputChannels;
+    private final Optional<Integer> hashChannel;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final int spillPartitionCount;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
+    // null after the hash has been spilled
+    private MarkDistinctHash markDistinctHash;
+
+    // null if the distinct mask of the unfinished work is not part of the output
     private Page inputPage;
     private boolean finishing;
 
     // for yield when memory is not available
     private Work<Block> unfinishedWork;
 
-    public MarkDistinctOperator(OperatorContext operatorContext, List<Type> types, List<Integer> markDistinctChannels, Optional<Integer> hashChannel, JoinCompiler joinCompiler)
+    private Optional<PartitionedDistinctSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+
+    // spilled partition that is processed after all input has been received
+    private int currentPartition;
+    private MarkDistinctHash partitionHash;
+    private Iterator<Page> partitionDistinctValues;
+    private Iterator<Page> partitionInput;
+
+    public MarkDistinctOperator(
+            OperatorContext operatorContext,
+            List<Type> types,
+            List<Integer> markDistinctChannels,
+            Optional<Integer> hashChannel,
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            int spillPartitionCount,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
 
@@ -108,8 +153,18 @@ public class MarkDistinctOperator
         for (int channel : markDistinctChannels) {
             distinctTypes.add(types.get(channel));
         }
-        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), distinctTypes.build(), Ints.toArray(markDistinctChannels), hashChannel, joinCompiler, this::updateMemoryReservation);
+        this.sourceTypes = ImmutableList.copyOf(types.subList(0, types.size() - 1));
+        this.distinctTypes = distinctTypes.build();
+        this.markDistinctChannels = Ints.toArray(markDistinctChannels);
+        this.hashChannel = hashChannel;
+        this.hashInputChannels = IntStream.concat(IntStream.of(this.markDistinctChannels), hashChannel.map(IntStream::of).orElseGet(IntStream::empty)).toArray();
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.spillPartitionCount = spillPartitionCount;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        this.markDistinctHash = new MarkDistinctHash(operatorContext.getSession(), this.distinctTypes, this.markDistinctChannels, hashChannel, joinCompiler, this::updateMemoryReservation);
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
     }
 
     @Override
@@ -121,19 +176,44 @@ public class MarkDistinctOperator
     @Override
     public void finish()
     {
+        if (finishing) {
+            return;
+        }
         finishing = true;
+
+        // Convert revocable memory to user memory as the hash can no longer be revoked once all input has been received.
+        if (localRevocableMemoryContext.getBytes() > 0) {
+            long currentRevocableBytes = localRevocableMemoryContext.getBytes();
+            localRevocableMemoryContext.setBytes(0);
+            if (!localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + currentRevocableBytes)) {
+                // TODO: this might fail (even though we have just released memory), but we don't
+                // have a proper way to atomically convert memory reservations
+                localRevocableMemoryContext.setBytes(currentRevocableBytes);
+                if (!hasUnfinishedInput()) {
+                    // spill since revocable memory could not be converted to user memory immediately,
+                    // and release the hash once spilling is finished
+                    spillToDisk();
+                }
+            }
+        }
     }
 
     @Override
     public boolean isFinished()
     {
-        return finishing && !hasUnfinishedInput();
+        return finishing && !hasUnfinishedInput() && spillInProgress.isDone() && (!spiller.isPresent() || currentPartition == spiller.get().getPartitionCount());
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
     }
 
     @Override
     public boolean needsInput()
     {
-        return !finishing && !hasUnfinishedInput();
+        return !finishing && !hasUnfinishedInput() && spillInProgress.isDone();
     }
 
     @Override
@@ -141,6 +221,13 @@ public class MarkDistinctOperator
     {
         requireNonNull(page, "page is null");
         checkState(needsInput());
+        checkSpillSucceeded(spillInProgress);
+
+        if (spiller.isPresent()) {
+            // the distinct values seen so far are on disk, so the rows can only be marked after all input is received
+            spillInProgress = spiller.get().spillInput(page);
+            return;
+        }
 
         inputPage = page;
 
@@ -151,6 +238,10 @@ public class MarkDistinctOperator
     @Override
     public Page getOutput()
     {
+        if (unfinishedWork == null && finishing && spiller.isPresent()) {
+            processNextSpilledPage();
+        }
+
         if (unfinishedWork == null) {
             return null;
         }
@@ -160,7 +251,7 @@ public class MarkDistinctOperator
         }
 
         // add the new boolean column to the page
-        Page outputPage = inputPage.appendColumn(unfinishedWork.getResult());
+        Page outputPage = inputPage == null ? null : inputPage.appendColumn(unfinishedWork.getResult());
 
         unfinishedWork = null;
         inputPage = null;
@@ -169,6 +260,99 @@ public class MarkDistinctOperator
         return outputPage;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (!spillInProgress.isDone()) {
+            // the hash or an input page is already being spilled
+            return spillInProgress;
+        }
+        if (finishing || spiller.isPresent() || hasUnfinishedInput()) {
+            // nothing to spill, the memory is released once the unfinished work is done
+            return NOT_BLOCKED;
+        }
+        return spillToDisk();
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        if (spiller.isPresent() && markDistinctHash != null) {
+            checkSpillSucceeded(spillInProgress);
+            markDistinctHash = null;
+            updateMemoryReservation();
+        }
+    }
+
+    @Override
+    public void close()
+            throws Exception
+    {
+        markDistinctHash = null;
+        partitionHash = null;
+        if (spiller.isPresent()) {
+            spiller.get().close();
+        }
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        spiller = Optional.of(new PartitionedDistinctSpiller(
+                markDistinctHash.getTypes(),
+                distinctTypes,
+                sourceTypes,
+                markDistinctChannels,
+                spillPartitionCount,
+                partitioningSpillerFactory,
+                operatorContext));
+        spillInProgress = spiller.get().spillDistinctValues(markDistinctHash.getDistinctValuePages());
+        return spillInProgress;
+    }
+
+    private void processNextSpilledPage()
+    {
+        if (!spillInProgress.isDone()) {
+            return;
+        }
+        checkSpillSucceeded(spillInProgress);
+        // the hash is still present if it was spilled on finish
+        finishMemoryRevoke();
+
+        PartitionedDistinctSpiller spiller = this.spiller.get();
+        while (currentPartition < spiller.getPartitionCount()) {
+            if (partitionHash == null) {
+                // the spilled distinct values come first in the partition pages, followed by the hash channel, if any
+                int[] channels = IntStream.range(0, distinctTypes.size()).toArray();
+                partitionHash = new MarkDistinctHash(
+                        operatorContext.getSession(),
+                        distinctTypes,
+                        channels,
+                        hashChannel.map(ignored -> channels.length),
+                        joinCompiler,
+                        this::updateMemoryReservation);
+                partitionDistinctValues = spiller.getDistinctValues(currentPartition);
+                partitionInput = spiller.getInput(currentPartition);
+            }
+
+            if (partitionDistinctValues.hasNext()) {
+                // values that were marked before spilling must not be marked again
+                unfinishedWork = partitionHash.markDistinctRows(partitionDistinctValues.next());
+                return;
+            }
+            if (partitionInput.hasNext()) {
+                inputPage = partitionInput.next();
+                unfinishedWork = partitionHash.markDistinctRows(inputPage.extractChannels(hashInputChannels));
+                return;
+            }
+
+            partitionHash = null;
+            partitionDistinctValues = null;
+            partitionInput = null;
+            currentPartition++;
+            updateMemoryReservation();
+        }
+    }
+
     private boolean hasUnfinishedInput()
     {
         return inputPage != null || unfinishedWork != null;
@@ -184,9 +368,21 @@ public class MarkDistinctOperator
     // The following implementation is a hybrid model, where the push model is going to call the pull model causing reentrancy
     private boolean updateMemoryReservation()
     {
-        // Operator/driver will be blocked on memory after we call localUserMemoryContext.setBytes().
-        // If memory is not available, once we return, this operator will be blocked until memory is available.
-        localUserMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+        if (markDistinctHash != null) {
+            // Operator/driver will be blocked on memory after we call setBytes().
+            // If memory is not available, once we return, this operator will be blocked until memory is available.
+            if (spillEnabled && !finishing) {
+                localRevocableMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+            }
+            else {
+                localRevocableMemoryContext.setBytes(0);
+                localUserMemoryContext.setBytes(markDistinctHash.getEstimatedSize());
+            }
+        }
+        else {
+            localRevocableMemoryContext.setBytes(0);
+            localUserMemoryContext.setBytes(partitionHash == null ? 0 : partitionHash.getEstimatedSize());
+        }
         // If memory is not available, inform the caller that we cannot proceed for allocation.
         return operatorContext.isWaitingForMemory().isDone();
     }
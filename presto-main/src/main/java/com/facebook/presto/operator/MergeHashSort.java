@@ -47,7 +47,20 @@ public class MergeHashSort
      */
     public WorkProcessor<Page> merge(List<Type> keyTypes, List<Type> allTypes, List<WorkProcessor<Page>> channels, DriverYieldSignal driverYieldSignal)
     {
-        InterpretedHashGenerator hashGenerator = InterpretedHashGenerator.createPositionalWithTypes(keyTypes);
+        return merge(InterpretedHashGenerator.createPositionalWithTypes(keyTypes), allTypes, channels, driverYieldSignal);
+    }
+
+    /**
+     * Same as {@link #merge(List, List, List, DriverYieldSignal)} for streams where the keys
+     * are not the leading channels of the pages.
+     */
+    public WorkProcessor<Page> merge(List<Type> keyTypes, List<Integer> keyChannels, List<Type> allTypes, List<WorkProcessor<Page>> channels, DriverYieldSignal driverYieldSignal)
+    {
+        return merge(new InterpretedHashGenerator(keyTypes, keyChannels), allTypes, channels, driverYieldSignal);
+    }
+
+    private WorkProcessor<Page> merge(InterpretedHashGenerator hashGenerator, List<Type> allTypes, List<WorkProcessor<Page>> channels, DriverYieldSignal driverYieldSignal)
+    {
         return mergeSortedPages(
                 channels,
                 createHashPageWithPositionComparator(hashGenerator),
@@ -0,0 +1,756 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.AdaptiveLongBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.function.SqlFunctionProperties;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Joins two inputs that are both sorted ascending (nulls first) on the join keys.
+ * <p>
+ * The left side is the input of this operator, the right side is streamed through a
+ * {@link MergeJoinSource}. Only the rows sharing the current join key are retained,
+ * so memory usage is bounded by the size of the largest run of equal keys instead of
+ * the size of either input.
+ */
+public class MergeJoinOperator
+        implements Operator, Closeable
+{
+    public static class MergeJoinOperatorFactory
+            implements OperatorFactory
+    {
+        private final int operatorId;
+        private final PlanNodeId planNodeId;
+        private final JoinBridgeManager<MergeJoinSource> joinBridgeManager;
+        private final JoinNode.Type joinType;
+        private final List<Type> leftTypes;
+        private final List<Integer> leftJoinChannels;
+        private final List<Integer> leftOutputChannels;
+        private final List<Type> rightTypes;
+        private final List<Integer> rightJoinChannels;
+        private final List<Integer> rightOutputChannels;
+        private final Optional<JoinFilterFunctionFactory> filterFunctionFactory;
+
+        private boolean closed;
+
+        public MergeJoinOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                JoinBridgeManager<MergeJoinSource> joinBridgeManager,
+                JoinNode.Type joinType,
+                List<Type> leftTypes,
+                List<Integer> leftJoinChannels,
+                List<Integer> leftOutputChannels,
+                List<Type> rightTypes,
+                List<Integer> rightJoinChannels,
+                List<Integer> rightOutputChannels,
+                Optional<JoinFilterFunctionFactory> filterFunctionFactory)
+        {
+            this.operatorId = operatorId;
+            this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+            this.joinBridgeManager = requireNonNull(joinBridgeManager, "joinBridgeManager is null");
+            this.joinType = requireNonNull(joinType, "joinType is null");
+            this.leftTypes = ImmutableList.copyOf(requireNonNull(leftTypes, "leftTypes is null"));
+            this.leftJoinChannels = ImmutableList.copyOf(requireNonNull(leftJoinChannels, "leftJoinChannels is null"));
+            this.leftOutputChannels = ImmutableList.copyOf(requireNonNull(leftOutputChannels, "leftOutputChannels is null"));
+            this.rightTypes = ImmutableList.copyOf(requireNonNull(rightTypes, "rightTypes is null"));
+            this.rightJoinChannels = ImmutableList.copyOf(requireNonNull(rightJoinChannels, "rightJoinChannels is null"));
+            this.rightOutputChannels = ImmutableList.copyOf(requireNonNull(rightOutputChannels, "rightOutputChannels is null"));
+            this.filterFunctionFactory = requireNonNull(filterFunctionFactory, "filterFunctionFactory is null");
+            checkArgument(leftJoinChannels.size() == rightJoinChannels.size(), "left and right join channels do not match");
+            checkArgument(!leftJoinChannels.isEmpty(), "merge join requires at least one join channel");
+            this.joinBridgeManager.incrementProbeFactoryCount();
+        }
+
+        private MergeJoinOperatorFactory(MergeJoinOperatorFactory other)
+        {
+            requireNonNull(other, "other is null");
+            this.operatorId = other.operatorId;
+            this.planNodeId = other.planNodeId;
+            this.joinBridgeManager = other.joinBridgeManager;
+            this.joinType = other.joinType;
+            this.leftTypes = other.leftTypes;
+            this.leftJoinChannels = other.leftJoinChannels;
+            this.leftOutputChannels = other.leftOutputChannels;
+            this.rightTypes = other.rightTypes;
+            this.rightJoinChannels = other.rightJoinChannels;
+            this.rightOutputChannels = other.rightOutputChannels;
+            this.filterFunctionFactory = other.filterFunctionFactory;
+
+            // closed is intentionally not copied
+            closed = false;
+
+            joinBridgeManager.incrementProbeFactoryCount();
+        }
+
+        @Override
+        public Operator createOperator(DriverContext driverContext)
+        {
+            checkState(!closed, "Factory is already closed");
+            MergeJoinSource mergeJoinSource = joinBridgeManager.getJoinBridge(driverContext.getLifespan());
+            mergeJoinSource.registerConsumer();
+
+            OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MergeJoinOperator.class.getSimpleName());
+
+            joinBridgeManager.probeOperatorCreated(driverContext.getLifespan());
+            return new MergeJoinOperator(
+                    operatorContext,
+                    mergeJoinSource,
+                    joinType,
+                    leftTypes,
+                    leftJoinChannels,
+                    leftOutputChannels,
+                    rightTypes,
+                    rightJoinChannels,
+                    rightOutputChannels,
+                    filterFunctionFactory,
+                    () -> joinBridgeManager.probeOperatorClosed(driverContext.getLifespan()));
+        }
+
+        @Override
+        public void noMoreOperators()
+        {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            joinBridgeManager.probeOperatorFactoryClosedForAllLifespans();
+        }
+
+        @Override
+        public void noMoreOperators(Lifespan lifespan)
+        {
+            joinBridgeManager.probeOperatorFactoryClosed(lifespan);
+        }
+
+        @Override
+        public OperatorFactory duplicate()
+        {
+            return new MergeJoinOperatorFactory(this);
+        }
+    }
+
+    private final OperatorContext operatorContext;
+    private final MergeJoinSource mergeJoinSource;
+    private final boolean leftOuter;
+    private final boolean rightOuter;
+    private final List<Type> leftTypes;
+    private final List<Type> rightTypes;
+    private final List<Type> joinTypes;
+    private final int[] leftJoinChannels;
+    private final int[] rightJoinChannels;
+    private final int[] leftOutputChannels;
+    private final int[] rightOutputChannels;
+    private final Optional<JoinFilterFunctionFactory> filterFunctionFactory;
+    private final SqlFunctionProperties sqlFunctionProperties;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final PageBuilder pageBuilder;
+    private final Runnable afterClose;
+
+    // reused across runs to address the rows of the right run when evaluating the join filter
+    private final AdaptiveLongBigArray rightRunAddresses = new AdaptiveLongBigArray();
+
+    private Page leftPage;
+    private int leftPosition;
+    private Page rightPage;
+    private int rightPosition;
+
+    // rows of both sides that share the join key of keyPage at keyPosition (a left row)
+    private final List<Page> leftRun = new ArrayList<>();
+    private final List<Page> rightRun = new ArrayList<>();
+    private Page keyPage;
+    private int keyPosition;
+    private boolean collectingRuns;
+    private boolean leftRunComplete;
+    private boolean rightRunComplete;
+    private RunMatcher runMatcher;
+
+    private boolean finishing;
+    private boolean finished;
+    private boolean closed;
+
+    public MergeJoinOperator(
+            OperatorContext operatorContext,
+            MergeJoinSource mergeJoinSource,
+            JoinNode.Type joinType,
+            List<Type> leftTypes,
+            List<Integer> leftJoinChannels,
+            List<Integer> leftOutputChannels,
+            List<Type> rightTypes,
+            List<Integer> rightJoinChannels,
+            List<Integer> rightOutputChannels,
+            Optional<JoinFilterFunctionFactory> filterFunctionFactory,
+            Runnable afterClose)
+    {
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.mergeJoinSource = requireNonNull(mergeJoinSource, "mergeJoinSource is null");
+        requireNonNull(joinType, "joinType is null");
+        this.leftOuter = joinType == LEFT || joinType == FULL;
+        this.rightOuter = joinType == RIGHT || joinType == FULL;
+        this.leftTypes = ImmutableList.copyOf(requireNonNull(leftTypes, "leftTypes is null"));
+        this.rightTypes = ImmutableList.copyOf(requireNonNull(rightTypes, "rightTypes is null"));
+        this.joinTypes = leftJoinChannels.stream()
+                .map(leftTypes::get)
+                .collect(toImmutableList());
+        this.leftJoinChannels = Ints.toArray(requireNonNull(leftJoinChannels, "leftJoinChannels is null"));
+        this.rightJoinChannels = Ints.toArray(requireNonNull(rightJoinChannels, "rightJoinChannels is null"));
+        this.leftOutputChannels = Ints.toArray(requireNonNull(leftOutputChannels, "leftOutputChannels is null"));
+        this.rightOutputChannels = Ints.toArray(requireNonNull(rightOutputChannels, "rightOutputChannels is null"));
+        this.filterFunctionFactory = requireNonNull(filterFunctionFactory, "filterFunctionFactory is null");
+        this.sqlFunctionProperties = operatorContext.getSession().getSqlFunctionProperties();
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.afterClose = requireNonNull(afterClose, "afterClose is null");
+
+        ImmutableList.Builder<Type> outputTypes = ImmutableList.builder();
+        for (int channel : this.leftOutputChannels) {
+            outputTypes.add(leftTypes.get(channel));
+        }
+        for (int channel : this.rightOutputChannels) {
+            outputTypes.add(rightTypes.get(channel));
+        }
+        this.pageBuilder = new PageBuilder(outputTypes.build());
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public void finish()
+    {
+        finishing = true;
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        boolean isFinished = finished && pageBuilder.isEmpty();
+        if (isFinished) {
+            close();
+        }
+        return isFinished;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (finished || hasRightRow()) {
+            return NOT_BLOCKED;
+        }
+        return mergeJoinSource.waitForPages();
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return !finishing && !finished && leftPage == null;
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkState(!finishing, "Operator is finishing");
+        checkState(leftPage == null, "Current page has not been completely processed yet");
+
+        if (page.getPositionCount() > 0) {
+            leftPage = page;
+            leftPosition = 0;
+        }
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        while (!finished && !pageBuilder.isFull() && processNext()) {
+            // keep merging
+        }
+
+        if (pageBuilder.isEmpty()) {
+            return null;
+        }
+        Page output = pageBuilder.build();
+        pageBuilder.reset();
+        return output;
+    }
+
+    /**
+     * Advances the merge by one step.
+     *
+     * @return false if no progress can be made without more input from either side
+     */
+    private boolean processNext()
+    {
+        if (runMatcher != null) {
+            if (runMatcher.process()) {
+                runMatcher = null;
+                clearRuns();
+            }
+            return true;
+        }
+
+        if (collectingRuns) {
+            return collectRuns();
+        }
+
+        if (leftPage == null) {
+            if (!finishing) {
+                return false;
+            }
+            if (!rightOuter) {
+                // the remaining right rows cannot produce any output
+                finished = true;
+                return false;
+            }
+            if (!hasRightRow()) {
+                finished = mergeJoinSource.isFinished();
+                return false;
+            }
+            appendRightOnly(rightPage, rightPosition);
+            advanceRight();
+            return true;
+        }
+
+        if (!hasRightRow()) {
+            if (!mergeJoinSource.isFinished()) {
+                return false;
+            }
+            if (!leftOuter) {
+                // the remaining left rows cannot produce any output
+                finished = true;
+                return false;
+            }
+            appendLeftOnly(leftPage, leftPosition);
+            advanceLeft();
+            return true;
+        }
+
+        // nulls never match and sort first
+        if (hasNullKey(leftPage, leftPosition, leftJoinChannels)) {
+            if (leftOuter) {
+                appendLeftOnly(leftPage, leftPosition);
+            }
+            advanceLeft();
+            return true;
+        }
+        if (hasNullKey(rightPage, rightPosition, rightJoinChannels)) {
+            if (rightOuter) {
+                appendRightOnly(rightPage, rightPosition);
+            }
+            advanceRight();
+            return true;
+        }
+
+        int comparison = compareKeys(leftPage, leftPosition, leftJoinChannels, rightPage, rightPosition, rightJoinChannels);
+        if (comparison < 0) {
+            if (leftOuter) {
+                appendLeftOnly(leftPage, leftPosition);
+            }
+            advanceLeft();
+            return true;
+        }
+        if (comparison > 0) {
+            if (rightOuter) {
+                appendRightOnly(rightPage, rightPosition);
+            }
+            advanceRight();
+            return true;
+        }
+
+        keyPage = leftPage;
+        keyPosition = leftPosition;
+        collectingRuns = true;
+        leftRunComplete = false;
+        rightRunComplete = false;
+        return collectRuns();
+    }
+
+    /**
+     * Collects all rows of both sides matching the current key. A run can span several pages,
+     * in which case the pages are retained until the end of the run is seen.
+     */
+    private boolean collectRuns()
+    {
+        if (!leftRunComplete) {
+            if (leftPage == null) {
+                if (!finishing) {
+                    return false;
+                }
+                leftRunComplete = true;
+            }
+            else {
+                int end = findRunEnd(leftPage, leftPosition, leftJoinChannels);
+                if (end > leftPosition) {
+                    leftRun.add(leftPage.getRegion(leftPosition, end - leftPosition));
+                }
+                if (end < leftPage.getPositionCount()) {
+                    leftPosition = end;
+                    leftRunComplete = true;
+                }
+                else {
+                    // the run may continue on the next page
+                    leftPage = null;
+                }
+                updateMemoryUsage();
+                return true;
+            }
+        }
+
+        if (!rightRunComplete) {
+            if (!hasRightRow()) {
+                if (!mergeJoinSource.isFinished()) {
+                    return false;
+                }
+                rightRunComplete = true;
+            }
+            else {
+                int end = findRunEnd(rightPage, rightPosition, rightJoinChannels);
+                if (end > rightPosition) {
+                    rightRun.add(rightPage.getRegion(rightPosition, end - rightPosition));
+                }
+                if (end < rightPage.getPositionCount()) {
+                    rightPosition = end;
+                    rightRunComplete = true;
+                }
+                else {
+                    rightPage = null;
+                }
+                updateMemoryUsage();
+                return true;
+            }
+        }
+
+        collectingRuns = false;
+        keyPage = null;
+        runMatcher = new RunMatcher();
+        return true;
+    }
+
+    private int findRunEnd(Page page, int start, int[] joinChannels)
+    {
+        int end = start;
+        while (end < page.getPositionCount()
+                && !hasNullKey(page, end, joinChannels)
+                && compareKeys(keyPage, keyPosition, leftJoinChannels, page, end, joinChannels) == 0) {
+            end++;
+        }
+        return end;
+    }
+
+    private boolean hasRightRow()
+    {
+        if (rightPage == null) {
+            rightPage = mergeJoinSource.pollPage();
+            rightPosition = 0;
+        }
+        return rightPage != null;
+    }
+
+    private void advanceLeft()
+    {
+        leftPosition++;
+        if (leftPosition == leftPage.getPositionCount()) {
+            leftPage = null;
+        }
+    }
+
+    private void advanceRight()
+    {
+        rightPosition++;
+        if (rightPosition == rightPage.getPositionCount()) {
+            rightPage = null;
+        }
+    }
+
+    private void clearRuns()
+    {
+        leftRun.clear();
+        rightRun.clear();
+        updateMemoryUsage();
+    }
+
+    private void updateMemoryUsage()
+    {
+        long bytes = 0;
+        for (Page page : leftRun) {
+            bytes += page.getRetainedSizeInBytes();
+        }
+        for (Page page : rightRun) {
+            bytes += page.getRetainedSizeInBytes();
+        }
+        localUserMemoryContext.setBytes(bytes);
+    }
+
+    private int compareKeys(Page left, int leftPosition, int[] leftChannels, Page right, int rightPosition, int[] rightChannels)
+    {
+        for (int i = 0; i < joinTypes.size(); i++) {
+            Block leftBlock = left.getBlock(leftChannels[i]);
+            Block rightBlock = right.getBlock(rightChannels[i]);
+            int result = joinTypes.get(i).compareTo(leftBlock, leftPosition, rightBlock, rightPosition);
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static boolean hasNullKey(Page page, int position, int[] joinChannels)
+    {
+        for (int channel : joinChannels) {
+            if (page.getBlock(channel).isNull(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void appendMatch(Page left, int leftPosition, Page right, int rightPosition)
+    {
+        pageBuilder.declarePosition();
+        appendLeftColumns(left, leftPosition);
+        appendRightColumns(right, rightPosition);
+    }
+
+    private void appendLeftOnly(Page left, int leftPosition)
+    {
+        pageBuilder.declarePosition();
+        appendLeftColumns(left, leftPosition);
+        for (int i = 0; i < rightOutputChannels.length; i++) {
+            pageBuilder.getBlockBuilder(leftOutputChannels.length + i).appendNull();
+        }
+    }
+
+    private void appendRightOnly(Page right, int rightPosition)
+    {
+        pageBuilder.declarePosition();
+        for (int i = 0; i < leftOutputChannels.length; i++) {
+            pageBuilder.getBlockBuilder(i).appendNull();
+        }
+        appendRightColumns(right, rightPosition);
+    }
+
+    private void appendLeftColumns(Page left, int leftPosition)
+    {
+        for (int i = 0; i < leftOutputChannels.length; i++) {
+            int channel = leftOutputChannels[i];
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(i);
+            leftTypes.get(channel).appendTo(left.getBlock(channel), leftPosition, blockBuilder);
+        }
+    }
+
+    private void appendRightColumns(Page right, int rightPosition)
+    {
+        for (int i = 0; i < rightOutputChannels.length; i++) {
+            int channel = rightOutputChannels[i];
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(leftOutputChannels.length + i);
+            rightTypes.get(channel).appendTo(right.getBlock(channel), rightPosition, blockBuilder);
+        }
+    }
+
+    @Override
+    public void close()
+    {
+        leftPage = null;
+        rightPage = null;
+        keyPage = null;
+        runMatcher = null;
+        leftRun.clear();
+        rightRun.clear();
+        // We don't want to release the source multiple times, since its reference counted
+        if (closed) {
+            return;
+        }
+        closed = true;
+        localUserMemoryContext.setBytes(0);
+        // `afterClose` must be run last.
+        afterClose.run();
+    }
+
+    /**
+     * Produces the cross product of the current left and right runs, followed by the
+     * outer rows of both runs that were rejected by the join filter.
+     */
+    private class RunMatcher
+    {
+        private final JoinFilterFunction filterFunction;
+        private final boolean[] leftMatched;
+        private final boolean[] rightMatched;
+
+        private int leftPageIndex;
+        private int leftPositionInPage;
+        private int leftRowIndex;
+        private int rightPageIndex;
+        private int rightPositionInPage;
+        private int rightRowIndex;
+
+        private boolean matchingDone;
+        private int outerPageIndex;
+        private int outerPositionInPage;
+        private int outerRowIndex;
+        private boolean leftOuterDone;
+
+        private RunMatcher()
+        {
+            if (filterFunctionFactory.isPresent() && !leftRun.isEmpty() && !rightRun.isEmpty()) {
+                int rightRowCount = countRows(rightRun);
+                rightRunAddresses.ensureCapacity(rightRowCount);
+                int index = 0;
+                for (int pageIndex = 0; pageIndex < rightRun.size(); pageIndex++) {
+                    for (int position = 0; position < rightRun.get(pageIndex).getPositionCount(); position++) {
+                        rightRunAddresses.set(index, encodeSyntheticAddress(pageIndex, position));
+                        index++;
+                    }
+                }
+                filterFunction = filterFunctionFactory.get().create(sqlFunctionProperties, rightRunAddresses, rightRun);
+                leftMatched = new boolean[countRows(leftRun)];
+                rightMatched = new boolean[rightRowCount];
+            }
+            else {
+                filterFunction = null;
+                leftMatched = null;
+                rightMatched = null;
+            }
+            matchingDone = leftRun.isEmpty() || rightRun.isEmpty();
+            leftOuterDone = !leftOuter || leftMatched == null;
+        }
+
+        /**
+         * @return true once all output for the runs has been produced
+         */
+        private boolean process()
+        {
+            while (!matchingDone) {
+                if (pageBuilder.isFull()) {
+                    return false;
+                }
+                Page left = leftRun.get(leftPageIndex);
+                Page right = rightRun.get(rightPageIndex);
+                if (filterFunction == null) {
+                    appendMatch(left, leftPositionInPage, right, rightPositionInPage);
+                }
+                else if (filterFunction.filter(rightRowIndex, leftPositionInPage, left)) {
+                    appendMatch(left, leftPositionInPage, right, rightPositionInPage);
+                    leftMatched[leftRowIndex] = true;
+                    rightMatched[rightRowIndex] = true;
+                }
+                advanceMatch();
+            }
+
+            if (!leftOuterDone) {
+                while (outerPageIndex < leftRun.size()) {
+                    if (pageBuilder.isFull()) {
+                        return false;
+                    }
+                    Page left = leftRun.get(outerPageIndex);
+                    if (!leftMatched[outerRowIndex]) {
+                        appendLeftOnly(left, outerPositionInPage);
+                    }
+                    advanceOuter(left);
+                }
+                leftOuterDone = true;
+                outerPageIndex = 0;
+                outerPositionInPage = 0;
+                outerRowIndex = 0;
+            }
+
+            if (rightOuter && rightMatched != null) {
+                while (outerPageIndex < rightRun.size()) {
+                    if (pageBuilder.isFull()) {
+                        return false;
+                    }
+                    Page right = rightRun.get(outerPageIndex);
+                    if (!rightMatched[outerRowIndex]) {
+                        appendRightOnly(right, outerPositionInPage);
+                    }
+                    advanceOuter(right);
+                }
+            }
+            return true;
+        }
+
+        private void advanceMatch()
+        {
+            rightRowIndex++;
+            rightPositionInPage++;
+            if (rightPositionInPage < rightRun.get(rightPageIndex).getPositionCount()) {
+                return;
+            }
+            rightPositionInPage = 0;
+            rightPageIndex++;
+            if (rightPageIndex < rightRun.size()) {
+                return;
+            }
+
+            // done with the current left row
+            rightPageIndex = 0;
+            rightRowIndex = 0;
+            leftRowIndex++;
+            leftPositionInPage++;
+            if (leftPositionInPage < leftRun.get(leftPageIndex).getPositionCount()) {
+                return;
+            }
+            leftPositionInPage = 0;
+            leftPageIndex++;
+            matchingDone = leftPageIndex == leftRun.size();
+        }
+
+        private void advanceOuter(Page page)
+        {
+            outerRowIndex++;
+            outerPositionInPage++;
+            if (outerPositionInPage == page.getPositionCount()) {
+                outerPositionInPage = 0;
+                outerPageIndex++;
+            }
+        }
+    }
+
+    private static int countRows(List<Page> pages)
+    {
+        int rows = 0;
+        for (Page page : pages) {
+            rows += page.getPositionCount();
+        }
+        return rows;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Terminal operator of the right side pipeline of a merge join. Pages are
+ * passed to the {@link MergeJoinSource} as they arrive; the operator blocks
+ * while the source buffer is full.
+ */
+public class MergeJoinSinkOperator
+        implements Operator
+{
+    public static class MergeJoinSinkOperatorFactory
+            implements OperatorFactory
+    {
+        private final int operatorId;
+        private final PlanNodeId planNodeId;
+        private final JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager;
+
+        private boolean closed;
+
+        public MergeJoinSinkOperatorFactory(int operatorId, PlanNodeId planNodeId, JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager)
+        {
+            this.operatorId = operatorId;
+            this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
+            this.mergeJoinSourceManager = requireNonNull(mergeJoinSourceManager, "mergeJoinSourceManager is null");
+        }
+
+        @Override
+        public Operator createOperator(DriverContext driverContext)
+        {
+            checkState(!closed, "Factory is already closed");
+            OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, MergeJoinSinkOperator.class.getSimpleName());
+            MergeJoinSource mergeJoinSource = mergeJoinSourceManager.getJoinBridge(driverContext.getLifespan());
+            mergeJoinSource.registerProducer();
+            return new MergeJoinSinkOperator(operatorContext, mergeJoinSource);
+        }
+
+        @Override
+        public void noMoreOperators()
+        {
+            closed = true;
+        }
+
+        @Override
+        public OperatorFactory duplicate()
+        {
+            return new MergeJoinSinkOperatorFactory(operatorId, planNodeId, mergeJoinSourceManager);
+        }
+    }
+
+    private final OperatorContext operatorContext;
+    private final MergeJoinSource mergeJoinSource;
+
+    private boolean finished;
+
+    public MergeJoinSinkOperator(OperatorContext operatorContext, MergeJoinSource mergeJoinSource)
+    {
+        this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.mergeJoinSource = requireNonNull(mergeJoinSource, "mergeJoinSource is null");
+    }
+
+    @Override
+    public OperatorContext getOperatorContext()
+    {
+        return operatorContext;
+    }
+
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (finished) {
+            return NOT_BLOCKED;
+        }
+        return mergeJoinSource.waitForSpace();
+    }
+
+    @Override
+    public boolean needsInput()
+    {
+        return !finished && !mergeJoinSource.isFull();
+    }
+
+    @Override
+    public void addInput(Page page)
+    {
+        requireNonNull(page, "page is null");
+        checkState(!finished, "Operator is already finished");
+
+        if (page.getPositionCount() == 0) {
+            return;
+        }
+        mergeJoinSource.addPage(page);
+        operatorContext.recordOutput(page.getSizeInBytes(), page.getPositionCount());
+    }
+
+    @Override
+    public Page getOutput()
+    {
+        return null;
+    }
+
+    @Override
+    public void finish()
+    {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        mergeJoinSource.setNoMorePages();
+    }
+
+    @Override
+    public boolean isFinished()
+    {
+        return finished;
+    }
+}
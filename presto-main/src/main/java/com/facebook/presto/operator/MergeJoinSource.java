@@ -0,0 +1,194 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Hands the sorted pages of the right side of a merge join over to the
+ * {@link MergeJoinOperator}. Only a bounded number of pages is buffered,
+ * so the right side is streamed rather than materialized.
+ */
+@ThreadSafe
+public class MergeJoinSource
+        implements JoinBridge
+{
+    private static final ListenableFuture<?> NOT_BLOCKED = immediateFuture(null);
+    private static final int DEFAULT_MAX_BUFFERED_PAGES = 2;
+
+    private final int maxBufferedPages;
+
+    @GuardedBy("this")
+    private final Queue<Page> pages = new ArrayDeque<>();
+    @GuardedBy("this")
+    private boolean noMorePages;
+    @GuardedBy("this")
+    private boolean destroyed;
+    @GuardedBy("this")
+    private boolean producerRegistered;
+    @GuardedBy("this")
+    private boolean consumerRegistered;
+    @GuardedBy("this")
+    private SettableFuture<?> pagesAvailable = SettableFuture.create();
+    @GuardedBy("this")
+    private SettableFuture<?> spaceAvailable = SettableFuture.create();
+
+    private final SettableFuture<?> noMorePagesFuture = SettableFuture.create();
+
+    public MergeJoinSource()
+    {
+        this(DEFAULT_MAX_BUFFERED_PAGES);
+    }
+
+    public MergeJoinSource(int maxBufferedPages)
+    {
+        checkArgument(maxBufferedPages > 0, "maxBufferedPages must be positive");
+        this.maxBufferedPages = maxBufferedPages;
+    }
+
+    /**
+     * Merge join relies on a single sorted stream per side, so only one producer
+     * and one consumer can be attached to a source.
+     */
+    public synchronized void registerProducer()
+    {
+        checkState(!producerRegistered, "Merge join requires a single sorted stream on the right side");
+        producerRegistered = true;
+    }
+
+    public synchronized void registerConsumer()
+    {
+        checkState(!consumerRegistered, "Merge join requires a single sorted stream on the left side");
+        consumerRegistered = true;
+    }
+
+    public synchronized boolean isFull()
+    {
+        return !destroyed && pages.size() >= maxBufferedPages;
+    }
+
+    public synchronized ListenableFuture<?> waitForSpace()
+    {
+        if (!isFull()) {
+            return NOT_BLOCKED;
+        }
+        if (spaceAvailable.isDone()) {
+            spaceAvailable = SettableFuture.create();
+        }
+        return spaceAvailable;
+    }
+
+    public void addPage(Page page)
+    {
+        requireNonNull(page, "page is null");
+        SettableFuture<?> future;
+        synchronized (this) {
+            checkState(!noMorePages, "No more pages already set");
+            if (destroyed) {
+                // the consumer is gone, nobody is going to read this page
+                return;
+            }
+            pages.add(page);
+            future = pagesAvailable;
+        }
+        // complete futures outside of the lock
+        future.set(null);
+    }
+
+    public void setNoMorePages()
+    {
+        SettableFuture<?> future;
+        synchronized (this) {
+            if (noMorePages) {
+                return;
+            }
+            noMorePages = true;
+            future = pagesAvailable;
+        }
+        future.set(null);
+        noMorePagesFuture.set(null);
+    }
+
+    /**
+     * Returns the next page or null if no page is currently buffered.
+     */
+    public Page pollPage()
+    {
+        Page page;
+        SettableFuture<?> future;
+        synchronized (this) {
+            page = pages.poll();
+            future = spaceAvailable;
+        }
+        if (page != null) {
+            future.set(null);
+        }
+        return page;
+    }
+
+    public synchronized boolean isFinished()
+    {
+        return noMorePages && pages.isEmpty();
+    }
+
+    public synchronized ListenableFuture<?> waitForPages()
+    {
+        if (!pages.isEmpty() || noMorePages) {
+            return NOT_BLOCKED;
+        }
+        if (pagesAvailable.isDone()) {
+            pagesAvailable = SettableFuture.create();
+        }
+        return pagesAvailable;
+    }
+
+    @Override
+    public OuterPositionIterator getOuterPositionIterator()
+    {
+        // the MergeJoinOperator produces the outer rows of the right side while it streams them, so none are left here
+        return (pageBuilder, outputChannelOffset) -> false;
+    }
+
+    @Override
+    public ListenableFuture<?> whenBuildFinishes()
+    {
+        return noMorePagesFuture;
+    }
+
+    @Override
+    public void destroy()
+    {
+        SettableFuture<?> future;
+        synchronized (this) {
+            destroyed = true;
+            pages.clear();
+            future = spaceAvailable;
+        }
+        // unblock the producer so that it can finish
+        future.set(null);
+    }
+}
@@ -296,6 +296,14 @@ public class MultiChannelGroupByHash
         return putIfAbsent(position, page, rawHash);
     }
 
+    private long[] hashPositions(Page page)
+    {
+        // hashing the whole page column by column is much cheaper than hashing it row by row
+        long[] rawHashes = new long[page.getPositionCount()];
+        hashGenerator.hashPositions(page, rawHashes);
+        return rawHashes;
+    }
+
     private int putIfAbsent(int position, Page page, long rawHash)
     {
         int hashPosition = (int) getHashPosition(rawHash, mask);
@@ -585,12 +593,14 @@ public class MultiChannelGroupByHash
             implements Work<Void>
     {
         private final Page page;
+        private final long[] rawHashes;
 
         private int lastPosition;
 
         public AddNonDictionaryPageWork(Page page)
         {
             this.page = requireNonNull(page, "page is null");
+            this.rawHashes = hashPositions(page);
         }
 
         @Override
@@ -609,7 +619,7 @@ public class MultiChannelGroupByHash
             // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
             while (lastPosition < positionCount && !needRehash()) {
                 // get the group for the current row
-                putIfAbsent(lastPosition, page);
+                putIfAbsent(lastPosition, page, rawHashes[lastPosition]);
                 lastPosition++;
             }
             return lastPosition == positionCount;
@@ -715,6 +725,7 @@ public class MultiChannelGroupByHash
     {
         private final BlockBuilder blockBuilder;
         private final Page page;
+        private final long[] rawHashes;
 
         private boolean finished;
         private int lastPosition;
@@ -722,6 +733,7 @@ public class MultiChannelGroupByHash
         public GetNonDictionaryGroupIdsWork(Page page)
         {
             this.page = requireNonNull(page, "page is null");
+            this.rawHashes = hashPositions(page);
             // we know the exact size required for the block
             this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(page.getPositionCount());
         }
@@ -743,7 +755,7 @@ public class MultiChannelGroupByHash
             // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
             while (lastPosition < positionCount && !needRehash()) {
                 // output the group id for this row
-                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, page));
+                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, page, rawHashes[lastPosition]));
                 lastPosition++;
             }
             return lastPosition == positionCount;
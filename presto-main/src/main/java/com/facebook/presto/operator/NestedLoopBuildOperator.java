@@ -14,14 +14,30 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.SingleStreamSpiller;
+import com.facebook.presto.spiller.SingleStreamSpillerFactory;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Objects.requireNonNull;
 
 public class NestedLoopBuildOperator
@@ -33,14 +49,26 @@ public class NestedLoopBuildOperator
         private final int operatorId;
         private final PlanNodeId planNodeId;
         private final JoinBridgeManager<NestedLoopJoinBridge> nestedLoopJoinBridgeManager;
+        private final boolean spillEnabled;
+        private final DataSize spillBlockSize;
+        private final SingleStreamSpillerFactory singleStreamSpillerFactory;
 
         private boolean closed;
 
-        public NestedLoopBuildOperatorFactory(int operatorId, PlanNodeId planNodeId, JoinBridgeManager<NestedLoopJoinBridge> nestedLoopJoinBridgeManager)
+        public NestedLoopBuildOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                JoinBridgeManager<NestedLoopJoinBridge> nestedLoopJoinBridgeManager,
+                boolean spillEnabled,
+                DataSize spillBlockSize,
+                SingleStreamSpillerFactory singleStreamSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
             this.nestedLoopJoinBridgeManager = requireNonNull(nestedLoopJoinBridgeManager, "nestedLoopJoinBridgeManager is null");
+            this.spillEnabled = spillEnabled;
+            this.spillBlockSize = requireNonNull(spillBlockSize, "spillBlockSize is null");
+            this.singleStreamSpillerFactory = requireNonNull(singleStreamSpillerFactory, "singleStreamSpillerFactory is null");
         }
 
         @Override
@@ -48,7 +76,13 @@ public class NestedLoopBuildOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, NestedLoopBuildOperator.class.getSimpleName());
-            return new NestedLoopBuildOperator(operatorContext, nestedLoopJoinBridgeManager.getJoinBridge(driverContext.getLifespan()));
+            return new NestedLoopBuildOperator(
+                    operatorContext,
+                    nestedLoopJoinBridgeManager.getJoinBridge(driverContext.getLifespan()),
+                    nestedLoopJoinBridgeManager.getBuildOutputTypes(),
+                    spillEnabled,
+                    spillBlockSize,
+                    singleStreamSpillerFactory);
         }
 
         @Override
@@ -63,26 +97,51 @@ public class NestedLoopBuildOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new NestedLoopBuildOperatorFactory(operatorId, planNodeId, nestedLoopJoinBridgeManager);
+            return new NestedLoopBuildOperatorFactory(operatorId, planNodeId, nestedLoopJoinBridgeManager, spillEnabled, spillBlockSize, singleStreamSpillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final NestedLoopJoinBridge nestedLoopJoinBridge;
-    private final NestedLoopJoinPagesBuilder nestedLoopJoinPagesBuilder;
+    private final List<Type> types;
+    private final boolean spillEnabled;
+    private final long spillBlockSizeInBytes;
+    private final SingleStreamSpillerFactory singleStreamSpillerFactory;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
+
+    private NestedLoopJoinPagesBuilder nestedLoopJoinPagesBuilder;
+
+    // Once memory is revoked, the build pages are spilled in blocks of at most spillBlockSizeInBytes,
+    // which the probe side loads into memory one at a time.
+    private final List<SingleStreamSpiller> spilledBlocks = new ArrayList<>();
+    private long lastSpilledBlockSizeInBytes;
+    private ListenableFuture<?> spillInProgress = NOT_BLOCKED;
+
+    private boolean finishing;
 
     // Initially, probeDoneWithPages is not present.
     // Once finish is called, probeDoneWithPages will be set to a future that completes when the pages are no longer needed by the probe side.
     // When the pages are no longer needed, the isFinished method on this operator will return true.
     private Optional<ListenableFuture<?>> probeDoneWithPages = Optional.empty();
 
-    public NestedLoopBuildOperator(OperatorContext operatorContext, NestedLoopJoinBridge nestedLoopJoinBridge)
+    public NestedLoopBuildOperator(
+            OperatorContext operatorContext,
+            NestedLoopJoinBridge nestedLoopJoinBridge,
+            List<Type> types,
+            boolean spillEnabled,
+            DataSize spillBlockSize,
+            SingleStreamSpillerFactory singleStreamSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.nestedLoopJoinBridge = requireNonNull(nestedLoopJoinBridge, "nestedLoopJoinBridge is null");
+        this.types = ImmutableList.copyOf(requireNonNull(types, "types is null"));
+        this.spillEnabled = spillEnabled;
+        this.spillBlockSizeInBytes = requireNonNull(spillBlockSize, "spillBlockSize is null").toBytes();
+        this.singleStreamSpillerFactory = requireNonNull(singleStreamSpillerFactory, "singleStreamSpillerFactory is null");
         this.nestedLoopJoinPagesBuilder = new NestedLoopJoinPagesBuilder(operatorContext);
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
     }
 
     @Override
@@ -94,13 +153,38 @@ public class NestedLoopBuildOperator
     @Override
     public void finish()
     {
-        if (probeDoneWithPages.isPresent()) {
+        finishing = true;
+        if (probeDoneWithPages.isPresent() || !spillInProgress.isDone()) {
+            return;
+        }
+        checkSpillSucceeded(spillInProgress);
+
+        if (spilledBlocks.isEmpty() && spillEnabled) {
+            // the pages are kept in memory only if they fit in the non-revocable memory
+            long estimatedSize = nestedLoopJoinPagesBuilder.getEstimatedSize().toBytes();
+            if (localUserMemoryContext.trySetBytes(estimatedSize)) {
+                localRevocableMemoryContext.setBytes(0);
+            }
+            else {
+                spillInProgress = spillPages();
+                return;
+            }
+        }
+
+        if (spilledBlocks.isEmpty()) {
+            // nestedLoopJoinPagesBuilder and the built NestedLoopJoinPages will mostly share the same objects.
+            // Extra allocation is minimal during build call. As a result, memory accounting is not updated here.
+            probeDoneWithPages = Optional.of(nestedLoopJoinBridge.setPages(nestedLoopJoinPagesBuilder.build()));
             return;
         }
 
-        // nestedLoopJoinPagesBuilder and the built NestedLoopJoinPages will mostly share the same objects.
-        // Extra allocation is minimal during build call. As a result, memory accounting is not updated here.
-        probeDoneWithPages = Optional.of(nestedLoopJoinBridge.setPages(nestedLoopJoinPagesBuilder.build()));
+        if (!nestedLoopJoinPagesBuilder.isEmpty()) {
+            spillInProgress = spillPages();
+            return;
+        }
+        spilledBlocks.forEach(SingleStreamSpiller::commit);
+        localRevocableMemoryContext.setBytes(0);
+        probeDoneWithPages = Optional.of(nestedLoopJoinBridge.setPages(new NestedLoopJoinPages(spilledBlocks, operatorContext)));
     }
 
     @Override
@@ -112,13 +196,16 @@ public class NestedLoopBuildOperator
     @Override
     public ListenableFuture<?> isBlocked()
     {
+        if (!spillInProgress.isDone()) {
+            return spillInProgress;
+        }
         return probeDoneWithPages.orElse(NOT_BLOCKED);
     }
 
     @Override
     public boolean needsInput()
     {
-        return !probeDoneWithPages.isPresent();
+        return !finishing && spillInProgress.isDone();
     }
 
     @Override
@@ -126,13 +213,17 @@ public class NestedLoopBuildOperator
     {
         requireNonNull(page, "page is null");
         checkState(!isFinished(), "Operator is already finished");
+        checkSpillSucceeded(spillInProgress);
 
         if (page.getPositionCount() == 0) {
             return;
         }
 
         nestedLoopJoinPagesBuilder.addPage(page);
-        if (!localUserMemoryContext.trySetBytes(nestedLoopJoinPagesBuilder.getEstimatedSize().toBytes())) {
+        if (spillEnabled) {
+            localRevocableMemoryContext.setBytes(nestedLoopJoinPagesBuilder.getEstimatedSize().toBytes());
+        }
+        else if (!localUserMemoryContext.trySetBytes(nestedLoopJoinPagesBuilder.getEstimatedSize().toBytes())) {
             nestedLoopJoinPagesBuilder.compact();
             localUserMemoryContext.setBytes(nestedLoopJoinPagesBuilder.getEstimatedSize().toBytes());
         }
@@ -144,4 +235,66 @@ public class NestedLoopBuildOperator
     {
         return null;
     }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (probeDoneWithPages.isPresent() || !spillInProgress.isDone() || nestedLoopJoinPagesBuilder.isEmpty()) {
+            return NOT_BLOCKED;
+        }
+        spillInProgress = spillPages();
+        return spillInProgress;
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        localRevocableMemoryContext.setBytes(nestedLoopJoinPagesBuilder.getEstimatedSize().toBytes());
+    }
+
+    @Override
+    public void close()
+            throws Exception
+    {
+        try (Closer closer = Closer.create()) {
+            spilledBlocks.forEach(closer::register);
+            closer.register(() -> localRevocableMemoryContext.setBytes(0));
+        }
+    }
+
+    private ListenableFuture<?> spillPages()
+    {
+        Iterator<Page> pages = nestedLoopJoinPagesBuilder.build().getPages().iterator();
+        nestedLoopJoinPagesBuilder = new NestedLoopJoinPagesBuilder(operatorContext);
+        return spillPages(pages);
+    }
+
+    private ListenableFuture<?> spillPages(Iterator<Page> pages)
+    {
+        while (pages.hasNext()) {
+            Page page = pages.next();
+            if (spilledBlocks.isEmpty() || lastSpilledBlockSizeInBytes + page.getSizeInBytes() > spillBlockSizeInBytes) {
+                spilledBlocks.add(singleStreamSpillerFactory.create(
+                        types,
+                        operatorContext.getSpillContext().newLocalSpillContext(),
+                        operatorContext.newLocalSystemMemoryContext(NestedLoopBuildOperator.class.getSimpleName())));
+                lastSpilledBlockSizeInBytes = 0;
+            }
+            lastSpilledBlockSizeInBytes += page.getSizeInBytes();
+            SingleStreamSpiller block = spilledBlocks.get(spilledBlocks.size() - 1);
+            ListenableFuture<?> spillingFuture = block.spill(page);
+            if (!spillingFuture.isDone()) {
+                // a page can only be spilled once spilling of the previous one is finished
+                return transformAsync(spillingFuture, ignored -> spillPages(pages), directExecutor());
+            }
+            try {
+                getDone(spillingFuture);
+            }
+            catch (ExecutionException | CancellationException e) {
+                // the remaining pages are not spilled
+                return spillingFuture;
+            }
+        }
+        return immediateFuture(null);
+    }
 }
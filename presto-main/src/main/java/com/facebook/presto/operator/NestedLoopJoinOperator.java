@@ -17,12 +17,15 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.execution.Lifespan;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.project.PageProcessor;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 
 import java.io.Closeable;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
@@ -45,13 +48,15 @@ public class NestedLoopJoinOperator
         private final int operatorId;
         private final PlanNodeId planNodeId;
         private final JoinBridgeManager<NestedLoopJoinBridge> joinBridgeManager;
+        private final DataSize spillBlockSize;
         private boolean closed;
 
-        public NestedLoopJoinOperatorFactory(int operatorId, PlanNodeId planNodeId, JoinBridgeManager<NestedLoopJoinBridge> nestedLoopJoinBridgeManager)
+        public NestedLoopJoinOperatorFactory(int operatorId, PlanNodeId planNodeId, JoinBridgeManager<NestedLoopJoinBridge> nestedLoopJoinBridgeManager, DataSize spillBlockSize)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
             this.joinBridgeManager = nestedLoopJoinBridgeManager;
+            this.spillBlockSize = requireNonNull(spillBlockSize, "spillBlockSize is null");
             this.joinBridgeManager.incrementProbeFactoryCount();
         }
 
@@ -62,6 +67,7 @@ public class NestedLoopJoinOperator
             this.planNodeId = other.planNodeId;
 
             this.joinBridgeManager = other.joinBridgeManager;
+            this.spillBlockSize = other.spillBlockSize;
 
             // closed is intentionally not copied
             closed = false;
@@ -81,6 +87,7 @@ public class NestedLoopJoinOperator
             return new NestedLoopJoinOperator(
                     operatorContext,
                     nestedLoopJoinBridge,
+                    spillBlockSize,
                     () -> joinBridgeManager.probeOperatorClosed(driverContext.getLifespan()));
         }
 
@@ -110,6 +117,8 @@ public class NestedLoopJoinOperator
     private final ListenableFuture<NestedLoopJoinPages> nestedLoopJoinPagesFuture;
 
     private final OperatorContext operatorContext;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final long maxProbeBlockSizeInBytes;
     private final Runnable afterClose;
 
     private List<Page> buildPages;
@@ -119,9 +128,22 @@ public class NestedLoopJoinOperator
     private boolean finishing;
     private boolean closed;
 
-    private NestedLoopJoinOperator(OperatorContext operatorContext, NestedLoopJoinBridge joinBridge, Runnable afterClose)
+    // If the build side is spilled, probe pages are buffered into a block of at most maxProbeBlockSizeInBytes,
+    // which is then joined with the spilled build side read back one page at a time (block nested loop).
+    private NestedLoopJoinPages spilledBuildPages;
+    private final List<Page> probeBlock = new ArrayList<>();
+    private long probeBlockSizeInBytes;
+    private boolean joiningProbeBlock;
+    private int nextBuildBlock;
+    private Iterator<Page> buildBlockIterator;
+    private Page buildPage;
+    private int nextProbeBlockPage;
+
+    private NestedLoopJoinOperator(OperatorContext operatorContext, NestedLoopJoinBridge joinBridge, DataSize spillBlockSize, Runnable afterClose)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.maxProbeBlockSizeInBytes = requireNonNull(spillBlockSize, "spillBlockSize is null").toBytes();
         this.nestedLoopJoinPagesFuture = joinBridge.getPagesFuture();
         this.afterClose = requireNonNull(afterClose, "afterClose is null");
     }
@@ -136,12 +158,15 @@ public class NestedLoopJoinOperator
     public void finish()
     {
         finishing = true;
+        if (!probeBlock.isEmpty()) {
+            joiningProbeBlock = true;
+        }
     }
 
     @Override
     public boolean isFinished()
     {
-        boolean finished = finishing && probePage == null;
+        boolean finished = finishing && probePage == null && probeBlock.isEmpty();
 
         if (finished) {
             close();
@@ -158,17 +183,22 @@ public class NestedLoopJoinOperator
     @Override
     public boolean needsInput()
     {
-        if (finishing || probePage != null) {
+        if (finishing || probePage != null || joiningProbeBlock) {
             return false;
         }
 
-        if (buildPages == null) {
+        if (buildPages == null && spilledBuildPages == null) {
             Optional<NestedLoopJoinPages> nestedLoopJoinPages = tryGetFutureValue(nestedLoopJoinPagesFuture);
             if (nestedLoopJoinPages.isPresent()) {
-                buildPages = nestedLoopJoinPages.get().getPages();
+                if (nestedLoopJoinPages.get().isSpilled()) {
+                    spilledBuildPages = nestedLoopJoinPages.get();
+                }
+                else {
+                    buildPages = nestedLoopJoinPages.get().getPages();
+                }
             }
         }
-        return buildPages != null;
+        return buildPages != null || spilledBuildPages != null;
     }
 
     @Override
@@ -176,8 +206,18 @@ public class NestedLoopJoinOperator
     {
         requireNonNull(page, "page is null");
         checkState(!finishing, "Operator is finishing");
-        checkState(buildPages != null, "Page source has not been built yet");
-        checkState(probePage == null, "Current page has not been completely processed yet");
+        checkState(buildPages != null || spilledBuildPages != null, "Page source has not been built yet");
+        checkState(probePage == null && !joiningProbeBlock, "Current page has not been completely processed yet");
+
+        if (spilledBuildPages != null) {
+            if (page.getPositionCount() > 0) {
+                probeBlock.add(page);
+                probeBlockSizeInBytes += page.getRetainedSizeInBytes();
+                localUserMemoryContext.setBytes(probeBlockSizeInBytes);
+                joiningProbeBlock = probeBlockSizeInBytes >= maxProbeBlockSizeInBytes;
+            }
+            return;
+        }
         checkState(buildPageIterator == null || !buildPageIterator.hasNext(), "Current buildPageIterator has not been completely processed yet");
 
         if (page.getPositionCount() > 0) {
@@ -189,6 +229,10 @@ public class NestedLoopJoinOperator
     @Override
     public Page getOutput()
     {
+        if (joiningProbeBlock) {
+            return joinProbeBlock();
+        }
+
         // Either probe side or build side is not ready
         if (probePage == null || buildPages == null) {
             return null;
@@ -208,6 +252,50 @@ public class NestedLoopJoinOperator
         return null;
     }
 
+    private Page joinProbeBlock()
+    {
+        while (true) {
+            if (nestedLoopOutputIterator != null && nestedLoopOutputIterator.hasNext()) {
+                return nestedLoopOutputIterator.next();
+            }
+
+            if (buildPage != null && nextProbeBlockPage < probeBlock.size()) {
+                nestedLoopOutputIterator = createNestedLoopOutputIterator(probeBlock.get(nextProbeBlockPage), buildPage);
+                nextProbeBlockPage++;
+                continue;
+            }
+
+            if (buildBlockIterator != null && buildBlockIterator.hasNext()) {
+                buildPage = buildBlockIterator.next();
+                nextProbeBlockPage = 0;
+                continue;
+            }
+
+            if (nextBuildBlock < spilledBuildPages.getSpilledBlockCount()) {
+                buildBlockIterator = spilledBuildPages.getSpilledBlock(nextBuildBlock);
+                nextBuildBlock++;
+                continue;
+            }
+
+            // the probe block has been joined with the whole build side
+            resetProbeBlock();
+            return null;
+        }
+    }
+
+    private void resetProbeBlock()
+    {
+        probeBlock.clear();
+        probeBlockSizeInBytes = 0;
+        joiningProbeBlock = false;
+        nextBuildBlock = 0;
+        buildBlockIterator = null;
+        buildPage = null;
+        nextProbeBlockPage = 0;
+        nestedLoopOutputIterator = null;
+        localUserMemoryContext.setBytes(0);
+    }
+
     @Override
     public void close()
     {
@@ -215,6 +303,8 @@ public class NestedLoopJoinOperator
         probePage = null;
         nestedLoopOutputIterator = null;
         buildPageIterator = null;
+        spilledBuildPages = null;
+        resetProbeBlock();
         // We don't want to release the supplier multiple times, since its reference counted
         if (closed) {
             return;
@@ -14,17 +14,27 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.spiller.SingleStreamSpiller;
 import com.google.common.collect.ImmutableList;
 import io.airlift.units.DataSize;
 
+import java.util.Iterator;
 import java.util.List;
 
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Build side of a nested loop join. The pages are either kept in memory, or, if the
+ * build side did not fit in memory, spilled in blocks that the probe side joins with
+ * one at a time (block nested loop).
+ */
 public final class NestedLoopJoinPages
 {
     private final ImmutableList<Page> pages;
     private final DataSize estimatedSize;
+    private final List<SingleStreamSpiller> spilledBlocks;
 
     NestedLoopJoinPages(List<Page> pages, DataSize estimatedSize, OperatorContext operatorContext)
     {
@@ -33,10 +43,21 @@ public final class NestedLoopJoinPages
         requireNonNull(estimatedSize, "estimatedSize is null");
         this.pages = ImmutableList.copyOf(pages);
         this.estimatedSize = estimatedSize;
+        this.spilledBlocks = ImmutableList.of();
+    }
+
+    NestedLoopJoinPages(List<SingleStreamSpiller> spilledBlocks, OperatorContext operatorContext)
+    {
+        requireNonNull(spilledBlocks, "spilledBlocks is null");
+        requireNonNull(operatorContext, "operatorContext is null");
+        this.pages = ImmutableList.of();
+        this.estimatedSize = new DataSize(0, BYTE);
+        this.spilledBlocks = ImmutableList.copyOf(spilledBlocks);
     }
 
     public List<Page> getPages()
     {
+        checkState(!isSpilled(), "pages are spilled");
         return pages;
     }
 
@@ -44,4 +65,22 @@ public final class NestedLoopJoinPages
     {
         return estimatedSize;
     }
+
+    public boolean isSpilled()
+    {
+        return !spilledBlocks.isEmpty();
+    }
+
+    public int getSpilledBlockCount()
+    {
+        return spilledBlocks.size();
+    }
+
+    /**
+     * Reads the pages of a spilled block. Blocks can be read any number of times.
+     */
+    public Iterator<Page> getSpilledBlock(int block)
+    {
+        return spilledBlocks.get(block).getCommittedSpilledPages();
+    }
 }
@@ -76,6 +76,11 @@ public class NestedLoopJoinPagesBuilder
         this.emptyChannelPositionCounter = toIntExact(nextPositionCount);
     }
 
+    public boolean isEmpty()
+    {
+        return pages.isEmpty() && emptyChannelPositionCounter == 0;
+    }
+
     public DataSize getEstimatedSize()
     {
         return new DataSize(estimatedSize, BYTE);
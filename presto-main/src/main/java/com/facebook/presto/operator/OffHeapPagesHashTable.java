@@ -0,0 +1,115 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.openjdk.jol.info.ClassLayout;
+import sun.misc.Unsafe;
+
+import java.lang.reflect.Field;
+
+import static com.google.common.base.Preconditions.checkState;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+
+/**
+ * Stores the key and position hash arrays of the table in native memory, which is
+ * allocated when the table is created and freed by {@link #close()}. The memory is
+ * not freed by the garbage collector, so the table must be closed. The pages and
+ * the addresses of the hash are not moved and stay on the Java heap.
+ */
+public final class OffHeapPagesHashTable
+        implements PagesHashTable
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(OffHeapPagesHashTable.class).instanceSize();
+    private static final Unsafe unsafe;
+
+    static {
+        try {
+            // fetch theUnsafe object
+            Field field = Unsafe.class.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            unsafe = (Unsafe) field.get(null);
+            if (unsafe == null) {
+                throw new RuntimeException("Unsafe access not available");
+            }
+        }
+        catch (Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private final long keySize;
+    private final long positionToHashesSize;
+    private long keyAddress;
+    private long positionToHashesAddress;
+    private boolean closed;
+
+    public OffHeapPagesHashTable(int hashSize, int positionCount)
+    {
+        keySize = (long) hashSize * SIZE_OF_INT;
+        positionToHashesSize = positionCount;
+        keyAddress = unsafe.allocateMemory(keySize);
+        try {
+            positionToHashesAddress = unsafe.allocateMemory(positionToHashesSize);
+        }
+        catch (Throwable t) {
+            unsafe.freeMemory(keyAddress);
+            throw t;
+        }
+        unsafe.setMemory(keyAddress, keySize, (byte) -1);
+    }
+
+    @Override
+    public int getKey(int slot)
+    {
+        return unsafe.getInt(keyAddress + (long) slot * SIZE_OF_INT);
+    }
+
+    @Override
+    public void setKey(int slot, int position)
+    {
+        unsafe.putInt(keyAddress + (long) slot * SIZE_OF_INT, position);
+    }
+
+    @Override
+    public byte getPositionHash(int position)
+    {
+        return unsafe.getByte(positionToHashesAddress + position);
+    }
+
+    @Override
+    public void setPositionHash(int position, byte hash)
+    {
+        unsafe.putByte(positionToHashesAddress + position, hash);
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        if (closed) {
+            return INSTANCE_SIZE;
+        }
+        return INSTANCE_SIZE + keySize + positionToHashesSize;
+    }
+
+    @Override
+    public void close()
+    {
+        checkState(!closed, "table is already closed");
+        closed = true;
+        unsafe.freeMemory(keyAddress);
+        unsafe.freeMemory(positionToHashesAddress);
+        keyAddress = 0;
+        positionToHashesAddress = 0;
+    }
+}
@@ -0,0 +1,639 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.array.IntBigArray;
+import com.facebook.presto.common.array.LongBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.type.AbstractIntType;
+import com.facebook.presto.common.type.AbstractLongType;
+import com.facebook.presto.common.type.SmallintType;
+import com.facebook.presto.common.type.TinyintType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.spi.PrestoException;
+import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableList;
+import org.openjdk.jol.info.ClassLayout;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INSUFFICIENT_RESOURCES;
+import static com.facebook.presto.sql.planner.optimizations.HashGenerationOptimizer.INITIAL_HASH_VALUE;
+import static com.facebook.presto.type.TypeUtils.NULL_HASH_CODE;
+import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static it.unimi.dsi.fastutil.HashCommon.arraySize;
+import static it.unimi.dsi.fastutil.HashCommon.murmurHash3;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Group by hash for keys made of fixed width integer-like columns whose values fit in 16 bytes
+ * together. The values of a row are packed into a pair of longs, plus a bit mask of the null
+ * columns, so that rows are compared and hashed as primitives instead of column by column.
+ */
+public class PackedGroupByHash
+        implements GroupByHash
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(PackedGroupByHash.class).instanceSize();
+
+    private static final float FILL_RATIO = 0.75f;
+    private static final int KEY_COUNT = 2;
+
+    private final List<Type> hashTypes;
+    private final Type[] keyTypes;
+    private final int[] hashChannels;
+    private final boolean outputRawHash;
+
+    // the key (0 or 1), bit offset and bit width of each column in the packed key
+    private final int[] keyIndexes;
+    private final int[] bitOffsets;
+    private final long[] bitMasks;
+
+    private int hashCapacity;
+    private int maxFill;
+    private int mask;
+
+    // the hash table from values to groupIds
+    private LongBigArray keys0;
+    private LongBigArray keys1;
+    private IntBigArray nullMasks;
+    private IntBigArray groupIds;
+
+    // reverse index from the groupId back to the values
+    private final LongBigArray keys0ByGroupId;
+    private final LongBigArray keys1ByGroupId;
+    private final IntBigArray nullMasksByGroupId;
+
+    private int nextGroupId;
+    private long hashCollisions;
+    private double expectedHashCollisions;
+
+    // reserve enough memory before rehash
+    private final UpdateMemory updateMemory;
+    private long preallocatedMemoryInBytes;
+    private long currentPageSizeInBytes;
+
+    // packed key of the row that is currently looked up
+    private long currentKey0;
+    private long currentKey1;
+    private int currentNullMask;
+
+    /**
+     * Returns true if all the types are supported and their values fit in the packed key.
+     */
+    public static boolean isSupported(List<? extends Type> hashTypes)
+    {
+        return !hashTypes.isEmpty() && assignKeys(hashTypes, new int[hashTypes.size()], new int[hashTypes.size()]);
+    }
+
+    public PackedGroupByHash(List<? extends Type> hashTypes, int[] hashChannels, Optional<Integer> inputHashChannel, int expectedSize, UpdateMemory updateMemory)
+    {
+        requireNonNull(hashTypes, "hashTypes is null");
+        requireNonNull(hashChannels, "hashChannels is null");
+        checkArgument(hashTypes.size() == hashChannels.length, "hashTypes and hashChannels have different sizes");
+        checkArgument(isSupported(hashTypes), "hashTypes cannot be packed: %s", hashTypes);
+        checkArgument(expectedSize > 0, "expectedSize must be greater than zero");
+
+        this.hashTypes = ImmutableList.copyOf(hashTypes);
+        this.keyTypes = hashTypes.toArray(new Type[0]);
+        this.hashChannels = hashChannels.clone();
+        // like BigintGroupByHash, the raw hash is recomputed from the values instead of being read from the input
+        this.outputRawHash = requireNonNull(inputHashChannel, "inputHashChannel is null").isPresent();
+
+        this.keyIndexes = new int[keyTypes.length];
+        this.bitOffsets = new int[keyTypes.length];
+        assignKeys(this.hashTypes, keyIndexes, bitOffsets);
+        this.bitMasks = new long[keyTypes.length];
+        for (int i = 0; i < keyTypes.length; i++) {
+            int bitWidth = getBitWidth(keyTypes[i]);
+            bitMasks[i] = bitWidth == Long.SIZE ? -1L : (1L << bitWidth) - 1;
+        }
+
+        hashCapacity = arraySize(expectedSize, FILL_RATIO);
+
+        maxFill = calculateMaxFill(hashCapacity);
+        mask = hashCapacity - 1;
+        keys0 = new LongBigArray();
+        keys0.ensureCapacity(hashCapacity);
+        keys1 = new LongBigArray();
+        keys1.ensureCapacity(hashCapacity);
+        nullMasks = new IntBigArray();
+        nullMasks.ensureCapacity(hashCapacity);
+        groupIds = new IntBigArray(-1);
+        groupIds.ensureCapacity(hashCapacity);
+
+        keys0ByGroupId = new LongBigArray();
+        keys0ByGroupId.ensureCapacity(hashCapacity);
+        keys1ByGroupId = new LongBigArray();
+        keys1ByGroupId.ensureCapacity(hashCapacity);
+        nullMasksByGroupId = new IntBigArray();
+        nullMasksByGroupId.ensureCapacity(hashCapacity);
+
+        // This interface is used for actively reserving memory (push model) for rehash.
+        // The caller can also query memory usage on this object (pull model)
+        this.updateMemory = requireNonNull(updateMemory, "updateMemory is null");
+    }
+
+    @Override
+    public long getEstimatedSize()
+    {
+        return INSTANCE_SIZE +
+                keys0.sizeOf() +
+                keys1.sizeOf() +
+                nullMasks.sizeOf() +
+                groupIds.sizeOf() +
+                keys0ByGroupId.sizeOf() +
+                keys1ByGroupId.sizeOf() +
+                nullMasksByGroupId.sizeOf() +
+                preallocatedMemoryInBytes;
+    }
+
+    @Override
+    public long getHashCollisions()
+    {
+        return hashCollisions;
+    }
+
+    @Override
+    public double getExpectedHashCollisions()
+    {
+        return expectedHashCollisions + estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+    }
+
+    @Override
+    public List<Type> getTypes()
+    {
+        if (outputRawHash) {
+            return ImmutableList.<Type>builder()
+                    .addAll(hashTypes)
+                    .add(BIGINT)
+                    .build();
+        }
+        return hashTypes;
+    }
+
+    @Override
+    public int getGroupCount()
+    {
+        return nextGroupId;
+    }
+
+    @Override
+    public void appendValuesTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        checkArgument(groupId >= 0, "groupId is negative");
+        appendKeysTo(groupId, pageBuilder, outputChannelOffset);
+
+        if (outputRawHash) {
+            BIGINT.writeLong(pageBuilder.getBlockBuilder(outputChannelOffset + keyTypes.length), getRawHash(groupId));
+        }
+    }
+
+    private void appendKeysTo(int groupId, PageBuilder pageBuilder, int outputChannelOffset)
+    {
+        long key0 = keys0ByGroupId.get(groupId);
+        long key1 = keys1ByGroupId.get(groupId);
+        int nullMask = nullMasksByGroupId.get(groupId);
+        for (int i = 0; i < keyTypes.length; i++) {
+            BlockBuilder blockBuilder = pageBuilder.getBlockBuilder(outputChannelOffset + i);
+            if ((nullMask & (1 << i)) != 0) {
+                blockBuilder.appendNull();
+            }
+            else if (keyTypes[i].equals(BOOLEAN)) {
+                BOOLEAN.writeBoolean(blockBuilder, unpack(i, key0, key1) != 0);
+            }
+            else {
+                keyTypes[i].writeLong(blockBuilder, unpack(i, key0, key1));
+            }
+        }
+    }
+
+    @Override
+    public Work<?> addPage(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new AddPageWork(getHashBlocks(page, hashChannels));
+    }
+
+    @Override
+    public List<Page> getBufferedPages()
+    {
+        // the values are not buffered as pages, so they are copied out in group id order
+        ImmutableList.Builder<Page> pages = ImmutableList.builder();
+        PageBuilder pageBuilder = new PageBuilder(hashTypes);
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            pageBuilder.declarePosition();
+            appendKeysTo(groupId, pageBuilder, 0);
+            if (pageBuilder.isFull()) {
+                pages.add(pageBuilder.build());
+                pageBuilder.reset();
+            }
+        }
+        if (!pageBuilder.isEmpty()) {
+            pages.add(pageBuilder.build());
+        }
+        return pages.build();
+    }
+
+    @Override
+    public Work<GroupByIdBlock> getGroupIds(Page page)
+    {
+        currentPageSizeInBytes = page.getRetainedSizeInBytes();
+        return new GetGroupIdsWork(getHashBlocks(page, hashChannels));
+    }
+
+    @Override
+    public boolean contains(int position, Page page, int[] hashChannels)
+    {
+        packRow(position, getHashBlocks(page, hashChannels));
+        long hashPosition = getHashPosition(currentKey0, currentKey1, currentNullMask, mask);
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            if (groupIds.get(hashPosition) == -1) {
+                return false;
+            }
+            if (currentRowEquals(hashPosition)) {
+                return true;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+        }
+    }
+
+    @Override
+    public long getRawHash(int groupId)
+    {
+        // must match InterpretedHashGenerator.hashPosition
+        long key0 = keys0ByGroupId.get(groupId);
+        long key1 = keys1ByGroupId.get(groupId);
+        int nullMask = nullMasksByGroupId.get(groupId);
+        long result = INITIAL_HASH_VALUE;
+        for (int i = 0; i < keyTypes.length; i++) {
+            long hash = (nullMask & (1 << i)) != 0 ? NULL_HASH_CODE : hashValue(keyTypes[i], unpack(i, key0, key1));
+            result = 31 * result + hash;
+        }
+        return result;
+    }
+
+    @VisibleForTesting
+    @Override
+    public int getCapacity()
+    {
+        return hashCapacity;
+    }
+
+    private int putIfAbsent(int position, Block[] blocks)
+    {
+        packRow(position, blocks);
+        long hashPosition = getHashPosition(currentKey0, currentKey1, currentNullMask, mask);
+
+        // look for an empty slot or a slot containing this key
+        while (true) {
+            int groupId = groupIds.get(hashPosition);
+            if (groupId == -1) {
+                break;
+            }
+
+            if (currentRowEquals(hashPosition)) {
+                return groupId;
+            }
+
+            // increment position and mask to handle wrap around
+            hashPosition = (hashPosition + 1) & mask;
+            hashCollisions++;
+        }
+
+        return addNewGroup(hashPosition);
+    }
+
+    private void packRow(int position, Block[] blocks)
+    {
+        long key0 = 0;
+        long key1 = 0;
+        int nullMask = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            Block block = blocks[i];
+            if (block.isNull(position)) {
+                nullMask |= 1 << i;
+                continue;
+            }
+            long value = keyTypes[i].equals(BOOLEAN) ? (BOOLEAN.getBoolean(block, position) ? 1 : 0) : keyTypes[i].getLong(block, position);
+            long packed = (value & bitMasks[i]) << bitOffsets[i];
+            if (keyIndexes[i] == 0) {
+                key0 |= packed;
+            }
+            else {
+                key1 |= packed;
+            }
+        }
+        currentKey0 = key0;
+        currentKey1 = key1;
+        currentNullMask = nullMask;
+    }
+
+    private boolean currentRowEquals(long hashPosition)
+    {
+        return keys0.get(hashPosition) == currentKey0 && keys1.get(hashPosition) == currentKey1 && nullMasks.get(hashPosition) == currentNullMask;
+    }
+
+    private long unpack(int channel, long key0, long key1)
+    {
+        long value = ((keyIndexes[channel] == 0 ? key0 : key1) >>> bitOffsets[channel]) & bitMasks[channel];
+        // restore the sign of the value
+        int unusedBits = Long.SIZE - Long.bitCount(bitMasks[channel]);
+        return (value << unusedBits) >> unusedBits;
+    }
+
+    private int addNewGroup(long hashPosition)
+    {
+        // record group id in hash
+        int groupId = nextGroupId++;
+
+        keys0.set(hashPosition, currentKey0);
+        keys1.set(hashPosition, currentKey1);
+        nullMasks.set(hashPosition, currentNullMask);
+        groupIds.set(hashPosition, groupId);
+        keys0ByGroupId.set(groupId, currentKey0);
+        keys1ByGroupId.set(groupId, currentKey1);
+        nullMasksByGroupId.set(groupId, currentNullMask);
+
+        // increase capacity, if necessary
+        if (needRehash()) {
+            tryRehash();
+        }
+        return groupId;
+    }
+
+    private boolean tryRehash()
+    {
+        long newCapacityLong = hashCapacity * 2L;
+        if (newCapacityLong > Integer.MAX_VALUE) {
+            throw new PrestoException(GENERIC_INSUFFICIENT_RESOURCES, "Size of hash table cannot exceed 1 billion entries");
+        }
+        int newCapacity = toIntExact(newCapacityLong);
+
+        // An estimate of how much extra memory is needed before we can go ahead and expand the hash table.
+        // This includes the new capacity for keys, null masks and groupIds as well as the values by groupId and the size of the current page
+        preallocatedMemoryInBytes = (newCapacity - hashCapacity) * (long) (KEY_COUNT * Long.BYTES + 2 * Integer.BYTES) +
+                (calculateMaxFill(newCapacity) - maxFill) * (long) (KEY_COUNT * Long.BYTES + Integer.BYTES) +
+                currentPageSizeInBytes;
+        if (!updateMemory.update()) {
+            // reserved memory but has exceeded the limit
+            return false;
+        }
+        preallocatedMemoryInBytes = 0;
+
+        expectedHashCollisions += estimateNumberOfHashCollisions(getGroupCount(), hashCapacity);
+
+        int newMask = newCapacity - 1;
+        LongBigArray newKeys0 = new LongBigArray();
+        newKeys0.ensureCapacity(newCapacity);
+        LongBigArray newKeys1 = new LongBigArray();
+        newKeys1.ensureCapacity(newCapacity);
+        IntBigArray newNullMasks = new IntBigArray();
+        newNullMasks.ensureCapacity(newCapacity);
+        IntBigArray newGroupIds = new IntBigArray(-1);
+        newGroupIds.ensureCapacity(newCapacity);
+
+        for (int groupId = 0; groupId < nextGroupId; groupId++) {
+            long key0 = keys0ByGroupId.get(groupId);
+            long key1 = keys1ByGroupId.get(groupId);
+            int nullMask = nullMasksByGroupId.get(groupId);
+
+            // find an empty slot for the address
+            long hashPosition = getHashPosition(key0, key1, nullMask, newMask);
+            while (newGroupIds.get(hashPosition) != -1) {
+                hashPosition = (hashPosition + 1) & newMask;
+                hashCollisions++;
+            }
+
+            // record the mapping
+            newKeys0.set(hashPosition, key0);
+            newKeys1.set(hashPosition, key1);
+            newNullMasks.set(hashPosition, nullMask);
+            newGroupIds.set(hashPosition, groupId);
+        }
+
+        mask = newMask;
+        hashCapacity = newCapacity;
+        maxFill = calculateMaxFill(hashCapacity);
+        keys0 = newKeys0;
+        keys1 = newKeys1;
+        nullMasks = newNullMasks;
+        groupIds = newGroupIds;
+
+        keys0ByGroupId.ensureCapacity(maxFill);
+        keys1ByGroupId.ensureCapacity(maxFill);
+        nullMasksByGroupId.ensureCapacity(maxFill);
+        return true;
+    }
+
+    private boolean needRehash()
+    {
+        return nextGroupId >= maxFill;
+    }
+
+    private static Block[] getHashBlocks(Page page, int[] hashChannels)
+    {
+        Block[] blocks = new Block[hashChannels.length];
+        for (int i = 0; i < hashChannels.length; i++) {
+            blocks[i] = page.getBlock(hashChannels[i]);
+        }
+        return blocks;
+    }
+
+    private static long getHashPosition(long key0, long key1, int nullMask, int mask)
+    {
+        return murmurHash3(31 * (31 * murmurHash3(key0) + key1) + nullMask) & mask;
+    }
+
+    private static int calculateMaxFill(int hashSize)
+    {
+        checkArgument(hashSize > 0, "hashSize must be greater than 0");
+        int maxFill = (int) Math.ceil(hashSize * FILL_RATIO);
+        if (maxFill == hashSize) {
+            maxFill--;
+        }
+        checkArgument(hashSize > maxFill, "hashSize must be larger than maxFill");
+        return maxFill;
+    }
+
+    /**
+     * Places the columns in the two keys, first fit in column order. Returns false if they do not fit.
+     */
+    private static boolean assignKeys(List<? extends Type> types, int[] keyIndexes, int[] bitOffsets)
+    {
+        int[] usedBits = new int[KEY_COUNT];
+        for (int i = 0; i < types.size(); i++) {
+            int bitWidth = getBitWidth(types.get(i));
+            if (bitWidth == 0) {
+                return false;
+            }
+            int key = 0;
+            while (key < KEY_COUNT && usedBits[key] + bitWidth > Long.SIZE) {
+                key++;
+            }
+            if (key == KEY_COUNT) {
+                return false;
+            }
+            keyIndexes[i] = key;
+            bitOffsets[i] = usedBits[key];
+            usedBits[key] += bitWidth;
+        }
+        return true;
+    }
+
+    private static int getBitWidth(Type type)
+    {
+        if (type.equals(BIGINT)) {
+            return Long.SIZE;
+        }
+        if (type.equals(INTEGER) || type.equals(DATE)) {
+            return Integer.SIZE;
+        }
+        if (type.equals(SMALLINT)) {
+            return Short.SIZE;
+        }
+        if (type.equals(TINYINT) || type.equals(BOOLEAN)) {
+            return Byte.SIZE;
+        }
+        // not supported
+        return 0;
+    }
+
+    private static long hashValue(Type type, long value)
+    {
+        if (type.equals(BIGINT)) {
+            return AbstractLongType.hash(value);
+        }
+        if (type.equals(INTEGER) || type.equals(DATE)) {
+            return AbstractIntType.hash((int) value);
+        }
+        if (type.equals(SMALLINT)) {
+            return SmallintType.hash((short) value);
+        }
+        if (type.equals(TINYINT)) {
+            return TinyintType.hash((byte) value);
+        }
+        // must match BooleanType.hash
+        return value != 0 ? 1231 : 1237;
+    }
+
+    private class AddPageWork
+            implements Work<Void>
+    {
+        private final Block[] blocks;
+        private final int positionCount;
+
+        private int lastPosition;
+
+        public AddPageWork(Block[] blocks)
+        {
+            this.blocks = requireNonNull(blocks, "blocks is null");
+            this.positionCount = blocks[0].getPositionCount();
+        }
+
+        @Override
+        public boolean process()
+        {
+            checkState(lastPosition <= positionCount, "position count out of bound");
+
+            // needRehash() == false indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // get the group for the current row
+                putIfAbsent(lastPosition, blocks);
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public Void getResult()
+        {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+    private class GetGroupIdsWork
+            implements Work<GroupByIdBlock>
+    {
+        private final BlockBuilder blockBuilder;
+        private final Block[] blocks;
+        private final int positionCount;
+
+        private boolean finished;
+        private int lastPosition;
+
+        public GetGroupIdsWork(Block[] blocks)
+        {
+            this.blocks = requireNonNull(blocks, "blocks is null");
+            this.positionCount = blocks[0].getPositionCount();
+            // we know the exact size required for the block
+            this.blockBuilder = BIGINT.createFixedSizeBlockBuilder(positionCount);
+        }
+
+        @Override
+        public boolean process()
+        {
+            checkState(lastPosition <= positionCount, "position count out of bound");
+            checkState(!finished);
+
+            // needRehash() == false indicates we have reached capacity boundary and a rehash is needed.
+            // We can only proceed if tryRehash() successfully did a rehash.
+            if (needRehash() && !tryRehash()) {
+                return false;
+            }
+
+            // putIfAbsent will rehash automatically if rehash is needed, unless there isn't enough memory to do so.
+            // Therefore needRehash will not generally return true even if we have just crossed the capacity boundary.
+            while (lastPosition < positionCount && !needRehash()) {
+                // output the group id for this row
+                BIGINT.writeLong(blockBuilder, putIfAbsent(lastPosition, blocks));
+                lastPosition++;
+            }
+            return lastPosition == positionCount;
+        }
+
+        @Override
+        public GroupByIdBlock getResult()
+        {
+            checkState(lastPosition == positionCount, "process has not yet finished");
+            checkState(!finished, "result has produced");
+            finished = true;
+            return new GroupByIdBlock(nextGroupId, blockBuilder.build());
+        }
+    }
+}
@@ -20,12 +20,12 @@ import io.airlift.units.DataSize;
 import it.unimi.dsi.fastutil.HashCommon;
 import org.openjdk.jol.info.ClassLayout;
 
-import java.util.Arrays;
+import javax.annotation.concurrent.GuardedBy;
 
 import static com.facebook.presto.operator.SyntheticAddress.decodePosition;
 import static com.facebook.presto.operator.SyntheticAddress.decodeSliceIndex;
 import static com.facebook.presto.util.HashCollisionsEstimator.estimateNumberOfHashCollisions;
-import static io.airlift.slice.SizeOf.sizeOf;
+import static com.google.common.base.Preconditions.checkState;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
@@ -41,21 +41,23 @@ public final class PagesHash
 
     private final int channelCount;
     private final int mask;
-    private final int[] key;
     private final long size;
 
-    // Native array of hashes for faster collisions resolution compared
-    // to accessing values in blocks. We use bytes to reduce memory foot print
-    // and there is no performance gain from storing full hashes
-    private final byte[] positionToHashes;
+    private final PagesHashTable hashTable;
     private final long hashCollisions;
     private final double expectedHashCollisions;
 
+    // the owner of the hash and each user of it hold a reference,
+    // and the table is closed when the last one is released
+    @GuardedBy("this")
+    private int references = 1;
+
     public PagesHash(
             AdaptiveLongBigArray addresses,
             int positionCount,
             PagesHashStrategy pagesHashStrategy,
-            PositionLinks.FactoryBuilder positionLinks)
+            PositionLinks.FactoryBuilder positionLinks,
+            boolean offHeap)
     {
         this.addresses = requireNonNull(addresses, "addresses is null");
         this.positionCount = positionCount;
@@ -66,10 +68,12 @@ public final class PagesHash
         int hashSize = HashCommon.arraySize(positionCount, 0.75f);
 
         mask = hashSize - 1;
-        key = new int[hashSize];
-        Arrays.fill(key, -1);
-
-        positionToHashes = new byte[positionCount];
+        if (offHeap) {
+            hashTable = new OffHeapPagesHashTable(hashSize, positionCount);
+        }
+        else {
+            hashTable = new HeapPagesHashTable(hashSize, positionCount);
+        }
 
         // We will process addresses in batches, to save memory on array of hashes.
         int positionsInStep = Math.min(positionCount + 1, (int) CACHE_SIZE.toBytes() / Integer.SIZE);
@@ -88,7 +92,7 @@ public final class PagesHash
                 int realPosition = position + stepBeginPosition;
                 long hash = readHashPosition(realPosition);
                 positionToFullHashes[position] = hash;
-                positionToHashes[realPosition] = (byte) hash;
+                hashTable.setPositionHash(realPosition, (byte) hash);
             }
 
             // index pages
@@ -102,9 +106,9 @@ public final class PagesHash
                 int pos = getHashPosition(hash, mask);
 
                 // look for an empty slot or a slot containing this key
-                while (key[pos] != -1) {
-                    int currentKey = key[pos];
-                    if (((byte) hash) == positionToHashes[currentKey] && positionEqualsPositionIgnoreNulls(currentKey, realPosition)) {
+                while (hashTable.getKey(pos) != -1) {
+                    int currentKey = hashTable.getKey(pos);
+                    if (((byte) hash) == hashTable.getPositionHash(currentKey) && positionEqualsPositionIgnoreNulls(currentKey, realPosition)) {
                         // found a slot for this key
                         // link the new key position to the current key position
                         realPosition = positionLinks.link(realPosition, currentKey);
@@ -117,12 +121,11 @@ public final class PagesHash
                     hashCollisionsLocal++;
                 }
 
-                key[pos] = realPosition;
+                hashTable.setKey(pos, realPosition);
             }
         }
 
-        size = addresses.getRetainedSizeInBytes() + pagesHashStrategy.getSizeInBytes() +
-                sizeOf(key) + sizeOf(positionToHashes);
+        size = addresses.getRetainedSizeInBytes() + pagesHashStrategy.getSizeInBytes();
         hashCollisions = hashCollisionsLocal;
         expectedHashCollisions = estimateNumberOfHashCollisions(positionCount, hashSize);
     }
@@ -139,7 +142,29 @@ public final class PagesHash
 
     public long getInMemorySizeInBytes()
     {
-        return INSTANCE_SIZE + size;
+        return INSTANCE_SIZE + size + hashTable.getRetainedSizeInBytes();
+    }
+
+    /**
+     * Adds a reference to the hash, which must be released with {@link #release()}.
+     */
+    public synchronized void retain()
+    {
+        checkState(references > 0, "PagesHash is released");
+        references++;
+    }
+
+    /**
+     * Releases a reference to the hash. The memory of the table is freed when the
+     * last reference is released, so the hash must not be used after that.
+     */
+    public synchronized void release()
+    {
+        checkState(references > 0, "PagesHash is released");
+        references--;
+        if (references == 0) {
+            hashTable.close();
+        }
     }
 
     public long getHashCollisions()
@@ -161,9 +186,10 @@ public final class PagesHash
     {
         int pos = getHashPosition(rawHash, mask);
 
-        while (key[pos] != -1) {
-            if (positionEqualsCurrentRowIgnoreNulls(key[pos], (byte) rawHash, rightPosition, hashChannelsPage)) {
-                return key[pos];
+        int currentKey;
+        while ((currentKey = hashTable.getKey(pos)) != -1) {
+            if (positionEqualsCurrentRowIgnoreNulls(currentKey, (byte) rawHash, rightPosition, hashChannelsPage)) {
+                return currentKey;
             }
             // increment position and mask to handler wrap around
             pos = (pos + 1) & mask;
@@ -200,7 +226,7 @@ public final class PagesHash
 
     private boolean positionEqualsCurrentRowIgnoreNulls(int leftPosition, byte rawHash, int rightPosition, Page rightPage)
     {
-        if (positionToHashes[leftPosition] != rawHash) {
+        if (hashTable.getPositionHash(leftPosition) != rawHash) {
             return false;
         }
 
@@ -0,0 +1,37 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+/**
+ * The open addressing table of a {@link PagesHash}. It stores the position of a
+ * key in each slot, or -1 for an empty slot, and the low byte of the hash of
+ * each position, which is compared before the values of the blocks.
+ */
+public interface PagesHashTable
+{
+    int getKey(int slot);
+
+    void setKey(int slot, int position);
+
+    byte getPositionHash(int position);
+
+    void setPositionHash(int position, byte hash);
+
+    long getRetainedSizeInBytes();
+
+    /**
+     * Frees the memory of the table, which must not be used after that.
+     */
+    void close();
+}
@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.google.common.collect.AbstractIterator;
+import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Spill support for operators that report the first occurrence of each distinct value.
+ * Once the in-memory hash is revoked, the distinct values seen so far and all further
+ * input are spilled into hash partitions. Each partition is then finished on its own:
+ * loading its already reported values into a fresh hash first ensures that only values
+ * not seen before are reported as distinct for the spilled input.
+ */
+public class PartitionedDistinctSpiller
+        implements Closeable
+{
+    private final int partitionCount;
+    private final PartitioningSpiller distinctValuesSpiller;
+    private final PartitioningSpiller inputSpiller;
+
+    /**
+     * @param distinctValueTypes types of the distinct value pages; the distinct channels come first
+     * @param distinctTypes types of the distinct channels
+     * @param inputTypes types of the spilled input pages
+     * @param inputDistinctChannels distinct channels of the spilled input pages
+     * @param partitionCount number of hash partitions to spill into
+     */
+    public PartitionedDistinctSpiller(
+            List<Type> distinctValueTypes,
+            List<Type> distinctTypes,
+            List<Type> inputTypes,
+            int[] inputDistinctChannels,
+            int partitionCount,
+            PartitioningSpillerFactory partitioningSpillerFactory,
+            OperatorContext operatorContext)
+    {
+        requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
+        requireNonNull(operatorContext, "operatorContext is null");
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+        this.partitionCount = partitionCount;
+        int[] distinctValueChannels = IntStream.range(0, distinctTypes.size()).toArray();
+        this.distinctValuesSpiller = partitioningSpillerFactory.create(
+                distinctValueTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(distinctTypes, distinctValueChannels), partitionCount),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+        this.inputSpiller = partitioningSpillerFactory.create(
+                inputTypes,
+                new LocalPartitionGenerator(new InterpretedHashGenerator(distinctTypes, inputDistinctChannels), partitionCount),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    public ListenableFuture<?> spillDistinctValues(Iterator<Page> pages)
+    {
+        return distinctValuesSpiller.spill(pages);
+    }
+
+    public ListenableFuture<?> spillInput(Page page)
+    {
+        return inputSpiller.spill(page);
+    }
+
+    public Iterator<Page> getDistinctValues(int partition)
+    {
+        return distinctValuesSpiller.getSpilledPages(partition);
+    }
+
+    public Iterator<Page> getInput(int partition)
+    {
+        return inputSpiller.getSpilledPages(partition);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try (Closer closer = Closer.create()) {
+            closer.register(distinctValuesSpiller);
+            closer.register(inputSpiller);
+        }
+    }
+
+    /**
+     * Returns the values of all groups of the hash, including the hash channel, if any.
+     */
+    public static Iterator<Page> getDistinctValuePages(GroupByHash groupByHash)
+    {
+        return new AbstractIterator<Page>()
+        {
+            private final PageBuilder pageBuilder = new PageBuilder(groupByHash.getTypes());
+            private int groupId;
+
+            @Override
+            protected Page computeNext()
+            {
+                if (groupId == groupByHash.getGroupCount()) {
+                    return endOfData();
+                }
+                pageBuilder.reset();
+                while (!pageBuilder.isFull() && groupId < groupByHash.getGroupCount()) {
+                    pageBuilder.declarePosition();
+                    groupByHash.appendValuesTo(groupId, pageBuilder, 0);
+                    groupId++;
+                }
+                return pageBuilder.build();
+            }
+        };
+    }
+}
@@ -80,6 +80,7 @@ public class ScanFilterAndProjectOperator
     private final LocalMemoryContext outputMemoryContext;
     private final SettableFuture<?> blocked = SettableFuture.create();
     private final Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier;
+    private final Optional<Supplier<Map<Integer, DynamicFilterBloomFilter>>> dynamicBloomFilterSupplier;
     private final MergingPageOutput mergingOutput;
 
     private RecordCursor cursor;
@@ -103,6 +104,7 @@ public class ScanFilterAndProjectOperator
             Iterable<ColumnHandle> columns,
             Iterable<Type> types,
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier,
+            Optional<Supplier<Map<Integer, DynamicFilterBloomFilter>>> dynamicBloomFilterSupplier,
             MergingPageOutput mergingOutput)
     {
         this.cursorProcessor = requireNonNull(cursorProcessor, "cursorProcessor is null");
@@ -117,6 +119,7 @@ public class ScanFilterAndProjectOperator
         this.pageProcessorMemoryContext = newSimpleAggregatedMemoryContext().newLocalMemoryContext(ScanFilterAndProjectOperator.class.getSimpleName());
         this.outputMemoryContext = operatorContext.newLocalSystemMemoryContext(ScanFilterAndProjectOperator.class.getSimpleName());
         this.dynamicFilterSupplier = requireNonNull(dynamicFilterSupplier, "dynamicFilterSupplier is null");
+        this.dynamicBloomFilterSupplier = requireNonNull(dynamicBloomFilterSupplier, "dynamicBloomFilterSupplier is null");
         this.mergingOutput = requireNonNull(mergingOutput, "mergingOutput is null");
 
         this.pageBuilder = new PageBuilder(ImmutableList.copyOf(requireNonNull(types, "types is null")));
@@ -298,6 +301,7 @@ public class ScanFilterAndProjectOperator
             if (page != null) {
                 // update operator stats
                 page = recordProcessedInput(page);
+                page = applyDynamicBloomFilters(page);
 
                 Iterator<Optional<Page>> output = pageProcessor.process(sqlFunctionProperties, yieldSignal, pageProcessorMemoryContext, page);
                 mergingOutput.addInput(output);
@@ -393,6 +397,52 @@ public class ScanFilterAndProjectOperator
         return (blocks == null) ? page : new Page(page.getPositionCount(), blocks);
     }
 
+    private Page applyDynamicBloomFilters(Page page)
+    {
+        if (!dynamicBloomFilterSupplier.isPresent()) {
+            return page;
+        }
+        Map<Integer, DynamicFilterBloomFilter> bloomFilters = dynamicBloomFilterSupplier.get().get();
+        if (bloomFilters.isEmpty()) {
+            return page;
+        }
+
+        int[] positions = new int[page.getPositionCount()];
+        for (int position = 0; position < positions.length; position++) {
+            positions[position] = position;
+        }
+        int positionCount = positions.length;
+        for (Map.Entry<Integer, DynamicFilterBloomFilter> entry : bloomFilters.entrySet()) {
+            Block block = page.getBlock(entry.getKey());
+            DynamicFilterBloomFilter bloomFilter = entry.getValue();
+            int retainedPositionCount = 0;
+            for (int i = 0; i < positionCount; i++) {
+                if (bloomFilter.mightContain(block, positions[i])) {
+                    positions[retainedPositionCount] = positions[i];
+                    retainedPositionCount++;
+                }
+            }
+            positionCount = retainedPositionCount;
+        }
+        if (positionCount == page.getPositionCount()) {
+            return page;
+        }
+
+        // the columns that are not filtered on stay lazy, so they are only loaded for the remaining rows if needed
+        int retainedPositionCount = positionCount;
+        Block[] blocks = new Block[page.getChannelCount()];
+        for (int channel = 0; channel < blocks.length; channel++) {
+            Block block = page.getBlock(channel);
+            if (block instanceof LazyBlock && !((LazyBlock) block).isLoaded()) {
+                blocks[channel] = new LazyBlock(retainedPositionCount, lazyBlock -> lazyBlock.setBlock(((LazyBlock) block).getLoadedBlock().getPositions(positions, 0, retainedPositionCount)));
+            }
+            else {
+                blocks[channel] = block.getPositions(positions, 0, retainedPositionCount);
+            }
+        }
+        return new Page(retainedPositionCount, blocks);
+    }
+
     private static Block[] copyOfPageBlocks(Page page)
     {
         Block[] blocks = new Block[page.getChannelCount()];
@@ -415,6 +465,7 @@ public class ScanFilterAndProjectOperator
         private final List<ColumnHandle> columns;
         private final List<Type> types;
         private final Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier;
+        private final Optional<Supplier<Map<Integer, DynamicFilterBloomFilter>>> dynamicBloomFilterSupplier;
         private final DataSize minOutputPageSize;
         private final int minOutputPageRowCount;
         private boolean closed;
@@ -430,6 +481,7 @@ public class ScanFilterAndProjectOperator
                 Iterable<ColumnHandle> columns,
                 List<Type> types,
                 Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier,
+                Optional<Supplier<Map<Integer, DynamicFilterBloomFilter>>> dynamicBloomFilterSupplier,
                 DataSize minOutputPageSize,
                 int minOutputPageRowCount)
         {
@@ -443,6 +495,7 @@ public class ScanFilterAndProjectOperator
             this.columns = ImmutableList.copyOf(requireNonNull(columns, "columns is null"));
             this.types = requireNonNull(types, "types is null");
             this.dynamicFilterSupplier = requireNonNull(dynamicFilterSupplier, "dynamicFilterSupplier is null");
+            this.dynamicBloomFilterSupplier = requireNonNull(dynamicBloomFilterSupplier, "dynamicBloomFilterSupplier is null");
             this.minOutputPageSize = requireNonNull(minOutputPageSize, "minOutputPageSize is null");
             this.minOutputPageRowCount = minOutputPageRowCount;
         }
@@ -468,6 +521,7 @@ public class ScanFilterAndProjectOperator
                     columns,
                     types,
                     dynamicFilterSupplier,
+                    dynamicBloomFilterSupplier,
                     new MergingPageOutput(types, minOutputPageSize.toBytes(), minOutputPageRowCount));
         }
 
@@ -15,20 +15,30 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.ChannelSet.ChannelSetBuilder;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.io.Closer;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
+import java.io.IOException;
 import java.util.Optional;
 
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 @ThreadSafe
@@ -38,7 +48,26 @@ public class SetBuilderOperator
     public static class SetSupplier
     {
         private final Type type;
-        private final SettableFuture<ChannelSet> channelSetFuture = SettableFuture.create();
+        private final SettableFuture<?> setBuilt = SettableFuture.create();
+        private final SettableFuture<?> probesFinished = SettableFuture.create();
+
+        private volatile ChannelSet channelSet;
+        private volatile SpilledChannelSet spilledChannelSet;
+
+        @GuardedBy("this")
+        private int probeFactoryCount;
+        @GuardedBy("this")
+        private int closedProbeFactoryCount;
+        @GuardedBy("this")
+        private int probeOperatorCount;
+        @GuardedBy("this")
+        private int closedProbeOperatorCount;
+        @GuardedBy("this")
+        private int pendingProbeOperatorCount;
+        @GuardedBy("this")
+        private int spilledSetProbeOperatorCount;
+        @GuardedBy("this")
+        private boolean spilledSetProbeCountKnown;
 
         public SetSupplier(Type type)
         {
@@ -50,15 +79,106 @@ public class SetBuilderOperator
             return type;
         }
 
-        public ListenableFuture<ChannelSet> getChannelSet()
+        public ListenableFuture<?> whenSetBuilt()
         {
-            return channelSetFuture;
+            return setBuilt;
+        }
+
+        /**
+         * Returns the in-memory set, or empty if the build side has been spilled.
+         */
+        public Optional<ChannelSet> getChannelSet()
+        {
+            checkState(setBuilt.isDone(), "Set has not been built yet");
+            return Optional.ofNullable(channelSet);
         }
 
         void setChannelSet(ChannelSet channelSet)
         {
-            boolean wasSet = channelSetFuture.set(requireNonNull(channelSet, "channelSet is null"));
-            checkState(wasSet, "ChannelSet already set");
+            checkState(!setBuilt.isDone(), "ChannelSet already set");
+            this.channelSet = requireNonNull(channelSet, "channelSet is null");
+            setBuilt.set(null);
+        }
+
+        void setSpilledChannelSet(SpilledChannelSet spilledChannelSet)
+        {
+            checkState(!setBuilt.isDone(), "ChannelSet already set");
+            this.spilledChannelSet = requireNonNull(spilledChannelSet, "spilledChannelSet is null");
+            synchronized (this) {
+                updateSpilledSetProbeCount();
+            }
+            setBuilt.set(null);
+        }
+
+        /**
+         * Registers the calling probe operator as a user of the spilled set. Must be called
+         * at most once per probe operator, after the set has been built.
+         */
+        synchronized Optional<SpilledChannelSet> acquireSpilledChannelSet()
+        {
+            checkState(setBuilt.isDone(), "Set has not been built yet");
+            if (spilledChannelSet == null) {
+                return Optional.empty();
+            }
+            pendingProbeOperatorCount--;
+            spilledSetProbeOperatorCount++;
+            return Optional.of(spilledChannelSet);
+        }
+
+        synchronized void incrementProbeFactoryCount()
+        {
+            probeFactoryCount++;
+        }
+
+        synchronized void probeFactoryClosed()
+        {
+            closedProbeFactoryCount++;
+            updateSpilledSetProbeCount();
+            updateProbesFinished();
+        }
+
+        synchronized void probeOperatorCreated()
+        {
+            checkState(closedProbeFactoryCount < probeFactoryCount, "All probe factories are already closed");
+            probeOperatorCount++;
+            pendingProbeOperatorCount++;
+        }
+
+        synchronized void probeOperatorClosed(boolean acquiredSpilledChannelSet)
+        {
+            closedProbeOperatorCount++;
+            if (!acquiredSpilledChannelSet) {
+                pendingProbeOperatorCount--;
+            }
+            updateSpilledSetProbeCount();
+            updateProbesFinished();
+        }
+
+        /**
+         * Completes once all probe operators are closed. The builder holds on to the spilled
+         * data until then.
+         */
+        ListenableFuture<?> whenProbesFinished()
+        {
+            return probesFinished;
+        }
+
+        @GuardedBy("this")
+        private void updateSpilledSetProbeCount()
+        {
+            // the number of probes sharing the spilled partitions is known once no more probes can acquire the set
+            if (spilledChannelSet != null && !spilledSetProbeCountKnown && closedProbeFactoryCount == probeFactoryCount && pendingProbeOperatorCount == 0) {
+                spilledChannelSet.setProbeCount(spilledSetProbeOperatorCount);
+                spilledSetProbeCountKnown = true;
+            }
+        }
+
+        @GuardedBy("this")
+        private void updateProbesFinished()
+        {
+            if (closedProbeFactoryCount == probeFactoryCount && closedProbeOperatorCount == probeOperatorCount) {
+                probesFinished.set(null);
+            }
         }
     }
 
@@ -73,6 +193,9 @@ public class SetBuilderOperator
         private final int expectedPositions;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final int spillPartitionCount;
+        private final PartitioningSpillerFactory partitioningSpillerFactory;
 
         public SetBuilderOperatorFactory(
                 int operatorId,
@@ -81,16 +204,38 @@ public class SetBuilderOperator
                 int setChannel,
                 Optional<Integer> hashChannel,
                 int expectedPositions,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                int spillPartitionCount,
+                PartitioningSpillerFactory partitioningSpillerFactory)
+        {
+            this(operatorId, planNodeId, new SetSupplier(requireNonNull(type, "type is null")), setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
+        }
+
+        private SetBuilderOperatorFactory(
+                int operatorId,
+                PlanNodeId planNodeId,
+                SetSupplier setProvider,
+                int setChannel,
+                Optional<Integer> hashChannel,
+                int expectedPositions,
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                int spillPartitionCount,
+                PartitioningSpillerFactory partitioningSpillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
             Preconditions.checkArgument(setChannel >= 0, "setChannel is negative");
-            this.setProvider = new SetSupplier(requireNonNull(type, "type is null"));
+            this.setProvider = requireNonNull(setProvider, "setProvider is null");
             this.setChannel = setChannel;
             this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            Preconditions.checkArgument(spillPartitionCount > 0, "spillPartitionCount must be positive");
+            this.spillPartitionCount = spillPartitionCount;
+            this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
         }
 
         public SetSupplier getSetProvider()
@@ -103,7 +248,7 @@ public class SetBuilderOperator
         {
             checkState(!closed, "Factory is already closed");
             OperatorContext operatorContext = driverContext.addOperatorContext(operatorId, planNodeId, SetBuilderOperator.class.getSimpleName());
-            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperator(operatorContext, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
         }
 
         @Override
@@ -115,30 +260,69 @@ public class SetBuilderOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider.getType(), setChannel, hashChannel, expectedPositions, joinCompiler);
+            return new SetBuilderOperatorFactory(operatorId, planNodeId, setProvider, setChannel, hashChannel, expectedPositions, joinCompiler, spillEnabled, spillPartitionCount, partitioningSpillerFactory);
         }
     }
 
+    public enum State
+    {
+        /**
+         * Operator accepts input
+         */
+        CONSUMING_INPUT,
+
+        /**
+         * Memory revoking occurred during {@link #CONSUMING_INPUT}. Operator accepts input and spills it
+         */
+        SPILLING_INPUT,
+
+        /**
+         * Input has been spilled and the spilled set passed on, operator waits until the probes are done with it
+         */
+        WAITING_FOR_PROBES,
+
+        /**
+         * Set has been built and passed on
+         */
+        FINISHED
+    }
+
     private final OperatorContext operatorContext;
+    private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
     private final SetSupplier setSupplier;
     private final int[] sourceChannels;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final boolean spillEnabled;
+    private final int spillPartitionCount;
+    private final PartitioningSpillerFactory partitioningSpillerFactory;
 
-    private final ChannelSetBuilder channelSetBuilder;
+    private ChannelSetBuilder channelSetBuilder;
 
-    private boolean finished;
+    private State state = State.CONSUMING_INPUT;
 
     @Nullable
     private Work<?> unfinishedWork;  // The pending work for current page.
 
+    private Optional<PartitioningSpiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private boolean spilledContainsNull;
+
     public SetBuilderOperator(
             OperatorContext operatorContext,
             SetSupplier setSupplier,
             int setChannel,
             Optional<Integer> hashChannel,
             int expectedPositions,
-            JoinCompiler joinCompiler)
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            int spillPartitionCount,
+            PartitioningSpillerFactory partitioningSpillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
+        this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
         this.setSupplier = requireNonNull(setSupplier, "setProvider is null");
 
         if (requireNonNull(hashChannel, "hashChannel is null").isPresent()) {
@@ -147,6 +331,11 @@ public class SetBuilderOperator
         else {
             this.sourceChannels = new int[]{setChannel};
         }
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.spillPartitionCount = spillPartitionCount;
+        this.partitioningSpillerFactory = requireNonNull(partitioningSpillerFactory, "partitioningSpillerFactory is null");
 
         // Set builder is has a single channel which goes in channel 0, if hash is present, add a hashBlock to channel 1
         Optional<Integer> channelSetHashChannel = hashChannel.isPresent() ? Optional.of(1) : Optional.empty();
@@ -154,8 +343,9 @@ public class SetBuilderOperator
                 setSupplier.getType(),
                 channelSetHashChannel,
                 expectedPositions,
-                requireNonNull(operatorContext, "operatorContext is null"),
-                requireNonNull(joinCompiler, "joinCompiler is null"));
+                operatorContext,
+                joinCompiler,
+                spillEnabled ? localRevocableMemoryContext : localUserMemoryContext);
     }
 
     @Override
@@ -164,32 +354,87 @@ public class SetBuilderOperator
         return operatorContext;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        if (state == State.WAITING_FOR_PROBES) {
+            return setSupplier.whenProbesFinished();
+        }
+        return spillInProgress;
+    }
+
     @Override
     public void finish()
     {
-        if (finished) {
+        if (state == State.WAITING_FOR_PROBES || state == State.FINISHED) {
+            return;
+        }
+        if (!spillInProgress.isDone()) {
             return;
         }
+        checkSpillSucceeded(spillInProgress);
+        // the set is still present if it was spilled on finish
+        finishMemoryRevoke();
+
+        if (state == State.CONSUMING_INPUT) {
+            // Convert revocable memory to user memory as the set is no longer revocable once it is passed on.
+            if (localRevocableMemoryContext.getBytes() > 0) {
+                long currentRevocableBytes = localRevocableMemoryContext.getBytes();
+                localRevocableMemoryContext.setBytes(0);
+                if (!localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + currentRevocableBytes)) {
+                    // TODO: this might fail (even though we have just released memory), but we don't
+                    // have a proper way to atomically convert memory reservations
+                    localRevocableMemoryContext.setBytes(currentRevocableBytes);
+                    // spill since revocable memory could not be converted to user memory immediately,
+                    // and release the set once spilling is finished
+                    spillToDisk();
+                    if (!spillInProgress.isDone()) {
+                        return;
+                    }
+                    checkSpillSucceeded(spillInProgress);
+                    finishMemoryRevoke();
+                }
+            }
+        }
 
-        ChannelSet channelSet = channelSetBuilder.build();
-        setSupplier.setChannelSet(channelSet);
-        operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
-        finished = true;
+        if (state == State.CONSUMING_INPUT) {
+            ChannelSet channelSet = channelSetBuilder.build();
+            setSupplier.setChannelSet(channelSet);
+            operatorContext.recordOutput(channelSet.getEstimatedSizeInBytes(), channelSet.size());
+            state = State.FINISHED;
+            return;
+        }
+
+        verify(state == State.SPILLING_INPUT, "unexpected state %s", state);
+        setSupplier.setSpilledChannelSet(new SpilledChannelSet(
+                setSupplier.getType(),
+                spiller.get(),
+                spillPartitionCount,
+                spilledContainsNull,
+                expectedPositions,
+                joinCompiler,
+                // the partitions loaded for the probes are accounted here until the probes are done
+                localUserMemoryContext));
+        state = State.WAITING_FOR_PROBES;
     }
 
     @Override
     public boolean isFinished()
     {
-        return finished;
+        return state == State.FINISHED || (state == State.WAITING_FOR_PROBES && setSupplier.whenProbesFinished().isDone());
     }
 
     @Override
     public boolean needsInput()
     {
+        if (state == State.SPILLING_INPUT) {
+            return spillInProgress.isDone();
+        }
+
         // Since SetBuilderOperator doesn't produce any output, the getOutput()
         // method may never be called. We need to handle any unfinished work
         // before addInput() can be called again.
-        return !finished && (unfinishedWork == null || processUnfinishedWork());
+        return state == State.CONSUMING_INPUT && (unfinishedWork == null || processUnfinishedWork());
     }
 
     @Override
@@ -197,7 +442,16 @@ public class SetBuilderOperator
     {
         requireNonNull(page, "page is null");
         checkState(!isFinished(), "Operator is already finished");
+        checkSpillSucceeded(spillInProgress);
+
+        if (state == State.SPILLING_INPUT) {
+            Page values = page.extractChannel(sourceChannels[0]);
+            spilledContainsNull |= values.getBlock(0).mayHaveNull() && containsNull(values);
+            spillInProgress = spiller.get().spill(values);
+            return;
+        }
 
+        checkState(state == State.CONSUMING_INPUT, "Operator is already finishing");
         unfinishedWork = channelSetBuilder.addPage(page.extractChannels(sourceChannels));
         processUnfinishedWork();
     }
@@ -208,6 +462,70 @@ public class SetBuilderOperator
         return null;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (!spillInProgress.isDone()) {
+            // the set or an input page is already being spilled
+            return spillInProgress;
+        }
+        // rows of a page still being processed cannot be spilled
+        if (state != State.CONSUMING_INPUT || unfinishedWork != null) {
+            return immediateFuture(null);
+        }
+        return spillToDisk();
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        if (state == State.CONSUMING_INPUT && spiller.isPresent()) {
+            // all further input goes straight to disk
+            channelSetBuilder = null;
+            localRevocableMemoryContext.setBytes(0);
+            state = State.SPILLING_INPUT;
+        }
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        try (Closer closer = Closer.create()) {
+            spiller.ifPresent(closer::register);
+            closer.register(() -> localUserMemoryContext.setBytes(0));
+            closer.register(() -> localRevocableMemoryContext.setBytes(0));
+        }
+    }
+
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSpillSucceeded(spillInProgress);
+        if (localRevocableMemoryContext.getBytes() == 0 || channelSetBuilder.size() == 0) {
+            return immediateFuture(null);
+        }
+
+        verify(!spiller.isPresent(), "set builder spills only once");
+        spiller = Optional.of(partitioningSpillerFactory.create(
+                ImmutableList.of(setSupplier.getType()),
+                SpilledChannelSet.createPartitionFunction(setSupplier.getType(), 0, spillPartitionCount),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext()));
+        spilledContainsNull = channelSetBuilder.containsNull();
+        spillInProgress = spiller.get().spill(channelSetBuilder.getValuePages());
+        return spillInProgress;
+    }
+
+    private static boolean containsNull(Page page)
+    {
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            if (page.getBlock(0).isNull(position)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private boolean processUnfinishedWork()
     {
         // Processes the unfinishedWork for this page by adding the data to the hash table. If this page
@@ -0,0 +1,235 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.exchange.LocalPartitionGenerator;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.sql.gen.JoinCompiler;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalInt;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.base.Verify.verify;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Build side of a semi join that did not fit in memory. The distinct build values
+ * are spilled into hash partitions, and probe operators process their (equally
+ * partitioned) input one partition at a time. Each partition is loaded into memory
+ * once and dropped as soon as every probe operator is done with it. The memory of the
+ * loaded partitions is accounted once for all probe operators.
+ */
+@ThreadSafe
+public class SpilledChannelSet
+{
+    private static final int[] HASH_CHANNELS = {0};
+
+    private final Type type;
+    private final PartitioningSpiller spiller;
+    private final int partitionCount;
+    private final boolean containsNull;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+    private final LocalMemoryContext memoryContext;
+
+    @GuardedBy("this")
+    private final Map<Integer, SettableFuture<ChannelSet>> partitions = new HashMap<>();
+    @GuardedBy("this")
+    private final long[] partitionSizes;
+    @GuardedBy("this")
+    private long loadedPartitionsSize;
+    @GuardedBy("this")
+    private final boolean[] partitionsUnloaded;
+    @GuardedBy("this")
+    private final int[] partitionReleaseCounts;
+    @GuardedBy("this")
+    private OptionalInt probeCount = OptionalInt.empty();
+
+    public SpilledChannelSet(
+            Type type,
+            PartitioningSpiller spiller,
+            int partitionCount,
+            boolean containsNull,
+            int expectedPositions,
+            JoinCompiler joinCompiler,
+            LocalMemoryContext memoryContext)
+    {
+        this.type = requireNonNull(type, "type is null");
+        this.spiller = requireNonNull(spiller, "spiller is null");
+        checkArgument(partitionCount > 0, "partitionCount must be positive");
+        this.partitionCount = partitionCount;
+        this.containsNull = containsNull;
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.memoryContext = requireNonNull(memoryContext, "memoryContext is null");
+        this.partitionSizes = new long[partitionCount];
+        this.partitionsUnloaded = new boolean[partitionCount];
+        this.partitionReleaseCounts = new int[partitionCount];
+    }
+
+    public Type getType()
+    {
+        return type;
+    }
+
+    public int getPartitionCount()
+    {
+        return partitionCount;
+    }
+
+    public boolean containsNull()
+    {
+        return containsNull;
+    }
+
+    /**
+     * Creates the partition function for pages that have the join value in {@param channel}.
+     * Build and probe pages are assigned to the same partition for the same value.
+     */
+    public LocalPartitionGenerator createPartitionFunction(int channel)
+    {
+        return createPartitionFunction(type, channel, partitionCount);
+    }
+
+    public static LocalPartitionGenerator createPartitionFunction(Type type, int channel, int partitionCount)
+    {
+        return new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(type), new int[] {channel}), partitionCount);
+    }
+
+    /**
+     * Returns the build values of the partition. The first caller reads them from disk,
+     * other callers get a future that completes once the partition is loaded. The set
+     * contains null if the whole build side contains null.
+     */
+    public ListenableFuture<ChannelSet> loadPartition(int partition)
+    {
+        SettableFuture<ChannelSet> partitionFuture;
+        synchronized (this) {
+            checkState(!partitionsUnloaded[partition], "Partition %s has already been released by all probes", partition);
+            if (partitions.containsKey(partition)) {
+                return partitions.get(partition);
+            }
+            partitionFuture = SettableFuture.create();
+            partitions.put(partition, partitionFuture);
+        }
+
+        // the partition is read without holding the lock, so the other partitions can be loaded and released meanwhile
+        try {
+            PartitionHash hash = new PartitionHash(partition);
+            Iterator<Page> pages = spiller.getSpilledPages(partition);
+            while (pages.hasNext()) {
+                hash.addPage(pages.next());
+            }
+            partitionFuture.set(hash.build(containsNull));
+        }
+        catch (RuntimeException e) {
+            partitionFuture.setException(e);
+            throw e;
+        }
+        return partitionFuture;
+    }
+
+    public synchronized void releasePartition(int partition)
+    {
+        partitionReleaseCounts[partition]++;
+        unloadIfReleased(partition);
+    }
+
+    /**
+     * Sets the number of probe operators that use this set. Until it is known,
+     * partitions are kept in memory after they have been loaded.
+     */
+    synchronized void setProbeCount(int probeCount)
+    {
+        checkState(!this.probeCount.isPresent(), "probeCount already set");
+        this.probeCount = OptionalInt.of(probeCount);
+        for (int partition = 0; partition < partitionCount; partition++) {
+            unloadIfReleased(partition);
+        }
+    }
+
+    @GuardedBy("this")
+    private void unloadIfReleased(int partition)
+    {
+        if (probeCount.isPresent() && partitionReleaseCounts[partition] == probeCount.getAsInt()) {
+            partitions.remove(partition);
+            partitionsUnloaded[partition] = true;
+            updatePartitionSize(partition, 0);
+        }
+    }
+
+    private synchronized void updatePartitionSize(int partition, long size)
+    {
+        loadedPartitionsSize += size - partitionSizes[partition];
+        partitionSizes[partition] = size;
+        memoryContext.setBytes(loadedPartitionsSize);
+    }
+
+    private class PartitionHash
+            implements UpdateMemory
+    {
+        private final int partition;
+        private final GroupByHash hash;
+
+        public PartitionHash(int partition)
+        {
+            this.partition = partition;
+            this.hash = GroupByHash.createGroupByHash(
+                    ImmutableList.of(type),
+                    HASH_CHANNELS,
+                    Optional.empty(),
+                    expectedPositions,
+                    false,
+                    joinCompiler,
+                    this);
+        }
+
+        public void addPage(Page page)
+        {
+            boolean done = hash.addPage(page).process();
+            // the memory is reserved without waiting for it, so the work never yields
+            verify(done, "adding spilled page did not finish");
+        }
+
+        public ChannelSet build(boolean containsNull)
+        {
+            // release what was reserved for a rehash
+            update();
+            return new ChannelSet(hash, containsNull, HASH_CHANNELS);
+        }
+
+        @Override
+        public boolean update()
+        {
+            // called before the hash grows, so the memory is reserved before it is allocated. Other probes may
+            // be waiting for the partition, so the reservation does not yield, but it fails when over the limit.
+            updatePartitionSize(partition, hash.getEstimatedSize());
+            return true;
+        }
+    }
+}
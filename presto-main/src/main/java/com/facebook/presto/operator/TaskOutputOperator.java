@@ -27,6 +27,9 @@ import java.util.List;
 import java.util.Optional;
 import java.util.function.Function;
 
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_COMPRESSED_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_UNCOMPRESSED_BYTES;
+import static com.facebook.presto.common.RuntimeUnit.BYTE;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -162,6 +165,10 @@ public class TaskOutputOperator
         List<SerializedPage> serializedPages = splitPage(page, DEFAULT_MAX_PAGE_SIZE_IN_BYTES).stream()
                 .map(serde::serialize)
                 .collect(toImmutableList());
+        for (SerializedPage serializedPage : serializedPages) {
+            operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_UNCOMPRESSED_BYTES, BYTE, serializedPage.getUncompressedSizeInBytes());
+            operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_COMPRESSED_BYTES, BYTE, serializedPage.getSizeInBytes());
+        }
 
         outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), serializedPages);
         operatorContext.recordOutput(page.getSizeInBytes(), page.getPositionCount());
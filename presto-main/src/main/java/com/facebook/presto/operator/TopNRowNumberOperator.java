@@ -17,11 +17,15 @@ import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.LocalMemoryContext;
+import com.facebook.presto.operator.WorkProcessor.TransformationState;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.Spiller;
+import com.facebook.presto.spiller.SpillerFactory;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
 
 import java.util.Iterator;
 import java.util.List;
@@ -29,9 +33,12 @@ import java.util.Optional;
 
 import static com.facebook.presto.SystemSessionProperties.isDictionaryAggregationEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
-import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.SpillingUtils.checkSpillSucceeded;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterators.transform;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
 public class TopNRowNumberOperator
@@ -58,6 +65,8 @@ public class TopNRowNumberOperator
         private final boolean generateRowNumber;
         private boolean closed;
         private final JoinCompiler joinCompiler;
+        private final boolean spillEnabled;
+        private final Optional<SpillerFactory> spillerFactory;
 
         public TopNRowNumberOperatorFactory(
                 int operatorId,
@@ -72,7 +81,9 @@ public class TopNRowNumberOperator
                 boolean partial,
                 Optional<Integer> hashChannel,
                 int expectedPositions,
-                JoinCompiler joinCompiler)
+                JoinCompiler joinCompiler,
+                boolean spillEnabled,
+                Optional<SpillerFactory> spillerFactory)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -90,6 +101,9 @@ public class TopNRowNumberOperator
             this.generateRowNumber = !partial;
             this.expectedPositions = expectedPositions;
             this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+            this.spillEnabled = spillEnabled;
+            this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+            checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
         }
 
         @Override
@@ -109,7 +123,9 @@ public class TopNRowNumberOperator
                     generateRowNumber,
                     hashChannel,
                     expectedPositions,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    spillerFactory);
         }
 
         @Override
@@ -121,21 +137,42 @@ public class TopNRowNumberOperator
         @Override
         public OperatorFactory duplicate()
         {
-            return new TopNRowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler);
+            return new TopNRowNumberOperatorFactory(operatorId, planNodeId, sourceTypes, outputChannels, partitionChannels, partitionTypes, sortChannels, sortOrder, maxRowCountPerPartition, partial, hashChannel, expectedPositions, joinCompiler, spillEnabled, spillerFactory);
         }
     }
 
     private final OperatorContext operatorContext;
     private final LocalMemoryContext localUserMemoryContext;
+    private final LocalMemoryContext localRevocableMemoryContext;
 
+    private final List<Type> sourceTypes;
     private final int[] outputChannels;
+    private final List<Integer> partitionChannels;
+    private final List<Type> partitionTypes;
+    private final PageWithPositionComparator comparator;
+    private final int maxRowCountPerPartition;
+    private final boolean generateRowNumber;
+    private final Optional<Integer> hashChannel;
+    private final int expectedPositions;
+    private final JoinCompiler joinCompiler;
+
+    private final boolean spillEnabled;
+    private final Optional<SpillerFactory> spillerFactory;
 
-    private final GroupByHash groupByHash;
-    private final GroupedTopNBuilder groupedTopNBuilder;
+    private GroupByHash groupByHash;
+    private GroupedTopNBuilder groupedTopNBuilder;
 
     private boolean finishing;
     private Work<?> unfinishedWork;
-    private Iterator<Page> outputIterator;
+    private Iterator<Optional<Page>> outputIterator;
+
+    private Optional<Spiller> spiller = Optional.empty();
+    private ListenableFuture<?> spillInProgress = immediateFuture(null);
+    private Runnable finishMemoryRevoke = () -> {};
+
+    // ranks the rows of a page of merged spilled rows
+    private GroupedTopNBuilder mergingBuilder;
+    private Work<?> unfinishedMergingWork;
 
     public TopNRowNumberOperator(
             OperatorContext operatorContext,
@@ -149,10 +186,13 @@ public class TopNRowNumberOperator
             boolean generateRowNumber,
             Optional<Integer> hashChannel,
             int expectedPositions,
-            JoinCompiler joinCompiler)
+            JoinCompiler joinCompiler,
+            boolean spillEnabled,
+            Optional<SpillerFactory> spillerFactory)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.localUserMemoryContext = operatorContext.localUserMemoryContext();
+        this.localRevocableMemoryContext = operatorContext.localRevocableMemoryContext();
 
         ImmutableList.Builder<Integer> outputChannelsBuilder = ImmutableList.builder();
         for (int channel : requireNonNull(outputChannels, "outputChannels is null")) {
@@ -164,29 +204,28 @@ public class TopNRowNumberOperator
         this.outputChannels = Ints.toArray(outputChannelsBuilder.build());
 
         checkArgument(maxRowCountPerPartition > 0, "maxRowCountPerPartition must be > 0");
-
         if (!partitionChannels.isEmpty()) {
             checkArgument(expectedPositions > 0, "expectedPositions must be > 0");
-            groupByHash = createGroupByHash(
-                    partitionTypes,
-                    Ints.toArray(partitionChannels),
-                    hashChannel,
-                    expectedPositions,
-                    isDictionaryAggregationEnabled(operatorContext.getSession()),
-                    joinCompiler,
-                    this::updateMemoryReservation);
-        }
-        else {
-            groupByHash = new NoChannelGroupByHash();
         }
+        // spilled rows are merged back by partition key hash, which requires a partition key
+        checkArgument(!spillEnabled || !partitionChannels.isEmpty(), "Spill requires partition channels");
+        checkArgument(!spillEnabled || spillerFactory.isPresent(), "Spiller Factory is not present when spill is enabled");
 
+        this.sourceTypes = ImmutableList.copyOf(sourceTypes);
+        this.partitionChannels = ImmutableList.copyOf(partitionChannels);
+        this.partitionTypes = ImmutableList.copyOf(partitionTypes);
         List<Type> types = toTypes(sourceTypes, outputChannels, generateRowNumber);
-        this.groupedTopNBuilder = new GroupedTopNBuilder(
-                ImmutableList.copyOf(sourceTypes),
-                new SimplePageWithPositionComparator(types, sortChannels, sortOrders),
-                maxRowCountPerPartition,
-                generateRowNumber,
-                groupByHash);
+        this.comparator = new SimplePageWithPositionComparator(types, sortChannels, sortOrders);
+        this.maxRowCountPerPartition = maxRowCountPerPartition;
+        this.generateRowNumber = generateRowNumber;
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.expectedPositions = expectedPositions;
+        this.joinCompiler = requireNonNull(joinCompiler, "joinCompiler is null");
+        this.spillEnabled = spillEnabled;
+        this.spillerFactory = requireNonNull(spillerFactory, "spillerFactory is null");
+
+        this.groupByHash = createGroupByHash(this::updateMemoryReservation);
+        this.groupedTopNBuilder = createGroupedTopNBuilder(groupByHash);
     }
 
     @Override
@@ -201,6 +240,12 @@ public class TopNRowNumberOperator
         finishing = true;
     }
 
+    @Override
+    public ListenableFuture<?> isBlocked()
+    {
+        return spillInProgress;
+    }
+
     @Override
     public boolean isFinished()
     {
@@ -222,6 +267,7 @@ public class TopNRowNumberOperator
         checkState(unfinishedWork == null, "Cannot add input with the operator when unfinished work is not empty");
         checkState(outputIterator == null, "Cannot add input with the operator when flushing");
         requireNonNull(page, "page is null");
+        checkSpillSucceeded(spillInProgress);
         unfinishedWork = groupedTopNBuilder.processPage(page);
         if (unfinishedWork.process()) {
             unfinishedWork = null;
@@ -232,6 +278,10 @@ public class TopNRowNumberOperator
     @Override
     public Page getOutput()
     {
+        if (!spillInProgress.isDone()) {
+            return null;
+        }
+        checkSpillSucceeded(spillInProgress);
         if (unfinishedWork != null) {
             boolean finished = unfinishedWork.process();
             updateMemoryReservation();
@@ -246,18 +296,57 @@ public class TopNRowNumberOperator
         }
 
         if (outputIterator == null) {
+            // reset the builder if the rows have been spilled since their memory could not be converted
+            finishMemoryRevoke();
+            if (!convertRevocableMemoryToUserMemory()) {
+                // spill since revocable memory could not be converted to user memory immediately
+                spillToDisk();
+                return null;
+            }
             // start flushing
-            outputIterator = groupedTopNBuilder.buildResult();
+            outputIterator = buildOutput();
         }
 
         Page output = null;
         if (outputIterator.hasNext()) {
-            output = outputIterator.next().extractChannels(outputChannels);
+            Optional<Page> next = outputIterator.next();
+            if (next.isPresent()) {
+                output = next.get().extractChannels(outputChannels);
+            }
         }
         updateMemoryReservation();
         return output;
     }
 
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        if (!spillInProgress.isDone()) {
+            // the rows are already being spilled since their memory could not be converted to user memory
+            return spillInProgress;
+        }
+        // rows of a page still being processed cannot be spilled, and once flushing
+        // has started the in-memory rows are no longer revocable
+        if (unfinishedWork != null || outputIterator != null) {
+            finishMemoryRevoke = () -> {};
+            return NOT_BLOCKED;
+        }
+        return spillToDisk();
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        finishMemoryRevoke.run();
+        finishMemoryRevoke = () -> {};
+    }
+
+    @Override
+    public void close()
+    {
+        spiller.ifPresent(Spiller::close);
+    }
+
     @VisibleForTesting
     public int getCapacity()
     {
@@ -265,10 +354,145 @@ public class TopNRowNumberOperator
         return groupByHash.getCapacity();
     }
 
+    private ListenableFuture<?> spillToDisk()
+    {
+        checkSpillSucceeded(spillInProgress);
+
+        if (localRevocableMemoryContext.getBytes() == 0) {
+            finishMemoryRevoke = () -> {};
+            return NOT_BLOCKED;
+        }
+
+        if (!spiller.isPresent()) {
+            spiller = Optional.of(spillerFactory.get().create(
+                    sourceTypes,
+                    operatorContext.getSpillContext(),
+                    operatorContext.aggregateSystemMemoryContext()));
+        }
+
+        // spilled rows are kept without row numbers since those are assigned after the spills are merged
+        spillInProgress = spiller.get().spill(groupedTopNBuilder.buildHashSortedResult(createPartitionHashGenerator()));
+        finishMemoryRevoke = () -> {
+            groupByHash = createGroupByHash(this::updateMemoryReservation);
+            groupedTopNBuilder = createGroupedTopNBuilder(groupByHash);
+            updateMemoryReservation();
+        };
+
+        return spillInProgress;
+    }
+
+    /**
+     * Converts the revocable memory to user memory, as the result iterator holds on to the rows so they can no longer be revoked.
+     *
+     * @return false if the memory could not be reserved as user memory, in which case it is still revocable
+     */
+    private boolean convertRevocableMemoryToUserMemory()
+    {
+        long currentRevocableBytes = localRevocableMemoryContext.getBytes();
+        if (currentRevocableBytes == 0) {
+            return true;
+        }
+        // there is no atomic conversion of memory reservations, so another operator may take the released
+        // memory before it is reserved again
+        localRevocableMemoryContext.setBytes(0);
+        if (localUserMemoryContext.trySetBytes(localUserMemoryContext.getBytes() + currentRevocableBytes)) {
+            return true;
+        }
+        localRevocableMemoryContext.setBytes(currentRevocableBytes);
+        return false;
+    }
+
+    private Iterator<Optional<Page>> buildOutput()
+    {
+        if (!spiller.isPresent()) {
+            return transform(groupedTopNBuilder.buildResult(), Optional::of);
+        }
+        return mergeSpilledAndMemoryPages().yieldingIterator();
+    }
+
+    private WorkProcessor<Page> mergeSpilledAndMemoryPages()
+    {
+        List<WorkProcessor<Page>> sortedStreams = ImmutableList.<WorkProcessor<Page>>builder()
+                .addAll(spiller.get().getSpills().stream()
+                        .map(WorkProcessor::fromIterator)
+                        .collect(toImmutableList()))
+                .add(WorkProcessor.fromIterator(groupedTopNBuilder.buildHashSortedResult(createPartitionHashGenerator())))
+                .build();
+
+        WorkProcessor<Page> mergedPages = new MergeHashSort(operatorContext.aggregateUserMemoryContext()).merge(
+                partitionTypes,
+                partitionChannels,
+                sourceTypes,
+                sortedStreams,
+                operatorContext.getDriverContext().getYieldSignal());
+
+        // rows with the same partition key hash never span merged pages, so each page
+        // holds complete partitions and can be ranked on its own
+        return mergedPages.flatTransform(page -> {
+            if (!page.isPresent()) {
+                return TransformationState.finished();
+            }
+            if (unfinishedMergingWork == null) {
+                mergingBuilder = createGroupedTopNBuilder(createGroupByHash(this::updateMemoryReservation));
+                unfinishedMergingWork = mergingBuilder.processPage(page.get());
+            }
+            if (!unfinishedMergingWork.process()) {
+                // wait for the memory of the builder
+                return TransformationState.yield();
+            }
+            unfinishedMergingWork = null;
+            return TransformationState.ofResult(WorkProcessor.fromIterator(mergingBuilder.buildResult()));
+        });
+    }
+
+    private GroupByHash createGroupByHash(UpdateMemory updateMemory)
+    {
+        if (partitionChannels.isEmpty()) {
+            return new NoChannelGroupByHash();
+        }
+        return GroupByHash.createGroupByHash(
+                partitionTypes,
+                Ints.toArray(partitionChannels),
+                hashChannel,
+                expectedPositions,
+                isDictionaryAggregationEnabled(operatorContext.getSession()),
+                joinCompiler,
+                updateMemory);
+    }
+
+    private GroupedTopNBuilder createGroupedTopNBuilder(GroupByHash groupByHash)
+    {
+        return new GroupedTopNBuilder(
+                sourceTypes,
+                comparator,
+                maxRowCountPerPartition,
+                generateRowNumber,
+                groupByHash);
+    }
+
+    private HashGenerator createPartitionHashGenerator()
+    {
+        return new InterpretedHashGenerator(partitionTypes, partitionChannels);
+    }
+
     private boolean updateMemoryReservation()
     {
-        // TODO: may need to use trySetMemoryReservation with a compaction to free memory (but that may cause GC pressure)
-        localUserMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+        if (spillEnabled && outputIterator == null) {
+            if (groupByHash.getGroupCount() == 0) {
+                localUserMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+                localRevocableMemoryContext.setBytes(0);
+            }
+            else {
+                localUserMemoryContext.setBytes(0);
+                localRevocableMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes());
+            }
+        }
+        else {
+            // TODO: may need to use trySetMemoryReservation with a compaction to free memory (but that may cause GC pressure)
+            localRevocableMemoryContext.setBytes(0);
+            long mergingBytes = mergingBuilder == null ? 0 : mergingBuilder.getEstimatedSizeInBytes();
+            localUserMemoryContext.setBytes(groupedTopNBuilder.getEstimatedSizeInBytes() + mergingBytes);
+        }
         return operatorContext.isWaitingForMemory().isDone();
     }
 
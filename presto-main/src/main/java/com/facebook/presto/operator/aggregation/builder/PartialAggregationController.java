@@ -0,0 +1,99 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.aggregation.builder;
+
+import javax.annotation.concurrent.GuardedBy;
+import javax.annotation.concurrent.ThreadSafe;
+
+import java.util.OptionalLong;
+
+import static com.google.common.base.Preconditions.checkArgument;
+
+/**
+ * Decides whether partial aggregation is worth doing, based on how much the partial results
+ * flushed so far reduced the number of rows. It is shared by all operators of an aggregation
+ * in a task, so that the decision made from the input of all of them applies to all of them.
+ * <p>
+ * Once partial aggregation is disabled, it stays disabled until a fixed budget of rows, a multiple
+ * of the minimum row count, was passed through. It is then tried again, and the next decision is
+ * made from the partial results flushed after that. The rows passed through never count toward the
+ * ratio of unique rows, as they say nothing about how much partial aggregation would reduce them.
+ */
+@ThreadSafe
+public class PartialAggregationController
+{
+    private static final long SKIPPED_ROWS_TO_MIN_ROWS_RATIO = 10;
+
+    private final long minRowCount;
+    private final double uniqueRowsRatioThreshold;
+
+    private volatile boolean partialAggregationDisabled;
+    @GuardedBy("this")
+    private long totalRowsProcessed;
+    @GuardedBy("this")
+    private long totalUniqueRowsProduced;
+    @GuardedBy("this")
+    private long totalRowsSkipped;
+
+    public PartialAggregationController(long minRowCount, double uniqueRowsRatioThreshold)
+    {
+        checkArgument(minRowCount >= 0, "minRowCount is negative");
+        checkArgument(uniqueRowsRatioThreshold >= 0 && uniqueRowsRatioThreshold <= 1, "uniqueRowsRatioThreshold must be between 0 and 1");
+        this.minRowCount = minRowCount;
+        this.uniqueRowsRatioThreshold = uniqueRowsRatioThreshold;
+    }
+
+    public boolean isPartialAggregationDisabled()
+    {
+        return partialAggregationDisabled;
+    }
+
+    /**
+     * @param rowsProcessed number of input rows of the flushed partial result
+     * @param uniqueRowsProduced number of rows of the flushed partial result, empty if the rows were passed through
+     */
+    public synchronized void onFlush(long rowsProcessed, OptionalLong uniqueRowsProduced)
+    {
+        if (partialAggregationDisabled) {
+            // partial results flushed by other operators after partial aggregation was disabled are ignored
+            if (!uniqueRowsProduced.isPresent()) {
+                totalRowsSkipped += rowsProcessed;
+                if (totalRowsSkipped >= minRowCount * SKIPPED_ROWS_TO_MIN_ROWS_RATIO) {
+                    partialAggregationDisabled = false;
+                }
+            }
+            return;
+        }
+
+        if (!uniqueRowsProduced.isPresent()) {
+            // rows passed through before partial aggregation was enabled again
+            return;
+        }
+
+        totalRowsProcessed += rowsProcessed;
+        totalUniqueRowsProduced += uniqueRowsProduced.getAsLong();
+        if (totalRowsProcessed >= minRowCount && totalUniqueRowsProduced > totalRowsProcessed * uniqueRowsRatioThreshold) {
+            partialAggregationDisabled = true;
+            // start over, so that the next decision is based on the partial results after the rows are skipped
+            totalRowsProcessed = 0;
+            totalUniqueRowsProduced = 0;
+            totalRowsSkipped = 0;
+        }
+    }
+
+    public PartialAggregationController duplicate()
+    {
+        return new PartialAggregationController(minRowCount, uniqueRowsRatioThreshold);
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.aggregation.builder;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.LongArrayBlock;
+import com.facebook.presto.operator.CompletedWork;
+import com.facebook.presto.operator.HashCollisionsCounter;
+import com.facebook.presto.operator.UpdateMemory;
+import com.facebook.presto.operator.Work;
+import com.facebook.presto.operator.WorkProcessor;
+import com.facebook.presto.operator.aggregation.AccumulatorFactory;
+import com.facebook.presto.spi.function.aggregation.GroupByIdBlock;
+import com.facebook.presto.spi.function.aggregation.GroupedAccumulator;
+import com.google.common.collect.ImmutableList;
+import com.google.common.primitives.Ints;
+import com.google.common.util.concurrent.ListenableFuture;
+
+import javax.annotation.Nullable;
+
+import java.util.List;
+import java.util.Optional;
+
+import static com.google.common.base.Preconditions.checkState;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Partial aggregation builder that does not group its input. Every input row is turned into an
+ * intermediate aggregation state of its own, which the final aggregation merges like any other
+ * partial result. It is used when partial aggregation barely reduces the number of rows, so that
+ * building and flushing a hash table would only cost CPU and memory.
+ * <p>
+ * Each input page is converted as soon as it is added and is returned by the next {@link #buildResult()}.
+ */
+public class SkipAggregationBuilder
+        implements HashAggregationBuilder
+{
+    private final int[] groupByChannels;
+    private final Optional<Integer> hashChannel;
+    private final List<AccumulatorFactory> accumulatorFactories;
+
+    @Nullable
+    private Page currentPage;
+
+    public SkipAggregationBuilder(
+            List<Integer> groupByChannels,
+            Optional<Integer> hashChannel,
+            List<AccumulatorFactory> accumulatorFactories)
+    {
+        this.groupByChannels = Ints.toArray(requireNonNull(groupByChannels, "groupByChannels is null"));
+        this.hashChannel = requireNonNull(hashChannel, "hashChannel is null");
+        this.accumulatorFactories = ImmutableList.copyOf(requireNonNull(accumulatorFactories, "accumulatorFactories is null"));
+    }
+
+    @Override
+    public Work<?> processPage(Page page)
+    {
+        checkState(currentPage == null, "previous page has not been consumed");
+        currentPage = toIntermediatePage(page);
+        return new CompletedWork<>(currentPage);
+    }
+
+    @Override
+    public WorkProcessor<Page> buildResult()
+    {
+        if (currentPage == null) {
+            return WorkProcessor.of();
+        }
+        Page result = currentPage;
+        currentPage = null;
+        return WorkProcessor.of(result);
+    }
+
+    @Override
+    public boolean isFull()
+    {
+        // the converted page has to be returned before the next page can be added
+        return currentPage != null;
+    }
+
+    @Override
+    public void updateMemory()
+    {
+        // the converted page is only held until it is returned, like the output of any other operator
+    }
+
+    @Override
+    public void recordHashCollisions(HashCollisionsCounter hashCollisionsCounter)
+    {
+        // no hashing is performed
+    }
+
+    @Override
+    public void close()
+    {
+        currentPage = null;
+    }
+
+    @Override
+    public ListenableFuture<?> startMemoryRevoke()
+    {
+        throw new UnsupportedOperationException("startMemoryRevoke not supported for SkipAggregationBuilder");
+    }
+
+    @Override
+    public void finishMemoryRevoke()
+    {
+        throw new UnsupportedOperationException("finishMemoryRevoke not supported for SkipAggregationBuilder");
+    }
+
+    private Page toIntermediatePage(Page page)
+    {
+        int positionCount = page.getPositionCount();
+        Block[] blocks = new Block[groupByChannels.length + (hashChannel.isPresent() ? 1 : 0) + accumulatorFactories.size()];
+        int outputChannel = 0;
+        for (int groupByChannel : groupByChannels) {
+            blocks[outputChannel++] = page.getBlock(groupByChannel);
+        }
+        if (hashChannel.isPresent()) {
+            blocks[outputChannel++] = page.getBlock(hashChannel.get());
+        }
+
+        // every row is a group of its own
+        GroupByIdBlock groupIds = new GroupByIdBlock(positionCount, new LongArrayBlock(positionCount, Optional.empty(), sequentialGroupIds(positionCount)));
+        for (AccumulatorFactory accumulatorFactory : accumulatorFactories) {
+            // the accumulator only lives for a single page, so its memory does not need to be tracked
+            GroupedAccumulator accumulator = accumulatorFactory.createGroupedAccumulator(UpdateMemory.NOOP);
+            accumulator.addInput(groupIds, page);
+            BlockBuilder output = accumulator.getIntermediateType().createBlockBuilder(null, positionCount);
+            for (int groupId = 0; groupId < positionCount; groupId++) {
+                accumulator.evaluateIntermediate(groupId, output);
+            }
+            blocks[outputChannel++] = output.build();
+        }
+        return new Page(positionCount, blocks);
+    }
+
+    private static long[] sequentialGroupIds(int positionCount)
+    {
+        long[] groupIds = new long[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            groupIds[i] = i;
+        }
+        return groupIds;
+    }
+}
@@ -46,6 +46,7 @@ import java.util.function.Consumer;
 import java.util.function.Supplier;
 import java.util.stream.Stream;
 
+import static com.facebook.presto.SystemSessionProperties.isLockFreeLocalExchangeEnabled;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
 import static com.facebook.presto.operator.exchange.LocalExchangeSink.finishedLocalExchangeSink;
 import static com.facebook.presto.sql.planner.SystemPartitioningHandle.FIXED_ARBITRARY_DISTRIBUTION;
@@ -102,9 +103,10 @@ public class LocalExchange
         openSinkFactories.addAll(allSinkFactories);
         noMoreSinkFactories();
 
+        boolean lockFree = isLockFreeLocalExchangeEnabled(session);
         ImmutableList.Builder<LocalExchangeSource> sources = ImmutableList.builder();
         for (int i = 0; i < bufferCount; i++) {
-            sources.add(new LocalExchangeSource(source -> checkAllSourcesFinished()));
+            sources.add(new LocalExchangeSource(source -> checkAllSourcesFinished(), lockFree));
         }
         this.sources = sources.build();
 
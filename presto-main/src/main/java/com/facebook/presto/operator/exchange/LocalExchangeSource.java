@@ -19,55 +19,76 @@ import com.facebook.presto.operator.WorkProcessor.ProcessState;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
-import javax.annotation.Nullable;
-import javax.annotation.concurrent.GuardedBy;
 import javax.annotation.concurrent.ThreadSafe;
 
-import java.util.ArrayList;
-import java.util.List;
-import java.util.concurrent.BlockingQueue;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Consumer;
 
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.util.concurrent.Futures.immediateFuture;
 import static java.util.Objects.requireNonNull;
 
+/**
+ * Buffer of pages for a single consumer of a local exchange.
+ * <p>
+ * By default, adding a page synchronizes on the source. In lock-free mode, pages are added to a
+ * non-blocking queue without taking any lock, and a reader registers its future before checking
+ * the buffer again, so that a page added concurrently either is seen by the reader, or completes
+ * the future. Pages added after the source was closed are released by the writer that added them.
+ */
 @ThreadSafe
 public class LocalExchangeSource
 {
     private static final ListenableFuture<?> NOT_BLOCKED = immediateFuture(null);
 
     private final Consumer<LocalExchangeSource> onFinish;
+    private final boolean lockFree;
 
-    private final BlockingQueue<PageReference> buffer = new LinkedBlockingDeque<>();
+    private final Queue<PageReference> buffer;
     private final AtomicLong bufferedBytes = new AtomicLong();
+    private final AtomicInteger bufferedPages = new AtomicInteger();
 
-    @Nullable
-    @GuardedBy("this")
-    private SettableFuture<?> notEmptyFuture; // null indicates no callback present
+    // null indicates no callback present, guarded by this unless in lock-free mode
+    private final AtomicReference<SettableFuture<?>> notEmptyFuture = new AtomicReference<>();
 
     private volatile boolean finishing;
+    private volatile boolean closed;
 
     public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish)
+    {
+        this(onFinish, false);
+    }
+
+    public LocalExchangeSource(Consumer<LocalExchangeSource> onFinish, boolean lockFree)
     {
         this.onFinish = requireNonNull(onFinish, "onFinish is null");
+        this.lockFree = lockFree;
+        this.buffer = lockFree ? new ConcurrentLinkedQueue<>() : new LinkedBlockingDeque<>();
     }
 
     public LocalExchangeBufferInfo getBufferInfo()
     {
         // This must be lock free to assure task info creation is fast
         // Note: the stats my be internally inconsistent
-        return new LocalExchangeBufferInfo(bufferedBytes.get(), buffer.size());
+        return new LocalExchangeBufferInfo(bufferedBytes.get(), bufferedPages.get());
     }
 
     void addPage(PageReference pageReference)
     {
         checkNotHoldsLock();
 
+        if (lockFree) {
+            addPageLockFree(pageReference);
+            return;
+        }
+
         boolean added = false;
-        SettableFuture<?> notEmptyFuture = null;
+        SettableFuture<?> notEmptyFuture;
         long retainedSizeInBytes = pageReference.getRetainedSizeInBytes();
         synchronized (this) {
             // ignore pages after finish
@@ -75,15 +96,13 @@ public class LocalExchangeSource
                 // buffered bytes must be updated before adding to the buffer to assure
                 // the count does not go negative
                 bufferedBytes.addAndGet(retainedSizeInBytes);
+                bufferedPages.incrementAndGet();
                 buffer.add(pageReference);
                 added = true;
             }
 
             // we just added a page (or we are finishing) so we are not empty
-            if (this.notEmptyFuture != null) {
-                notEmptyFuture = this.notEmptyFuture;
-                this.notEmptyFuture = null;
-            }
+            notEmptyFuture = this.notEmptyFuture.getAndSet(null);
         }
 
         if (!added) {
@@ -97,6 +116,33 @@ public class LocalExchangeSource
         }
     }
 
+    private void addPageLockFree(PageReference pageReference)
+    {
+        // ignore pages after finish
+        if (finishing) {
+            pageReference.removePage();
+            return;
+        }
+
+        // buffered bytes must be updated before adding to the buffer to assure
+        // the count does not go negative
+        bufferedBytes.addAndGet(pageReference.getRetainedSizeInBytes());
+        bufferedPages.incrementAndGet();
+        buffer.add(pageReference);
+
+        if (closed) {
+            // the source was closed while the page was added, so no reader will remove it
+            releaseBufferedPages();
+        }
+
+        // the page is added before the future is taken, so a reader that registered
+        // the future before the page was visible is notified
+        SettableFuture<?> notEmptyFuture = this.notEmptyFuture.getAndSet(null);
+        if (notEmptyFuture != null) {
+            notEmptyFuture.set(null);
+        }
+    }
+
     public WorkProcessor<Page> pages()
     {
         return WorkProcessor.create(() -> {
@@ -133,6 +179,7 @@ public class LocalExchangeSource
         // dereference the page outside of lock, since may trigger a callback
         Page page = pageReference.removePage();
         bufferedBytes.addAndGet(-page.getRetainedSizeInBytes());
+        bufferedPages.decrementAndGet();
 
         checkFinished();
 
@@ -148,17 +195,42 @@ public class LocalExchangeSource
             return NOT_BLOCKED;
         }
 
+        if (lockFree) {
+            return waitForReadingLockFree();
+        }
+
         synchronized (this) {
             // re-check after synchronizing
             if (finishing || !buffer.isEmpty()) {
                 return NOT_BLOCKED;
             }
             // if we need to block readers, and the current future is complete, create a new one
-            if (notEmptyFuture == null) {
-                notEmptyFuture = SettableFuture.create();
+            if (notEmptyFuture.get() == null) {
+                notEmptyFuture.set(SettableFuture.create());
             }
-            return notEmptyFuture;
+            return notEmptyFuture.get();
+        }
+    }
+
+    private ListenableFuture<?> waitForReadingLockFree()
+    {
+        SettableFuture<?> future = notEmptyFuture.get();
+        if (future == null) {
+            future = SettableFuture.create();
+            if (!notEmptyFuture.compareAndSet(null, future)) {
+                // the future was registered by another reader or taken by a writer in the meantime
+                return NOT_BLOCKED;
+            }
+        }
+
+        // re-check after registering the future, since a page added before it was
+        // registered did not complete it
+        if (finishing || !buffer.isEmpty()) {
+            notEmptyFuture.compareAndSet(future, null);
+            future.set(null);
+            return NOT_BLOCKED;
         }
+        return future;
     }
 
     public boolean isFinished()
@@ -167,6 +239,10 @@ public class LocalExchangeSource
         if (!finishing) {
             return false;
         }
+        if (lockFree) {
+            // pages added concurrently with close are released by the writer
+            return closed || buffer.isEmpty();
+        }
         synchronized (this) {
             // Synchronize to ensure effects of an in-flight close() or finish() are observed
             return finishing && buffer.isEmpty();
@@ -184,8 +260,7 @@ public class LocalExchangeSource
             }
             finishing = true;
 
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
+            notEmptyFuture = this.notEmptyFuture.getAndSet(null);
         }
 
         // notify readers outside of lock since this may result in a callback
@@ -200,20 +275,16 @@ public class LocalExchangeSource
     {
         checkNotHoldsLock();
 
-        List<PageReference> remainingPages = new ArrayList<>();
         SettableFuture<?> notEmptyFuture;
         synchronized (this) {
             finishing = true;
+            closed = true;
 
-            buffer.drainTo(remainingPages);
-            bufferedBytes.addAndGet(-remainingPages.stream().mapToLong(PageReference::getRetainedSizeInBytes).sum());
-
-            notEmptyFuture = this.notEmptyFuture;
-            this.notEmptyFuture = null;
+            notEmptyFuture = this.notEmptyFuture.getAndSet(null);
         }
 
         // free all the remaining pages
-        remainingPages.forEach(PageReference::removePage);
+        releaseBufferedPages();
 
         // notify readers outside of lock since this may result in a callback
         if (notEmptyFuture != null) {
@@ -225,6 +296,19 @@ public class LocalExchangeSource
         checkFinished();
     }
 
+    private void releaseBufferedPages()
+    {
+        checkNotHoldsLock();
+
+        PageReference pageReference = buffer.poll();
+        while (pageReference != null) {
+            bufferedBytes.addAndGet(-pageReference.getRetainedSizeInBytes());
+            bufferedPages.decrementAndGet();
+            pageReference.removePage();
+            pageReference = buffer.poll();
+        }
+    }
+
     private void checkFinished()
     {
         checkNotHoldsLock();
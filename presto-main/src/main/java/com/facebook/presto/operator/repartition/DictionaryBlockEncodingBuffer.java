@@ -0,0 +1,335 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator.repartition;
+
+import com.facebook.presto.common.block.ArrayAllocator;
+import com.facebook.presto.common.block.DictionaryBlock;
+import com.facebook.presto.common.block.DictionaryBlockEncoding;
+import com.facebook.presto.common.block.DictionaryId;
+import com.facebook.presto.common.block.RunLengthBlockEncoding;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import io.airlift.slice.SliceOutput;
+import it.unimi.dsi.fastutil.ints.Int2IntOpenHashMap;
+import org.openjdk.jol.info.ClassLayout;
+
+import static com.facebook.presto.common.array.Arrays.ExpansionFactor.LARGE;
+import static com.facebook.presto.common.array.Arrays.ExpansionFactor.SMALL;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.INITIALIZE;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.NONE;
+import static com.facebook.presto.common.array.Arrays.ExpansionOption.PRESERVE;
+import static com.facebook.presto.common.array.Arrays.ensureCapacity;
+import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
+import static com.facebook.presto.operator.UncheckedByteArrays.setIntUnchecked;
+import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.getEstimatedBufferMaxCapacity;
+import static com.facebook.presto.operator.repartition.AbstractBlockEncodingBuffer.writeLengthPrefixedString;
+import static com.google.common.base.MoreObjects.toStringHelper;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static io.airlift.slice.SizeOf.SIZE_OF_LONG;
+import static java.util.Objects.requireNonNull;
+import static sun.misc.Unsafe.ARRAY_INT_INDEX_SCALE;
+
+/**
+ * Buffer for a top level column that keeps the Dictionary or RLE encoding of the incoming blocks
+ * instead of flattening them. The rows are buffered as ids into a dictionary that only contains the
+ * entries referenced by the rows of this partition, so that the dictionary sent to the destination
+ * is compacted. The entries are buffered by the delegate, which is the buffer the column would use
+ * without this pass-through.
+ * <p>
+ * An RLE block is handled as a dictionary with one entry. Rows of non-dictionary blocks each add a new
+ * entry. When all buffered rows reference the same entry, the column is serialized as an RLE block.
+ * Entries of different dictionaries are not merged, i.e. when the dictionary of the incoming blocks
+ * changes, e.g. at the boundary of an ORC stripe, the entries of the new dictionary are appended after
+ * the ones buffered so far.
+ */
+public class DictionaryBlockEncodingBuffer
+        implements BlockEncodingBuffer
+{
+    private static final int INSTANCE_SIZE = ClassLayout.parseClass(DictionaryBlockEncodingBuffer.class).instanceSize();
+    private static final int NOT_MAPPED = -1;
+    private static final int MAPPED_IN_CURRENT_PAGE = -2;
+
+    // The buffer for the dictionary entries referenced by the buffered rows
+    private final BlockEncodingBuffer delegate;
+    private final ArrayAllocator bufferAllocator;
+
+    // Maps the ids of the current dictionary to the ids of the entries buffered by the delegate
+    private final Int2IntOpenHashMap dictionaryIdMap = new Int2IntOpenHashMap();
+
+    private DecodedBlockNode decodedBlockNode;
+    private int[] positions;
+    private int positionCount;
+    private int positionsOffset;
+    private int batchSize;
+    private int partitionBufferCapacity;
+    private long estimatedSerializedPageSize;
+
+    // The dictionary of the current block, the value block for RLE blocks, or null for other blocks
+    private Object currentDictionary;
+    // The current block if it is a DictionaryBlock
+    private DictionaryBlock dictionaryBlock;
+
+    // The dictionary ids whose entries are appended to the delegate in the current batch
+    private int[] newDictionaryIds;
+
+    private byte[] idsBuffer;
+    private int idsBufferIndex;
+    private int estimatedIdsBufferMaxCapacity;
+
+    private int bufferedPositionCount;
+    private int bufferedDictionaryPositionCount;
+    private boolean flushed;
+
+    public DictionaryBlockEncodingBuffer(BlockEncodingBuffer delegate, ArrayAllocator bufferAllocator)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.bufferAllocator = requireNonNull(bufferAllocator, "bufferAllocator is null");
+        dictionaryIdMap.defaultReturnValue(NOT_MAPPED);
+    }
+
+    @Override
+    public void setupDecodedBlocksAndPositions(DecodedBlockNode decodedBlockNode, int[] positions, int positionCount, int partitionBufferCapacity, long estimatedSerializedPageSize)
+    {
+        this.decodedBlockNode = requireNonNull(decodedBlockNode, "decodedBlockNode is null");
+        this.positions = requireNonNull(positions, "positions is null");
+        this.positionCount = positionCount;
+        this.positionsOffset = 0;
+        this.partitionBufferCapacity = partitionBufferCapacity;
+        this.estimatedSerializedPageSize = estimatedSerializedPageSize;
+
+        Object decodedBlock = decodedBlockNode.getDecodedBlock();
+        Object dictionary = null;
+        dictionaryBlock = null;
+        if (decodedBlock instanceof DictionaryBlock) {
+            dictionaryBlock = (DictionaryBlock) decodedBlock;
+            dictionary = dictionaryBlock.getDictionary();
+        }
+        else if (decodedBlock instanceof RunLengthEncodedBlock) {
+            dictionary = ((RunLengthEncodedBlock) decodedBlock).getValue();
+        }
+
+        if (dictionary != currentDictionary) {
+            // The ids of the new dictionary refer to different entries, so their entries have to be buffered again
+            dictionaryIdMap.clear();
+            currentDictionary = dictionary;
+        }
+
+        if (currentDictionary == null) {
+            delegate.setupDecodedBlocksAndPositions(decodedBlockNode, positions, positionCount, partitionBufferCapacity, estimatedSerializedPageSize);
+        }
+
+        double decodedBlockPageSizeFraction = decodedBlockNode.getEstimatedSerializedSizeInBytes() / ((double) estimatedSerializedPageSize);
+        estimatedIdsBufferMaxCapacity = getEstimatedBufferMaxCapacity(partitionBufferCapacity * decodedBlockPageSizeFraction, Integer.BYTES, Integer.BYTES);
+    }
+
+    @Override
+    public void accumulateSerializedRowSizes(int[] serializedRowSizes)
+    {
+        if (currentDictionary == null) {
+            delegate.accumulateSerializedRowSizes(serializedRowSizes);
+        }
+        else {
+            // Only the first row referencing an entry that is not buffered yet pays for the entry
+            int[] newEntryRows = ensureCapacity(null, positionCount, SMALL, NONE, bufferAllocator);
+            newDictionaryIds = ensureCapacity(newDictionaryIds, positionCount, SMALL, NONE, bufferAllocator);
+            int newEntryCount = 0;
+            for (int i = 0; i < positionCount; i++) {
+                int id = getDictionaryId(positions[i]);
+                if (!dictionaryIdMap.containsKey(id)) {
+                    dictionaryIdMap.put(id, MAPPED_IN_CURRENT_PAGE);
+                    newEntryRows[newEntryCount] = i;
+                    newDictionaryIds[newEntryCount] = id;
+                    newEntryCount++;
+                }
+            }
+
+            for (int i = 0; i < newEntryCount; i++) {
+                dictionaryIdMap.remove(newDictionaryIds[i]);
+            }
+
+            if (newEntryCount > 0) {
+                int[] newEntrySizes = ensureCapacity(null, newEntryCount, SMALL, INITIALIZE, bufferAllocator);
+                delegate.setupDecodedBlocksAndPositions(getDictionaryNode(), newDictionaryIds, newEntryCount, partitionBufferCapacity, estimatedSerializedPageSize);
+                delegate.accumulateSerializedRowSizes(newEntrySizes);
+                for (int i = 0; i < newEntryCount; i++) {
+                    serializedRowSizes[newEntryRows[i]] += newEntrySizes[i];
+                }
+                bufferAllocator.returnArray(newEntrySizes);
+            }
+            bufferAllocator.returnArray(newEntryRows);
+        }
+
+        for (int i = 0; i < positionCount; i++) {
+            serializedRowSizes[i] += SIZE_OF_INT;
+        }
+    }
+
+    @Override
+    public void setNextBatch(int positionsOffset, int batchSize)
+    {
+        this.positionsOffset = positionsOffset;
+        this.batchSize = batchSize;
+        this.flushed = false;
+    }
+
+    @Override
+    public void appendDataInBatch()
+    {
+        if (batchSize == 0) {
+            return;
+        }
+
+        idsBuffer = ensureCapacity(idsBuffer, idsBufferIndex + batchSize * ARRAY_INT_INDEX_SCALE, estimatedIdsBufferMaxCapacity, LARGE, PRESERVE, bufferAllocator);
+
+        if (currentDictionary == null) {
+            // Every row adds a new entry
+            for (int i = 0; i < batchSize; i++) {
+                idsBufferIndex = setIntUnchecked(idsBuffer, idsBufferIndex, bufferedDictionaryPositionCount++);
+            }
+            delegate.setNextBatch(positionsOffset, batchSize);
+            delegate.appendDataInBatch();
+        }
+        else {
+            newDictionaryIds = ensureCapacity(newDictionaryIds, batchSize, SMALL, NONE, bufferAllocator);
+            int newEntryCount = 0;
+            for (int i = positionsOffset; i < positionsOffset + batchSize; i++) {
+                int id = getDictionaryId(positions[i]);
+                int mappedId = dictionaryIdMap.get(id);
+                if (mappedId == NOT_MAPPED) {
+                    mappedId = bufferedDictionaryPositionCount++;
+                    dictionaryIdMap.put(id, mappedId);
+                    newDictionaryIds[newEntryCount++] = id;
+                }
+                idsBufferIndex = setIntUnchecked(idsBuffer, idsBufferIndex, mappedId);
+            }
+
+            if (newEntryCount > 0) {
+                delegate.setupDecodedBlocksAndPositions(getDictionaryNode(), newDictionaryIds, newEntryCount, partitionBufferCapacity, estimatedSerializedPageSize);
+                delegate.setNextBatch(0, newEntryCount);
+                delegate.appendDataInBatch();
+            }
+        }
+
+        bufferedPositionCount += batchSize;
+    }
+
+    @Override
+    public void serializeTo(SliceOutput output)
+    {
+        if (bufferedDictionaryPositionCount == 1) {
+            writeLengthPrefixedString(output, RunLengthBlockEncoding.NAME);
+            output.writeInt(bufferedPositionCount);
+            delegate.serializeTo(output);
+            return;
+        }
+
+        writeLengthPrefixedString(output, DictionaryBlockEncoding.NAME);
+        output.writeInt(bufferedPositionCount);
+        delegate.serializeTo(output);
+
+        if (idsBufferIndex > 0) {
+            output.appendBytes(idsBuffer, 0, idsBufferIndex);
+        }
+
+        // The compacted dictionary is not shared with any other block
+        DictionaryId dictionaryId = randomDictionaryId();
+        output.writeLong(dictionaryId.getMostSignificantBits());
+        output.writeLong(dictionaryId.getLeastSignificantBits());
+        output.writeLong(dictionaryId.getSequenceId());
+    }
+
+    @Override
+    public void resetBuffers()
+    {
+        bufferedPositionCount = 0;
+        bufferedDictionaryPositionCount = 0;
+        idsBufferIndex = 0;
+        dictionaryIdMap.clear();
+        flushed = true;
+        delegate.resetBuffers();
+    }
+
+    @Override
+    public void noMoreBatches()
+    {
+        delegate.noMoreBatches();
+
+        if (newDictionaryIds != null) {
+            bufferAllocator.returnArray(newDictionaryIds);
+            newDictionaryIds = null;
+        }
+
+        if (flushed && idsBuffer != null) {
+            bufferAllocator.returnArray(idsBuffer);
+            idsBuffer = null;
+        }
+
+        positions = null;
+        decodedBlockNode = null;
+        dictionaryBlock = null;
+    }
+
+    @Override
+    public long getRetainedSizeInBytes()
+    {
+        // The map holds two int arrays of roughly twice the number of its entries
+        return INSTANCE_SIZE +
+                delegate.getRetainedSizeInBytes() +
+                (long) dictionaryIdMap.size() * 4 * Integer.BYTES;
+    }
+
+    @Override
+    public long getSerializedSizeInBytes()
+    {
+        // The size has to match the bytes written by serializeTo exactly, since the page is serialized into a buffer of this size
+        if (bufferedDictionaryPositionCount == 1) {
+            return RunLengthBlockEncoding.NAME.length() + SIZE_OF_INT +   // NAME
+                    SIZE_OF_INT +                                       // positionCount
+                    delegate.getSerializedSizeInBytes();                // value
+        }
+
+        return DictionaryBlockEncoding.NAME.length() + SIZE_OF_INT +   // NAME
+                SIZE_OF_INT +                                           // positionCount
+                delegate.getSerializedSizeInBytes() +                   // dictionary
+                idsBufferIndex +                                        // ids
+                SIZE_OF_LONG * 3;                                       // dictionary id
+    }
+
+    @Override
+    public String toString()
+    {
+        return toStringHelper(this)
+                .add("delegate", delegate)
+                .add("positionCount", positionCount)
+                .add("batchSize", batchSize)
+                .add("positionsOffset", positionsOffset)
+                .add("bufferedPositionCount", bufferedPositionCount)
+                .add("bufferedDictionaryPositionCount", bufferedDictionaryPositionCount)
+                .add("mappedDictionaryIds", dictionaryIdMap.size())
+                .add("idsBufferCapacity", idsBuffer == null ? 0 : idsBuffer.length)
+                .add("idsBufferIndex", idsBufferIndex)
+                .add("flushed", flushed)
+                .toString();
+    }
+
+    private int getDictionaryId(int position)
+    {
+        // RLE blocks have a single entry
+        return dictionaryBlock == null ? 0 : dictionaryBlock.getId(position);
+    }
+
+    private DecodedBlockNode getDictionaryNode()
+    {
+        return decodedBlockNode.getChildren().get(0);
+    }
+}
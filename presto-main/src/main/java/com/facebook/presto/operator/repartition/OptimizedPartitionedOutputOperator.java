@@ -14,6 +14,7 @@
 package com.facebook.presto.operator.repartition;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeStats;
 import com.facebook.presto.common.block.ArrayAllocator;
 import com.facebook.presto.common.block.ArrayBlock;
 import com.facebook.presto.common.block.Block;
@@ -67,6 +68,11 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_COMPRESSED_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_UNCOMPRESSED_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.PARTITIONED_OUTPUT_ROWS_PER_PARTITION;
+import static com.facebook.presto.common.RuntimeUnit.BYTE;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.MEDIUM;
 import static com.facebook.presto.common.array.Arrays.ExpansionFactor.SMALL;
 import static com.facebook.presto.common.array.Arrays.ExpansionOption.INITIALIZE;
@@ -105,7 +111,8 @@ public class OptimizedPartitionedOutputOperator
             OptionalInt nullChannel,
             OutputBuffer outputBuffer,
             PagesSerdeFactory serdeFactory,
-            DataSize maxMemory)
+            DataSize maxMemory,
+            boolean preserveDictionaries)
     {
         this.operatorContext = requireNonNull(operatorContext, "operatorContext is null");
         this.pagePreprocessor = requireNonNull(pagePreprocessor, "pagePreprocessor is null");
@@ -119,6 +126,7 @@ public class OptimizedPartitionedOutputOperator
                 serdeFactory,
                 sourceTypes,
                 maxMemory,
+                preserveDictionaries,
                 operatorContext);
 
         operatorContext.setInfoSupplier(pagePartitioner.getPartitionedOutputInfoSupplier());
@@ -135,8 +143,12 @@ public class OptimizedPartitionedOutputOperator
     @Override
     public void finish()
     {
+        boolean finishing = !finished;
         finished = true;
         pagePartitioner.flush();
+        if (finishing) {
+            pagePartitioner.recordPartitionRowCounts(operatorContext.getRuntimeStats());
+        }
     }
 
     @Override
@@ -263,11 +275,21 @@ public class OptimizedPartitionedOutputOperator
     {
         private final OutputBuffer outputBuffer;
         private final DataSize maxMemory;
+        private final boolean preserveDictionaries;
 
         public OptimizedPartitionedOutputFactory(OutputBuffer outputBuffer, DataSize maxMemory)
+        {
+            this(outputBuffer, maxMemory, false);
+        }
+
+        /**
+         * @param preserveDictionaries keep the Dictionary and RLE encoding of top level variable width columns
+         */
+        public OptimizedPartitionedOutputFactory(OutputBuffer outputBuffer, DataSize maxMemory, boolean preserveDictionaries)
         {
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
+            this.preserveDictionaries = preserveDictionaries;
         }
 
         @Override
@@ -292,7 +314,8 @@ public class OptimizedPartitionedOutputOperator
                     outputPartitioning.get().getNullChannel(),
                     outputBuffer,
                     serdeFactory,
-                    maxMemory);
+                    maxMemory,
+                    preserveDictionaries);
         }
     }
 
@@ -311,6 +334,7 @@ public class OptimizedPartitionedOutputOperator
         private final OutputBuffer outputBuffer;
         private final PagesSerdeFactory serdeFactory;
         private final DataSize maxMemory;
+        private final boolean preserveDictionaries;
 
         public OptimizedPartitionedOutputOperatorFactory(
                 int operatorId,
@@ -324,7 +348,8 @@ public class OptimizedPartitionedOutputOperator
                 OptionalInt nullChannel,
                 OutputBuffer outputBuffer,
                 PagesSerdeFactory serdeFactory,
-                DataSize maxMemory)
+                DataSize maxMemory,
+                boolean preserveDictionaries)
         {
             this.operatorId = operatorId;
             this.planNodeId = requireNonNull(planNodeId, "planNodeId is null");
@@ -338,6 +363,7 @@ public class OptimizedPartitionedOutputOperator
             this.outputBuffer = requireNonNull(outputBuffer, "outputBuffer is null");
             this.serdeFactory = requireNonNull(serdeFactory, "serdeFactory is null");
             this.maxMemory = requireNonNull(maxMemory, "maxMemory is null");
+            this.preserveDictionaries = preserveDictionaries;
         }
 
         @Override
@@ -355,7 +381,8 @@ public class OptimizedPartitionedOutputOperator
                     nullChannel,
                     outputBuffer,
                     serdeFactory,
-                    maxMemory);
+                    maxMemory,
+                    preserveDictionaries);
         }
 
         @Override
@@ -378,7 +405,8 @@ public class OptimizedPartitionedOutputOperator
                     nullChannel,
                     outputBuffer,
                     serdeFactory,
-                    maxMemory);
+                    maxMemory,
+                    preserveDictionaries);
         }
     }
 
@@ -422,6 +450,7 @@ public class OptimizedPartitionedOutputOperator
                 PagesSerdeFactory serdeFactory,
                 List<Type> sourceTypes,
                 DataSize maxMemory,
+                boolean preserveDictionaries,
                 OperatorContext operatorContext)
         {
             this.partitionFunction = requireNonNull(partitionFunction, "pagePartitioner is null");
@@ -454,7 +483,7 @@ public class OptimizedPartitionedOutputOperator
 
             partitionBuffers = new PartitionBuffer[partitionCount];
             for (int i = 0; i < partitionCount; i++) {
-                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, pagesAdded, rowsAdded, serde, bufferAllocator, operatorContext);
+                partitionBuffers[i] = new PartitionBuffer(i, sourceTypes.size(), partitionBufferCapacity, preserveDictionaries, pagesAdded, rowsAdded, serde, bufferAllocator, operatorContext);
             }
 
             this.sourceTypes = sourceTypes;
@@ -564,6 +593,18 @@ public class OptimizedPartitionedOutputOperator
             }
         }
 
+        /**
+         * Records the number of rows this driver sent to each partition, so that partitions receiving
+         * far more rows than the others, e.g. because of a hot key, show up in the runtime stats.
+         * The counts of the drivers of a stage are separate values of the metric, not per partition totals.
+         */
+        public void recordPartitionRowCounts(RuntimeStats runtimeStats)
+        {
+            for (PartitionBuffer partitionBuffer : partitionBuffers) {
+                runtimeStats.addMetricValue(PARTITIONED_OUTPUT_ROWS_PER_PARTITION, NONE, partitionBuffer.getRowCount());
+            }
+        }
+
         public long getRetainedSizeInBytes()
         {
             // When called by the operator constructor, the blockDecodingAllocator was empty at the moment.
@@ -627,6 +668,7 @@ public class OptimizedPartitionedOutputOperator
         private final Lifespan lifespan;
         private final int capacity;
         private final int channelCount;
+        private final boolean preserveDictionaries;
         private final ArrayAllocator bufferAllocator;
 
         private int[] positions;   // the default positions array for top level BlockEncodingBuffer
@@ -634,14 +676,16 @@ public class OptimizedPartitionedOutputOperator
         private BlockEncodingBuffer[] blockEncodingBuffers;
 
         private int bufferedRowCount;
+        private long rowCount;
         private boolean bufferFull;
         private OperatorContext operatorContext;
 
-        PartitionBuffer(int partition, int channelCount, int capacity, AtomicLong pagesAdded, AtomicLong rowsAdded, PagesSerde serde, ArrayAllocator bufferAllocator, OperatorContext operatorContext)
+        PartitionBuffer(int partition, int channelCount, int capacity, boolean preserveDictionaries, AtomicLong pagesAdded, AtomicLong rowsAdded, PagesSerde serde, ArrayAllocator bufferAllocator, OperatorContext operatorContext)
         {
             this.partition = partition;
             this.channelCount = channelCount;
             this.capacity = capacity;
+            this.preserveDictionaries = preserveDictionaries;
             this.pagesAdded = requireNonNull(pagesAdded, "pagesAdded is null");
             this.rowsAdded = requireNonNull(rowsAdded, "rowsAdded is null");
             this.serde = requireNonNull(serde, "serde is null");
@@ -677,7 +721,7 @@ public class OptimizedPartitionedOutputOperator
                 return;
             }
 
-            initializeBlockEncodingBuffers(decodedBlocks);
+            initializeBlockEncodingBuffers(decodedBlocks, variableWidthChannels);
 
             for (int i = 0; i < channelCount; i++) {
                 blockEncodingBuffers[i].setupDecodedBlocksAndPositions(decodedBlocks[i], positions, positionCount, capacity, estimatedSerializedPageSize);
@@ -716,7 +760,7 @@ public class OptimizedPartitionedOutputOperator
             }
         }
 
-        private void initializeBlockEncodingBuffers(DecodedBlockNode[] decodedBlocks)
+        private void initializeBlockEncodingBuffers(DecodedBlockNode[] decodedBlocks, List<Integer> variableWidthChannels)
         {
             // Create buffers has to be done after seeing the first page.
             if (blockEncodingBuffers == null) {
@@ -724,6 +768,17 @@ public class OptimizedPartitionedOutputOperator
                 for (int i = 0; i < channelCount; i++) {
                     buffers[i] = createBlockEncodingBuffers(decodedBlocks[i], bufferAllocator, false);
                 }
+
+                // Only variable width columns are kept encoded, because the row size of fixed width
+                // columns is estimated from their type and does not account for the dictionary ids
+                if (preserveDictionaries) {
+                    for (int i : variableWidthChannels) {
+                        Object decodedBlock = decodedBlocks[i].getDecodedBlock();
+                        if (decodedBlock instanceof DictionaryBlock || decodedBlock instanceof RunLengthEncodedBlock) {
+                            buffers[i] = new DictionaryBlockEncodingBuffer(buffers[i], bufferAllocator);
+                        }
+                    }
+                }
                 blockEncodingBuffers = buffers;
             }
         }
@@ -789,14 +844,22 @@ public class OptimizedPartitionedOutputOperator
             }
 
             SerializedPage serializedPage = serde.serialize(output.slice(), bufferedRowCount);
+            operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_UNCOMPRESSED_BYTES, BYTE, serializedPage.getUncompressedSizeInBytes());
+            operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_COMPRESSED_BYTES, BYTE, serializedPage.getSizeInBytes());
             outputBuffer.enqueue(lifespan, partition, ImmutableList.of(serializedPage));
             pagesAdded.incrementAndGet();
             rowsAdded.addAndGet(bufferedRowCount);
+            rowCount += bufferedRowCount;
             operatorContext.recordOutput(totalSizeInBytes, bufferedRowCount);
 
             bufferedRowCount = 0;
         }
 
+        private long getRowCount()
+        {
+            return rowCount;
+        }
+
         private long getRetainedSizeInBytes()
         {
             long size = INSTANCE_SIZE + sizeOf(positions);
@@ -48,6 +48,11 @@ import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 import java.util.function.Supplier;
 
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_COMPRESSED_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.EXCHANGE_UNCOMPRESSED_BYTES;
+import static com.facebook.presto.common.RuntimeMetricName.PARTITIONED_OUTPUT_ROWS_PER_PARTITION;
+import static com.facebook.presto.common.RuntimeUnit.BYTE;
+import static com.facebook.presto.common.RuntimeUnit.NONE;
 import static com.facebook.presto.common.block.PageBuilderStatus.DEFAULT_MAX_PAGE_SIZE_IN_BYTES;
 import static com.facebook.presto.execution.buffer.PageSplitterUtil.splitPage;
 import static com.google.common.base.Preconditions.checkArgument;
@@ -227,8 +232,12 @@ public class PartitionedOutputOperator
     @Override
     public void finish()
     {
+        boolean finishing = !finished;
         finished = true;
         partitionFunction.flush(true);
+        if (finishing) {
+            partitionFunction.recordPartitionRowCounts();
+        }
     }
 
     @Override
@@ -291,6 +300,7 @@ public class PartitionedOutputOperator
         private final Block[] partitionConstantBlocks; // when null, no constants are present. Only non-null elements are constants
         private final PagesSerde serde;
         private final PageBuilder[] pageBuilders;
+        private final long[] partitionRowCounts;
         private final boolean replicatesAnyRow;
         private final int nullChannel; // when >= 0, send the position to every partition if this channel is null
         private final AtomicLong rowsAdded = new AtomicLong();
@@ -347,6 +357,7 @@ public class PartitionedOutputOperator
             for (int i = 0; i < partitionCount; i++) {
                 pageBuilders[i] = PageBuilder.withMaxPageSize(pageSize, sourceTypes);
             }
+            this.partitionRowCounts = new long[partitionCount];
         }
 
         public void zeroMemoryContext()
@@ -485,16 +496,32 @@ public class PartitionedOutputOperator
                     outputBuffer.enqueue(operatorContext.getDriverContext().getLifespan(), partition, splitAndSerializePage(pagePartition));
                     pagesAdded.incrementAndGet();
                     rowsAdded.addAndGet(pagePartition.getPositionCount());
+                    partitionRowCounts[partition] += pagePartition.getPositionCount();
                 }
             }
         }
 
+        /**
+         * Records the number of rows this driver sent to each partition, so that partitions receiving
+         * far more rows than the others, e.g. because of a hot key, show up in the runtime stats.
+         * The counts of the drivers of a stage are separate values of the metric, not per partition totals.
+         */
+        public void recordPartitionRowCounts()
+        {
+            for (long partitionRowCount : partitionRowCounts) {
+                operatorContext.getRuntimeStats().addMetricValue(PARTITIONED_OUTPUT_ROWS_PER_PARTITION, NONE, partitionRowCount);
+            }
+        }
+
         private List<SerializedPage> splitAndSerializePage(Page pagePartition)
         {
             List<Page> pagesFromSplitting = splitPage(pagePartition, DEFAULT_MAX_PAGE_SIZE_IN_BYTES);
             ImmutableList.Builder<SerializedPage> builder = ImmutableList.builderWithExpectedSize(pagesFromSplitting.size());
             for (Page p : pagesFromSplitting) {
-                builder.add(serde.serialize(p));
+                SerializedPage serializedPage = serde.serialize(p);
+                operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_UNCOMPRESSED_BYTES, BYTE, serializedPage.getUncompressedSizeInBytes());
+                operatorContext.getRuntimeStats().addMetricValue(EXCHANGE_COMPRESSED_BYTES, BYTE, serializedPage.getSizeInBytes());
+                builder.add(serializedPage);
             }
             return builder.build();
         }
@@ -19,6 +19,7 @@ import com.facebook.presto.execution.warnings.WarningCollectorFactory;
 import com.facebook.presto.execution.warnings.WarningHandlingLevel;
 import com.facebook.presto.metadata.SessionPropertyManager;
 import com.facebook.presto.security.AccessControl;
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spi.WarningCollector;
 import com.facebook.presto.spi.function.SqlFunctionId;
@@ -36,8 +37,11 @@ import java.util.Map;
 import java.util.Optional;
 
 import static com.facebook.presto.Session.SessionBuilder;
+import static com.facebook.presto.SystemSessionProperties.RESOURCE_GROUP;
 import static com.facebook.presto.SystemSessionProperties.WARNING_HANDLING;
 import static com.facebook.presto.common.type.TimeZoneKey.getTimeZoneKey;
+import static com.facebook.presto.spi.StandardErrorCode.INVALID_SESSION_PROPERTY;
+import static java.lang.String.format;
 import static java.util.Map.Entry;
 import static java.util.Objects.requireNonNull;
 
@@ -98,6 +102,10 @@ public class QuerySessionSupplier
         }
 
         for (Entry<String, String> entry : context.getSystemProperties().entrySet()) {
+            // the workers account the tasks of the query to this resource group, so only the coordinator sets it
+            if (entry.getKey().equals(RESOURCE_GROUP)) {
+                throw new PrestoException(INVALID_SESSION_PROPERTY, format("Session property %s cannot be set by the client", RESOURCE_GROUP));
+            }
             sessionBuilder.setSystemProperty(entry.getKey(), entry.getValue());
         }
         for (Entry<String, Map<String, String>> catalogProperties : context.getCatalogSessionProperties().entrySet()) {
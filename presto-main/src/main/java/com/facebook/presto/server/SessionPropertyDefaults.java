@@ -23,6 +23,7 @@ import com.facebook.presto.spi.session.SessionPropertyConfigurationManager;
 import com.facebook.presto.spi.session.SessionPropertyConfigurationManager.SystemSessionPropertyConfiguration;
 import com.facebook.presto.spi.session.SessionPropertyConfigurationManagerFactory;
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 
 import javax.inject.Inject;
 
@@ -34,6 +35,7 @@ import java.util.Optional;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicReference;
 
+import static com.facebook.presto.SystemSessionProperties.RESOURCE_GROUP;
 import static com.facebook.presto.util.PropertiesUtil.loadProperties;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkState;
@@ -109,7 +111,10 @@ public class SessionPropertyDefaults
     {
         SessionPropertyConfigurationManager configurationManager = delegate.get();
         if (configurationManager == null) {
-            return session;
+            if (!resourceGroupId.isPresent()) {
+                return session;
+            }
+            return session.withDefaultProperties(withResourceGroup(new SystemSessionPropertyConfiguration(ImmutableMap.of(), ImmutableMap.of()), resourceGroupId), ImmutableMap.of());
         }
 
         SessionConfigurationContext context = new SessionConfigurationContext(
@@ -122,6 +127,21 @@ public class SessionPropertyDefaults
 
         SystemSessionPropertyConfiguration systemPropertyConfiguration = configurationManager.getSystemSessionProperties(context);
         Map<String, Map<String, String>> catalogPropertyOverrides = configurationManager.getCatalogSessionProperties(context);
-        return session.withDefaultProperties(systemPropertyConfiguration, catalogPropertyOverrides);
+        return session.withDefaultProperties(withResourceGroup(systemPropertyConfiguration, resourceGroupId), catalogPropertyOverrides);
+    }
+
+    /**
+     * The resource group selected for the query is passed to the workers along with the properties it is configured with,
+     * such as the scheduling weight of its queries, so that they account the time the tasks of the query run for to it.
+     * Clients cannot set the resource group themselves, see {@link QuerySessionSupplier}.
+     */
+    private static SystemSessionPropertyConfiguration withResourceGroup(SystemSessionPropertyConfiguration configuration, Optional<ResourceGroupId> resourceGroupId)
+    {
+        if (!resourceGroupId.isPresent()) {
+            return configuration;
+        }
+        Map<String, String> overrides = new HashMap<>(configuration.systemPropertyOverrides);
+        overrides.put(RESOURCE_GROUP, resourceGroupId.get().toString());
+        return new SystemSessionPropertyConfiguration(configuration.systemPropertyDefaults, overrides);
     }
 }
@@ -28,9 +28,9 @@ import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.QueryExecution;
 import com.facebook.presto.execution.QueryInfo;
 import com.facebook.presto.execution.QueryManager;
+import com.facebook.presto.execution.QueryResultCache;
 import com.facebook.presto.execution.QueryState;
 import com.facebook.presto.execution.StageInfo;
-import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.operator.ExchangeClient;
 import com.facebook.presto.spi.ErrorCode;
 import com.facebook.presto.spi.QueryId;
@@ -61,6 +61,9 @@ import javax.ws.rs.core.UriBuilder;
 import javax.ws.rs.core.UriInfo;
 
 import java.net.URI;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -75,10 +78,9 @@ import static com.facebook.airlift.concurrent.MoreFutures.addTimeout;
 import static com.facebook.presto.SystemSessionProperties.getQueryRetryLimit;
 import static com.facebook.presto.SystemSessionProperties.getQueryRetryMaxExecutionTime;
 import static com.facebook.presto.SystemSessionProperties.getTargetResultSize;
-import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnabled;
-import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
 import static com.facebook.presto.execution.QueryState.FAILED;
 import static com.facebook.presto.execution.QueryState.WAITING_FOR_PREREQUISITES;
+import static com.facebook.presto.execution.buffer.PagesSerdeFactory.createExchangePagesSerdeFactory;
 import static com.facebook.presto.server.protocol.QueryResourceUtil.toStatementStats;
 import static com.facebook.presto.spi.StandardErrorCode.GENERIC_INTERNAL_ERROR;
 import static com.facebook.presto.util.Failures.toFailure;
@@ -109,6 +111,7 @@ class Query
 
     private final PagesSerde serde;
     private final RetryCircuitBreaker retryCircuitBreaker;
+    private final QueryResultCache queryResultCache;
 
     @GuardedBy("this")
     private OptionalLong nextToken = OptionalLong.of(0);
@@ -164,6 +167,21 @@ class Query
     @GuardedBy("this")
     private Set<SqlFunctionId> removedSessionFunctions = ImmutableSet.of();
 
+    // result served from the query result cache, returned ahead of the exchange
+    @GuardedBy("this")
+    private final Deque<SerializedPage> cachedPages = new ArrayDeque<>();
+
+    @GuardedBy("this")
+    private Optional<String> resultCacheKey = Optional.empty();
+
+    // pages returned so far, to be added to the query result cache once the query finished,
+    // null if the result is not cacheable or too large
+    @GuardedBy("this")
+    private List<SerializedPage> resultPages;
+
+    @GuardedBy("this")
+    private long resultPagesRetainedSizeInBytes;
+
     public static Query create(
             Session session,
             String slug,
@@ -173,9 +191,10 @@ class Query
             Executor dataProcessorExecutor,
             ScheduledExecutorService timeoutExecutor,
             BlockEncodingSerde blockEncodingSerde,
-            RetryCircuitBreaker retryCircuitBreaker)
+            RetryCircuitBreaker retryCircuitBreaker,
+            QueryResultCache queryResultCache)
     {
-        Query result = new Query(session, slug, queryManager, transactionManager, exchangeClient, dataProcessorExecutor, timeoutExecutor, blockEncodingSerde, retryCircuitBreaker);
+        Query result = new Query(session, slug, queryManager, transactionManager, exchangeClient, dataProcessorExecutor, timeoutExecutor, blockEncodingSerde, retryCircuitBreaker, queryResultCache);
 
         result.queryManager.addOutputInfoListener(result.getQueryId(), result::setQueryOutputInfo);
 
@@ -198,7 +217,8 @@ class Query
             Executor resultsProcessorExecutor,
             ScheduledExecutorService timeoutExecutor,
             BlockEncodingSerde blockEncodingSerde,
-            RetryCircuitBreaker retryCircuitBreaker)
+            RetryCircuitBreaker retryCircuitBreaker,
+            QueryResultCache queryResultCache)
     {
         requireNonNull(session, "session is null");
         requireNonNull(slug, "slug is null");
@@ -209,6 +229,7 @@ class Query
         requireNonNull(timeoutExecutor, "timeoutExecutor is null");
         requireNonNull(blockEncodingSerde, "serde is null");
         requireNonNull(retryCircuitBreaker, "retryCircuitBreaker is null");
+        requireNonNull(queryResultCache, "queryResultCache is null");
 
         this.queryManager = queryManager;
         this.transactionManager = transactionManager;
@@ -220,8 +241,9 @@ class Query
         this.resultsProcessorExecutor = resultsProcessorExecutor;
         this.timeoutExecutor = timeoutExecutor;
 
-        this.serde = new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeChecksumEnabled(session)).createPagesSerde();
+        this.serde = createExchangePagesSerdeFactory(blockEncodingSerde, session).createPagesSerde();
         this.retryCircuitBreaker = retryCircuitBreaker;
+        this.queryResultCache = queryResultCache;
     }
 
     public void cancel()
@@ -448,7 +470,7 @@ class Query
             long rows = 0;
             long targetResultBytes = targetResultSize.toBytes();
             while (bytes < targetResultBytes) {
-                SerializedPage serializedPage = exchangeClient.pollPage();
+                SerializedPage serializedPage = pollPage();
                 if (serializedPage == null) {
                     break;
                 }
@@ -489,7 +511,8 @@ class Query
         closeExchangeClientIfNecessary(queryInfo);
 
         // for queries with no output, return a fake result for clients that require it
-        if ((queryInfo.getState() == QueryState.FINISHED) && !queryInfo.getOutputStage().isPresent()) {
+        // (a result served from the query result cache has output fields but no output stage)
+        if ((queryInfo.getState() == QueryState.FINISHED) && !queryInfo.getOutputStage().isPresent() && queryInfo.getFieldNames().isEmpty()) {
             columns = ImmutableList.of(new Column("result", BooleanType.BOOLEAN));
             data = ImmutableSet.of(ImmutableList.of(true));
         }
@@ -504,6 +527,12 @@ class Query
         }
         else {
             nextToken = OptionalLong.empty();
+
+            // all the output has been returned, so it is complete
+            if (queryInfo.getState() == QueryState.FINISHED && resultCacheKey.isPresent() && resultPages != null) {
+                queryResultCache.put(resultCacheKey.get(), resultPages);
+            }
+            resultPages = null;
         }
 
         URI nextResultsUri = null;
@@ -555,13 +584,32 @@ class Query
         return queryResults;
     }
 
+    private synchronized SerializedPage pollPage()
+    {
+        if (!cachedPages.isEmpty()) {
+            return cachedPages.poll();
+        }
+
+        SerializedPage page = exchangeClient.pollPage();
+        if (page != null && resultPages != null) {
+            resultPages.add(page);
+            resultPagesRetainedSizeInBytes += page.getRetainedSizeInBytes();
+            if (resultPagesRetainedSizeInBytes > queryResultCache.getMaxResultSize().toBytes()) {
+                resultPages = null;
+            }
+        }
+        return page;
+    }
+
     private synchronized void closeExchangeClientIfNecessary(QueryInfo queryInfo)
     {
         // Close the exchange client if the query has failed, or if the query
         // is done and it does not have an output stage. The latter happens
-        // for data definition executions, as those do not have output.
+        // for data definition executions, as those do not have output. A query
+        // served from the query result cache has output, but no output stage;
+        // its exchange client closes once the cached result is returned.
         if ((queryInfo.getState() == FAILED) ||
-                (queryInfo.getState().isDone() && !queryInfo.getOutputStage().isPresent())) {
+                (queryInfo.getState().isDone() && !queryInfo.getOutputStage().isPresent() && queryInfo.getFieldNames().isEmpty())) {
             exchangeClient.close();
         }
     }
@@ -580,6 +628,12 @@ class Query
             }
             columns = list.build();
             types = outputInfo.getColumnTypes();
+
+            outputInfo.getCachedPages().ifPresent(cachedPages::addAll);
+            resultCacheKey = outputInfo.getResultCacheKey();
+            if (resultCacheKey.isPresent()) {
+                resultPages = new ArrayList<>();
+            }
         }
 
         outputInfo.getBufferLocations().forEach(exchangeClient::addLocation);
@@ -135,6 +135,14 @@ public class FileSingleStreamSpiller
         return readPages();
     }
 
+    @Override
+    public synchronized Iterator<Page> getCommittedSpilledPages()
+    {
+        checkState(committed, "Cannot read pages since spill file is not committed");
+        writable = false;
+        return openPages();
+    }
+
     @Override
     public ListenableFuture<List<Page>> getAllSpilledPages()
     {
@@ -176,12 +184,17 @@ public class FileSingleStreamSpiller
         checkState(writable, "Repeated reads are disallowed to prevent potential resource leaks");
         writable = false;
 
-        try {
-            if (!committed) {
-                commit();
-            }
+        if (!committed) {
+            commit();
+        }
+
+        checkState(committed, "Cannot read pages since spill file is not committed");
+        return openPages();
+    }
 
-            checkState(committed, "Cannot read pages since spill file is not committed");
+    private Iterator<Page> openPages()
+    {
+        try {
             InputStream input = closer.register(targetFile.newInputStream());
             Iterator<Page> deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input, BUFFER_SIZE));
             Iterator<Page> compactPages = transform(deserializedPages, Page::compact);
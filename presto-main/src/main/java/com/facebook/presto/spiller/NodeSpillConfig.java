@@ -14,6 +14,7 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.airlift.configuration.Config;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import io.airlift.units.DataSize;
 
 import javax.validation.constraints.NotNull;
@@ -26,6 +27,7 @@ public class NodeSpillConfig
     private DataSize tempStorageBufferSize = new DataSize(4, DataSize.Unit.KILOBYTE);
 
     private boolean spillCompressionEnabled;
+    private CompressionCodec spillCompressionCodec = CompressionCodec.LZ4;
     private boolean spillEncryptionEnabled;
 
     @NotNull
@@ -79,6 +81,19 @@ public class NodeSpillConfig
         return this;
     }
 
+    @NotNull
+    public CompressionCodec getSpillCompressionCodec()
+    {
+        return spillCompressionCodec;
+    }
+
+    @Config("experimental.spill-compression-codec")
+    public NodeSpillConfig setSpillCompressionCodec(CompressionCodec spillCompressionCodec)
+    {
+        this.spillCompressionCodec = spillCompressionCodec;
+        return this;
+    }
+
     public boolean isSpillEncryptionEnabled()
     {
         return spillEncryptionEnabled;
@@ -19,8 +19,15 @@ import com.google.common.util.concurrent.ListenableFuture;
 import java.io.Closeable;
 import java.io.IOException;
 import java.util.Iterator;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
 import java.util.function.IntPredicate;
 
+import static com.google.common.base.Verify.verify;
+import static com.google.common.util.concurrent.Futures.getDone;
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+import static com.google.common.util.concurrent.Futures.transformAsync;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
 import static java.util.Objects.requireNonNull;
 
 public interface PartitioningSpiller
@@ -34,6 +41,39 @@ public interface PartitioningSpiller
      */
     PartitioningSpillResult partitionAndSpill(Page page, IntPredicate spillPartitionMask);
 
+    /**
+     * Spills all rows of the page to their partitions. The returned future is completed when spilling is finished.
+     */
+    default ListenableFuture<?> spill(Page page)
+    {
+        PartitioningSpillResult result = partitionAndSpill(page, partition -> true);
+        verify(result.getRetained().getPositionCount() == 0, "all rows are expected to be spilled");
+        return result.getSpillingFuture();
+    }
+
+    /**
+     * Spills all rows of the pages, starting to spill a page once spilling of the previous one is finished.
+     * The returned future is completed when spilling of the last page is finished.
+     */
+    default ListenableFuture<?> spill(Iterator<Page> pages)
+    {
+        while (pages.hasNext()) {
+            ListenableFuture<?> spillingFuture = spill(pages.next());
+            if (!spillingFuture.isDone()) {
+                // pages spilled without waiting are handled by this loop, so futures are only chained while spilling is in progress
+                return transformAsync(spillingFuture, ignored -> spill(pages), directExecutor());
+            }
+            try {
+                getDone(spillingFuture);
+            }
+            catch (ExecutionException | CancellationException e) {
+                // the remaining pages are not spilled
+                return spillingFuture;
+            }
+        }
+        return immediateFuture(null);
+    }
+
     /**
      * Returns iterator of previously spilled pages from given partition. Callers are expected to call
      * this method once. Calling multiple times can results in undefined behavior.
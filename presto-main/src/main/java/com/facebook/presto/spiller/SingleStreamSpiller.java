@@ -48,6 +48,13 @@ public interface SingleStreamSpiller
      */
     Iterator<Page> getSpilledPages();
 
+    /**
+     * Returns list of previously spilled Pages as a single stream. Unlike {@link #getSpilledPages()},
+     * this method can be invoked any number of times, also concurrently, but it requires the spill
+     * file to be committed. Streams that are not read to the end are released on {@link #close()}.
+     */
+    Iterator<Page> getCommittedSpilledPages();
+
     /**
      * Returns estimate size of pages that would be returned by {@link #getAllSpilledPages()}.
      */
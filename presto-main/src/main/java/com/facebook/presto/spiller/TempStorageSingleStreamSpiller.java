@@ -140,6 +140,14 @@ public class TempStorageSingleStreamSpiller
         return readPages();
     }
 
+    @Override
+    public synchronized Iterator<Page> getCommittedSpilledPages()
+    {
+        checkState(committed, "Cannot read pages since spill file is not committed");
+        writable = false;
+        return openPages();
+    }
+
     @Override
     public ListenableFuture<List<Page>> getAllSpilledPages()
     {
@@ -194,12 +202,17 @@ public class TempStorageSingleStreamSpiller
     {
         checkState(writable, "Repeated reads are disallowed to prevent potential resource leaks");
         writable = false;
-        try {
-            if (!committed) {
-                commit();
-            }
+        if (!committed) {
+            commit();
+        }
+
+        checkState(committed, "Cannot read pages since spill file is not committed");
+        return openPages();
+    }
 
-            checkState(committed, "Cannot read pages since spill file is not committed");
+    private Iterator<Page> openPages()
+    {
+        try {
             InputStream input = closer.register(tempStorage.open(tempDataOperationContext, tempStorageHandle));
             Iterator<Page> deserializedPages = PagesSerdeUtil.readPages(serde, new InputStreamSliceInput(input));
             Iterator<Page> compactPages = transform(deserializedPages, Page::compact);
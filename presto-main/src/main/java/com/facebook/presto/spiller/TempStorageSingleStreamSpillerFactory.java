@@ -15,6 +15,7 @@ package com.facebook.presto.spiller;
 
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.SpillContext;
@@ -30,8 +31,10 @@ import javax.annotation.PreDestroy;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.execution.buffer.CompressionCodec.NONE;
 import static com.google.common.util.concurrent.MoreExecutors.listeningDecorator;
 import static java.util.Objects.requireNonNull;
 import static java.util.concurrent.Executors.newFixedThreadPool;
@@ -61,7 +64,7 @@ public class TempStorageSingleStreamSpillerFactory
                         daemonThreadsNamed("binary-spiller-%s"))),
                 blockEncodingSerde,
                 spillerStats,
-                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillCompressionEnabled(),
+                requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillCompressionEnabled() ? nodeSpillConfig.getSpillCompressionCodec() : NONE,
                 requireNonNull(nodeSpillConfig, "nodeSpillConfig is null").isSpillEncryptionEnabled(),
                 requireNonNull(featuresConfig, "featuresConfig is null").getSpillerTempStorage());
     }
@@ -72,12 +75,17 @@ public class TempStorageSingleStreamSpillerFactory
             ListeningExecutorService executor,
             BlockEncodingSerde blockEncodingSerde,
             SpillerStats spillerStats,
-            boolean spillCompressionEnabled,
+            CompressionCodec spillCompressionCodec,
             boolean spillEncryptionEnabled,
             String tempStorageName)
     {
         this.tempStorageManager = requireNonNull(tempStorageManager, "tempStorageManager is null");
-        this.serdeFactory = new PagesSerdeFactory(requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"), spillCompressionEnabled);
+        this.serdeFactory = new PagesSerdeFactory(
+                requireNonNull(blockEncodingSerde, "blockEncodingSerde is null"),
+                requireNonNull(spillCompressionCodec, "spillCompressionCodec is null"),
+                OptionalInt.empty(),
+                false,
+                false);
         this.executor = requireNonNull(executor, "executor is null");
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
         this.spillEncryptionEnabled = spillEncryptionEnabled;
@@ -24,8 +24,10 @@ import com.facebook.presto.storage.TempStorageManager;
 import javax.inject.Inject;
 
 import java.util.Optional;
+import java.util.OptionalInt;
 
 import static com.facebook.presto.SystemSessionProperties.getTempStorageSpillerBufferSize;
+import static com.facebook.presto.execution.buffer.CompressionCodec.NONE;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 
@@ -48,7 +50,12 @@ public class TempStorageStandaloneSpillerFactory
         this.tempStorageManager = requireNonNull(tempStorageManager, "tempStorageManager is null");
         requireNonNull(blockEncodingSerde, "blockEncodingSerde is null");
         requireNonNull(nodeSpillConfig, "nodeSpillConfig is null");
-        this.serdeFactory = new PagesSerdeFactory(blockEncodingSerde, nodeSpillConfig.isSpillCompressionEnabled());
+        this.serdeFactory = new PagesSerdeFactory(
+                blockEncodingSerde,
+                nodeSpillConfig.isSpillCompressionEnabled() ? nodeSpillConfig.getSpillCompressionCodec() : NONE,
+                OptionalInt.empty(),
+                false,
+                false);
         this.tempStorageName = requireNonNull(featuresConfig, "featuresConfig is null").getSpillerTempStorage();
         this.spillerStats = requireNonNull(spillerStats, "spillerStats can not be null");
     }
@@ -16,6 +16,7 @@ package com.facebook.presto.sql.analyzer;
 import com.facebook.airlift.configuration.Config;
 import com.facebook.airlift.configuration.ConfigDescription;
 import com.facebook.airlift.configuration.DefunctConfig;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import com.facebook.presto.operator.aggregation.histogram.HistogramGroupImplementation;
 import com.facebook.presto.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -29,6 +30,7 @@ import io.airlift.units.MaxDataSize;
 import javax.validation.constraints.AssertTrue;
 import javax.validation.constraints.DecimalMax;
 import javax.validation.constraints.DecimalMin;
+import javax.validation.constraints.Max;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
@@ -40,6 +42,7 @@ import static com.facebook.presto.sql.analyzer.FeaturesConfig.AggregationPartiti
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrategy.ORDER_BY_CREATE_TIME;
 import static com.facebook.presto.sql.analyzer.RegexLibrary.JONI;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.Objects.requireNonNull;
@@ -79,6 +82,7 @@ public class FeaturesConfig
     private int concurrentLifespansPerTask;
     private boolean spatialJoinsEnabled = true;
     private boolean fastInequalityJoins = true;
+    private boolean joinOffHeapHashTableEnabled;
     private TaskSpillingStrategy taskSpillingStrategy = ORDER_BY_CREATE_TIME;
     private boolean queryLimitSpillEnabled;
     private SingleStreamSpillerChoice singleStreamSpillerChoice = SingleStreamSpillerChoice.LOCAL_FILE;
@@ -102,6 +106,9 @@ public class FeaturesConfig
     private boolean pushTableWriteThroughUnion = true;
     private boolean exchangeCompressionEnabled;
     private boolean exchangeChecksumEnabled;
+    private CompressionCodec exchangeCompressionCodec = CompressionCodec.LZ4;
+    private int exchangeZstdCompressionLevel = 3;
+    private boolean exchangeAdaptiveCompressionEnabled;
     private boolean legacyArrayAgg;
     private boolean reduceAggForComplexTypesEnabled = true;
     private boolean legacyLogFunction;
@@ -120,6 +127,10 @@ public class FeaturesConfig
     private boolean logFormattedQueryEnabled;
 
     private boolean dictionaryAggregation;
+    private boolean adaptivePartialAggregationEnabled;
+    private long adaptivePartialAggregationMinRows = 100_000;
+    private double adaptivePartialAggregationUniqueRowsRatioThreshold = 0.8;
+    private boolean lockFreeLocalExchangeEnabled;
 
     private int re2JDfaStatesLimit = Integer.MAX_VALUE;
     private int re2JDfaRetries = 5;
@@ -137,7 +148,12 @@ public class FeaturesConfig
     private boolean orderByAggregationSpillEnabled = true;
     private boolean windowSpillEnabled = true;
     private boolean orderBySpillEnabled = true;
+    private boolean topNRowNumberSpillEnabled = true;
+    private boolean markDistinctSpillEnabled = true;
+    private boolean distinctLimitSpillEnabled = true;
     private DataSize aggregationOperatorUnspillMemoryLimit = new DataSize(4, MEGABYTE);
+    private DataSize nestedLoopJoinSpillBlockSize = new DataSize(16, MEGABYTE);
+    private int spillPartitionCount = 16;
     private List<Path> spillerSpillPaths = ImmutableList.of();
     private int spillerThreads = 4;
     private double spillMaxUsedSpaceThreshold = 0.9;
@@ -166,8 +182,10 @@ public class FeaturesConfig
     private int dynamicFilteringMaxPerDriverRowCount = 100;
     private DataSize dynamicFilteringMaxPerDriverSize = new DataSize(10, KILOBYTE);
     private int dynamicFilteringRangeRowLimitPerDriver;
+    private DataSize dynamicFilteringBloomFilterSize = new DataSize(0, BYTE);
 
     private boolean fragmentResultCachingEnabled;
+    private boolean queryResultCachingEnabled;
 
     private DataSize filterAndProjectMinOutputPageSize = new DataSize(500, KILOBYTE);
     private int filterAndProjectMinOutputPageRowCount = 256;
@@ -178,6 +196,7 @@ public class FeaturesConfig
     private boolean jsonSerdeCodeGenerationEnabled;
     private int maxConcurrentMaterializations = 3;
     private boolean optimizedRepartitioningEnabled;
+    private boolean optimizedRepartitioningPreserveDictionaries;
 
     private boolean pushdownSubfieldsEnabled;
 
@@ -200,6 +219,7 @@ public class FeaturesConfig
 
     private boolean spoolingOutputBufferEnabled;
     private DataSize spoolingOutputBufferThreshold = new DataSize(8, MEGABYTE);
+    private DataSize spoolingOutputBufferPrefetchSize = new DataSize(0, MEGABYTE);
     private String spoolingOutputBufferTempStorage = "local";
 
     private String warnOnNoTableLayoutFilter = "";
@@ -627,6 +647,19 @@ public class FeaturesConfig
         return fastInequalityJoins;
     }
 
+    @Config("experimental.join-off-heap-hash-table-enabled")
+    @ConfigDescription("Store the hash tables of hash joins in off-heap memory")
+    public FeaturesConfig setJoinOffHeapHashTableEnabled(boolean joinOffHeapHashTableEnabled)
+    {
+        this.joinOffHeapHashTableEnabled = joinOffHeapHashTableEnabled;
+        return this;
+    }
+
+    public boolean isJoinOffHeapHashTableEnabled()
+    {
+        return joinOffHeapHashTableEnabled;
+    }
+
     public JoinReorderingStrategy getJoinReorderingStrategy()
     {
         return joinReorderingStrategy;
@@ -976,6 +1009,61 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isAdaptivePartialAggregationEnabled()
+    {
+        return adaptivePartialAggregationEnabled;
+    }
+
+    @Config("experimental.adaptive-partial-aggregation-enabled")
+    @ConfigDescription("Skip partial aggregation when it does not reduce the number of rows enough")
+    public FeaturesConfig setAdaptivePartialAggregationEnabled(boolean adaptivePartialAggregationEnabled)
+    {
+        this.adaptivePartialAggregationEnabled = adaptivePartialAggregationEnabled;
+        return this;
+    }
+
+    @Min(0)
+    public long getAdaptivePartialAggregationMinRows()
+    {
+        return adaptivePartialAggregationMinRows;
+    }
+
+    @Config("experimental.adaptive-partial-aggregation-min-rows")
+    @ConfigDescription("Minimum number of rows partially aggregated before partial aggregation may be skipped")
+    public FeaturesConfig setAdaptivePartialAggregationMinRows(long adaptivePartialAggregationMinRows)
+    {
+        this.adaptivePartialAggregationMinRows = adaptivePartialAggregationMinRows;
+        return this;
+    }
+
+    @DecimalMin("0.0")
+    @DecimalMax("1.0")
+    public double getAdaptivePartialAggregationUniqueRowsRatioThreshold()
+    {
+        return adaptivePartialAggregationUniqueRowsRatioThreshold;
+    }
+
+    @Config("experimental.adaptive-partial-aggregation-unique-rows-ratio-threshold")
+    @ConfigDescription("Skip partial aggregation when the ratio of its output rows to its input rows is above this threshold")
+    public FeaturesConfig setAdaptivePartialAggregationUniqueRowsRatioThreshold(double adaptivePartialAggregationUniqueRowsRatioThreshold)
+    {
+        this.adaptivePartialAggregationUniqueRowsRatioThreshold = adaptivePartialAggregationUniqueRowsRatioThreshold;
+        return this;
+    }
+
+    public boolean isLockFreeLocalExchangeEnabled()
+    {
+        return lockFreeLocalExchangeEnabled;
+    }
+
+    @Config("experimental.lock-free-local-exchange-enabled")
+    @ConfigDescription("Use lock-free buffers for the consumers of local exchanges")
+    public FeaturesConfig setLockFreeLocalExchangeEnabled(boolean lockFreeLocalExchangeEnabled)
+    {
+        this.lockFreeLocalExchangeEnabled = lockFreeLocalExchangeEnabled;
+        return this;
+    }
+
     @Min(2)
     public int getRe2JDfaStatesLimit()
     {
@@ -1142,6 +1230,45 @@ public class FeaturesConfig
         return orderBySpillEnabled;
     }
 
+    @Config("experimental.topn-row-number-spill-enabled")
+    @ConfigDescription("Enable TopN Row Number Operator Spilling if spill is enabled")
+    public FeaturesConfig setTopNRowNumberSpillEnabled(boolean topNRowNumberSpillEnabled)
+    {
+        this.topNRowNumberSpillEnabled = topNRowNumberSpillEnabled;
+        return this;
+    }
+
+    public boolean isTopNRowNumberSpillEnabled()
+    {
+        return topNRowNumberSpillEnabled;
+    }
+
+    @Config("experimental.mark-distinct-spill-enabled")
+    @ConfigDescription("Enable Mark Distinct Operator Spilling if spill is enabled")
+    public FeaturesConfig setMarkDistinctSpillEnabled(boolean markDistinctSpillEnabled)
+    {
+        this.markDistinctSpillEnabled = markDistinctSpillEnabled;
+        return this;
+    }
+
+    public boolean isMarkDistinctSpillEnabled()
+    {
+        return markDistinctSpillEnabled;
+    }
+
+    @Config("experimental.distinct-limit-spill-enabled")
+    @ConfigDescription("Enable Distinct Limit Operator Spilling if spill is enabled")
+    public FeaturesConfig setDistinctLimitSpillEnabled(boolean distinctLimitSpillEnabled)
+    {
+        this.distinctLimitSpillEnabled = distinctLimitSpillEnabled;
+        return this;
+    }
+
+    public boolean isDistinctLimitSpillEnabled()
+    {
+        return distinctLimitSpillEnabled;
+    }
+
     public boolean isIterativeOptimizerEnabled()
     {
         return iterativeOptimizerEnabled;
@@ -1264,6 +1391,33 @@ public class FeaturesConfig
         return this;
     }
 
+    public DataSize getNestedLoopJoinSpillBlockSize()
+    {
+        return nestedLoopJoinSpillBlockSize;
+    }
+
+    @Config("experimental.nested-loop-join-spill-block-size")
+    @ConfigDescription("Maximum size of a block of rows that a nested loop join with a spilled build side joins at a time")
+    public FeaturesConfig setNestedLoopJoinSpillBlockSize(DataSize nestedLoopJoinSpillBlockSize)
+    {
+        this.nestedLoopJoinSpillBlockSize = nestedLoopJoinSpillBlockSize;
+        return this;
+    }
+
+    @Min(1)
+    public int getSpillPartitionCount()
+    {
+        return spillPartitionCount;
+    }
+
+    @Config("experimental.spill-partition-count")
+    @ConfigDescription("Number of hash partitions spilled operator data is split into")
+    public FeaturesConfig setSpillPartitionCount(int spillPartitionCount)
+    {
+        this.spillPartitionCount = spillPartitionCount;
+        return this;
+    }
+
     public List<Path> getSpillerSpillPaths()
     {
         return spillerSpillPaths;
@@ -1388,6 +1542,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public DataSize getDynamicFilteringBloomFilterSize()
+    {
+        return dynamicFilteringBloomFilterSize;
+    }
+
+    @Config("experimental.dynamic-filtering-bloom-filter-size")
+    @ConfigDescription("Size of the bloom filter of build-side values collected per driver for dynamic filtering, 0 disables bloom filters")
+    public FeaturesConfig setDynamicFilteringBloomFilterSize(DataSize dynamicFilteringBloomFilterSize)
+    {
+        this.dynamicFilteringBloomFilterSize = dynamicFilteringBloomFilterSize;
+        return this;
+    }
+
     public boolean isFragmentResultCachingEnabled()
     {
         return fragmentResultCachingEnabled;
@@ -1401,6 +1568,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isQueryResultCachingEnabled()
+    {
+        return queryResultCachingEnabled;
+    }
+
+    @Config("experimental.query-result-caching-enabled")
+    @ConfigDescription("Serve the results of repeated deterministic queries from the coordinator query result cache when applicable")
+    public FeaturesConfig setQueryResultCachingEnabled(boolean queryResultCachingEnabled)
+    {
+        this.queryResultCachingEnabled = queryResultCachingEnabled;
+        return this;
+    }
+
     public boolean isOptimizeMixedDistinctAggregations()
     {
         return optimizeMixedDistinctAggregations;
@@ -1437,6 +1617,48 @@ public class FeaturesConfig
         return this;
     }
 
+    @NotNull
+    public CompressionCodec getExchangeCompressionCodec()
+    {
+        return exchangeCompressionCodec;
+    }
+
+    @Config("exchange.compression-codec")
+    @ConfigDescription("Codec used to compress pages in exchanges, if exchange compression is enabled")
+    public FeaturesConfig setExchangeCompressionCodec(CompressionCodec exchangeCompressionCodec)
+    {
+        this.exchangeCompressionCodec = exchangeCompressionCodec;
+        return this;
+    }
+
+    @Min(1)
+    @Max(22)
+    public int getExchangeZstdCompressionLevel()
+    {
+        return exchangeZstdCompressionLevel;
+    }
+
+    @Config("exchange.zstd-compression-level")
+    @ConfigDescription("Compression level used by the ZSTD exchange compression codec")
+    public FeaturesConfig setExchangeZstdCompressionLevel(int exchangeZstdCompressionLevel)
+    {
+        this.exchangeZstdCompressionLevel = exchangeZstdCompressionLevel;
+        return this;
+    }
+
+    public boolean isExchangeAdaptiveCompressionEnabled()
+    {
+        return exchangeAdaptiveCompressionEnabled;
+    }
+
+    @Config("exchange.adaptive-compression-enabled")
+    @ConfigDescription("Stop compressing pages in exchanges for a while after a page did not compress well")
+    public FeaturesConfig setExchangeAdaptiveCompressionEnabled(boolean exchangeAdaptiveCompressionEnabled)
+    {
+        this.exchangeAdaptiveCompressionEnabled = exchangeAdaptiveCompressionEnabled;
+        return this;
+    }
+
     public boolean isEnableIntermediateAggregations()
     {
         return enableIntermediateAggregations;
@@ -1698,6 +1920,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public boolean isOptimizedRepartitioningPreserveDictionaries()
+    {
+        return optimizedRepartitioningPreserveDictionaries;
+    }
+
+    @Config("experimental.optimized-repartitioning-preserve-dictionaries")
+    @ConfigDescription("Experimental: Keep the dictionary and RLE encoding of variable width columns in optimized repartitioning")
+    public FeaturesConfig setOptimizedRepartitioningPreserveDictionaries(boolean optimizedRepartitioningPreserveDictionaries)
+    {
+        this.optimizedRepartitioningPreserveDictionaries = optimizedRepartitioningPreserveDictionaries;
+        return this;
+    }
+
     public boolean isListBuiltInFunctionsOnly()
     {
         return listBuiltInFunctionsOnly;
@@ -1918,6 +2153,19 @@ public class FeaturesConfig
         return this;
     }
 
+    public DataSize getSpoolingOutputBufferPrefetchSize()
+    {
+        return spoolingOutputBufferPrefetchSize;
+    }
+
+    @Config("spooling-output-buffer-prefetch-size")
+    @ConfigDescription("Size of the files at the front of the spooling output buffer that are kept in memory")
+    public FeaturesConfig setSpoolingOutputBufferPrefetchSize(DataSize spoolingOutputBufferPrefetchSize)
+    {
+        this.spoolingOutputBufferPrefetchSize = spoolingOutputBufferPrefetchSize;
+        return this;
+    }
+
     public String getSpoolingOutputBufferTempStorage()
     {
         return spoolingOutputBufferTempStorage;
@@ -17,7 +17,6 @@ import com.facebook.presto.Session;
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
-import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.operator.ExchangeOperator.ExchangeOperatorFactory;
 import com.facebook.presto.operator.MergeOperator.MergeOperatorFactory;
 import com.facebook.presto.operator.SourceOperatorFactory;
@@ -27,8 +26,7 @@ import com.facebook.presto.sql.gen.OrderingCompiler;
 
 import java.util.List;
 
-import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnabled;
-import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
+import static com.facebook.presto.execution.buffer.PagesSerdeFactory.createExchangePagesSerdeFactory;
 import static java.util.Objects.requireNonNull;
 
 public class HttpRemoteSourceFactory
@@ -52,7 +50,7 @@ public class HttpRemoteSourceFactory
                 operatorId,
                 planNodeId,
                 taskExchangeClientManager,
-                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeChecksumEnabled(session)));
+                createExchangePagesSerdeFactory(blockEncodingSerde, session));
     }
 
     @Override
@@ -69,7 +67,7 @@ public class HttpRemoteSourceFactory
                 operatorId,
                 planNodeId,
                 taskExchangeClientManager,
-                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeChecksumEnabled(session)),
+                createExchangePagesSerdeFactory(blockEncodingSerde, session),
                 orderingCompiler,
                 types,
                 outputChannels,
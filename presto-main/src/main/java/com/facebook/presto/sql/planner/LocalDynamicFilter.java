@@ -17,6 +17,7 @@ import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterExtractResult;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.operator.DynamicFilterBloomFilter;
 import com.facebook.presto.spi.plan.FilterNode;
 import com.facebook.presto.spi.plan.PlanNode;
 import com.facebook.presto.spi.plan.TableScanNode;
@@ -30,12 +31,14 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.function.Consumer;
 
+import static com.facebook.presto.common.function.OperatorType.EQUAL;
 import static com.facebook.presto.expressions.DynamicFilters.extractDynamicFilters;
 import static com.google.common.base.MoreObjects.toStringHelper;
 import static com.google.common.base.Verify.verify;
@@ -58,6 +61,11 @@ public class LocalDynamicFilter
     // The resulting predicates from each build-side partition.
     private final List<TupleDomain<String>> partitions;
 
+    private final SettableFuture<Map<VariableReferenceExpression, DynamicFilterBloomFilter>> bloomFilterResultFuture;
+
+    // The bloom filters from each build-side partition, if bloom filters are collected.
+    private final List<Map<String, DynamicFilterBloomFilter>> bloomFilterPartitions;
+
     public LocalDynamicFilter(Multimap<String, DynamicFilterPlaceholder> probeVariables, Map<String, Integer> buildChannels, int partitionCount)
     {
         this.probeVariables = requireNonNull(probeVariables, "probeVariables is null");
@@ -68,6 +76,9 @@ public class LocalDynamicFilter
 
         this.partitionCount = partitionCount;
         this.partitions = new ArrayList<>(partitionCount);
+
+        this.bloomFilterResultFuture = SettableFuture.create();
+        this.bloomFilterPartitions = new ArrayList<>(partitionCount);
     }
 
     private synchronized void addPartition(TupleDomain<String> tupleDomain)
@@ -84,6 +95,52 @@ public class LocalDynamicFilter
         }
     }
 
+    private synchronized void addBloomFilterPartition(Map<String, DynamicFilterBloomFilter> bloomFilters)
+    {
+        // Called concurrently by each DynamicFilterSourceOperator instance (when collection is over).
+        verify(bloomFilterPartitions.size() < partitionCount);
+        bloomFilterPartitions.add(bloomFilters);
+        if (bloomFilterPartitions.size() == partitionCount) {
+            verify(bloomFilterResultFuture.set(convertBloomFilters(mergeBloomFilters(bloomFilterPartitions))), "bloom filter result is provided more than once");
+        }
+    }
+
+    private static Map<String, DynamicFilterBloomFilter> mergeBloomFilters(List<Map<String, DynamicFilterBloomFilter>> partitions)
+    {
+        ImmutableMap.Builder<String, DynamicFilterBloomFilter> builder = ImmutableMap.builder();
+        for (String filterId : partitions.get(0).keySet()) {
+            DynamicFilterBloomFilter merged = null;
+            for (Map<String, DynamicFilterBloomFilter> partition : partitions) {
+                DynamicFilterBloomFilter bloomFilter = partition.get(filterId);
+                if (bloomFilter == null) {
+                    // the values of this partition are not recorded, so all probe-side values have to pass
+                    merged = null;
+                    break;
+                }
+                merged = merged == null ? bloomFilter : merged.union(bloomFilter);
+            }
+            if (merged != null && !merged.isSaturated()) {
+                builder.put(filterId, merged);
+            }
+        }
+        return builder.build();
+    }
+
+    private Map<VariableReferenceExpression, DynamicFilterBloomFilter> convertBloomFilters(Map<String, DynamicFilterBloomFilter> bloomFilters)
+    {
+        // A bloom filter only answers whether a value may be equal to a build-side value.
+        Map<VariableReferenceExpression, DynamicFilterBloomFilter> result = new HashMap<>();
+        for (Map.Entry<String, DynamicFilterBloomFilter> entry : bloomFilters.entrySet()) {
+            for (DynamicFilterPlaceholder placeholder : probeVariables.get(entry.getKey())) {
+                if (placeholder.getOperator() == EQUAL && placeholder.getInput().getType().equals(entry.getValue().getType())) {
+                    // the same probe variable may be compared with multiple build-side variables
+                    result.merge((VariableReferenceExpression) placeholder.getInput(), entry.getValue(), DynamicFilterBloomFilter::intersect);
+                }
+            }
+        }
+        return ImmutableMap.copyOf(result);
+    }
+
     private TupleDomain<VariableReferenceExpression> convertTupleDomain(TupleDomain<String> result)
     {
         if (result.isNone()) {
@@ -167,6 +224,19 @@ public class LocalDynamicFilter
         return this::addPartition;
     }
 
+    /**
+     * The future is only completed if the build-side operators collect bloom filters.
+     */
+    public ListenableFuture<Map<VariableReferenceExpression, DynamicFilterBloomFilter>> getBloomFilterResultFuture()
+    {
+        return bloomFilterResultFuture;
+    }
+
+    public Consumer<Map<String, DynamicFilterBloomFilter>> getBloomFilterConsumer()
+    {
+        return this::addBloomFilterPartition;
+    }
+
     @Override
     public String toString()
     {
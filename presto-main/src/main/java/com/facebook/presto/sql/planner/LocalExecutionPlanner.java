@@ -32,7 +32,6 @@ import com.facebook.presto.execution.StageExecutionId;
 import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.execution.TaskMetadataContext;
 import com.facebook.presto.execution.buffer.OutputBuffer;
-import com.facebook.presto.execution.buffer.PagesSerdeFactory;
 import com.facebook.presto.execution.scheduler.ExecutionWriterTarget;
 import com.facebook.presto.execution.scheduler.ExecutionWriterTarget.CreateHandle;
 import com.facebook.presto.execution.scheduler.ExecutionWriterTarget.DeleteHandle;
@@ -55,6 +54,7 @@ import com.facebook.presto.operator.AssignUniqueIdOperator;
 import com.facebook.presto.operator.DeleteOperator.DeleteOperatorFactory;
 import com.facebook.presto.operator.DevNullOperator.DevNullOperatorFactory;
 import com.facebook.presto.operator.DriverFactory;
+import com.facebook.presto.operator.DynamicFilterBloomFilter;
 import com.facebook.presto.operator.DynamicFilterSourceOperator;
 import com.facebook.presto.operator.EnforceSingleRowOperator;
 import com.facebook.presto.operator.ExplainAnalyzeOperator.ExplainAnalyzeOperatorFactory;
@@ -73,6 +73,9 @@ import com.facebook.presto.operator.LookupJoinOperators;
 import com.facebook.presto.operator.LookupOuterOperator.LookupOuterOperatorFactory;
 import com.facebook.presto.operator.LookupSourceFactory;
 import com.facebook.presto.operator.MarkDistinctOperator.MarkDistinctOperatorFactory;
+import com.facebook.presto.operator.MergeJoinOperator.MergeJoinOperatorFactory;
+import com.facebook.presto.operator.MergeJoinSinkOperator.MergeJoinSinkOperatorFactory;
+import com.facebook.presto.operator.MergeJoinSource;
 import com.facebook.presto.operator.MetadataDeleteOperator.MetadataDeleteOperatorFactory;
 import com.facebook.presto.operator.NestedLoopJoinBridge;
 import com.facebook.presto.operator.NestedLoopJoinPagesSupplier;
@@ -110,6 +113,7 @@ import com.facebook.presto.operator.WindowFunctionDefinition;
 import com.facebook.presto.operator.WindowOperator.WindowOperatorFactory;
 import com.facebook.presto.operator.aggregation.AccumulatorFactory;
 import com.facebook.presto.operator.aggregation.BuiltInAggregationFunctionImplementation;
+import com.facebook.presto.operator.aggregation.builder.PartialAggregationController;
 import com.facebook.presto.operator.exchange.LocalExchange.LocalExchangeFactory;
 import com.facebook.presto.operator.exchange.LocalExchangeSinkOperator.LocalExchangeSinkOperatorFactory;
 import com.facebook.presto.operator.exchange.LocalExchangeSourceOperator.LocalExchangeSourceOperatorFactory;
@@ -187,6 +191,7 @@ import com.facebook.presto.sql.planner.plan.IndexJoinNode;
 import com.facebook.presto.sql.planner.plan.IndexSourceNode;
 import com.facebook.presto.sql.planner.plan.InternalPlanVisitor;
 import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.sql.planner.plan.MergeJoinNode;
 import com.facebook.presto.sql.planner.plan.MetadataDeleteNode;
 import com.facebook.presto.sql.planner.plan.OutputNode;
 import com.facebook.presto.sql.planner.plan.RemoteSourceNode;
@@ -245,33 +250,42 @@ import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import static com.facebook.airlift.concurrent.MoreFutures.addSuccessCallback;
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationMinRows;
+import static com.facebook.presto.SystemSessionProperties.getAdaptivePartialAggregationUniqueRowsRatioThreshold;
 import static com.facebook.presto.SystemSessionProperties.getAggregationOperatorUnspillMemoryLimit;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringBloomFilterSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringRangeRowLimitPerDriver;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageRowCount;
 import static com.facebook.presto.SystemSessionProperties.getFilterAndProjectMinOutputPageSize;
 import static com.facebook.presto.SystemSessionProperties.getIndexLoaderTimeout;
+import static com.facebook.presto.SystemSessionProperties.getNestedLoopJoinSpillBlockSize;
+import static com.facebook.presto.SystemSessionProperties.getSpillPartitionCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskConcurrency;
 import static com.facebook.presto.SystemSessionProperties.getTaskPartitionedWriterCount;
 import static com.facebook.presto.SystemSessionProperties.getTaskWriterCount;
+import static com.facebook.presto.SystemSessionProperties.isAdaptivePartialAggregationEnabled;
 import static com.facebook.presto.SystemSessionProperties.isAggregationSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isDistinctAggregationSpillEnabled;
+import static com.facebook.presto.SystemSessionProperties.isDistinctLimitSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isEnableDynamicFiltering;
-import static com.facebook.presto.SystemSessionProperties.isExchangeChecksumEnabled;
-import static com.facebook.presto.SystemSessionProperties.isExchangeCompressionEnabled;
 import static com.facebook.presto.SystemSessionProperties.isJoinSpillingEnabled;
+import static com.facebook.presto.SystemSessionProperties.isMarkDistinctSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOptimizeCommonSubExpressions;
 import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningEnabled;
+import static com.facebook.presto.SystemSessionProperties.isOptimizedRepartitioningPreserveDictionaries;
 import static com.facebook.presto.SystemSessionProperties.isOrderByAggregationSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isOrderBySpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isQuickDistinctLimitEnabled;
 import static com.facebook.presto.SystemSessionProperties.isSpillEnabled;
+import static com.facebook.presto.SystemSessionProperties.isTopNRowNumberSpillEnabled;
 import static com.facebook.presto.SystemSessionProperties.isWindowSpillEnabled;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.TypeSignature.parseTypeSignature;
 import static com.facebook.presto.common.type.TypeUtils.writeNativeValue;
 import static com.facebook.presto.execution.FragmentResultCacheContext.createFragmentResultCacheContext;
+import static com.facebook.presto.execution.buffer.PagesSerdeFactory.createExchangePagesSerdeFactory;
 import static com.facebook.presto.expressions.LogicalRowExpressions.TRUE_CONSTANT;
 import static com.facebook.presto.expressions.RowExpressionNodeInliner.replaceExpression;
 import static com.facebook.presto.geospatial.SphericalGeographyUtils.sphericalDistance;
@@ -332,6 +346,7 @@ import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.base.Verify.verify;
 import static com.google.common.collect.DiscreteDomain.integers;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.ImmutableMap.toImmutableMap;
 import static com.google.common.collect.ImmutableSet.toImmutableSet;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static com.google.common.collect.Range.closedOpen;
@@ -497,7 +512,7 @@ public class LocalExecutionPlanner
         }
 
         if (isOptimizedRepartitioningEnabled(taskContext.getSession())) {
-            return new OptimizedPartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize);
+            return new OptimizedPartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize, isOptimizedRepartitioningPreserveDictionaries(taskContext.getSession()));
         }
         else {
             return new PartitionedOutputFactory(outputBuffer, maxPagePartitioningBufferSize);
@@ -598,7 +613,7 @@ public class LocalExecutionPlanner
                                 outputTypes,
                                 pagePreprocessor,
                                 outputPartitioning,
-                                new PagesSerdeFactory(blockEncodingSerde, isExchangeCompressionEnabled(session), isExchangeChecksumEnabled(session))))
+                                createExchangePagesSerdeFactory(blockEncodingSerde, session)))
                         .build(),
                 context.getDriverInstanceCount(),
                 physicalOperation.getPipelineExecutionStrategy(),
@@ -1009,7 +1024,10 @@ public class LocalExecutionPlanner
                     node.isPartial(),
                     hashChannel,
                     1000,
-                    joinCompiler);
+                    joinCompiler,
+                    // spilled partitions are merged back by partition key
+                    isTopNRowNumberSpillEnabled(context.getSession()) && !partitionChannels.isEmpty(),
+                    Optional.of(spillerFactory));
 
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
@@ -1189,7 +1207,10 @@ public class LocalExecutionPlanner
                     distinctChannels,
                     node.getLimit(),
                     hashChannel,
-                    joinCompiler);
+                    joinCompiler,
+                    isDistinctLimitSpillEnabled(context.getSession()),
+                    getSpillPartitionCount(context.getSession()),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operatorFactory, makeLayout(node), context, source);
         }
 
@@ -1272,7 +1293,16 @@ public class LocalExecutionPlanner
 
             List<Integer> channels = getChannelsForVariables(node.getDistinctVariables(), source.getLayout());
             Optional<Integer> hashChannel = node.getHashVariable().map(variableChannelGetter(source));
-            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(context.getNextOperatorId(), node.getId(), source.getTypes(), channels, hashChannel, joinCompiler);
+            MarkDistinctOperatorFactory operator = new MarkDistinctOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    source.getTypes(),
+                    channels,
+                    hashChannel,
+                    joinCompiler,
+                    isMarkDistinctSpillEnabled(context.getSession()),
+                    getSpillPartitionCount(context.getSession()),
+                    partitioningSpillerFactory);
             return new PhysicalOperation(operator, makeLayout(node), context, source);
         }
 
@@ -1394,6 +1424,7 @@ public class LocalExecutionPlanner
 
             Optional<List<DynamicFilterPlaceholder>> dynamicFilters = extractDynamicFilterResult.map(DynamicFilterExtractResult::getDynamicConjuncts);
             Optional<Supplier<TupleDomain<ColumnHandle>>> dynamicFilterSupplier = Optional.empty();
+            Optional<Supplier<Map<Integer, DynamicFilterBloomFilter>>> dynamicBloomFilterSupplier = Optional.empty();
             if (dynamicFilters.isPresent() && !dynamicFilters.get().isEmpty() && sourceNode instanceof TableScanNode) {
                 TableScanNode tableScanNode = (TableScanNode) sourceNode;
                 LocalDynamicFiltersCollector collector = context.getDynamicFiltersCollector();
@@ -1401,6 +1432,12 @@ public class LocalExecutionPlanner
                     TupleDomain<VariableReferenceExpression> predicate = collector.getPredicate();
                     return predicate.transform(tableScanNode.getAssignments()::get);
                 });
+                if (getDynamicFilteringBloomFilterSize(session).toBytes() > 0) {
+                    Map<VariableReferenceExpression, Integer> scanLayout = sourceLayout;
+                    dynamicBloomFilterSupplier = Optional.of(() -> collector.getBloomFilters().entrySet().stream()
+                            .filter(entry -> scanLayout.containsKey(entry.getKey()))
+                            .collect(toImmutableMap(entry -> scanLayout.get(entry.getKey()), Map.Entry::getValue)));
+                }
             }
 
             // compiler uses inputs instead of variables, so rewrite the expressions first
@@ -1437,6 +1474,7 @@ public class LocalExecutionPlanner
                             columns,
                             projections.stream().map(RowExpression::getType).collect(toImmutableList()),
                             dynamicFilterSupplier,
+                            dynamicBloomFilterSupplier,
                             getFilterAndProjectMinOutputPageSize(session),
                             getFilterAndProjectMinOutputPageRowCount(session));
 
@@ -1826,6 +1864,91 @@ public class LocalExecutionPlanner
             }
         }
 
+        @Override
+        public PhysicalOperation visitMergeJoin(MergeJoinNode node, LocalExecutionPlanContext context)
+        {
+            // Plan left side, which drives the join
+            PhysicalOperation leftSource = node.getLeft().accept(this, context);
+
+            // Plan right side, which is streamed into the join through a MergeJoinSource
+            LocalExecutionPlanContext rightContext = context.createSubContext();
+            PhysicalOperation rightSource = node.getRight().accept(this, rightContext);
+            checkState(
+                    leftSource.getPipelineExecutionStrategy() == rightSource.getPipelineExecutionStrategy(),
+                    "left and right side of a merge join have different pipelineExecutionStrategy");
+            // both sides must arrive as a single sorted stream, as the join can not merge the streams of several drivers
+            checkArgument(isSingleStream(context, leftSource), "Merge join requires a single stream on the left side");
+            checkArgument(isSingleStream(rightContext, rightSource), "Merge join requires a single stream on the right side");
+
+            List<VariableReferenceExpression> leftVariables = Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause::getLeft);
+            List<VariableReferenceExpression> rightVariables = Lists.transform(node.getCriteria(), JoinNode.EquiJoinClause::getRight);
+            List<VariableReferenceExpression> leftOutputVariables = node.getOutputVariables().stream()
+                    .filter(node.getLeft().getOutputVariables()::contains)
+                    .collect(toImmutableList());
+            List<VariableReferenceExpression> rightOutputVariables = node.getOutputVariables().stream()
+                    .filter(node.getRight().getOutputVariables()::contains)
+                    .collect(toImmutableList());
+
+            Optional<JoinFilterFunctionFactory> filterFunctionFactory = node.getFilter()
+                    .map(filterExpression -> compileJoinFilterFunction(
+                            session.getSqlFunctionProperties(),
+                            session.getSessionFunctions(),
+                            filterExpression,
+                            leftSource.getLayout(),
+                            rightSource.getLayout()));
+
+            JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager = new JoinBridgeManager<>(
+                    false,
+                    leftSource.getPipelineExecutionStrategy(),
+                    rightSource.getPipelineExecutionStrategy(),
+                    MergeJoinSource::new,
+                    rightSource.getTypes());
+
+            ImmutableList.Builder<OperatorFactory> factoriesBuilder = ImmutableList.builder();
+            factoriesBuilder.addAll(rightSource.getOperatorFactories());
+            factoriesBuilder.add(new MergeJoinSinkOperatorFactory(rightContext.getNextOperatorId(), node.getId(), mergeJoinSourceManager));
+            context.addDriverFactory(
+                    rightContext.isInputDriver(),
+                    false,
+                    factoriesBuilder.build(),
+                    rightContext.getDriverInstanceCount(),
+                    rightSource.getPipelineExecutionStrategy(),
+                    Optional.empty());
+
+            OperatorFactory operatorFactory = new MergeJoinOperatorFactory(
+                    context.getNextOperatorId(),
+                    node.getId(),
+                    mergeJoinSourceManager,
+                    node.getType(),
+                    leftSource.getTypes(),
+                    getChannelsForVariables(leftVariables, leftSource.getLayout()),
+                    getChannelsForVariables(leftOutputVariables, leftSource.getLayout()),
+                    rightSource.getTypes(),
+                    getChannelsForVariables(rightVariables, rightSource.getLayout()),
+                    getChannelsForVariables(rightOutputVariables, rightSource.getLayout()),
+                    filterFunctionFactory);
+
+            // outputs of the right side follow the outputs of the left side
+            ImmutableMap.Builder<VariableReferenceExpression, Integer> outputMappings = ImmutableMap.builder();
+            int channel = 0;
+            for (VariableReferenceExpression variable : leftOutputVariables) {
+                outputMappings.put(variable, channel++);
+            }
+            for (VariableReferenceExpression variable : rightOutputVariables) {
+                outputMappings.put(variable, channel++);
+            }
+            return new PhysicalOperation(operatorFactory, outputMappings.build(), context, leftSource);
+        }
+
+        private boolean isSingleStream(LocalExecutionPlanContext context, PhysicalOperation source)
+        {
+            if (context.getDriverInstanceCount().isPresent()) {
+                return context.getDriverInstanceCount().getAsInt() == 1;
+            }
+            // a source pipeline runs a driver per split, and only grouped execution reads a single bucket per lifespan
+            return context.isInputDriver() && source.getPipelineExecutionStrategy() == GROUPED_EXECUTION;
+        }
+
         @Override
         public PhysicalOperation visitSpatialJoin(SpatialJoinNode node, LocalExecutionPlanContext context)
         {
@@ -2025,10 +2148,14 @@ public class LocalExecutionPlanner
                     buildSource.getPipelineExecutionStrategy(),
                     () -> new NestedLoopJoinPagesSupplier(),
                     buildSource.getTypes());
+            DataSize spillBlockSize = getNestedLoopJoinSpillBlockSize(session);
             NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(
                     buildContext.getNextOperatorId(),
                     node.getId(),
-                    nestedLoopJoinBridgeManager);
+                    nestedLoopJoinBridgeManager,
+                    isJoinSpillingEnabled(session),
+                    spillBlockSize,
+                    singleStreamSpillerFactory);
 
             int partitionCount = buildContext.getDriverInstanceCount().orElse(1);
             checkArgument(partitionCount == 1, "Expected local execution to not be parallel");
@@ -2057,7 +2184,7 @@ public class LocalExecutionPlanner
                 outputMappings.put(entry.getKey(), offset + entry.getValue());
             }
 
-            OperatorFactory operatorFactory = new NestedLoopJoinOperatorFactory(context.getNextOperatorId(), node.getId(), nestedLoopJoinBridgeManager);
+            OperatorFactory operatorFactory = new NestedLoopJoinOperatorFactory(context.getNextOperatorId(), node.getId(), nestedLoopJoinBridgeManager, spillBlockSize);
             return new PhysicalOperation(operatorFactory, outputMappings.build(), context, probeSource);
         }
 
@@ -2351,7 +2478,9 @@ public class LocalExecutionPlanner
                     filterBuildChannels,
                     getDynamicFilteringMaxPerDriverRowCount(context.getSession()),
                     getDynamicFilteringMaxPerDriverSize(context.getSession()),
-                    getDynamicFilteringRangeRowLimitPerDriver(context.getSession()));
+                    getDynamicFilteringRangeRowLimitPerDriver(context.getSession()),
+                    dynamicFilter.getBloomFilterConsumer(),
+                    getDynamicFilteringBloomFilterSize(context.getSession()));
         }
 
         private Optional<LocalDynamicFilter> createDynamicFilter(PhysicalOperation buildSource, AbstractJoinNode node, LocalExecutionPlanContext context, int partitionCount)
@@ -2372,6 +2501,7 @@ public class LocalExecutionPlanner
                         // Intersect dynamic filters' predicates when they become ready,
                         // in order to support multiple join nodes in the same plan fragment.
                         addSuccessCallback(filter.getResultFuture(), collector::intersect);
+                        addSuccessCallback(filter.getBloomFilterResultFuture(), collector::intersectBloomFilters);
                         return filter;
                     });
         }
@@ -2469,6 +2599,8 @@ public class LocalExecutionPlanner
             Optional<Integer> buildHashChannel = node.getFilteringSourceHashVariable().map(variableChannelGetter(buildSource));
             Optional<Integer> probeHashChannel = node.getSourceHashVariable().map(variableChannelGetter(probeSource));
 
+            // the set is shared by all lifespans, so only spill it when there is a single one
+            boolean spillEnabled = isJoinSpillingEnabled(context.getSession()) && buildSource.getPipelineExecutionStrategy() == UNGROUPED_EXECUTION;
             SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
                     buildContext.getNextOperatorId(),
                     node.getId(),
@@ -2476,7 +2608,10 @@ public class LocalExecutionPlanner
                     buildChannel,
                     buildHashChannel,
                     10_000,
-                    joinCompiler);
+                    joinCompiler,
+                    spillEnabled,
+                    getSpillPartitionCount(context.getSession()),
+                    partitioningSpillerFactory);
 
             ImmutableList.Builder<OperatorFactory> factoriesBuilder = ImmutableList.builder();
             factoriesBuilder.addAll(buildSource.getOperatorFactories());
@@ -2503,7 +2638,7 @@ public class LocalExecutionPlanner
                     .put(node.getSemiJoinOutput(), probeSource.getLayout().size())
                     .build();
 
-            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(context.getNextOperatorId(), node.getId(), setProvider, probeSource.getTypes(), probeChannel, probeHashChannel);
+            HashSemiJoinOperatorFactory operator = new HashSemiJoinOperatorFactory(context.getNextOperatorId(), node.getId(), setProvider, probeSource.getTypes(), probeChannel, probeHashChannel, partitioningSpillerFactory);
             return new PhysicalOperation(operator, outputMappings, context, probeSource);
         }
 
@@ -3178,6 +3313,13 @@ public class LocalExecutionPlanner
             else {
                 Optional<Integer> hashChannel = hashVariable.map(variableChannelGetter(source));
                 List<Integer> preGroupedChannels = getChannelsForVariables(preGroupedVariables, source.getLayout());
+                Optional<PartialAggregationController> partialAggregationController = Optional.empty();
+                // a partial aggregation without memory limit must reduce its input fully, so it can not be skipped
+                if (step == PARTIAL && maxPartialAggregationMemorySize.isPresent() && preGroupedChannels.isEmpty() && isAdaptivePartialAggregationEnabled(context.getSession())) {
+                    partialAggregationController = Optional.of(new PartialAggregationController(
+                            getAdaptivePartialAggregationMinRows(context.getSession()),
+                            getAdaptivePartialAggregationUniqueRowsRatioThreshold(context.getSession())));
+                }
                 return new HashAggregationOperatorFactory(
                         context.getNextOperatorId(),
                         planNodeId,
@@ -3196,7 +3338,8 @@ public class LocalExecutionPlanner
                         unspillMemoryLimit,
                         spillerFactory,
                         joinCompiler,
-                        useSystemMemory);
+                        useSystemMemory,
+                        partialAggregationController);
             }
         }
 
@@ -0,0 +1,76 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.spi.page.PageCodecMarker;
+import com.facebook.presto.spi.page.SerializedPage;
+import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestQueryResultCache
+{
+    @Test
+    public void testPutAndGet()
+    {
+        QueryResultCache cache = new QueryResultCache(new QueryResultCacheConfig());
+        List<SerializedPage> pages = ImmutableList.of(createPage(10), createPage(20));
+
+        assertFalse(cache.get("key").isPresent());
+        cache.put("key", pages);
+        assertEquals(cache.get("key"), Optional.of(pages));
+        assertFalse(cache.get("other").isPresent());
+
+        assertEquals(cache.getHitCount(), 1);
+        assertEquals(cache.getMissCount(), 2);
+        assertEquals(cache.getEntryCount(), 1);
+    }
+
+    @Test
+    public void testResultTooLarge()
+    {
+        QueryResultCache cache = new QueryResultCache(new QueryResultCacheConfig()
+                .setMaxResultSize(new DataSize(1, KILOBYTE)));
+
+        cache.put("key", ImmutableList.of(createPage(600), createPage(600)));
+        assertFalse(cache.get("key").isPresent());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        QueryResultCache cache = new QueryResultCache(new QueryResultCacheConfig()
+                .setMaxCacheSize(new DataSize(16, KILOBYTE))
+                .setMaxResultSize(new DataSize(2, KILOBYTE)));
+
+        for (int i = 0; i < 100; i++) {
+            cache.put("key" + i, ImmutableList.of(createPage(1000)));
+        }
+        assertTrue(cache.getEntryCount() <= 16);
+    }
+
+    private static SerializedPage createPage(int sizeInBytes)
+    {
+        return new SerializedPage(wrappedBuffer(new byte[sizeInBytes]), PageCodecMarker.none(), 1, sizeInBytes, 0);
+    }
+}
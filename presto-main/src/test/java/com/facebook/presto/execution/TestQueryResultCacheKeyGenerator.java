@@ -0,0 +1,127 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.execution;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.metadata.DelegatingMetadataManager;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.spi.TableHandle;
+import com.facebook.presto.spi.security.Identity;
+import com.facebook.presto.sql.analyzer.Analysis;
+import com.facebook.presto.sql.analyzer.Analyzer;
+import com.facebook.presto.sql.planner.Plan;
+import com.facebook.presto.sql.planner.assertions.BasePlanTest;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import org.intellij.lang.annotations.Language;
+import org.testng.annotations.Test;
+
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.TimeZoneKey.getTimeZoneKey;
+import static com.facebook.presto.spi.WarningCollector.NOOP;
+import static com.facebook.presto.sql.ParsingUtil.createParsingOptions;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestQueryResultCacheKeyGenerator
+        extends BasePlanTest
+{
+    private static final String QUERY = "SELECT orderkey, totalprice FROM orders WHERE custkey = 10";
+
+    @Test
+    public void testSamePlan()
+    {
+        Optional<String> key = generateKey(QUERY);
+        assertTrue(key.isPresent());
+        assertEquals(generateKey(QUERY), key);
+        assertEquals(generateKey("select orderkey, totalprice from orders where custkey = 10"), key);
+    }
+
+    @Test
+    public void testDifferentLiterals()
+    {
+        assertNotEquals(generateKey("SELECT orderkey, totalprice FROM orders WHERE custkey = 20"), generateKey(QUERY));
+        assertNotEquals(generateKey("SELECT orderkey, totalprice + 1 FROM orders WHERE custkey = 10"), generateKey(QUERY));
+    }
+
+    @Test
+    public void testDifferentSessions()
+    {
+        Session session = getQueryRunner().getDefaultSession();
+        Optional<String> key = generateKey(session, QUERY);
+
+        assertNotEquals(generateKey(Session.builder(session).setIdentity(new Identity("other_user", Optional.empty())).build(), QUERY), key);
+        assertNotEquals(generateKey(Session.builder(session).setTimeZoneKey(getTimeZoneKey("Asia/Kathmandu")).build(), QUERY), key);
+        assertNotEquals(generateKey(Session.builder(session).setSystemProperty("query_max_execution_time", "1h").build(), QUERY), key);
+    }
+
+    @Test
+    public void testNotCacheable()
+    {
+        assertFalse(generateKey("SELECT orderkey FROM orders WHERE totalprice > rand()").isPresent());
+        assertFalse(generateKey("SELECT orderkey, now() FROM orders").isPresent());
+        assertFalse(generateKey("SELECT orderkey FROM orders WHERE orderdate < current_date").isPresent());
+        assertFalse(generateKey("SELECT table_name FROM information_schema.tables").isPresent());
+    }
+
+    @Test
+    public void testTableWithoutVersion()
+    {
+        QueryResultCacheKeyGenerator keyGenerator = new QueryResultCacheKeyGenerator(
+                getObjectMapper(),
+                new DelegatingMetadataManager((MetadataManager) getMetadata())
+                {
+                    @Override
+                    public Optional<String> getTableVersion(Session session, TableHandle tableHandle)
+                    {
+                        return Optional.empty();
+                    }
+                });
+        assertFalse(generateKey(keyGenerator, getQueryRunner().getDefaultSession(), QUERY).isPresent());
+
+        // a query without tables does not depend on any version
+        assertTrue(generateKey(keyGenerator, getQueryRunner().getDefaultSession(), "SELECT * FROM (VALUES 1, 2, 3) t(x) WHERE x > 1").isPresent());
+    }
+
+    private Optional<String> generateKey(@Language("SQL") String sql)
+    {
+        return generateKey(getQueryRunner().getDefaultSession(), sql);
+    }
+
+    private Optional<String> generateKey(Session session, @Language("SQL") String sql)
+    {
+        return generateKey(new QueryResultCacheKeyGenerator(getObjectMapper(), getMetadata()), session, sql);
+    }
+
+    private Optional<String> generateKey(QueryResultCacheKeyGenerator keyGenerator, Session session, @Language("SQL") String sql)
+    {
+        return getQueryRunner().inTransaction(session, transactionSession -> {
+            Analyzer analyzer = new Analyzer(
+                    transactionSession,
+                    getMetadata(),
+                    getQueryRunner().getSqlParser(),
+                    getQueryRunner().getAccessControl(),
+                    Optional.empty(),
+                    ImmutableList.of(),
+                    ImmutableMap.of(),
+                    NOOP);
+            Analysis analysis = analyzer.analyze(getQueryRunner().getSqlParser().createStatement(sql, createParsingOptions(transactionSession)));
+            Plan plan = getQueryRunner().createPlan(transactionSession, sql, NOOP);
+            return keyGenerator.generateKey(transactionSession, analysis, plan.getRoot());
+        });
+    }
+}
@@ -46,6 +46,7 @@ public class TestTaskManagerConfig
                 .setPerOperatorAllocationTrackingEnabled(false)
                 .setTaskAllocationTrackingEnabled(false)
                 .setMaxWorkerThreads(Runtime.getRuntime().availableProcessors() * 2)
+                .setBlockingSplitThreads(0)
                 .setMinDrivers(Runtime.getRuntime().availableProcessors() * 2 * 2)
                 .setMinDriversPerTask(3)
                 .setMaxDriversPerTask(Integer.MAX_VALUE)
@@ -91,6 +92,7 @@ public class TestTaskManagerConfig
                 .put("task.max-partial-aggregation-memory", "32MB")
                 .put("task.max-local-exchange-buffer-size", "33MB")
                 .put("task.max-worker-threads", "3")
+                .put("task.blocking-split-threads", "16")
                 .put("task.min-drivers", "2")
                 .put("task.min-drivers-per-task", "5")
                 .put("task.max-drivers-per-task", "13")
@@ -129,6 +131,7 @@ public class TestTaskManagerConfig
                 .setMaxPartialAggregationMemoryUsage(new DataSize(32, Unit.MEGABYTE))
                 .setMaxLocalExchangeBufferSize(new DataSize(33, Unit.MEGABYTE))
                 .setMaxWorkerThreads(3)
+                .setBlockingSplitThreads(16)
                 .setMinDrivers(2)
                 .setMinDriversPerTask(5)
                 .setMaxDriversPerTask(13)
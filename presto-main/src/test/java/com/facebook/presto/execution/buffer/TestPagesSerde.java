@@ -16,25 +16,37 @@ package com.facebook.presto.execution.buffer;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockBuilder;
+import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.spi.page.PagesSerde;
+import com.facebook.presto.spi.page.SerializedPage;
 import com.google.common.collect.ImmutableList;
 import io.airlift.slice.DynamicSliceOutput;
 import io.airlift.slice.Slice;
 import org.testng.annotations.Test;
 
+import java.io.ByteArrayInputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.List;
+import java.util.OptionalInt;
+import java.util.Random;
 import java.util.UUID;
 import java.util.stream.LongStream;
 
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.execution.buffer.CompressionCodec.LZ4;
+import static com.facebook.presto.execution.buffer.CompressionCodec.NONE;
 import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.spi.page.PageCodecMarker.COMPRESSED;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readPages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.readSerializedPagesFromStream;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writePages;
+import static com.facebook.presto.spi.page.PagesSerdeUtil.writeSerializedPages;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
 import static org.testng.Assert.assertTrue;
 
 public class TestPagesSerde
@@ -138,6 +150,91 @@ public class TestPagesSerde
         assertTrue(actualSize < expectedMaxSize, "Expected round trip size difference less than 20% of original page");
     }
 
+    @Test
+    public void testRoundTripWithCompressionCodecs()
+    {
+        Page page = createCompressiblePage();
+        for (CompressionCodec codec : CompressionCodec.values()) {
+            PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), codec, OptionalInt.empty(), false, false).createPagesSerde();
+            SerializedPage serializedPage = serde.serialize(page);
+            assertEquals(COMPRESSED.isSet(serializedPage.getPageCodecMarkers()), codec != NONE, codec.name());
+            assertPageEquals(ImmutableList.of(BIGINT), serde.deserialize(serializedPage), page);
+        }
+    }
+
+    @Test
+    public void testAdaptiveCompression()
+    {
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), LZ4, OptionalInt.empty(), true, false).createPagesSerde();
+        Page compressiblePage = createCompressiblePage();
+        Page incompressiblePage = createIncompressiblePage();
+
+        assertCompressed(serde, compressiblePage, true);
+        // a page that does not compress well disables compression for the next page
+        assertCompressed(serde, incompressiblePage, false);
+        assertCompressed(serde, compressiblePage, false);
+        assertCompressed(serde, compressiblePage, true);
+
+        // every further failure doubles the number of skipped pages
+        assertCompressed(serde, incompressiblePage, false);
+        assertCompressed(serde, compressiblePage, false);
+        assertCompressed(serde, incompressiblePage, false);
+        assertCompressed(serde, compressiblePage, false);
+        assertCompressed(serde, compressiblePage, false);
+        assertCompressed(serde, compressiblePage, true);
+    }
+
+    @Test
+    public void testReadSerializedPagesFromStream()
+    {
+        PagesSerde serde = new PagesSerdeFactory(new BlockEncodingManager(), LZ4, OptionalInt.empty(), false, true).createPagesSerde();
+        List<SerializedPage> expectedPages = ImmutableList.of(
+                serde.serialize(createCompressiblePage()),
+                serde.serialize(createIncompressiblePage()),
+                serde.serialize(new Page(BIGINT.createBlockBuilder(null, 0).build())));
+
+        DynamicSliceOutput sliceOutput = new DynamicSliceOutput(1024);
+        writeSerializedPages(sliceOutput, expectedPages);
+        Slice serialized = sliceOutput.slice();
+
+        List<SerializedPage> actualPages = ImmutableList.copyOf(readSerializedPagesFromStream(new ByteArrayInputStream(serialized.getBytes())));
+        assertEquals(actualPages, expectedPages);
+        assertPageEquals(ImmutableList.of(BIGINT), serde.deserialize(actualPages.get(0)), createCompressiblePage());
+        assertPageEquals(ImmutableList.of(BIGINT), serde.deserialize(actualPages.get(1)), createIncompressiblePage());
+
+        // a truncated stream fails instead of returning a partial page
+        Iterator<SerializedPage> truncated = readSerializedPagesFromStream(new ByteArrayInputStream(serialized.getBytes(0, serialized.length() - 1)));
+        truncated.next();
+        truncated.next();
+        assertThrows(UncheckedIOException.class, truncated::next);
+    }
+
+    private static void assertCompressed(PagesSerde serde, Page page, boolean expectCompressed)
+    {
+        SerializedPage serializedPage = serde.serialize(page);
+        assertEquals(COMPRESSED.isSet(serializedPage.getPageCodecMarkers()), expectCompressed);
+        assertPageEquals(ImmutableList.of(BIGINT), serde.deserialize(serializedPage), page);
+    }
+
+    private static Page createCompressiblePage()
+    {
+        BlockBuilder builder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(builder, i % 10);
+        }
+        return new Page(builder.build());
+    }
+
+    private static Page createIncompressiblePage()
+    {
+        Random random = new Random(42);
+        BlockBuilder builder = BIGINT.createBlockBuilder(null, 1000);
+        for (int i = 0; i < 1000; i++) {
+            BIGINT.writeLong(builder, random.nextLong());
+        }
+        return new Page(builder.build());
+    }
+
     private static int serializedSize(List<? extends Type> types, Page expectedPage)
     {
         PagesSerde serde = new TestingPagesSerdeFactory().createPagesSerde();
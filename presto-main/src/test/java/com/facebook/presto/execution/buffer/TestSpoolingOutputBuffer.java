@@ -63,6 +63,7 @@ public class TestSpoolingOutputBuffer
     private static final String TASK_INSTANCE_ID = "task-instance-id";
 
     private static final DataSize THRESHOLD = sizeOfPages(3);
+    private static final DataSize PREFETCH_SIZE = sizeOfPages(6);
     private static final List<BigintType> TYPES = ImmutableList.of(BIGINT);
     private static final OutputBufferId BUFFER_ID = new OutputBufferId(0);
     private static final OutputBufferId INVALID_BUFFER_ID = new OutputBufferId(1);
@@ -71,6 +72,7 @@ public class TestSpoolingOutputBuffer
     private static final QueryIdGenerator queryIdGenerator = new QueryIdGenerator();
 
     private static SpoolingOutputBufferFactory spoolingOutputBufferFactory;
+    private static SpoolingOutputBufferFactory prefetchingSpoolingOutputBufferFactory;
 
     private ScheduledExecutorService stateNotificationExecutor;
 
@@ -82,6 +84,11 @@ public class TestSpoolingOutputBuffer
         FeaturesConfig featuresConfig = new FeaturesConfig();
         featuresConfig.setSpoolingOutputBufferThreshold(THRESHOLD);
         spoolingOutputBufferFactory = new SpoolingOutputBufferFactory(featuresConfig);
+
+        FeaturesConfig prefetchingFeaturesConfig = new FeaturesConfig();
+        prefetchingFeaturesConfig.setSpoolingOutputBufferThreshold(THRESHOLD);
+        prefetchingFeaturesConfig.setSpoolingOutputBufferPrefetchSize(PREFETCH_SIZE);
+        prefetchingSpoolingOutputBufferFactory = new SpoolingOutputBufferFactory(prefetchingFeaturesConfig);
     }
 
     @AfterClass(alwaysRun = true)
@@ -93,6 +100,7 @@ public class TestSpoolingOutputBuffer
             stateNotificationExecutor = null;
         }
         spoolingOutputBufferFactory.shutdown();
+        prefetchingSpoolingOutputBufferFactory.shutdown();
     }
 
     @Test
@@ -549,7 +557,42 @@ public class TestSpoolingOutputBuffer
         assertTrue(buffer.isFinished());
     }
 
+    @Test
+    public void testPrefetch()
+    {
+        SpoolingOutputBuffer buffer = createSpoolingOutputBuffer(prefetchingSpoolingOutputBufferFactory);
+
+        // add three files, the first two are kept in memory
+        for (int i = 0; i < 9; i++) {
+            addPage(buffer, createPage(i));
+        }
+        compareTotalBuffered(buffer, 9);
+        assertEquals(buffer.getPeakMemoryUsage(), sizeOfPages(9).toBytes());
+
+        // get pages from the first two files
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 0, sizeOfPages(2), MAX_WAIT), bufferResult(0, createPage(0), createPage(1)));
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 2, sizeOfPages(3), MAX_WAIT), bufferResult(2, createPage(2), createPage(3), createPage(4)));
+
+        // acknowledging the first file reads ahead the third one
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 5, sizeOfPages(3), MAX_WAIT), bufferResult(5, createPage(5), createPage(6), createPage(7)));
+        compareTotalBuffered(buffer, 6);
+
+        // add one page in memory
+        addPage(buffer, createPage(9));
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 8, sizeOfPages(3), MAX_WAIT), bufferResult(8, createPage(8), createPage(9)));
+        compareTotalBuffered(buffer, 4);
+
+        buffer.setNoMorePages();
+        assertBufferResultEquals(TYPES, getBufferResult(buffer, BUFFER_ID, 10, sizeOfPages(1), NO_WAIT), emptyResults(TASK_INSTANCE_ID, 10, true));
+        compareTotalBuffered(buffer, 0);
+    }
+
     private SpoolingOutputBuffer createSpoolingOutputBuffer()
+    {
+        return createSpoolingOutputBuffer(spoolingOutputBufferFactory);
+    }
+
+    private SpoolingOutputBuffer createSpoolingOutputBuffer(SpoolingOutputBufferFactory spoolingOutputBufferFactory)
     {
         TaskId taskId = new TaskId(queryIdGenerator.createNextQueryId().toString(), 0, 0, 0);
         return spoolingOutputBufferFactory.createSpoolingOutputBuffer(
@@ -16,6 +16,7 @@ package com.facebook.presto.execution.executor;
 import com.facebook.airlift.testing.TestingTicker;
 import com.facebook.presto.execution.SplitRunner;
 import com.facebook.presto.execution.TaskId;
+import com.facebook.presto.execution.TaskManagerConfig;
 import com.facebook.presto.server.ServerConfig;
 import com.facebook.presto.version.EmbedVersion;
 import com.google.common.base.Ticker;
@@ -25,10 +26,17 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.SettableFuture;
 import io.airlift.units.Duration;
 import org.testng.annotations.Test;
+import org.weakref.jmx.MBeanExporter;
+import org.weakref.jmx.ObjectNames;
+import org.weakref.jmx.testing.TestingMBeanServer;
+
+import javax.management.ObjectName;
 
 import java.util.Arrays;
 import java.util.List;
+import java.util.Optional;
 import java.util.OptionalInt;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import java.util.concurrent.Phaser;
 import java.util.concurrent.TimeUnit;
@@ -39,6 +47,7 @@ import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.airlift.testing.Assertions.assertLessThan;
 import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.QUERY_FAIR;
 import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.TASK_FAIR;
+import static com.facebook.presto.execution.TaskManagerConfig.TaskPriorityTracking.WEIGHTED_QUERY_FAIR;
 import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_CONTRIBUTION_CAP;
 import static com.facebook.presto.execution.executor.MultilevelSplitQueue.LEVEL_THRESHOLD_SECONDS;
 import static com.google.common.collect.Iterables.getOnlyElement;
@@ -47,6 +56,8 @@ import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNotSame;
+import static org.testng.Assert.assertSame;
 import static org.testng.Assert.assertTrue;
 
 public class TestTaskExecutor
@@ -376,6 +387,108 @@ public class TestTaskExecutor
         }
     }
 
+    @Test
+    public void testSchedulingWeight()
+    {
+        MultilevelSplitQueue splitQueue = new MultilevelSplitQueue(2);
+        TaskHandle handle0 = new TaskHandle(new TaskId("test0", 0, 0, 0), new TaskPriorityTracker(splitQueue), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+        TaskHandle handle1 = new TaskHandle(new TaskId("test1", 0, 0, 0), new TaskPriorityTracker(splitQueue, 4), () -> 1, 1, new Duration(1, SECONDS), OptionalInt.empty());
+
+        long quantaNanos = SECONDS.toNanos(2);
+        handle0.addScheduledNanos(quantaNanos);
+        handle1.addScheduledNanos(quantaNanos);
+
+        // only a quarter of the time is charged to the weighted task, which keeps it in level 0
+        assertEquals(handle0.getPriority().getLevel(), 1);
+        assertEquals(handle1.getPriority().getLevel(), 0);
+        assertEquals(handle1.getPriority().getLevelPriority(), quantaNanos / 4);
+        assertEquals(splitQueue.getLevelScheduledTime(0), SECONDS.toNanos(1) + quantaNanos / 4);
+
+        assertEquals(handle0.getScheduledNanos(), quantaNanos);
+        assertEquals(handle1.getScheduledNanos(), quantaNanos);
+    }
+
+    @Test
+    public void testResourceGroupSchedulingStats()
+            throws Exception
+    {
+        TestingMBeanServer mbeanServer = new TestingMBeanServer();
+        TaskExecutor taskExecutor = new TaskExecutor(
+                new TaskManagerConfig().setTaskPriorityTracking(WEIGHTED_QUERY_FAIR),
+                new EmbedVersion(new ServerConfig()),
+                new MultilevelSplitQueue(2),
+                new MBeanExporter(mbeanServer));
+        ObjectName statsName = new ObjectName(ObjectNames.builder(ResourceGroupSchedulingStats.class, "global.etl").build());
+
+        try {
+            TaskHandle taskHandle0 = taskExecutor.addTask(new TaskId("test0", 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty(), Optional.of("global.etl"), 2);
+            TaskHandle taskHandle1 = taskExecutor.addTask(new TaskId("test1", 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty(), Optional.of("global.etl"), 2);
+            TaskHandle taskHandle2 = taskExecutor.addTask(new TaskId("test2", 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+
+            ResourceGroupSchedulingStats stats = taskHandle0.getResourceGroupStats().get();
+            assertSame(taskHandle1.getResourceGroupStats().get(), stats);
+            assertFalse(taskHandle2.getResourceGroupStats().isPresent());
+            assertEquals(stats.getTasks(), 2);
+            assertTrue(mbeanServer.isRegistered(statsName));
+
+            taskHandle0.recordQuanta(MILLISECONDS.toNanos(5), MILLISECONDS.toNanos(3));
+            taskHandle1.recordQuanta(MILLISECONDS.toNanos(7), MILLISECONDS.toNanos(4));
+            assertEquals(stats.getScheduledTimeMicros().getTotalCount(), 12_000);
+            assertEquals(stats.getCpuTimeMicros().getTotalCount(), 7_000);
+
+            taskExecutor.removeTask(taskHandle0);
+            taskExecutor.removeTask(taskHandle0);
+            assertEquals(stats.getTasks(), 1);
+            assertTrue(mbeanServer.isRegistered(statsName));
+
+            // the stats of a group are unexported once it has no tasks
+            taskExecutor.removeTask(taskHandle1);
+            assertEquals(stats.getTasks(), 0);
+            assertFalse(mbeanServer.isRegistered(statsName));
+
+            TaskHandle taskHandle3 = taskExecutor.addTask(new TaskId("test3", 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty(), Optional.of("global.etl"), 2);
+            ResourceGroupSchedulingStats newStats = taskHandle3.getResourceGroupStats().get();
+            assertNotSame(newStats, stats);
+            assertEquals(newStats.getTasks(), 1);
+            assertEquals(newStats.getScheduledTimeMicros().getTotalCount(), 0);
+            assertTrue(mbeanServer.isRegistered(statsName));
+        }
+        finally {
+            taskExecutor.stop();
+        }
+        assertFalse(mbeanServer.isRegistered(statsName));
+    }
+
+    @Test(timeOut = 30_000)
+    public void testBlockingSplits()
+            throws Exception
+    {
+        TestingTicker ticker = new TestingTicker();
+        TaskExecutor taskExecutor = new TaskExecutor(1, 1, 2, 2, 4, TASK_FAIR, ticker);
+        taskExecutor.start();
+
+        try {
+            TaskHandle taskHandle = taskExecutor.addTask(new TaskId("test", 0, 0, 0), () -> 0, 10, new Duration(1, MILLISECONDS), OptionalInt.empty());
+
+            // occupy the only worker thread until the blocking split finished
+            CountDownLatch blockingSplitFinished = new CountDownLatch(1);
+            LatchSplitRunner split = new LatchSplitRunner(false, blockingSplitFinished);
+            ListenableFuture<?> splitFuture = getOnlyElement(taskExecutor.enqueueSplits(taskHandle, false, ImmutableList.of(split)));
+            split.awaitStarted();
+
+            LatchSplitRunner blockingSplit = new LatchSplitRunner(true, new CountDownLatch(0));
+            ListenableFuture<?> blockingSplitFuture = getOnlyElement(taskExecutor.enqueueSplits(taskHandle, false, ImmutableList.of(blockingSplit)));
+            blockingSplitFuture.get();
+            assertFalse(splitFuture.isDone());
+
+            blockingSplitFinished.countDown();
+            splitFuture.get();
+        }
+        finally {
+            taskExecutor.stop();
+        }
+    }
+
     @Test(timeOut = 30_000)
     public void testMinMaxDriversPerTask()
     {
@@ -613,6 +726,64 @@ public class TestTaskExecutor
         }
     }
 
+    private static class LatchSplitRunner
+            implements SplitRunner
+    {
+        private final boolean blocking;
+        private final CountDownLatch release;
+        private final CountDownLatch started = new CountDownLatch(1);
+        private volatile boolean finished;
+
+        private LatchSplitRunner(boolean blocking, CountDownLatch release)
+        {
+            this.blocking = blocking;
+            this.release = release;
+        }
+
+        private void awaitStarted()
+                throws InterruptedException
+        {
+            started.await();
+        }
+
+        @Override
+        public boolean isFinished()
+        {
+            return finished;
+        }
+
+        @Override
+        public ListenableFuture<?> processFor(Duration duration)
+        {
+            started.countDown();
+            try {
+                release.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            finished = true;
+            return Futures.immediateFuture(null);
+        }
+
+        @Override
+        public String getInfo()
+        {
+            return "latch-split";
+        }
+
+        @Override
+        public boolean isBlocking()
+        {
+            return blocking;
+        }
+
+        @Override
+        public void close()
+        {
+        }
+    }
+
     private static class MockSplitRunner
             implements SplitRunner
     {
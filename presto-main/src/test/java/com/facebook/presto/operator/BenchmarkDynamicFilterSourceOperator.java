@@ -46,6 +46,7 @@ import java.util.concurrent.TimeUnit;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringBloomFilterSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverRowCount;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringMaxPerDriverSize;
 import static com.facebook.presto.SystemSessionProperties.getDynamicFilteringRangeRowLimitPerDriver;
@@ -90,7 +91,9 @@ public class BenchmarkDynamicFilterSourceOperator
                     ImmutableList.of(new DynamicFilterSourceOperator.Channel("0", BIGINT, 0)),
                     getDynamicFilteringMaxPerDriverRowCount(TEST_SESSION),
                     getDynamicFilteringMaxPerDriverSize(TEST_SESSION),
-                    getDynamicFilteringRangeRowLimitPerDriver(TEST_SESSION));
+                    getDynamicFilteringRangeRowLimitPerDriver(TEST_SESSION),
+                    (bloomFilters -> {}),
+                    getDynamicFilteringBloomFilterSize(TEST_SESSION));
         }
 
         @TearDown
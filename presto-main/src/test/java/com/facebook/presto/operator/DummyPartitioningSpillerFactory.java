@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntPredicate;
+
+import static com.google.common.util.concurrent.Futures.immediateFuture;
+
+/**
+ * Keeps the spilled pages in memory. While spilling is blocked, spilling only finishes once {@link #unblock()} is called.
+ */
+public class DummyPartitioningSpillerFactory
+        implements PartitioningSpillerFactory
+{
+    private long spillsCount;
+    private SettableFuture<?> blocked;
+
+    @Override
+    public PartitioningSpiller create(List<Type> types, PartitionFunction partitionFunction, SpillContext spillContext, AggregatedMemoryContext memoryContext)
+    {
+        return new PartitioningSpiller()
+        {
+            private final List<List<Page>> partitions = new ArrayList<>();
+
+            {
+                for (int partition = 0; partition < partitionFunction.getPartitionCount(); partition++) {
+                    partitions.add(new ArrayList<>());
+                }
+            }
+
+            @Override
+            public PartitioningSpillResult partitionAndSpill(Page page, IntPredicate spillPartitionMask)
+            {
+                spillsCount++;
+                List<IntArrayList> spilledPositions = new ArrayList<>();
+                for (int partition = 0; partition < partitions.size(); partition++) {
+                    spilledPositions.add(new IntArrayList());
+                }
+                IntArrayList retainedPositions = new IntArrayList();
+                for (int position = 0; position < page.getPositionCount(); position++) {
+                    int partition = partitionFunction.getPartition(page, position);
+                    if (spillPartitionMask.test(partition)) {
+                        spilledPositions.get(partition).add(position);
+                    }
+                    else {
+                        retainedPositions.add(position);
+                    }
+                }
+                for (int partition = 0; partition < partitions.size(); partition++) {
+                    IntArrayList positions = spilledPositions.get(partition);
+                    if (!positions.isEmpty()) {
+                        partitions.get(partition).add(page.copyPositions(positions.elements(), 0, positions.size()));
+                    }
+                }
+                Page retained = page.copyPositions(retainedPositions.elements(), 0, retainedPositions.size());
+                return new PartitioningSpillResult(blocked == null ? immediateFuture(null) : blocked, retained);
+            }
+
+            @Override
+            public Iterator<Page> getSpilledPages(int partition)
+            {
+                return partitions.get(partition).iterator();
+            }
+
+            @Override
+            public void verifyAllPartitionsRead()
+            {
+            }
+
+            @Override
+            public void close()
+            {
+                partitions.clear();
+            }
+        };
+    }
+
+    /**
+     * Spilling started after this call does not finish until {@link #unblock()} is called.
+     */
+    public void block()
+    {
+        blocked = SettableFuture.create();
+    }
+
+    public void unblock()
+    {
+        blocked.set(null);
+        blocked = null;
+    }
+
+    public long getSpillsCount()
+    {
+        return spillsCount;
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import org.testng.annotations.Test;
+
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
+
+public class TestAdaptiveExchangeController
+{
+    @Test
+    public void testGrowWhenDrained()
+    {
+        AdaptiveExchangeController controller = new AdaptiveExchangeController(100, 350, 1, 3);
+        assertTrue(controller.isAdaptive());
+        assertState(controller, 100, 1);
+
+        // nothing was received yet, so an empty buffer does not mean the client is too slow
+        assertFalse(controller.bufferDrained());
+        assertState(controller, 100, 1);
+
+        controller.responseReceived();
+        assertTrue(controller.bufferDrained());
+        assertState(controller, 200, 2);
+
+        // at most one adjustment per response
+        assertFalse(controller.bufferDrained());
+        assertState(controller, 200, 2);
+
+        controller.responseReceived();
+        assertTrue(controller.bufferDrained());
+        assertState(controller, 350, 3);
+
+        controller.responseReceived();
+        assertFalse(controller.bufferDrained());
+        assertState(controller, 350, 3);
+    }
+
+    @Test
+    public void testShrinkWhenFull()
+    {
+        AdaptiveExchangeController controller = new AdaptiveExchangeController(100, 400, 1, 3);
+        for (int i = 0; i < 2; i++) {
+            controller.responseReceived();
+            controller.bufferDrained();
+        }
+        assertState(controller, 400, 3);
+
+        controller.bufferFull();
+        assertState(controller, 400, 3);
+
+        controller.responseReceived();
+        controller.bufferFull();
+        assertState(controller, 300, 2);
+
+        controller.responseReceived();
+        controller.bufferFull();
+        assertState(controller, 225, 1);
+
+        for (int i = 0; i < 5; i++) {
+            controller.responseReceived();
+            controller.bufferFull();
+        }
+        assertState(controller, 100, 1);
+    }
+
+    @Test
+    public void testFixed()
+    {
+        AdaptiveExchangeController controller = AdaptiveExchangeController.fixed(100, 3);
+        assertFalse(controller.isAdaptive());
+
+        controller.responseReceived();
+        assertFalse(controller.bufferDrained());
+        assertState(controller, 100, 3);
+
+        controller.responseReceived();
+        controller.bufferFull();
+        assertState(controller, 100, 3);
+    }
+
+    private static void assertState(AdaptiveExchangeController controller, long bufferCapacity, int concurrentRequestMultiplier)
+    {
+        assertEquals(controller.getBufferCapacity(), bufferCapacity);
+        assertEquals(controller.getConcurrentRequestMultiplier(), concurrentRequestMultiplier);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.type.Type;
+import com.google.common.collect.ImmutableList;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.presto.block.BlockAssertions.createDateSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createDoubleSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongDictionaryBlock;
+import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomDictionaryBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomIntsBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
+import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static org.testng.Assert.assertEquals;
+
+public class TestBlockHashes
+{
+    private static final int POSITION_COUNT = 1000;
+
+    @Test
+    public void testFlatBlocks()
+    {
+        assertHashes(ImmutableList.of(BIGINT), createRandomLongsBlock(POSITION_COUNT, 0.1f));
+        assertHashes(ImmutableList.of(INTEGER), createRandomIntsBlock(POSITION_COUNT, 0.1f));
+        assertHashes(ImmutableList.of(DATE), createDateSequenceBlock(0, POSITION_COUNT));
+        assertHashes(ImmutableList.of(VARCHAR), createRandomStringBlock(POSITION_COUNT, 0.1f, 20));
+        assertHashes(ImmutableList.of(DOUBLE), createDoubleSequenceBlock(0, POSITION_COUNT));
+    }
+
+    @Test
+    public void testEncodedBlocks()
+    {
+        assertHashes(ImmutableList.of(BIGINT), createRLEBlock(42, POSITION_COUNT));
+        assertHashes(ImmutableList.of(VARCHAR), createRLEBlock("foo", POSITION_COUNT));
+        assertHashes(ImmutableList.of(BIGINT), createLongDictionaryBlock(0, POSITION_COUNT));
+        // dictionary with more entries than positions is hashed position by position
+        assertHashes(ImmutableList.of(VARCHAR), createRandomDictionaryBlock(createRandomStringBlock(POSITION_COUNT, 0.1f, 20), 10));
+        assertHashes(ImmutableList.of(VARCHAR), createRandomDictionaryBlock(createRandomStringBlock(10, 0.1f, 20), POSITION_COUNT));
+    }
+
+    @Test
+    public void testMultipleChannels()
+    {
+        assertHashes(
+                ImmutableList.of(BIGINT, VARCHAR, INTEGER),
+                createRandomLongsBlock(POSITION_COUNT, 0.1f),
+                createRandomDictionaryBlock(createRandomStringBlock(10, 0.1f, 20), POSITION_COUNT),
+                createRandomIntsBlock(POSITION_COUNT, 0.1f));
+    }
+
+    @Test
+    public void testPrecomputedHash()
+    {
+        Page page = new Page(createRandomLongsBlock(POSITION_COUNT, 0.0f), createRandomLongsBlock(POSITION_COUNT, 0.0f));
+        assertHashes(new PrecomputedHashGenerator(1), page);
+    }
+
+    private static void assertHashes(List<Type> types, Block... blocks)
+    {
+        assertHashes(InterpretedHashGenerator.createPositionalWithTypes(types), new Page(blocks));
+    }
+
+    private static void assertHashes(HashGenerator hashGenerator, Page page)
+    {
+        long[] hashes = new long[page.getPositionCount()];
+        hashGenerator.hashPositions(page, hashes);
+        for (int position = 0; position < page.getPositionCount(); position++) {
+            assertEquals(hashes[position], hashGenerator.hashPosition(position, page));
+        }
+    }
+}
@@ -15,19 +15,27 @@ package com.facebook.presto.operator;
 
 import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.FileSingleStreamSpillerFactory;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
+import com.facebook.presto.spiller.NodeSpillConfig;
+import com.facebook.presto.spiller.SpillerStats;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import io.airlift.units.DataSize;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
@@ -42,15 +50,28 @@ import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.assertPagesEqualIgnoreOrder;
+import static com.facebook.presto.operator.OperatorAssertion.finishOperator;
+import static com.facebook.presto.operator.OperatorAssertion.toPages;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDistinctLimitOperator
 {
+    private static final int SPILL_PARTITION_COUNT = 4;
+
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
     private DriverContext driverContext;
@@ -95,7 +116,7 @@ public class TestDistinctLimitOperator
                 .addSequencePage(5, 2)
                 .build();
 
-        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 5, rowPagesBuilder.getHashChannel(), joinCompiler);
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 5, rowPagesBuilder.getHashChannel(), joinCompiler, false, SPILL_PARTITION_COUNT, unsupportedPartitioningSpillerFactory());
 
         MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT)
                 .row(1L)
@@ -108,6 +129,117 @@ public class TestDistinctLimitOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected, hashEnabled, ImmutableList.of(1));
     }
 
+    @Test(dataProvider = "hashEnabledValues")
+    public void testDistinctLimitWithSpill(boolean hashEnabled)
+            throws Exception
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(3, 1)
+                .addSequencePage(5, 2)
+                .addSequencePage(4, 5)
+                .build();
+
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            FeaturesConfig featuresConfig = new FeaturesConfig()
+                    .setSpillerSpillPaths(spillPath.toString())
+                    .setSpillMaxUsedSpaceThreshold(1.0);
+            OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(
+                    0,
+                    new PlanNodeId("test"),
+                    rowPagesBuilder.getTypes(),
+                    Ints.asList(0),
+                    10,
+                    rowPagesBuilder.getHashChannel(),
+                    joinCompiler,
+                    true,
+                    SPILL_PARTITION_COUNT,
+                    new GenericPartitioningSpillerFactory(new FileSingleStreamSpillerFactory(new BlockEncodingManager(), new SpillerStats(), featuresConfig, new NodeSpillConfig())));
+
+            MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT)
+                    .row(1L)
+                    .row(2L)
+                    .row(3L)
+                    .row(4L)
+                    .row(5L)
+                    .row(6L)
+                    .row(7L)
+                    .row(8L)
+                    .build();
+
+            // memory is revoked after every page, so the values of the first page have to be excluded from the spilled pages
+            List<Page> output;
+            try (Operator operator = operatorFactory.createOperator(driverContext)) {
+                output = toPages(operator, input.iterator(), true);
+                assertGreaterThan(operator.getOperatorContext().getOperatorStats().getSpilledDataSize().toBytes(), 0L);
+            }
+            assertPagesEqualIgnoreOrder(driverContext, output, expected, hashEnabled, Optional.of(1));
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testMemoryConvertedToUserMemoryOnFinish()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(BIGINT).addSequencePage(100, 0).build();
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), ImmutableList.of(BIGINT), Ints.asList(0), 1000, Optional.empty(), joinCompiler, true, SPILL_PARTITION_COUNT, unsupportedPartitioningSpillerFactory());
+
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            operator.addInput(input.get(0));
+            assertEquals(operator.getOutput().getPositionCount(), 100);
+            long revocableBytes = operator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory();
+            assertGreaterThan(revocableBytes, 0L);
+            assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory(), 0);
+
+            // the hash can no longer be spilled once all input has been received
+            operator.finish();
+            assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0);
+            assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory(), revocableBytes);
+            assertTrue(operator.isFinished());
+        }
+    }
+
+    @Test
+    public void testSpillWhenMemoryCannotBeConvertedOnFinish()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(BIGINT).addSequencePage(100, 0).build();
+        DataSize queryMaxMemory = new DataSize(1, MEGABYTE);
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION, queryMaxMemory)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+        DummyPartitioningSpillerFactory spillerFactory = new DummyPartitioningSpillerFactory();
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), ImmutableList.of(BIGINT), Ints.asList(0), 1000, Optional.empty(), joinCompiler, true, SPILL_PARTITION_COUNT, spillerFactory);
+
+        try (Operator operator = operatorFactory.createOperator(driverContext)) {
+            operator.addInput(input.get(0));
+            assertEquals(operator.getOutput().getPositionCount(), 100);
+            assertGreaterThan(operator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0L);
+
+            // another operator holds all the user memory of the query, so the hash is spilled on finish without blocking the driver
+            LocalMemoryContext otherMemoryContext = driverContext.addOperatorContext(1, new PlanNodeId("other"), "other").localUserMemoryContext();
+            otherMemoryContext.setBytes(queryMaxMemory.toBytes());
+            spillerFactory.block();
+            operator.finish();
+            assertFalse(operator.isBlocked().isDone());
+            assertNull(operator.getOutput());
+            assertFalse(operator.isFinished());
+            assertGreaterThan(spillerFactory.getSpillsCount(), 0L);
+            otherMemoryContext.setBytes(0);
+
+            // the hash is released once spilling is finished, and the values marked before spilling are not output again
+            spillerFactory.unblock();
+            assertTrue(operator.isBlocked().isDone());
+            assertTrue(finishOperator(operator).isEmpty());
+            assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0);
+            assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getUserMemory(), 0);
+        }
+    }
+
     @Test(dataProvider = "hashEnabledValues")
     public void testDistinctLimitWithPageAlignment(boolean hashEnabled)
     {
@@ -117,7 +249,7 @@ public class TestDistinctLimitOperator
                 .addSequencePage(3, 2)
                 .build();
 
-        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 3, rowPagesBuilder.getHashChannel(), joinCompiler);
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 3, rowPagesBuilder.getHashChannel(), joinCompiler, false, SPILL_PARTITION_COUNT, unsupportedPartitioningSpillerFactory());
 
         MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT)
                 .row(1L)
@@ -137,7 +269,7 @@ public class TestDistinctLimitOperator
                 .addSequencePage(3, 2)
                 .build();
 
-        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 5, rowPagesBuilder.getHashChannel(), joinCompiler);
+        OperatorFactory operatorFactory = new DistinctLimitOperator.DistinctLimitOperatorFactory(0, new PlanNodeId("test"), rowPagesBuilder.getTypes(), Ints.asList(0), 5, rowPagesBuilder.getHashChannel(), joinCompiler, false, SPILL_PARTITION_COUNT, unsupportedPartitioningSpillerFactory());
 
         MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT)
                 .row(1L)
@@ -161,7 +293,10 @@ public class TestDistinctLimitOperator
                 ImmutableList.of(0),
                 Integer.MAX_VALUE,
                 Optional.of(1),
-                joinCompiler);
+                joinCompiler,
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
 
         GroupByHashYieldAssertion.GroupByHashYieldResult result = finishOperatorWithYieldingGroupByHash(input, type, operatorFactory, operator -> ((DistinctLimitOperator) operator).getCapacity(), 1_400_000);
         assertGreaterThan(result.getYieldCount(), 5);
@@ -32,6 +32,7 @@ import org.testng.annotations.Test;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.stream.IntStream;
@@ -65,10 +66,12 @@ import static com.facebook.presto.type.ColorType.COLOR;
 import static com.google.common.base.Strings.repeat;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.slice.Slices.utf8Slice;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static java.lang.Float.floatToRawIntBits;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestDynamicFilterSourceOperator
@@ -78,6 +81,7 @@ public class TestDynamicFilterSourceOperator
     private PipelineContext pipelineContext;
 
     private ImmutableList.Builder<TupleDomain<String>> partitions;
+    private ImmutableList.Builder<Map<String, DynamicFilterBloomFilter>> bloomFilterPartitions;
 
     @BeforeMethod
     public void setUp()
@@ -88,6 +92,7 @@ public class TestDynamicFilterSourceOperator
                 .addPipelineContext(0, true, true, false);
 
         partitions = ImmutableList.builder();
+        bloomFilterPartitions = ImmutableList.builder();
     }
 
     @AfterMethod(alwaysRun = true)
@@ -121,6 +126,16 @@ public class TestDynamicFilterSourceOperator
             DataSize maxFilterSize,
             int minMaxCollectionLimit,
             Iterable<DynamicFilterSourceOperator.Channel> buildChannels)
+    {
+        return createOperatorFactory(maxFilterPositionsCount, maxFilterSize, minMaxCollectionLimit, new DataSize(0, BYTE), buildChannels);
+    }
+
+    private OperatorFactory createOperatorFactory(
+            int maxFilterPositionsCount,
+            DataSize maxFilterSize,
+            int minMaxCollectionLimit,
+            DataSize bloomFilterSize,
+            Iterable<DynamicFilterSourceOperator.Channel> buildChannels)
     {
         return new DynamicFilterSourceOperator.DynamicFilterSourceOperatorFactory(
                 0,
@@ -129,7 +144,9 @@ public class TestDynamicFilterSourceOperator
                 ImmutableList.copyOf(buildChannels),
                 maxFilterPositionsCount,
                 maxFilterSize,
-                minMaxCollectionLimit);
+                minMaxCollectionLimit,
+                bloomFilterPartitions::add,
+                bloomFilterSize);
     }
 
     private void consumePredicate(TupleDomain<String> partitionPredicate)
@@ -415,6 +432,43 @@ public class TestDynamicFilterSourceOperator
         assertDynamicFilters(maxPositionsCount, ImmutableList.of(BIGINT, COLOR, BIGINT), ImmutableList.of(largePage), expectedTupleDomains);
     }
 
+    @Test
+    public void testCollectBloomFilterWhenTooManyPositions()
+    {
+        OperatorFactory operatorFactory = createOperatorFactory(100, new DataSize(10, KILOBYTE), 0, new DataSize(64, KILOBYTE), ImmutableList.of(channel(0, BIGINT)));
+        Page largePage = new Page(createLongSequenceBlock(0, 1000));
+        verifyPassthrough(createOperator(operatorFactory), ImmutableList.of(BIGINT), largePage);
+        operatorFactory.noMoreOperators();
+        assertEquals(partitions.build(), ImmutableList.of(TupleDomain.all()));
+
+        List<Map<String, DynamicFilterBloomFilter>> bloomFilters = bloomFilterPartitions.build();
+        assertEquals(bloomFilters.size(), 1);
+        DynamicFilterBloomFilter bloomFilter = bloomFilters.get(0).get("0");
+        Block values = createLongSequenceBlock(0, 1000);
+        for (int position = 0; position < values.getPositionCount(); position++) {
+            assertTrue(bloomFilter.mightContain(values, position));
+        }
+        Block otherValues = createLongSequenceBlock(1000, 11000);
+        int falsePositives = 0;
+        for (int position = 0; position < otherValues.getPositionCount(); position++) {
+            if (bloomFilter.mightContain(otherValues, position)) {
+                falsePositives++;
+            }
+        }
+        assertTrue(falsePositives < otherValues.getPositionCount() / 100, "too many false positives: " + falsePositives);
+    }
+
+    @Test
+    public void testDropBloomFilterWhenTooManyPositions()
+    {
+        OperatorFactory operatorFactory = createOperatorFactory(100, new DataSize(10, KILOBYTE), 0, new DataSize(64, BYTE), ImmutableList.of(channel(0, BIGINT), channel(1, DOUBLE)));
+        Page largePage = new Page(createLongSequenceBlock(0, 1000), createDoubleSequenceBlock(0, 1000));
+        verifyPassthrough(createOperator(operatorFactory), ImmutableList.of(BIGINT, DOUBLE), largePage);
+        operatorFactory.noMoreOperators();
+        assertEquals(partitions.build(), ImmutableList.of(TupleDomain.all()));
+        assertEquals(bloomFilterPartitions.build(), ImmutableList.of(ImmutableMap.of()));
+    }
+
     @Test
     public void testMultipleColumnsCollectMinMaxWithNulls()
     {
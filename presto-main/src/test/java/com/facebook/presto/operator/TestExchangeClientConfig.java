@@ -35,6 +35,8 @@ public class TestExchangeClientConfig
         assertRecordedDefaults(recordDefaults(ExchangeClientConfig.class)
                 .setMaxBufferSize(new DataSize(32, Unit.MEGABYTE))
                 .setConcurrentRequestMultiplier(3)
+                .setAdaptiveConcurrencyEnabled(false)
+                .setMinBufferSize(new DataSize(4, Unit.MEGABYTE))
                 .setMinErrorDuration(new Duration(5, TimeUnit.MINUTES))
                 .setMaxErrorDuration(new Duration(5, TimeUnit.MINUTES))
                 .setAsyncPageTransportTimeout(new Duration(60, TimeUnit.SECONDS))
@@ -52,6 +54,8 @@ public class TestExchangeClientConfig
         Map<String, String> properties = new ImmutableMap.Builder<String, String>()
                 .put("exchange.max-buffer-size", "1GB")
                 .put("exchange.concurrent-request-multiplier", "13")
+                .put("exchange.adaptive-concurrency-enabled", "true")
+                .put("exchange.min-buffer-size", "8MB")
                 .put("exchange.min-error-duration", "13s")
                 .put("exchange.max-error-duration", "33s")
                 .put("exchange.async-page-transport-timeout", "30s")
@@ -66,6 +70,8 @@ public class TestExchangeClientConfig
         ExchangeClientConfig expected = new ExchangeClientConfig()
                 .setMaxBufferSize(new DataSize(1, Unit.GIGABYTE))
                 .setConcurrentRequestMultiplier(13)
+                .setAdaptiveConcurrencyEnabled(true)
+                .setMinBufferSize(new DataSize(8, Unit.MEGABYTE))
                 .setMinErrorDuration(new Duration(33, TimeUnit.SECONDS))
                 .setMaxErrorDuration(new Duration(33, TimeUnit.SECONDS))
                 .setAsyncPageTransportTimeout(new Duration(30, TimeUnit.SECONDS))
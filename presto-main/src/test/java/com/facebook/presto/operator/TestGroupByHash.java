@@ -38,14 +38,22 @@ import java.util.Optional;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 
+import static com.facebook.presto.block.BlockAssertions.createBooleansBlock;
+import static com.facebook.presto.block.BlockAssertions.createIntsBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
 import static com.facebook.presto.common.block.DictionaryId.randomDictionaryId;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DateType.DATE;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static com.facebook.presto.common.type.SmallintType.SMALLINT;
+import static com.facebook.presto.common.type.TinyintType.TINYINT;
 import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.operator.GroupByHash.createGroupByHash;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
 import static com.facebook.presto.type.TypeUtils.getHashBlock;
 import static com.google.common.math.DoubleMath.log2;
 import static org.testng.Assert.assertEquals;
@@ -475,4 +483,61 @@ public class TestGroupByHash
         assertEquals(currentQuota.get(), 10);
         assertEquals(currentQuota.get() / 3, yields);
     }
+
+    @Test
+    public void testPackedGroupByHash()
+    {
+        List<Type> types = ImmutableList.of(INTEGER, BIGINT, BOOLEAN);
+        Block intsBlock = createIntsBlock(1, -1, null, 1, -1, null, 1);
+        Block longsBlock = createLongsBlock(5L, Long.MIN_VALUE, 5L, 5L, Long.MIN_VALUE, 5L, null);
+        Block booleansBlock = createBooleansBlock(true, false, true, true, false, true, null);
+        Block hashBlock = getHashBlock(types, intsBlock, longsBlock, booleansBlock);
+        Page page = new Page(intsBlock, longsBlock, booleansBlock, hashBlock);
+
+        int[] hashChannels = {0, 1, 2};
+        GroupByHash groupByHash = createGroupByHash(TEST_SESSION, types, hashChannels, Optional.of(3), 1, JOIN_COMPILER);
+        assertTrue(groupByHash instanceof PackedGroupByHash);
+
+        Work<GroupByIdBlock> work = groupByHash.getGroupIds(page);
+        assertTrue(work.process());
+        GroupByIdBlock groupIds = work.getResult();
+        assertEquals(groupIds.getGroupCount(), 4);
+        long[] expectedGroupIds = {0, 1, 2, 0, 1, 2, 3};
+        for (int position = 0; position < expectedGroupIds.length; position++) {
+            assertEquals(groupIds.getGroupId(position), expectedGroupIds[position]);
+            assertTrue(groupByHash.contains(position, page, hashChannels));
+        }
+
+        // the values, including the sign and nulls, and the raw hashes are restored from the packed keys
+        Block expectedIntsBlock = createIntsBlock(1, -1, null, 1);
+        Block expectedLongsBlock = createLongsBlock(5L, Long.MIN_VALUE, 5L, null);
+        Block expectedBooleansBlock = createBooleansBlock(true, false, true, null);
+        Page expectedPage = new Page(expectedIntsBlock, expectedLongsBlock, expectedBooleansBlock, getHashBlock(types, expectedIntsBlock, expectedLongsBlock, expectedBooleansBlock));
+        PageBuilder pageBuilder = new PageBuilder(groupByHash.getTypes());
+        for (int groupId = 0; groupId < groupByHash.getGroupCount(); groupId++) {
+            pageBuilder.declarePosition();
+            groupByHash.appendValuesTo(groupId, pageBuilder, 0);
+        }
+        assertPageEquals(groupByHash.getTypes(), pageBuilder.build(), expectedPage);
+        assertEquals(groupByHash.getBufferedPages().size(), 1);
+        assertPageEquals(types, groupByHash.getBufferedPages().get(0), new Page(expectedIntsBlock, expectedLongsBlock, expectedBooleansBlock));
+
+        Page otherPage = new Page(createIntsBlock(-1), createLongsBlock(5L), createBooleansBlock(true));
+        assertFalse(groupByHash.contains(0, otherPage, hashChannels));
+    }
+
+    @Test
+    public void testPackedGroupByHashSupportedTypes()
+    {
+        assertTrue(PackedGroupByHash.isSupported(ImmutableList.of(BIGINT, BIGINT)));
+        assertTrue(PackedGroupByHash.isSupported(ImmutableList.of(INTEGER, BIGINT, INTEGER)));
+        assertTrue(PackedGroupByHash.isSupported(ImmutableList.of(DATE, TINYINT, SMALLINT, BOOLEAN)));
+        assertFalse(PackedGroupByHash.isSupported(ImmutableList.of(BIGINT, BIGINT, BOOLEAN)));
+        assertFalse(PackedGroupByHash.isSupported(ImmutableList.of(BIGINT, VARCHAR)));
+        assertFalse(PackedGroupByHash.isSupported(ImmutableList.of(DOUBLE)));
+
+        // a single dictionary encoded channel is left to the dictionary processing of MultiChannelGroupByHash
+        assertTrue(createGroupByHash(ImmutableList.of(INTEGER), new int[] {0}, Optional.empty(), 1, false, JOIN_COMPILER, UpdateMemory.NOOP) instanceof PackedGroupByHash);
+        assertTrue(createGroupByHash(ImmutableList.of(INTEGER), new int[] {0}, Optional.empty(), 1, true, JOIN_COMPILER, UpdateMemory.NOOP) instanceof MultiChannelGroupByHash);
+    }
 }
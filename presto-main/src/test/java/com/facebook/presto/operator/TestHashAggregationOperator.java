@@ -28,6 +28,8 @@ import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.operator.HashAggregationOperator.HashAggregationOperatorFactory;
 import com.facebook.presto.operator.aggregation.builder.HashAggregationBuilder;
 import com.facebook.presto.operator.aggregation.builder.InMemoryHashAggregationBuilder;
+import com.facebook.presto.operator.aggregation.builder.PartialAggregationController;
+import com.facebook.presto.operator.aggregation.builder.SkipAggregationBuilder;
 import com.facebook.presto.spi.function.JavaAggregationFunctionImplementation;
 import com.facebook.presto.spi.plan.AggregationNode.Step;
 import com.facebook.presto.spi.plan.PlanNodeId;
@@ -73,6 +75,7 @@ import static com.facebook.presto.operator.OperatorAssertion.assertPagesEqualIgn
 import static com.facebook.presto.operator.OperatorAssertion.dropChannel;
 import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
 import static com.facebook.presto.operator.OperatorAssertion.toPages;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
 import static com.facebook.presto.operator.aggregation.GenericAccumulatorFactory.generateAccumulatorFactory;
 import static com.facebook.presto.sql.analyzer.TypeSignatureProvider.fromTypes;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
@@ -92,6 +95,7 @@ import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
@@ -577,6 +581,113 @@ public class TestHashAggregationOperator
         assertEquals(driverContext.getMemoryUsage(), 0);
     }
 
+    @Test(dataProvider = "hashEnabled")
+    public void testAdaptivePartialAggregation(boolean hashEnabled)
+    {
+        List<Integer> hashChannels = Ints.asList(0);
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(hashEnabled, hashChannels, BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(500, 0)
+                .addSequencePage(500, 500)
+                .addSequencePage(500, 1000)
+                .addSequencePage(500, 1500)
+                .build();
+
+        PartialAggregationController partialAggregationController = new PartialAggregationController(500, 0.8);
+        HashAggregationOperatorFactory operatorFactory = createPartialAggregationOperatorFactory(
+                rowPagesBuilder.getHashChannel(),
+                new DataSize(1, KILOBYTE),
+                partialAggregationController);
+
+        DriverContext driverContext = createDriverContext(1024);
+        try (HashAggregationOperator operator = (HashAggregationOperator) operatorFactory.createOperator(driverContext)) {
+            // every key is unique, so the first flush disables partial aggregation
+            List<Page> outputPages = new ArrayList<>(toPagesPartial(operator, input.subList(0, 2).iterator()));
+            assertTrue(partialAggregationController.isPartialAggregationDisabled());
+
+            operator.addInput(input.get(2));
+            assertTrue(operator.getAggregationBuilder() instanceof SkipAggregationBuilder);
+            assertFalse(operator.needsInput());
+
+            outputPages.addAll(toPages(operator, input.subList(3, 4).iterator()));
+            if (hashEnabled) {
+                outputPages = dropChannel(outputPages, ImmutableList.of(1));
+            }
+
+            MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, BIGINT)
+                    .pages(rowPagesBuilder(BIGINT, BIGINT).addSequencePage(2000, 0, 0).build())
+                    .build();
+            MaterializedResult actual = toMaterializedResult(driverContext.getSession(), expected.getTypes(), outputPages);
+            assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+        }
+    }
+
+    @Test
+    public void testAdaptivePartialAggregationSkipsUntilBudgetIsUsed()
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(false, Ints.asList(0), BIGINT);
+        for (int i = 0; i < 12; i++) {
+            rowPagesBuilder.addSequencePage(500, i * 500);
+        }
+        List<Page> input = rowPagesBuilder.build();
+
+        PartialAggregationController partialAggregationController = new PartialAggregationController(500, 0.8);
+        HashAggregationOperatorFactory operatorFactory = createPartialAggregationOperatorFactory(
+                Optional.empty(),
+                new DataSize(1, KILOBYTE),
+                partialAggregationController);
+
+        DriverContext driverContext = createDriverContext(1024);
+        try (HashAggregationOperator operator = (HashAggregationOperator) operatorFactory.createOperator(driverContext)) {
+            List<Page> outputPages = new ArrayList<>(toPagesPartial(operator, input.subList(0, 1).iterator()));
+            assertTrue(partialAggregationController.isPartialAggregationDisabled());
+
+            // the skipped rows do not lower the ratio, so partial aggregation stays disabled until 10 times 500 rows are skipped
+            for (Page page : input.subList(1, 11)) {
+                assertTrue(partialAggregationController.isPartialAggregationDisabled());
+                operator.addInput(page);
+                assertTrue(operator.getAggregationBuilder() instanceof SkipAggregationBuilder);
+                outputPages.addAll(toPagesPartial(operator, emptyIterator()));
+            }
+            assertFalse(partialAggregationController.isPartialAggregationDisabled());
+
+            operator.addInput(input.get(11));
+            assertTrue(operator.getAggregationBuilder() instanceof InMemoryHashAggregationBuilder);
+            outputPages.addAll(toPages(operator, emptyIterator()));
+
+            MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, BIGINT)
+                    .pages(rowPagesBuilder(BIGINT, BIGINT).addSequencePage(6000, 0, 0).build())
+                    .build();
+            MaterializedResult actual = toMaterializedResult(driverContext.getSession(), expected.getTypes(), outputPages);
+            assertEqualsIgnoreOrder(actual.getMaterializedRows(), expected.getMaterializedRows());
+        }
+    }
+
+    @Test
+    public void testAdaptivePartialAggregationKeepsReducingAggregation()
+    {
+        RowPagesBuilder rowPagesBuilder = rowPagesBuilder(false, Ints.asList(0), BIGINT);
+        List<Page> input = rowPagesBuilder
+                .addSequencePage(500, 0)
+                .addSequencePage(500, 0)
+                .addSequencePage(500, 0)
+                .addSequencePage(500, 0)
+                .build();
+
+        PartialAggregationController partialAggregationController = new PartialAggregationController(500, 0.8);
+        HashAggregationOperatorFactory operatorFactory = createPartialAggregationOperatorFactory(
+                Optional.empty(),
+                new DataSize(16, MEGABYTE),
+                partialAggregationController);
+
+        MaterializedResult.Builder expected = resultBuilder(TEST_SESSION, BIGINT, BIGINT);
+        for (long i = 0; i < 500; i++) {
+            expected.row(i, i * 4);
+        }
+        assertOperatorEqualsIgnoreOrder(operatorFactory, createDriverContext(), input, expected.build());
+        assertFalse(partialAggregationController.isPartialAggregationDisabled());
+    }
+
     @Test
     public void testMergeWithMemorySpill()
     {
@@ -768,6 +879,34 @@ public class TestHashAggregationOperator
         assertEquals(driverContext.getMemoryUsage(), 0);
     }
 
+    private HashAggregationOperatorFactory createPartialAggregationOperatorFactory(
+            Optional<Integer> hashChannel,
+            DataSize maxPartialMemory,
+            PartialAggregationController partialAggregationController)
+    {
+        return new HashAggregationOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(0),
+                ImmutableList.of(),
+                ImmutableList.of(),
+                Step.PARTIAL,
+                false,
+                ImmutableList.of(generateAccumulatorFactory(LONG_SUM, ImmutableList.of(0), Optional.empty())),
+                hashChannel,
+                Optional.empty(),
+                100_000,
+                Optional.of(maxPartialMemory),
+                false,
+                new DataSize(0, MEGABYTE),
+                new DataSize(0, MEGABYTE),
+                new FailingSpillerFactory(),
+                joinCompiler,
+                true,
+                Optional.of(partialAggregationController));
+    }
+
     private DriverContext createDriverContext()
     {
         return createDriverContext(Integer.MAX_VALUE);
@@ -1811,6 +1811,16 @@ public class TestHashJoinOperator
                     return unmodifiableIterator(spills.iterator());
                 }
 
+                @Override
+                public Iterator<Page> getCommittedSpilledPages()
+                {
+                    checkState(!writing, "spill file is not committed");
+                    if (failUnspill) {
+                        throw new PrestoException(GENERIC_INTERNAL_ERROR, "Unspill failed");
+                    }
+                    return unmodifiableIterator(spills.iterator());
+                }
+
                 @Override
                 public long getSpilledPagesInMemorySize()
                 {
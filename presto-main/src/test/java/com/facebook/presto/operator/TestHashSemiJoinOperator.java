@@ -16,10 +16,18 @@ package com.facebook.presto.operator;
 import com.facebook.presto.ExceededMemoryLimitException;
 import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.operator.HashSemiJoinOperator.HashSemiJoinOperatorFactory;
 import com.facebook.presto.operator.SetBuilderOperator.SetBuilderOperatorFactory;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.FileSingleStreamSpillerFactory;
+import com.facebook.presto.spiller.GenericPartitioningSpillerFactory;
+import com.facebook.presto.spiller.NodeSpillConfig;
+import com.facebook.presto.spiller.PartitioningSpiller;
+import com.facebook.presto.spiller.PartitioningSpillerFactory;
+import com.facebook.presto.spiller.SpillerStats;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
@@ -31,11 +39,13 @@ import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
+import static com.facebook.airlift.concurrent.MoreFutures.getFutureValue;
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThanOrEqual;
@@ -47,17 +57,30 @@ import static com.facebook.presto.common.type.VarcharType.VARCHAR;
 import static com.facebook.presto.metadata.MetadataManager.createTestMetadataManager;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
+import static com.facebook.presto.spiller.PartitioningSpillerFactory.unsupportedPartitioningSpillerFactory;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
 import static com.google.common.collect.Iterables.concat;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertSame;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestHashSemiJoinOperator
 {
+    private static final int SPILL_PARTITION_COUNT = 4;
+
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
     private TaskContext taskContext;
@@ -113,7 +136,10 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -134,7 +160,8 @@ public class TestHashSemiJoinOperator
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
                 0,
-                probeHashChannel);
+                probeHashChannel,
+                unsupportedPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -177,7 +204,10 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -198,7 +228,8 @@ public class TestHashSemiJoinOperator
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
                 0,
-                probeHashChannel);
+                probeHashChannel,
+                unsupportedPartitioningSpillerFactory());
         //probeHashChannel);
 
         // expected
@@ -218,6 +249,229 @@ public class TestHashSemiJoinOperator
         OperatorAssertion.assertOperatorEquals(joinOperatorFactory, driverContext, probeInput, expected, hashEnabled, ImmutableList.of(probeTypes.size()));
     }
 
+    @Test
+    public void testSemiJoinWithSpill()
+            throws Exception
+    {
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            FeaturesConfig featuresConfig = new FeaturesConfig()
+                    .setSpillerSpillPaths(spillPath.toString())
+                    .setSpillMaxUsedSpaceThreshold(1.0);
+            PartitioningSpillerFactory partitioningSpillerFactory = new GenericPartitioningSpillerFactory(
+                    new FileSingleStreamSpillerFactory(new BlockEncodingManager(), new SpillerStats(), featuresConfig, new NodeSpillConfig()));
+            DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+
+            SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
+                    1,
+                    new PlanNodeId("test"),
+                    BIGINT,
+                    0,
+                    Optional.empty(),
+                    10,
+                    new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                    true,
+                    SPILL_PARTITION_COUNT,
+                    partitioningSpillerFactory);
+            // the probe factory has to exist before the build finishes, as it does in a planned query
+            HashSemiJoinOperatorFactory joinOperatorFactory = new HashSemiJoinOperatorFactory(
+                    2,
+                    new PlanNodeId("test"),
+                    setBuilderOperatorFactory.getSetProvider(),
+                    ImmutableList.of(BIGINT, BIGINT),
+                    0,
+                    Optional.empty(),
+                    partitioningSpillerFactory);
+
+            // build, revoking memory after every page
+            List<Page> buildInput = rowPagesBuilder(BIGINT)
+                    .row(10L)
+                    .row(30L)
+                    .pageBreak()
+                    .row(30L)
+                    .row(35L)
+                    .pageBreak()
+                    .row(36L)
+                    .row(37L)
+                    .row(50L)
+                    .build();
+            Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
+            toPagesPartial(setBuilderOperator, buildInput.iterator(), true);
+            getFutureValue(setBuilderOperator.isBlocked());
+            setBuilderOperator.finish();
+            assertTrue(setBuilderOperatorFactory.getSetProvider().whenSetBuilt().isDone());
+            assertFalse(setBuilderOperatorFactory.getSetProvider().getChannelSet().isPresent(), "Expected the set to be spilled");
+            // the spilled partitions are kept until all probes are done
+            assertFalse(setBuilderOperator.isFinished());
+
+            // probe
+            List<Page> probeInput = rowPagesBuilder(BIGINT, BIGINT)
+                    .addSequencePage(10, 30, 0)
+                    .row(null, 10L)
+                    .build();
+            MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, BIGINT, BOOLEAN)
+                    .row(30L, 0L, true)
+                    .row(31L, 1L, false)
+                    .row(32L, 2L, false)
+                    .row(33L, 3L, false)
+                    .row(34L, 4L, false)
+                    .row(35L, 5L, true)
+                    .row(36L, 6L, true)
+                    .row(37L, 7L, true)
+                    .row(38L, 8L, false)
+                    .row(39L, 9L, false)
+                    .row(null, 10L, null)
+                    .build();
+            assertOperatorEqualsIgnoreOrder(joinOperatorFactory, driverContext, probeInput, expected);
+            joinOperatorFactory.noMoreOperators();
+
+            assertTrue(setBuilderOperator.isFinished());
+            setBuilderOperator.close();
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    @Test
+    public void testSpillWhenMemoryCannotBeConvertedOnFinish()
+            throws Exception
+    {
+        DataSize queryMaxMemory = new DataSize(1, MEGABYTE);
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION, queryMaxMemory)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+        DummyPartitioningSpillerFactory spillerFactory = new DummyPartitioningSpillerFactory();
+        SetBuilderOperatorFactory setBuilderOperatorFactory = new SetBuilderOperatorFactory(
+                1,
+                new PlanNodeId("test"),
+                BIGINT,
+                0,
+                Optional.empty(),
+                10,
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                true,
+                SPILL_PARTITION_COUNT,
+                spillerFactory);
+        HashSemiJoinOperatorFactory joinOperatorFactory = new HashSemiJoinOperatorFactory(
+                2,
+                new PlanNodeId("test"),
+                setBuilderOperatorFactory.getSetProvider(),
+                ImmutableList.of(BIGINT),
+                0,
+                Optional.empty(),
+                spillerFactory);
+
+        Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
+        setBuilderOperator.addInput(rowPagesBuilder(BIGINT).addSequencePage(100, 0).build().get(0));
+        assertGreaterThan(setBuilderOperator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0L);
+
+        // another operator holds all the user memory of the query, so the set is spilled on finish without blocking the driver
+        LocalMemoryContext otherMemoryContext = driverContext.addOperatorContext(3, new PlanNodeId("other"), "other").localUserMemoryContext();
+        otherMemoryContext.setBytes(queryMaxMemory.toBytes());
+        spillerFactory.block();
+        setBuilderOperator.finish();
+        assertFalse(setBuilderOperator.isBlocked().isDone());
+        assertFalse(setBuilderOperatorFactory.getSetProvider().whenSetBuilt().isDone());
+        otherMemoryContext.setBytes(0);
+
+        // the set is released and the spilled set passed on once spilling is finished
+        spillerFactory.unblock();
+        assertTrue(setBuilderOperator.isBlocked().isDone());
+        setBuilderOperator.finish();
+        assertTrue(setBuilderOperatorFactory.getSetProvider().whenSetBuilt().isDone());
+        assertFalse(setBuilderOperatorFactory.getSetProvider().getChannelSet().isPresent(), "Expected the set to be spilled");
+        assertEquals(setBuilderOperator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0);
+
+        List<Page> probeInput = rowPagesBuilder(BIGINT).addSequencePage(10, 95).build();
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), BIGINT, BOOLEAN)
+                .row(95L, true)
+                .row(96L, true)
+                .row(97L, true)
+                .row(98L, true)
+                .row(99L, true)
+                .row(100L, false)
+                .row(101L, false)
+                .row(102L, false)
+                .row(103L, false)
+                .row(104L, false)
+                .build();
+        assertOperatorEqualsIgnoreOrder(joinOperatorFactory, driverContext, probeInput, expected);
+        joinOperatorFactory.noMoreOperators();
+
+        assertTrue(setBuilderOperator.isFinished());
+        setBuilderOperator.close();
+    }
+
+    @Test
+    public void testSpilledPartitionMemoryReservation()
+            throws Exception
+    {
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+            OperatorContext operatorContext = driverContext.addOperatorContext(0, new PlanNodeId("test"), SetBuilderOperator.class.getSimpleName());
+            SpilledChannelSet spilledChannelSet = createSpilledChannelSet(spillPath, operatorContext);
+
+            // the memory of the loaded partition is reserved once, however many probes use it
+            LocalMemoryContext memoryContext = operatorContext.localUserMemoryContext();
+            ChannelSet partitionSet = getFutureValue(spilledChannelSet.loadPartition(0));
+            assertEquals(partitionSet.size(), 10_000);
+            assertGreaterThan(memoryContext.getBytes(), 0L);
+            assertEquals(memoryContext.getBytes(), partitionSet.getEstimatedSizeInBytes());
+            assertSame(getFutureValue(spilledChannelSet.loadPartition(0)), partitionSet);
+            assertEquals(memoryContext.getBytes(), partitionSet.getEstimatedSizeInBytes());
+
+            // the memory is released once all probes are done with the partition
+            spilledChannelSet.setProbeCount(2);
+            spilledChannelSet.releasePartition(0);
+            assertEquals(memoryContext.getBytes(), partitionSet.getEstimatedSizeInBytes());
+            spilledChannelSet.releasePartition(0);
+            assertEquals(memoryContext.getBytes(), 0);
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    @Test(expectedExceptions = ExceededMemoryLimitException.class, expectedExceptionsMessageRegExp = "Query exceeded per-node user memory limit of.*")
+    public void testSpilledPartitionMemoryLimit()
+            throws Exception
+    {
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION, new DataSize(1, KILOBYTE))
+                    .addPipelineContext(0, true, true, false)
+                    .addDriverContext();
+            OperatorContext operatorContext = driverContext.addOperatorContext(0, new PlanNodeId("test"), SetBuilderOperator.class.getSimpleName());
+            SpilledChannelSet spilledChannelSet = createSpilledChannelSet(spillPath, operatorContext);
+
+            // the partition does not fit, which fails while its hash grows
+            spilledChannelSet.loadPartition(0);
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    private static SpilledChannelSet createSpilledChannelSet(Path spillPath, OperatorContext operatorContext)
+    {
+        FeaturesConfig featuresConfig = new FeaturesConfig()
+                .setSpillerSpillPaths(spillPath.toString())
+                .setSpillMaxUsedSpaceThreshold(1.0);
+        PartitioningSpillerFactory partitioningSpillerFactory = new GenericPartitioningSpillerFactory(
+                new FileSingleStreamSpillerFactory(new BlockEncodingManager(), new SpillerStats(), featuresConfig, new NodeSpillConfig()));
+        PartitioningSpiller spiller = partitioningSpillerFactory.create(
+                ImmutableList.of(BIGINT),
+                SpilledChannelSet.createPartitionFunction(BIGINT, 0, 1),
+                operatorContext.getSpillContext().newLocalSpillContext(),
+                operatorContext.aggregateSystemMemoryContext());
+        for (Page page : rowPagesBuilder(BIGINT).addSequencePage(5_000, 0).addSequencePage(5_000, 5_000).build()) {
+            getFutureValue(spiller.partitionAndSpill(page, partition -> true).getSpillingFuture());
+        }
+        return new SpilledChannelSet(BIGINT, spiller, 1, false, 10, new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()), operatorContext.localUserMemoryContext());
+    }
+
     @Test(dataProvider = "dataType")
     public void testSemiJoinMemoryReservationYield(Type type)
     {
@@ -232,7 +486,10 @@ public class TestHashSemiJoinOperator
                 0,
                 Optional.of(1),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
 
         // run test
         GroupByHashYieldAssertion.GroupByHashYieldResult result = finishOperatorWithYieldingGroupByHash(
@@ -271,7 +528,10 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -292,7 +552,8 @@ public class TestHashSemiJoinOperator
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
                 0,
-                probeHashChannel);
+                probeHashChannel,
+                unsupportedPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -326,7 +587,10 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -350,7 +614,8 @@ public class TestHashSemiJoinOperator
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
                 0,
-                probeHashChannel);
+                probeHashChannel,
+                unsupportedPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -385,7 +650,10 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
@@ -409,7 +677,8 @@ public class TestHashSemiJoinOperator
                 setBuilderOperatorFactory.getSetProvider(),
                 rowPagesBuilderProbe.getTypes(),
                 0,
-                probeHashChannel);
+                probeHashChannel,
+                unsupportedPartitioningSpillerFactory());
 
         // expected
         MaterializedResult expected = resultBuilder(driverContext.getSession(), concat(probeTypes, ImmutableList.of(BOOLEAN)))
@@ -442,7 +711,10 @@ public class TestHashSemiJoinOperator
                 0,
                 rowPagesBuilder.getHashChannel(),
                 10,
-                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()));
+                new JoinCompiler(createTestMetadataManager(), new FeaturesConfig()),
+                false,
+                SPILL_PARTITION_COUNT,
+                unsupportedPartitioningSpillerFactory());
         Operator setBuilderOperator = setBuilderOperatorFactory.createOperator(driverContext);
 
         Driver driver = Driver.createDriver(driverContext, buildOperator, setBuilderOperator);
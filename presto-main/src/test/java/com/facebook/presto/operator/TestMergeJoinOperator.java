@@ -0,0 +1,342 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.RowPagesBuilder;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.PageBuilder;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.operator.MergeJoinOperator.MergeJoinOperatorFactory;
+import com.facebook.presto.operator.MergeJoinSinkOperator.MergeJoinSinkOperatorFactory;
+import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.sql.gen.JoinFilterFunctionCompiler.JoinFilterFunctionFactory;
+import com.facebook.presto.sql.planner.plan.JoinNode;
+import com.facebook.presto.testing.MaterializedResult;
+import com.facebook.presto.testing.TestingTaskContext;
+import com.google.common.collect.ImmutableList;
+import com.google.common.util.concurrent.ListenableFuture;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+
+import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
+import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
+import static com.facebook.presto.operator.ValuesOperator.ValuesOperatorFactory;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.FULL;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.INNER;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.LEFT;
+import static com.facebook.presto.sql.planner.plan.JoinNode.Type.RIGHT;
+import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
+import static com.google.common.collect.Iterables.concat;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.Executors.newScheduledThreadPool;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestMergeJoinOperator
+{
+    private static final List<Type> TYPES = ImmutableList.of(BIGINT, VARCHAR);
+
+    private ExecutorService executor;
+    private ScheduledExecutorService scheduledExecutor;
+
+    @BeforeClass
+    public void setUp()
+    {
+        executor = newCachedThreadPool(daemonThreadsNamed("test-executor-%s"));
+        scheduledExecutor = newScheduledThreadPool(2, daemonThreadsNamed("test-scheduledExecutor-%s"));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void tearDown()
+    {
+        executor.shutdownNow();
+        scheduledExecutor.shutdownNow();
+    }
+
+    @Test
+    public void testInnerJoin()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, INNER, rightPages(), Optional.empty());
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(2L, "b", 2L, "x")
+                .row(2L, "b", 2L, "y")
+                .row(2L, "c", 2L, "x")
+                .row(2L, "c", 2L, "y")
+                .row(2L, "d", 2L, "x")
+                .row(2L, "d", 2L, "y")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testLeftJoin()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, LEFT, rightPages(), Optional.empty());
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(1L, "a", null, null)
+                .row(2L, "b", 2L, "x")
+                .row(2L, "b", 2L, "y")
+                .row(2L, "c", 2L, "x")
+                .row(2L, "c", 2L, "y")
+                .row(2L, "d", 2L, "x")
+                .row(2L, "d", 2L, "y")
+                .row(4L, "e", null, null)
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testRightJoin()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, RIGHT, rightPages(), Optional.empty());
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(null, null, null, "n")
+                .row(2L, "b", 2L, "x")
+                .row(2L, "b", 2L, "y")
+                .row(2L, "c", 2L, "x")
+                .row(2L, "c", 2L, "y")
+                .row(2L, "d", 2L, "x")
+                .row(2L, "d", 2L, "y")
+                .row(null, null, 3L, "z")
+                .row(null, null, 5L, "w")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testFullJoin()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, FULL, rightPages(), Optional.empty());
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(null, null, null, "n")
+                .row(1L, "a", null, null)
+                .row(2L, "b", 2L, "x")
+                .row(2L, "b", 2L, "y")
+                .row(2L, "c", 2L, "x")
+                .row(2L, "c", 2L, "y")
+                .row(2L, "d", 2L, "x")
+                .row(2L, "d", 2L, "y")
+                .row(null, null, 3L, "z")
+                .row(4L, "e", null, null)
+                .row(null, null, 5L, "w")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testInnerJoinWithFilter()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, INNER, rightPages(), Optional.of(filterFunction()));
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(2L, "b", 2L, "x")
+                .row(2L, "d", 2L, "x")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testFullJoinWithFilter()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, FULL, rightPages(), Optional.of(filterFunction()));
+
+        // the rows of a key run rejected by the filter follow the matches of the run
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(null, null, null, "n")
+                .row(1L, "a", null, null)
+                .row(2L, "b", 2L, "x")
+                .row(2L, "d", 2L, "x")
+                .row(2L, "c", null, null)
+                .row(null, null, 2L, "y")
+                .row(null, null, 3L, "z")
+                .row(4L, "e", null, null)
+                .row(null, null, 5L, "w")
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testEmptyRightSide()
+    {
+        TaskContext taskContext = createTaskContext();
+        MergeJoinOperatorFactory joinOperatorFactory = createJoinOperatorFactory(taskContext, LEFT, rowPagesBuilder(TYPES), Optional.empty());
+
+        MaterializedResult expected = resultBuilder(taskContext.getSession(), concat(TYPES, TYPES))
+                .row(1L, "a", null, null)
+                .row(2L, "b", null, null)
+                .row(2L, "c", null, null)
+                .row(2L, "d", null, null)
+                .row(4L, "e", null, null)
+                .build();
+
+        assertOperatorEquals(joinOperatorFactory, taskContext.addPipelineContext(0, true, true, false).addDriverContext(), leftPages(), expected);
+    }
+
+    @Test
+    public void testMergeJoinSourceBackpressure()
+    {
+        MergeJoinSource source = new MergeJoinSource(1);
+        Page page = rowPagesBuilder(TYPES).row(1L, "a").build().get(0);
+
+        assertFalse(source.waitForPages().isDone());
+        source.addPage(page);
+        assertTrue(source.isFull());
+        ListenableFuture<?> spaceAvailable = source.waitForSpace();
+        assertFalse(spaceAvailable.isDone());
+
+        assertEquals(source.pollPage(), page);
+        assertTrue(spaceAvailable.isDone());
+        assertNull(source.pollPage());
+        assertFalse(source.isFinished());
+
+        source.setNoMorePages();
+        assertTrue(source.isFinished());
+        assertTrue(source.waitForPages().isDone());
+
+        // the outer rows of the right side are produced by the join operator
+        assertFalse(source.getOuterPositionIterator().appendToNext(new PageBuilder(TYPES), 0));
+    }
+
+    private static List<Page> leftPages()
+    {
+        return rowPagesBuilder(TYPES)
+                .row(1L, "a")
+                .row(2L, "b")
+                .row(2L, "c")
+                .pageBreak()
+                .row(2L, "d")
+                .row(4L, "e")
+                .build();
+    }
+
+    private static RowPagesBuilder rightPages()
+    {
+        return rowPagesBuilder(TYPES)
+                .row(null, "n")
+                .row(2L, "x")
+                .pageBreak()
+                .row(2L, "y")
+                .row(3L, "z")
+                .row(5L, "w");
+    }
+
+    // rejects the left row "c" and the right row "y"; like the build side of a hash join, the right side comes first
+    private static InternalJoinFilterFunction filterFunction()
+    {
+        return new TestInternalJoinFilterFunction((rightPosition, rightPage, leftPosition, leftPage) ->
+                !VARCHAR.getSlice(leftPage.getBlock(1), leftPosition).toStringUtf8().equals("c") &&
+                        !VARCHAR.getSlice(rightPage.getBlock(1), rightPosition).toStringUtf8().equals("y"));
+    }
+
+    private TaskContext createTaskContext()
+    {
+        return TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION);
+    }
+
+    private static MergeJoinOperatorFactory createJoinOperatorFactory(TaskContext taskContext, JoinNode.Type joinType, RowPagesBuilder rightPages, Optional<InternalJoinFilterFunction> filterFunction)
+    {
+        DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+
+        ValuesOperatorFactory valuesOperatorFactory = new ValuesOperatorFactory(0, new PlanNodeId("test"), rightPages.build());
+        Optional<JoinFilterFunctionFactory> filterFunctionFactory = filterFunction
+                .map(function -> (session, addresses, pages) -> new StandardJoinFilterFunction(function, addresses, pages));
+
+        // buffer the whole right side so that it can be fully consumed before the join runs
+        JoinBridgeManager<MergeJoinSource> mergeJoinSourceManager = new JoinBridgeManager<>(
+                false,
+                UNGROUPED_EXECUTION,
+                UNGROUPED_EXECUTION,
+                () -> new MergeJoinSource(100),
+                rightPages.getTypes());
+        MergeJoinOperatorFactory joinOperatorFactory = new MergeJoinOperatorFactory(
+                2,
+                new PlanNodeId("test"),
+                mergeJoinSourceManager,
+                joinType,
+                TYPES,
+                ImmutableList.of(0),
+                ImmutableList.of(0, 1),
+                rightPages.getTypes(),
+                ImmutableList.of(0),
+                ImmutableList.of(0, 1),
+                filterFunctionFactory);
+        MergeJoinSinkOperatorFactory mergeJoinSinkOperatorFactory = new MergeJoinSinkOperatorFactory(1, new PlanNodeId("test"), mergeJoinSourceManager);
+
+        Driver driver = Driver.createDriver(
+                driverContext,
+                valuesOperatorFactory.createOperator(driverContext),
+                mergeJoinSinkOperatorFactory.createOperator(driverContext));
+
+        valuesOperatorFactory.noMoreOperators();
+        mergeJoinSinkOperatorFactory.noMoreOperators();
+
+        while (!driver.isFinished()) {
+            driver.process();
+        }
+
+        return joinOperatorFactory;
+    }
+
+    private static class TestInternalJoinFilterFunction
+            implements InternalJoinFilterFunction
+    {
+        public interface Lambda
+        {
+            boolean filter(int leftPosition, Page leftPage, int rightPosition, Page rightPage);
+        }
+
+        private final Lambda lambda;
+
+        private TestInternalJoinFilterFunction(Lambda lambda)
+        {
+            this.lambda = lambda;
+        }
+
+        @Override
+        public boolean filter(int leftPosition, Page leftPage, int rightPosition, Page rightPage)
+        {
+            return lambda.filter(leftPosition, leftPage, rightPosition, rightPage);
+        }
+    }
+}
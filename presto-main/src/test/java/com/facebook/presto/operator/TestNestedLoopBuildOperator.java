@@ -14,17 +14,26 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.execution.Lifespan;
 import com.facebook.presto.operator.NestedLoopBuildOperator.NestedLoopBuildOperatorFactory;
 import com.facebook.presto.operator.project.PageProcessor;
 import com.facebook.presto.spi.plan.PlanNodeId;
+import com.facebook.presto.spiller.FileSingleStreamSpillerFactory;
+import com.facebook.presto.spiller.NodeSpillConfig;
+import com.facebook.presto.spiller.SingleStreamSpillerFactory;
+import com.facebook.presto.spiller.SpillerStats;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.facebook.presto.testing.TestingTaskContext;
 import com.google.common.collect.ImmutableList;
+import io.airlift.units.DataSize;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
 
+import java.nio.file.Path;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
@@ -33,6 +42,13 @@ import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.PageAssertions.assertPageEquals;
+import static com.facebook.presto.spiller.SingleStreamSpillerFactory.unsupportedSingleStreamSpillerFactory;
+import static com.google.common.io.MoreFiles.deleteRecursively;
+import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.nio.file.Files.createTempDirectory;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
@@ -42,6 +58,8 @@ import static org.testng.Assert.assertTrue;
 @Test(singleThreaded = true)
 public class TestNestedLoopBuildOperator
 {
+    private static final DataSize SPILL_BLOCK_SIZE = new DataSize(16, MEGABYTE);
+
     private ExecutorService executor;
     private ScheduledExecutorService scheduledExecutor;
 
@@ -71,7 +89,7 @@ public class TestNestedLoopBuildOperator
                 PipelineExecutionStrategy.UNGROUPED_EXECUTION,
                 NestedLoopJoinPagesSupplier::new,
                 buildTypes);
-        NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager);
+        NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager, false, SPILL_BLOCK_SIZE, unsupportedSingleStreamSpillerFactory());
         DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
         NestedLoopBuildOperator nestedLoopBuildOperator = (NestedLoopBuildOperator) nestedLoopBuildOperatorFactory.createOperator(driverContext);
         NestedLoopJoinBridge nestedLoopJoinBridge = nestedLoopJoinBridgeManager.getJoinBridge(Lifespan.taskWide());
@@ -108,7 +126,7 @@ public class TestNestedLoopBuildOperator
                 PipelineExecutionStrategy.UNGROUPED_EXECUTION,
                 NestedLoopJoinPagesSupplier::new,
                 buildTypes);
-        NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager);
+        NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager, false, SPILL_BLOCK_SIZE, unsupportedSingleStreamSpillerFactory());
         DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
         NestedLoopBuildOperator nestedLoopBuildOperator = (NestedLoopBuildOperator) nestedLoopBuildOperatorFactory.createOperator(driverContext);
         NestedLoopJoinBridge nestedLoopJoinBridge = nestedLoopJoinBridgeManager.getJoinBridge(Lifespan.taskWide());
@@ -144,7 +162,7 @@ public class TestNestedLoopBuildOperator
                 PipelineExecutionStrategy.UNGROUPED_EXECUTION,
                 NestedLoopJoinPagesSupplier::new,
                 buildTypes);
-        NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager);
+        NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager, false, SPILL_BLOCK_SIZE, unsupportedSingleStreamSpillerFactory());
         DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
         NestedLoopBuildOperator nestedLoopBuildOperator = (NestedLoopBuildOperator) nestedLoopBuildOperatorFactory.createOperator(driverContext);
         NestedLoopJoinBridge nestedLoopJoinBridge = nestedLoopJoinBridgeManager.getJoinBridge(Lifespan.taskWide());
@@ -164,6 +182,70 @@ public class TestNestedLoopBuildOperator
         assertEquals(buildPages.get(1).getPositionCount(), 100);
     }
 
+    @Test
+    public void testNestedLoopBuildWithSpill()
+            throws Exception
+    {
+        Path spillPath = createTempDirectory(getClass().getSimpleName());
+        try {
+            FeaturesConfig featuresConfig = new FeaturesConfig()
+                    .setSpillerSpillPaths(spillPath.toString())
+                    .setSpillMaxUsedSpaceThreshold(1.0);
+            SingleStreamSpillerFactory spillerFactory = new FileSingleStreamSpillerFactory(new BlockEncodingManager(), new SpillerStats(), featuresConfig, new NodeSpillConfig());
+
+            TaskContext taskContext = createTaskContext();
+            List<Type> buildTypes = ImmutableList.of(BIGINT);
+            JoinBridgeManager<NestedLoopJoinBridge> nestedLoopJoinBridgeManager = new JoinBridgeManager<>(
+                    false,
+                    PipelineExecutionStrategy.UNGROUPED_EXECUTION,
+                    PipelineExecutionStrategy.UNGROUPED_EXECUTION,
+                    NestedLoopJoinPagesSupplier::new,
+                    buildTypes);
+            NestedLoopBuildOperatorFactory nestedLoopBuildOperatorFactory = new NestedLoopBuildOperatorFactory(3, new PlanNodeId("test"), nestedLoopJoinBridgeManager, true, new DataSize(1, KILOBYTE), spillerFactory);
+            DriverContext driverContext = taskContext.addPipelineContext(0, true, true, false).addDriverContext();
+            NestedLoopBuildOperator nestedLoopBuildOperator = (NestedLoopBuildOperator) nestedLoopBuildOperatorFactory.createOperator(driverContext);
+            NestedLoopJoinBridge nestedLoopJoinBridge = nestedLoopJoinBridgeManager.getJoinBridge(Lifespan.taskWide());
+
+            Page buildPage1 = new Page(3, createLongSequenceBlock(11, 14));
+            Page buildPage2 = new Page(3000, createLongSequenceBlock(4000, 7000));
+            Page buildPage3 = new Page(3, createLongSequenceBlock(21, 24));
+
+            nestedLoopBuildOperator.addInput(buildPage1);
+            nestedLoopBuildOperator.addInput(buildPage2);
+            nestedLoopBuildOperator.startMemoryRevoke().get();
+            nestedLoopBuildOperator.finishMemoryRevoke();
+            nestedLoopBuildOperator.addInput(buildPage3);
+
+            while (!nestedLoopJoinBridge.getPagesFuture().isDone()) {
+                nestedLoopBuildOperator.isBlocked().get();
+                nestedLoopBuildOperator.finish();
+            }
+
+            NestedLoopJoinPages buildPages = nestedLoopJoinBridge.getPagesFuture().get();
+            assertTrue(buildPages.isSpilled());
+            // the second page does not fit in the block of the first one, the third page is spilled separately
+            assertEquals(buildPages.getSpilledBlockCount(), 3);
+            assertSpilledBlock(buildPages, 0, buildPage1);
+            assertSpilledBlock(buildPages, 1, buildPage2);
+            assertSpilledBlock(buildPages, 2, buildPage3);
+            // blocks are read once per probe block, so they can be read repeatedly
+            assertSpilledBlock(buildPages, 0, buildPage1);
+
+            nestedLoopBuildOperator.close();
+        }
+        finally {
+            deleteRecursively(spillPath, ALLOW_INSECURE);
+        }
+    }
+
+    private static void assertSpilledBlock(NestedLoopJoinPages buildPages, int block, Page expected)
+    {
+        Iterator<Page> pages = buildPages.getSpilledBlock(block);
+        assertTrue(pages.hasNext());
+        assertPageEquals(ImmutableList.of(BIGINT), pages.next(), expected);
+        assertFalse(pages.hasNext());
+    }
+
     private TaskContext createTaskContext()
     {
         return TestingTaskContext.createTaskContext(executor, scheduledExecutor, TEST_SESSION);
@@ -118,6 +118,8 @@ public class TestOperatorInfoUnionSerde
         assertThat(exchangeClientStatus.getSuccessfulRequestsCount()).isEqualTo(5708);
         assertThat(exchangeClientStatus.getBufferedPages()).isEqualTo(316);
         assertThat(exchangeClientStatus.isNoMoreLocations()).isTrue();
+        assertThat(exchangeClientStatus.getBufferCapacity()).isEqualTo(8388608L);
+        assertThat(exchangeClientStatus.getConcurrentRequestMultiplier()).isEqualTo(2);
 
         List<PageBufferClientStatus> pageBufferClientStatuses = exchangeClientStatus.getPageBufferClientStatuses();
         assertNotNull(pageBufferClientStatuses);
@@ -157,6 +159,8 @@ public class TestOperatorInfoUnionSerde
                         2,
                         71,
                         3,
-                        "OK")));
+                        "OK")),
+                8388608L,
+                2);
     }
 }
@@ -0,0 +1,157 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.operator;
+
+import com.facebook.presto.Session;
+import com.facebook.presto.common.Page;
+import com.facebook.presto.common.array.AdaptiveLongBigArray;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.metadata.MetadataManager;
+import com.facebook.presto.sql.analyzer.FeaturesConfig;
+import com.google.common.collect.ImmutableList;
+import it.unimi.dsi.fastutil.HashCommon;
+import org.openjdk.jol.info.ClassLayout;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.stream.LongStream;
+
+import static com.facebook.presto.SystemSessionProperties.JOIN_OFF_HEAP_HASH_TABLE_ENABLED;
+import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createLongsBlock;
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.operator.SyntheticAddress.encodeSyntheticAddress;
+import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.slice.SizeOf.SIZE_OF_INT;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertThrows;
+
+public class TestPagesHash
+{
+    private static final long OFF_HEAP_TABLE_INSTANCE_SIZE = ClassLayout.parseClass(OffHeapPagesHashTable.class).instanceSize();
+    private static final Session OFF_HEAP_SESSION = testSessionBuilder()
+            .setSystemProperty(JOIN_OFF_HEAP_HASH_TABLE_ENABLED, "true")
+            .build();
+
+    @Test
+    public void testOffHeapAccounting()
+    {
+        Block block = createLongSequenceBlock(0, 1000);
+        int hashSize = HashCommon.arraySize(block.getPositionCount(), 0.75f);
+
+        OffHeapPagesHashTable offHeapTable = new OffHeapPagesHashTable(hashSize, block.getPositionCount());
+        long offHeapTableSize = offHeapTable.getRetainedSizeInBytes();
+        assertEquals(offHeapTableSize, OFF_HEAP_TABLE_INSTANCE_SIZE + (long) hashSize * SIZE_OF_INT + block.getPositionCount());
+        offHeapTable.close();
+        assertEquals(offHeapTable.getRetainedSizeInBytes(), OFF_HEAP_TABLE_INSTANCE_SIZE);
+        assertThrows(IllegalStateException.class, offHeapTable::close);
+
+        // the off-heap table is accounted in place of the arrays of the heap table
+        long heapTableSize = new HeapPagesHashTable(hashSize, block.getPositionCount()).getRetainedSizeInBytes();
+        PagesHash offHeap = createPagesHash(block, true);
+        PagesHash heap = createPagesHash(block, false);
+        assertEquals(offHeap.getInMemorySizeInBytes(), heap.getInMemorySizeInBytes() - heapTableSize + offHeapTableSize);
+        offHeap.release();
+    }
+
+    @Test
+    public void testOffHeapRelease()
+    {
+        Block block = createLongSequenceBlock(0, 1000);
+        int hashSize = HashCommon.arraySize(block.getPositionCount(), 0.75f);
+        long offHeapBytes = (long) hashSize * SIZE_OF_INT + block.getPositionCount();
+
+        JoinHashSupplier supplier = new JoinHashSupplier(
+                OFF_HEAP_SESSION,
+                pagesHashStrategy(block),
+                addresses(block),
+                block.getPositionCount(),
+                ImmutableList.of(ImmutableList.of(block)),
+                Optional.empty(),
+                Optional.empty(),
+                ImmutableList.of());
+        JoinHash first = supplier.get();
+        JoinHash second = supplier.get();
+        long size = first.getInMemorySizeInBytes();
+
+        // the table is only freed after the supplier and all the join hashes it supplied are closed
+        supplier.close();
+        supplier.close();
+        first.close();
+        first.close();
+        assertEquals(second.getInMemorySizeInBytes(), size);
+        assertEquals(second.getJoinPosition(0, new Page(createLongsBlock(999)), new Page(createLongsBlock(999))), 999);
+
+        second.close();
+        assertEquals(second.getInMemorySizeInBytes(), size - offHeapBytes);
+        assertThrows(IllegalStateException.class, supplier::get);
+    }
+
+    @Test
+    public void testOffHeapCollisions()
+    {
+        // duplicate keys, which are linked, in more positions than are hashed in a single step
+        Block block = createLongsBlock(LongStream.range(0, 10_000).map(value -> value % 1000).boxed().collect(toImmutableList()));
+        PagesHash offHeap = createPagesHash(block, true);
+        PagesHash heap = createPagesHash(block, false);
+
+        assertEquals(offHeap.getHashCollisions(), heap.getHashCollisions());
+        assertEquals(offHeap.getExpectedHashCollisions(), heap.getExpectedHashCollisions());
+
+        Page probe = new Page(createLongSequenceBlock(0, 2000));
+        for (int position = 0; position < probe.getPositionCount(); position++) {
+            int addressIndex = offHeap.getAddressIndex(position, probe);
+            assertEquals(addressIndex, heap.getAddressIndex(position, probe));
+            if (position < 1000) {
+                assertEquals(BIGINT.getLong(block, addressIndex), position);
+            }
+            else {
+                assertEquals(addressIndex, -1);
+            }
+        }
+        offHeap.release();
+    }
+
+    private static PagesHash createPagesHash(Block block, boolean offHeap)
+    {
+        return new PagesHash(addresses(block), block.getPositionCount(), pagesHashStrategy(block), ArrayPositionLinks.builder(block.getPositionCount()), offHeap);
+    }
+
+    private static PagesHashStrategy pagesHashStrategy(Block block)
+    {
+        List<List<Block>> channels = ImmutableList.of(ImmutableList.of(block));
+        return new SimplePagesHashStrategy(
+                ImmutableList.of(BIGINT),
+                ImmutableList.of(0),
+                channels,
+                ImmutableList.of(0),
+                OptionalInt.empty(),
+                Optional.empty(),
+                MetadataManager.createTestMetadataManager().getFunctionAndTypeManager(),
+                new FeaturesConfig().isGroupByUsesEqualTo());
+    }
+
+    private static AdaptiveLongBigArray addresses(Block block)
+    {
+        AdaptiveLongBigArray addresses = new AdaptiveLongBigArray();
+        addresses.ensureCapacity(block.getPositionCount());
+        for (int i = 0; i < block.getPositionCount(); ++i) {
+            addresses.set(i, encodeSyntheticAddress(0, i));
+        }
+        return addresses;
+    }
+}
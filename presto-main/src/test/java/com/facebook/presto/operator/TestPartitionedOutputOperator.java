@@ -14,6 +14,7 @@
 package com.facebook.presto.operator;
 
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeMetric;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
@@ -32,6 +33,7 @@ import com.google.common.collect.ImmutableList;
 import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Optional;
 import java.util.OptionalInt;
@@ -45,6 +47,7 @@ import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
 import static com.facebook.presto.block.BlockAssertions.createLongDictionaryBlock;
 import static com.facebook.presto.block.BlockAssertions.createLongSequenceBlock;
 import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
+import static com.facebook.presto.common.RuntimeMetricName.PARTITIONED_OUTPUT_ROWS_PER_PARTITION;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.execution.buffer.BufferState.OPEN;
 import static com.facebook.presto.execution.buffer.BufferState.TERMINAL_BUFFER_STATES;
@@ -162,6 +165,47 @@ public class TestPartitionedOutputOperator
         assertEquals(operatorContext.getOutputPositions().getTotalCount(), PAGE_COUNT * PARTITION_COUNT * TESTING_PAGE_WITH_NULL_BLOCK.getPositionCount());
     }
 
+    @Test
+    public void testPartitionRowCounts()
+    {
+        PartitionFunction partitionFunction = new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0}), PARTITION_COUNT);
+        long[] expectedRowCounts = new long[PARTITION_COUNT];
+        for (int position = 0; position < TESTING_PAGE.getPositionCount(); position++) {
+            expectedRowCounts[partitionFunction.getPartition(TESTING_PAGE, position)] += PAGE_COUNT;
+        }
+
+        PartitionedOutputOperator partitionedOutputOperator = createPartitionedOutputOperator(false);
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            partitionedOutputOperator.addInput(TESTING_PAGE);
+        }
+        partitionedOutputOperator.finish();
+        // finishing again does not record the counts twice
+        partitionedOutputOperator.finish();
+
+        RuntimeMetric metric = partitionedOutputOperator.getOperatorContext().getRuntimeStats().getMetric(PARTITIONED_OUTPUT_ROWS_PER_PARTITION);
+        assertEquals(metric.getCount(), PARTITION_COUNT);
+        assertEquals(metric.getSum(), PAGE_COUNT * POSITIONS_PER_PAGE);
+        assertEquals(metric.getMax(), Arrays.stream(expectedRowCounts).max().getAsLong());
+        assertEquals(metric.getMin(), Arrays.stream(expectedRowCounts).min().getAsLong());
+    }
+
+    @Test
+    public void testPartitionRowCountsWithHotKey()
+    {
+        PartitionedOutputOperator partitionedOutputOperator = createPartitionedOutputOperator(false);
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            partitionedOutputOperator.addInput(new Page(TESTING_RLE_BLOCK));
+        }
+        partitionedOutputOperator.finish();
+
+        // all the rows have the same key, so they are sent to a single partition
+        RuntimeMetric metric = partitionedOutputOperator.getOperatorContext().getRuntimeStats().getMetric(PARTITIONED_OUTPUT_ROWS_PER_PARTITION);
+        assertEquals(metric.getCount(), PARTITION_COUNT);
+        assertEquals(metric.getSum(), PAGE_COUNT * POSITIONS_PER_PAGE);
+        assertEquals(metric.getMax(), PAGE_COUNT * POSITIONS_PER_PAGE);
+        assertEquals(metric.getMin(), 0);
+    }
+
     private static PartitionedOutputOperator createPartitionedOutputOperator(boolean shouldReplicate)
     {
         PartitionFunction partitionFunction = new LocalPartitionGenerator(new InterpretedHashGenerator(ImmutableList.of(BIGINT), new int[] {0}), PARTITION_COUNT);
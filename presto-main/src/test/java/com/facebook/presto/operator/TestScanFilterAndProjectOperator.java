@@ -127,6 +127,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(VARCHAR),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(0, BYTE),
                 0);
 
@@ -172,6 +173,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(BIGINT),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(64, KILOBYTE),
                 2);
 
@@ -217,6 +219,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(BIGINT),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(0, BYTE),
                 0);
 
@@ -256,6 +259,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(BIGINT),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(0, BYTE),
                 0);
 
@@ -301,6 +305,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(VARCHAR),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(0, BYTE),
                 0);
 
@@ -355,6 +360,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(BIGINT),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(0, BYTE),
                 0);
 
@@ -423,6 +429,7 @@ public class TestScanFilterAndProjectOperator
                 ImmutableList.of(),
                 ImmutableList.of(BIGINT),
                 Optional.empty(),
+                Optional.empty(),
                 new DataSize(0, BYTE),
                 0);
 
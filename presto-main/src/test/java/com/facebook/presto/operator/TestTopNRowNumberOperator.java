@@ -17,6 +17,7 @@ import com.facebook.presto.RowPagesBuilder;
 import com.facebook.presto.common.Page;
 import com.facebook.presto.common.block.SortOrder;
 import com.facebook.presto.common.type.Type;
+import com.facebook.presto.memory.context.LocalMemoryContext;
 import com.facebook.presto.metadata.MetadataManager;
 import com.facebook.presto.spi.plan.PlanNodeId;
 import com.facebook.presto.sql.analyzer.FeaturesConfig;
@@ -24,6 +25,7 @@ import com.facebook.presto.sql.gen.JoinCompiler;
 import com.facebook.presto.testing.MaterializedResult;
 import com.google.common.collect.ImmutableList;
 import com.google.common.primitives.Ints;
+import io.airlift.units.DataSize;
 import org.testng.annotations.AfterMethod;
 import org.testng.annotations.BeforeMethod;
 import org.testng.annotations.DataProvider;
@@ -35,6 +37,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledExecutorService;
 
 import static com.facebook.airlift.concurrent.Threads.daemonThreadsNamed;
+import static com.facebook.airlift.testing.Assertions.assertEqualsIgnoreOrder;
 import static com.facebook.airlift.testing.Assertions.assertGreaterThan;
 import static com.facebook.presto.RowPagesBuilder.rowPagesBuilder;
 import static com.facebook.presto.SessionTestUtils.TEST_SESSION;
@@ -43,12 +46,19 @@ import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.createPagesWithDistinctHashKeys;
 import static com.facebook.presto.operator.GroupByHashYieldAssertion.finishOperatorWithYieldingGroupByHash;
 import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEquals;
+import static com.facebook.presto.operator.OperatorAssertion.assertOperatorEqualsIgnoreOrder;
+import static com.facebook.presto.operator.OperatorAssertion.finishOperator;
+import static com.facebook.presto.operator.OperatorAssertion.toMaterializedResult;
+import static com.facebook.presto.operator.OperatorAssertion.toPagesPartial;
 import static com.facebook.presto.operator.TopNRowNumberOperator.TopNRowNumberOperatorFactory;
 import static com.facebook.presto.testing.MaterializedResult.resultBuilder;
 import static com.facebook.presto.testing.TestingTaskContext.createTaskContext;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
 
 @Test(singleThreaded = true)
 public class TestTopNRowNumberOperator
@@ -121,7 +131,9 @@ public class TestTopNRowNumberOperator
                 false,
                 Optional.empty(),
                 10,
-                joinCompiler);
+                joinCompiler,
+                false,
+                Optional.empty());
 
         MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
                 .row(0.3, 1L, 1L)
@@ -137,6 +149,121 @@ public class TestTopNRowNumberOperator
         assertOperatorEquals(operatorFactory, driverContext, input, expected);
     }
 
+    @Test
+    public void testPartitionedWithSpill()
+    {
+        List<Page> input = rowPagesBuilder(BIGINT, DOUBLE)
+                .row(1L, 0.3)
+                .row(2L, 0.2)
+                .row(3L, 0.1)
+                .row(3L, 0.91)
+                .pageBreak()
+                .row(1L, 0.4)
+                .pageBreak()
+                .row(1L, 0.5)
+                .row(1L, 0.6)
+                .row(2L, 0.7)
+                .row(2L, 0.8)
+                .pageBreak()
+                .row(2L, 0.9)
+                .row(1L, 0.1)
+                .build();
+
+        DummySpillerFactory spillerFactory = new DummySpillerFactory();
+        TopNRowNumberOperatorFactory operatorFactory = new TopNRowNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                Ints.asList(1, 0),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                Ints.asList(1),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                3,
+                false,
+                Optional.empty(),
+                10,
+                joinCompiler,
+                true,
+                Optional.of(spillerFactory));
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.1, 1L, 1L)
+                .row(0.3, 1L, 2L)
+                .row(0.4, 1L, 3L)
+                .row(0.2, 2L, 1L)
+                .row(0.7, 2L, 2L)
+                .row(0.8, 2L, 3L)
+                .row(0.1, 3L, 1L)
+                .row(0.91, 3L, 2L)
+                .build();
+
+        // partitions are emitted in partition key hash order once spilled
+        assertOperatorEqualsIgnoreOrder(operatorFactory, driverContext, input, expected, true);
+        assertTrue(spillerFactory.getSpillsCount() > 0, "Expected the operator to spill");
+    }
+
+    @Test
+    public void testSpillWhenMemoryCannotBeConvertedOnFinish()
+            throws Exception
+    {
+        List<Page> input = rowPagesBuilder(BIGINT, DOUBLE)
+                .row(1L, 0.3)
+                .row(2L, 0.2)
+                .row(3L, 0.1)
+                .pageBreak()
+                .row(1L, 0.4)
+                .row(2L, 0.7)
+                .row(1L, 0.1)
+                .build();
+
+        DataSize queryMaxMemory = new DataSize(1, MEGABYTE);
+        DriverContext driverContext = createTaskContext(executor, scheduledExecutor, TEST_SESSION, queryMaxMemory)
+                .addPipelineContext(0, true, true, false)
+                .addDriverContext();
+        DummySpillerFactory spillerFactory = new DummySpillerFactory();
+        TopNRowNumberOperatorFactory operatorFactory = new TopNRowNumberOperatorFactory(
+                0,
+                new PlanNodeId("test"),
+                ImmutableList.of(BIGINT, DOUBLE),
+                Ints.asList(1, 0),
+                Ints.asList(0),
+                ImmutableList.of(BIGINT),
+                Ints.asList(1),
+                ImmutableList.of(SortOrder.ASC_NULLS_LAST),
+                2,
+                false,
+                Optional.empty(),
+                10,
+                joinCompiler,
+                true,
+                Optional.of(spillerFactory));
+
+        Operator operator = operatorFactory.createOperator(driverContext);
+        assertTrue(toPagesPartial(operator, input.iterator(), false).isEmpty());
+        assertGreaterThan(operator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0L);
+
+        // another operator holds all the user memory of the query, so the rows are spilled on finish
+        LocalMemoryContext otherMemoryContext = driverContext.addOperatorContext(1, new PlanNodeId("other"), "other").localUserMemoryContext();
+        otherMemoryContext.setBytes(queryMaxMemory.toBytes());
+        operator.finish();
+        assertNull(operator.getOutput());
+        assertEquals(spillerFactory.getSpillsCount(), 1);
+        otherMemoryContext.setBytes(0);
+
+        MaterializedResult expected = resultBuilder(driverContext.getSession(), DOUBLE, BIGINT, BIGINT)
+                .row(0.1, 1L, 1L)
+                .row(0.3, 1L, 2L)
+                .row(0.2, 2L, 1L)
+                .row(0.7, 2L, 2L)
+                .row(0.1, 3L, 1L)
+                .build();
+        List<Page> output = finishOperator(operator);
+        assertEqualsIgnoreOrder(toMaterializedResult(driverContext.getSession(), expected.getTypes(), output).getMaterializedRows(), expected.getMaterializedRows());
+        operator.close();
+        assertEquals(operator.getOperatorContext().getOperatorMemoryContext().getRevocableMemory(), 0);
+    }
+
     @Test(dataProvider = "partial")
     public void testUnPartitioned(boolean partial)
     {
@@ -169,7 +296,9 @@ public class TestTopNRowNumberOperator
                 partial,
                 Optional.empty(),
                 10,
-                joinCompiler);
+                joinCompiler,
+                false,
+                Optional.empty());
 
         MaterializedResult expected;
         if (partial) {
@@ -208,7 +337,9 @@ public class TestTopNRowNumberOperator
                 false,
                 Optional.empty(),
                 10,
-                joinCompiler);
+                joinCompiler,
+                false,
+                Optional.empty());
 
         // get result with yield; pick a relatively small buffer for heaps
         GroupByHashYieldAssertion.GroupByHashYieldResult result = finishOperatorWithYieldingGroupByHash(
@@ -44,13 +44,18 @@ import org.testng.annotations.BeforeClass;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Consumer;
 import java.util.function.ToIntFunction;
 import java.util.stream.Stream;
 
 import static com.facebook.airlift.testing.Assertions.assertContains;
+import static com.facebook.presto.SystemSessionProperties.LOCK_FREE_LOCAL_EXCHANGE;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.GROUPED_EXECUTION;
 import static com.facebook.presto.operator.PipelineExecutionStrategy.UNGROUPED_EXECUTION;
@@ -65,6 +70,8 @@ import static com.facebook.presto.sql.planner.SystemPartitioningHandle.SINGLE_DI
 import static com.facebook.presto.testing.TestingSession.testSessionBuilder;
 import static com.google.common.collect.ImmutableList.toImmutableList;
 import static io.airlift.units.DataSize.Unit.BYTE;
+import static java.util.concurrent.Executors.newFixedThreadPool;
+import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.testng.Assert.assertEquals;
 import static org.testng.Assert.assertFalse;
 import static org.testng.Assert.assertNotNull;
@@ -80,12 +87,16 @@ public class TestLocalExchange
 
     private PartitioningProviderManager partitioningProviderManager;
     private Session session;
+    private Session lockFreeSession;
 
     @BeforeClass
     public void setUp()
     {
         partitioningProviderManager = new PartitioningProviderManager();
         session = testSessionBuilder().build();
+        lockFreeSession = testSessionBuilder()
+                .setSystemProperty(LOCK_FREE_LOCAL_EXCHANGE, "true")
+                .build();
     }
 
     @AfterClass
@@ -93,6 +104,7 @@ public class TestLocalExchange
     {
         partitioningProviderManager = null;
         session = null;
+        lockFreeSession = null;
     }
 
     @DataProvider
@@ -101,6 +113,12 @@ public class TestLocalExchange
         return new Object[][] {{UNGROUPED_EXECUTION}, {GROUPED_EXECUTION}};
     }
 
+    @DataProvider
+    public static Object[][] executionStrategyAndLockFree()
+    {
+        return new Object[][] {{UNGROUPED_EXECUTION, false}, {GROUPED_EXECUTION, false}, {UNGROUPED_EXECUTION, true}, {GROUPED_EXECUTION, true}};
+    }
+
     @Test(dataProvider = "executionStrategy")
     public void testGatherSingleWriter(PipelineExecutionStrategy executionStrategy)
     {
@@ -264,12 +282,12 @@ public class TestLocalExchange
         });
     }
 
-    @Test(dataProvider = "executionStrategy")
-    public void testRandom(PipelineExecutionStrategy executionStrategy)
+    @Test(dataProvider = "executionStrategyAndLockFree")
+    public void testRandom(PipelineExecutionStrategy executionStrategy, boolean lockFree)
     {
         LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
                 partitioningProviderManager,
-                session,
+                lockFree ? lockFreeSession : session,
                 FIXED_ARBITRARY_DISTRIBUTION,
                 2,
                 TYPES,
@@ -314,12 +332,12 @@ public class TestLocalExchange
         });
     }
 
-    @Test(dataProvider = "executionStrategy")
-    public void testPassthrough(PipelineExecutionStrategy executionStrategy)
+    @Test(dataProvider = "executionStrategyAndLockFree")
+    public void testPassthrough(PipelineExecutionStrategy executionStrategy, boolean lockFree)
     {
         LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
                 partitioningProviderManager,
-                session,
+                lockFree ? lockFreeSession : session,
                 FIXED_PASSTHROUGH_DISTRIBUTION,
                 2,
                 TYPES,
@@ -383,12 +401,12 @@ public class TestLocalExchange
         });
     }
 
-    @Test(dataProvider = "executionStrategy")
-    public void testPartition(PipelineExecutionStrategy executionStrategy)
+    @Test(dataProvider = "executionStrategyAndLockFree")
+    public void testPartition(PipelineExecutionStrategy executionStrategy, boolean lockFree)
     {
         LocalExchangeFactory localExchangeFactory = new LocalExchangeFactory(
                 partitioningProviderManager,
-                session,
+                lockFree ? lockFreeSession : session,
                 FIXED_HASH_DISTRIBUTION,
                 2,
                 TYPES,
@@ -451,6 +469,82 @@ public class TestLocalExchange
         });
     }
 
+    @Test
+    public void testLockFreeSourceWithConcurrentWriters()
+            throws Exception
+    {
+        int writerCount = 4;
+        int pagesPerWriter = 1000;
+        AtomicLong releasedBytes = new AtomicLong();
+        LocalExchangeSource source = new LocalExchangeSource(ignored -> {}, true);
+
+        ExecutorService executor = newFixedThreadPool(writerCount);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < writerCount; writer++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < pagesPerWriter; i++) {
+                        source.addPage(new PageReference(createPage(i), 1, releasedBytes::addAndGet));
+                    }
+                }));
+            }
+
+            // a page added while the reader registers its future must never be missed
+            int pagesRead = 0;
+            while (pagesRead < writerCount * pagesPerWriter) {
+                if (source.removePage() == null) {
+                    source.waitForReading().get(10, SECONDS);
+                }
+                else {
+                    pagesRead++;
+                }
+            }
+            for (Future<?> writer : writers) {
+                writer.get(10, SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        source.finish();
+        assertSourceFinished(source);
+        assertEquals(releasedBytes.get(), retainedSizeOfPages(writerCount * pagesPerWriter));
+    }
+
+    @Test
+    public void testLockFreeSourceCloseWithConcurrentWriters()
+            throws Exception
+    {
+        int writerCount = 4;
+        int pagesPerWriter = 1000;
+        AtomicLong releasedBytes = new AtomicLong();
+        LocalExchangeSource source = new LocalExchangeSource(ignored -> {}, true);
+
+        ExecutorService executor = newFixedThreadPool(writerCount);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int writer = 0; writer < writerCount; writer++) {
+                writers.add(executor.submit(() -> {
+                    for (int i = 0; i < pagesPerWriter; i++) {
+                        source.addPage(new PageReference(createPage(i), 1, releasedBytes::addAndGet));
+                    }
+                }));
+            }
+            source.close();
+            for (Future<?> writer : writers) {
+                writer.get(10, SECONDS);
+            }
+        }
+        finally {
+            executor.shutdownNow();
+        }
+
+        // pages added concurrently with close are released by their writers
+        assertSourceFinished(source);
+        assertEquals(releasedBytes.get(), retainedSizeOfPages(writerCount * pagesPerWriter));
+    }
+
     @Test
     public void testCreatePartitionFunction()
     {
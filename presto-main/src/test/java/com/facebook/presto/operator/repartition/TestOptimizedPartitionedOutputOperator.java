@@ -15,8 +15,10 @@ package com.facebook.presto.operator.repartition;
 
 import com.facebook.presto.Session;
 import com.facebook.presto.common.Page;
+import com.facebook.presto.common.RuntimeMetric;
 import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.block.BlockEncodingManager;
+import com.facebook.presto.common.block.DictionaryBlock;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
 import com.facebook.presto.common.block.VariableWidthBlock;
 import com.facebook.presto.common.type.ArrayType;
@@ -51,6 +53,7 @@ import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -74,7 +77,10 @@ import static com.facebook.presto.block.BlockAssertions.createMapType;
 import static com.facebook.presto.block.BlockAssertions.createRLEBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomLongsBlock;
 import static com.facebook.presto.block.BlockAssertions.createRandomStringBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringSequenceBlock;
+import static com.facebook.presto.block.BlockAssertions.createStringsBlock;
 import static com.facebook.presto.block.BlockAssertions.wrapBlock;
+import static com.facebook.presto.common.RuntimeMetricName.PARTITIONED_OUTPUT_ROWS_PER_PARTITION;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DecimalType.createDecimalType;
@@ -101,6 +107,7 @@ import static io.airlift.units.DataSize.Unit.MEGABYTE;
 import static java.util.concurrent.Executors.newCachedThreadPool;
 import static java.util.concurrent.Executors.newScheduledThreadPool;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
 
 public class TestOptimizedPartitionedOutputOperator
 {
@@ -620,6 +627,73 @@ public class TestOptimizedPartitionedOutputOperator
         testPartitioned(types, ImmutableList.of(page), new DataSize(1, KILOBYTE));
     }
 
+    @Test
+    public void testPartitionedWithPreservedDictionaries()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR);
+        Block dictionary = createStringSequenceBlock(0, 10);
+        Block otherDictionary = createStringSequenceBlock(100, 120);
+
+        List<Page> pages = new ArrayList<>();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            pages.add(new Page(createRandomLongsBlock(POSITION_COUNT, 0.0f), createRandomDictionaryBlock(dictionary, POSITION_COUNT)));
+            pages.add(new Page(createRandomLongsBlock(POSITION_COUNT, 0.0f), createRandomDictionaryBlock(otherDictionary, POSITION_COUNT)));
+            pages.add(new Page(createRandomLongsBlock(POSITION_COUNT, 0.0f), new RunLengthEncodedBlock(createStringsBlock("rle"), POSITION_COUNT)));
+            pages.add(new Page(createRandomLongsBlock(POSITION_COUNT, 0.0f), new RunLengthEncodedBlock(createStringsBlock((String) null), POSITION_COUNT)));
+            pages.add(new Page(createRandomLongsBlock(POSITION_COUNT, 0.0f), createRandomStringBlock(POSITION_COUNT, 0.2f, 10)));
+        }
+
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE), true);
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE), true);
+
+        // Columns of nested types
+        types = updateBlockTypesWithHashBlockAndNullBlock(ImmutableList.of(new ArrayType(VARCHAR), VARCHAR), true, false);
+        pages.clear();
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            pages.add(PageAssertions.createPageWithRandomData(ImmutableList.of(new ArrayType(VARCHAR), VARCHAR), POSITION_COUNT, true, false, 0.2f, 0.2f, true, ImmutableList.of(DICTIONARY, RUN_LENGTH)));
+            pages.add(PageAssertions.createPageWithRandomData(ImmutableList.of(new ArrayType(VARCHAR), VARCHAR), POSITION_COUNT, true, false, 0.2f, 0.2f, false, ImmutableList.of()));
+        }
+
+        testPartitioned(types, pages, new DataSize(128, MEGABYTE), true);
+        testPartitioned(types, pages, new DataSize(1, KILOBYTE), true);
+    }
+
+    @Test
+    public void testPreservedDictionariesOutputEncoding()
+    {
+        List<Type> types = ImmutableList.of(BIGINT, VARCHAR, VARCHAR);
+        Block dictionary = createStringSequenceBlock(0, 10);
+        // The value block is shared like the dictionary, since entries of different blocks are not merged
+        Block rleBlock = new RunLengthEncodedBlock(createStringsBlock("rle"), POSITION_COUNT);
+
+        TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(
+                types,
+                ImmutableList.of(0),
+                new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT),
+                outputBuffer,
+                OptionalInt.empty(),
+                MAX_MEMORY,
+                true);
+
+        for (int i = 0; i < PAGE_COUNT; i++) {
+            operator.addInput(new Page(
+                    createRandomLongsBlock(POSITION_COUNT, 0.0f),
+                    createRandomDictionaryBlock(dictionary, POSITION_COUNT),
+                    rleBlock));
+        }
+        operator.finish();
+
+        for (List<Page> partitionPages : outputBuffer.getPages().values()) {
+            for (Page page : partitionPages) {
+                assertTrue(page.getBlock(1) instanceof DictionaryBlock);
+                // The dictionary only contains the entries referenced by the rows of the partition
+                assertTrue(((DictionaryBlock) page.getBlock(1)).getDictionary().getPositionCount() <= dictionary.getPositionCount());
+                assertTrue(page.getBlock(2) instanceof RunLengthEncodedBlock);
+            }
+        }
+    }
+
     private void testPartitionedSinglePage(List<Type> targetTypes)
     {
         List<Type> types = updateBlockTypesWithHashBlockAndNullBlock(targetTypes, true, false);
@@ -693,10 +767,20 @@ public class TestOptimizedPartitionedOutputOperator
 
     private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory)
     {
-        testPartitioned(types, pages, maxMemory, ImmutableList.of(0), new PrecomputedHashGenerator(0));
+        testPartitioned(types, pages, maxMemory, false);
+    }
+
+    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, boolean preserveDictionaries)
+    {
+        testPartitioned(types, pages, maxMemory, ImmutableList.of(0), new PrecomputedHashGenerator(0), preserveDictionaries);
     }
 
     private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator)
+    {
+        testPartitioned(types, pages, maxMemory, partitionChannel, hashGenerator, false);
+    }
+
+    private void testPartitioned(List<Type> types, List<Page> pages, DataSize maxMemory, List<Integer> partitionChannel, HashGenerator hashGenerator, boolean preserveDictionaries)
     {
         TestingPartitionedOutputBuffer outputBuffer = createPartitionedOutputBuffer();
         PartitionFunction partitionFunction = new LocalPartitionGenerator(hashGenerator, PARTITION_COUNT);
@@ -706,7 +790,8 @@ public class TestOptimizedPartitionedOutputOperator
                 partitionFunction,
                 outputBuffer,
                 OptionalInt.empty(),
-                maxMemory);
+                maxMemory,
+                preserveDictionaries);
 
         Map<Integer, List<Page>> expectedPageList = new HashMap<>();
 
@@ -823,6 +908,41 @@ public class TestOptimizedPartitionedOutputOperator
         verifyOutputSizes(operator, PARTITION_COUNT * PAGE_COUNT * TESTING_PAGE_WITH_RLE_BLOCK.getLogicalSizeInBytes(), PARTITION_COUNT * PAGE_COUNT * TESTING_PAGE_WITH_NULL_AND_RLE_BLOCK.getPositionCount());
     }
 
+    @Test
+    public void testPartitionRowCounts()
+    {
+        PartitionFunction partitionFunction = new LocalPartitionGenerator(new PrecomputedHashGenerator(0), PARTITION_COUNT);
+        long[] expectedRowCounts = new long[PARTITION_COUNT];
+        for (int position = 0; position < TESTING_PAGE.getPositionCount(); position++) {
+            expectedRowCounts[partitionFunction.getPartition(TESTING_PAGE, position)] += PAGE_COUNT;
+        }
+
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(ImmutableList.of(BIGINT), false);
+        processPages(operator, TESTING_PAGE);
+        // finishing again does not record the counts twice
+        operator.finish();
+
+        RuntimeMetric metric = operator.getOperatorContext().getRuntimeStats().getMetric(PARTITIONED_OUTPUT_ROWS_PER_PARTITION);
+        assertEquals(metric.getCount(), PARTITION_COUNT);
+        assertEquals(metric.getSum(), PAGE_COUNT * POSITION_COUNT);
+        assertEquals(metric.getMax(), Arrays.stream(expectedRowCounts).max().getAsLong());
+        assertEquals(metric.getMin(), Arrays.stream(expectedRowCounts).min().getAsLong());
+    }
+
+    @Test
+    public void testPartitionRowCountsWithHotKey()
+    {
+        OptimizedPartitionedOutputOperator operator = createOptimizedPartitionedOutputOperator(ImmutableList.of(BIGINT), false);
+        processPages(operator, TESTING_PAGE_WITH_RLE_BLOCK);
+
+        // all the rows have the same key, so they are sent to a single partition
+        RuntimeMetric metric = operator.getOperatorContext().getRuntimeStats().getMetric(PARTITIONED_OUTPUT_ROWS_PER_PARTITION);
+        assertEquals(metric.getCount(), PARTITION_COUNT);
+        assertEquals(metric.getSum(), PAGE_COUNT * POSITION_COUNT);
+        assertEquals(metric.getMax(), PAGE_COUNT * POSITION_COUNT);
+        assertEquals(metric.getMin(), 0);
+    }
+
     private static void processPages(OptimizedPartitionedOutputOperator operator, Page testingPageWithRleBlock)
     {
         for (int i = 0; i < PAGE_COUNT; i++) {
@@ -896,6 +1016,18 @@ public class TestOptimizedPartitionedOutputOperator
             PartitionedOutputBuffer buffer,
             OptionalInt nullChannel,
             DataSize maxMemory)
+    {
+        return createOptimizedPartitionedOutputOperator(types, partitionChannel, partitionFunction, buffer, nullChannel, maxMemory, false);
+    }
+
+    private OptimizedPartitionedOutputOperator createOptimizedPartitionedOutputOperator(
+            List<Type> types,
+            List<Integer> partitionChannel,
+            PartitionFunction partitionFunction,
+            PartitionedOutputBuffer buffer,
+            OptionalInt nullChannel,
+            DataSize maxMemory,
+            boolean preserveDictionaries)
     {
         PagesSerdeFactory serdeFactory = new PagesSerdeFactory(new BlockEncodingManager(), false);
 
@@ -906,7 +1038,7 @@ public class TestOptimizedPartitionedOutputOperator
                 false,
                 nullChannel);
 
-        OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory);
+        OptimizedPartitionedOutputFactory operatorFactory = new OptimizedPartitionedOutputFactory(buffer, maxMemory, preserveDictionaries);
 
         return (OptimizedPartitionedOutputOperator) operatorFactory
                 .createOutputOperator(0, new PlanNodeId("plan-node-0"), types, Function.identity(), Optional.of(outputPartitioning), serdeFactory)
@@ -938,6 +1070,15 @@ public class TestOptimizedPartitionedOutputOperator
                 SCHEDULER);
     }
 
+    private static Block createRandomDictionaryBlock(Block dictionary, int positionCount)
+    {
+        int[] ids = new int[positionCount];
+        for (int i = 0; i < positionCount; i++) {
+            ids[i] = RANDOM.nextInt(dictionary.getPositionCount());
+        }
+        return new DictionaryBlock(dictionary, ids);
+    }
+
     private static Block createVariableWidthBlockOverSliceView(int entries)
     {
         // Create a slice view whose address starts in the middle of the original slice, and length is half of original slice
@@ -0,0 +1,181 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.server;
+
+import com.facebook.airlift.http.client.HttpClient;
+import com.facebook.airlift.http.client.Request;
+import com.facebook.airlift.http.client.jetty.JettyHttpClient;
+import com.facebook.airlift.json.JsonCodec;
+import com.facebook.presto.client.Column;
+import com.facebook.presto.client.QueryResults;
+import com.facebook.presto.execution.QueryInfo;
+import com.facebook.presto.execution.QueryResultCache;
+import com.facebook.presto.server.testing.TestingPrestoServer;
+import com.facebook.presto.spi.QueryId;
+import com.facebook.presto.sql.parser.SqlParserOptions;
+import com.facebook.presto.tpch.TpchPlugin;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.inject.Key;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.List;
+
+import static com.facebook.airlift.http.client.JsonResponseHandler.createJsonResponseHandler;
+import static com.facebook.airlift.http.client.Request.Builder.prepareGet;
+import static com.facebook.airlift.http.client.Request.Builder.preparePost;
+import static com.facebook.airlift.http.client.StaticBodyGenerator.createStaticBodyGenerator;
+import static com.facebook.airlift.json.JsonCodec.jsonCodec;
+import static com.facebook.airlift.testing.Closeables.closeQuietly;
+import static com.facebook.presto.SystemSessionProperties.QUERY_RESULT_CACHING_ENABLED;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_SESSION;
+import static com.facebook.presto.client.PrestoHeaders.PRESTO_USER;
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertNull;
+import static org.testng.Assert.assertTrue;
+
+@Test(singleThreaded = true)
+public class TestQueryResultCacheIntegration
+{
+    private static final JsonCodec<QueryResults> QUERY_RESULTS_CODEC = jsonCodec(QueryResults.class);
+    private static final String QUERY = "SELECT name FROM tpch.tiny.nation WHERE regionkey = 1 ORDER BY name";
+
+    private TestingPrestoServer server;
+    private HttpClient client;
+    private QueryResultCache queryResultCache;
+
+    @BeforeClass
+    public void setup()
+            throws Exception
+    {
+        server = new TestingPrestoServer(
+                true,
+                ImmutableMap.of("experimental.query-result-caching-enabled", "true"),
+                null,
+                null,
+                new SqlParserOptions(),
+                ImmutableList.of());
+        server.installPlugin(new TpchPlugin());
+        server.createCatalog("tpch", "tpch");
+        client = new JettyHttpClient();
+        queryResultCache = server.getInstance(Key.get(QueryResultCache.class));
+    }
+
+    @AfterClass(alwaysRun = true)
+    public void teardown()
+    {
+        closeQuietly(server);
+        closeQuietly(client);
+        server = null;
+        client = null;
+        queryResultCache = null;
+    }
+
+    @Test
+    public void testCacheHit()
+    {
+        QueryResult first = execute(QUERY, "user", true);
+        assertTrue(getQueryInfo(first).getOutputStage().isPresent());
+        assertEquals(first.getData().size(), 5);
+        assertEquals(queryResultCache.getMissCount(), 1);
+        assertEquals(queryResultCache.getEntryCount(), 1);
+
+        // the repeated query is served from the cache without scheduling any stage
+        QueryResult second = execute(QUERY, "user", true);
+        assertFalse(getQueryInfo(second).getOutputStage().isPresent());
+        assertEquals(queryResultCache.getHitCount(), 1);
+        assertEquals(second.getColumnNames(), first.getColumnNames());
+        assertEquals(second.getData(), first.getData());
+
+        // another user does not share the result
+        execute(QUERY, "other_user", true);
+        assertEquals(queryResultCache.getHitCount(), 1);
+        assertEquals(queryResultCache.getMissCount(), 2);
+
+        // the session property turns the cache off
+        QueryResult uncached = execute(QUERY, "user", false);
+        assertTrue(getQueryInfo(uncached).getOutputStage().isPresent());
+        assertEquals(uncached.getData(), first.getData());
+        assertEquals(queryResultCache.getHitCount(), 1);
+        assertEquals(queryResultCache.getMissCount(), 2);
+    }
+
+    private QueryInfo getQueryInfo(QueryResult result)
+    {
+        return server.getQueryManager().getFullQueryInfo(new QueryId(result.getQueryId()));
+    }
+
+    private QueryResult execute(String sql, String user, boolean cachingEnabled)
+    {
+        Request request = preparePost()
+                .setUri(server.resolve("/v1/statement"))
+                .setBodyGenerator(createStaticBodyGenerator(sql, UTF_8))
+                .setHeader(PRESTO_USER, user)
+                .setHeader(PRESTO_SESSION, QUERY_RESULT_CACHING_ENABLED + "=" + cachingEnabled)
+                .build();
+        QueryResults queryResults = client.execute(request, createJsonResponseHandler(QUERY_RESULTS_CODEC));
+
+        ImmutableList.Builder<List<Object>> data = ImmutableList.builder();
+        ImmutableList.Builder<String> columnNames = ImmutableList.builder();
+        boolean hasColumns = false;
+        while (true) {
+            if (!hasColumns && queryResults.getColumns() != null) {
+                queryResults.getColumns().stream().map(Column::getName).forEach(columnNames::add);
+                hasColumns = true;
+            }
+            if (queryResults.getData() != null) {
+                data.addAll(queryResults.getData());
+            }
+            if (queryResults.getNextUri() == null) {
+                break;
+            }
+            queryResults = client.execute(prepareGet().setUri(queryResults.getNextUri()).build(), createJsonResponseHandler(QUERY_RESULTS_CODEC));
+        }
+        assertNull(queryResults.getError());
+        return new QueryResult(queryResults.getId(), columnNames.build(), data.build());
+    }
+
+    private static class QueryResult
+    {
+        private final String queryId;
+        private final List<String> columnNames;
+        private final List<List<Object>> data;
+
+        public QueryResult(String queryId, List<String> columnNames, List<List<Object>> data)
+        {
+            this.queryId = queryId;
+            this.columnNames = columnNames;
+            this.data = data;
+        }
+
+        public String getQueryId()
+        {
+            return queryId;
+        }
+
+        public List<String> getColumnNames()
+        {
+            return columnNames;
+        }
+
+        public List<List<Object>> getData()
+        {
+            return data;
+        }
+    }
+}
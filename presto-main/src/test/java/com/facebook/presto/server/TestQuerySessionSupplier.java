@@ -19,6 +19,7 @@ import com.facebook.presto.execution.warnings.WarningCollectorFactory;
 import com.facebook.presto.execution.warnings.WarningHandlingLevel;
 import com.facebook.presto.metadata.SessionPropertyManager;
 import com.facebook.presto.security.AllowAllAccessControl;
+import com.facebook.presto.spi.PrestoException;
 import com.facebook.presto.spi.QueryId;
 import com.facebook.presto.spi.WarningCollector;
 import com.facebook.presto.spi.function.SqlFunctionId;
@@ -38,6 +39,7 @@ import static com.facebook.airlift.json.JsonCodec.jsonCodec;
 import static com.facebook.presto.SystemSessionProperties.HASH_PARTITION_COUNT;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
 import static com.facebook.presto.SystemSessionProperties.QUERY_MAX_MEMORY;
+import static com.facebook.presto.SystemSessionProperties.RESOURCE_GROUP;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CATALOG;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLIENT_INFO;
 import static com.facebook.presto.client.PrestoHeaders.PRESTO_CLIENT_TAGS;
@@ -168,4 +170,22 @@ public class TestQuerySessionSupplier
         };
         sessionSupplier.createSession(new QueryId("test_query_id"), context, warningCollectorFactory);
     }
+
+    @Test(expectedExceptions = PrestoException.class, expectedExceptionsMessageRegExp = "Session property resource_group cannot be set by the client")
+    public void testResourceGroupSetByClient()
+    {
+        HttpServletRequest request = new MockHttpServletRequest(
+                ImmutableListMultimap.<String, String>builder()
+                        .put(PRESTO_USER, "testUser")
+                        .put(PRESTO_SESSION, RESOURCE_GROUP + "=global.adhoc")
+                        .build(),
+                "testRemote");
+        HttpRequestSessionContext context = new HttpRequestSessionContext(request, new SqlParserOptions());
+        QuerySessionSupplier sessionSupplier = new QuerySessionSupplier(
+                createTestTransactionManager(),
+                new AllowAllAccessControl(),
+                new SessionPropertyManager(),
+                new SqlEnvironmentConfig());
+        sessionSupplier.createSession(new QueryId("test_query_id"), context, warningHandlingLevel -> WarningCollector.NOOP);
+    }
 }
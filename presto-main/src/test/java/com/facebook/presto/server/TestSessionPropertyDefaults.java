@@ -30,6 +30,7 @@ import java.util.Optional;
 import static com.facebook.presto.SystemSessionProperties.HASH_PARTITION_COUNT;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
 import static com.facebook.presto.SystemSessionProperties.QUERY_MAX_MEMORY;
+import static com.facebook.presto.SystemSessionProperties.RESOURCE_GROUP;
 import static org.testng.Assert.assertEquals;
 
 public class TestSessionPropertyDefaults
@@ -89,6 +90,7 @@ public class TestSessionPropertyDefaults
                 .put(HASH_PARTITION_COUNT, "43")
                 .put("system_default", "system_default")
                 .put("override", "overridden")
+                .put(RESOURCE_GROUP, "test")
                 .build());
         assertEquals(
                 session.getUnprocessedCatalogProperties(),
@@ -99,4 +101,20 @@ public class TestSessionPropertyDefaults
                                 .put("catalog_default", "catalog_default")
                                 .build()));
     }
+
+    @Test
+    public void testResourceGroupWithoutConfigurationManager()
+    {
+        SessionPropertyDefaults sessionPropertyDefaults = new SessionPropertyDefaults(TEST_NODE_INFO);
+        Session session = Session.builder(new SessionPropertyManager())
+                .setQueryId(new QueryId("test_query_id"))
+                .setIdentity(new Identity("testUser", Optional.empty()))
+                .setSystemProperty(QUERY_MAX_MEMORY, "1GB")
+                .setSystemProperty(RESOURCE_GROUP, "spoofed")
+                .build();
+
+        // the resource group selected for the query is set even without a session property manager
+        Session sessionWithResourceGroup = sessionPropertyDefaults.newSessionWithDefaultProperties(session, Optional.empty(), Optional.of(TEST_RESOURCE_GROUP_ID));
+        assertEquals(sessionWithResourceGroup.getSystemProperties(), ImmutableMap.of(QUERY_MAX_MEMORY, "1GB", RESOURCE_GROUP, "test"));
+    }
 }
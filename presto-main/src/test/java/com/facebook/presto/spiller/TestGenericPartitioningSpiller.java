@@ -20,6 +20,7 @@ import com.facebook.presto.common.block.BlockEncodingManager;
 import com.facebook.presto.common.block.BlockEncodingSerde;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.memory.context.AggregatedMemoryContext;
+import com.facebook.presto.operator.DummyPartitioningSpillerFactory;
 import com.facebook.presto.operator.PartitionFunction;
 import com.facebook.presto.operator.SpillContext;
 import com.facebook.presto.operator.TestingOperatorContext;
@@ -28,6 +29,7 @@ import com.facebook.presto.sql.analyzer.FeaturesConfig;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.io.Closer;
+import com.google.common.util.concurrent.ListenableFuture;
 import org.testng.annotations.AfterClass;
 import org.testng.annotations.BeforeClass;
 import org.testng.annotations.Test;
@@ -49,8 +51,11 @@ import static com.google.common.io.MoreFiles.deleteRecursively;
 import static com.google.common.io.RecursiveDeleteOption.ALLOW_INSECURE;
 import static java.lang.Math.toIntExact;
 import static java.nio.file.Files.createTempDirectory;
+import static java.util.Collections.nCopies;
 import static java.util.concurrent.Executors.newSingleThreadScheduledExecutor;
 import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 import static org.testng.Assert.fail;
 
 public class TestGenericPartitioningSpiller
@@ -199,6 +204,28 @@ public class TestGenericPartitioningSpiller
         assertEquals(memoryContext.getBytes(), 0, "Reserved bytes should be zeroed after spiller is closed");
     }
 
+    @Test
+    public void testSpillPages()
+    {
+        List<Type> types = ImmutableList.of(BIGINT);
+        Page page = SequencePageBuilder.createSequencePage(types, 4, 0);
+        DummyPartitioningSpillerFactory spillerFactory = new DummyPartitioningSpillerFactory();
+        PartitioningSpiller spiller = spillerFactory.create(types, new ModuloPartitionFunction(0, 4), mockSpillContext(), mockMemoryContext(scheduledExecutor));
+
+        // the next page is only spilled once spilling of the previous one is finished
+        spillerFactory.block();
+        ListenableFuture<?> future = spiller.spill(nCopies(3, page).iterator());
+        assertFalse(future.isDone());
+        assertEquals(spillerFactory.getSpillsCount(), 1);
+        spillerFactory.unblock();
+        assertTrue(future.isDone());
+        assertEquals(spillerFactory.getSpillsCount(), 3);
+
+        // pages spilled without waiting must not nest a future per page
+        getFutureValue(spiller.spill(nCopies(100_000, page).iterator()));
+        assertEquals(spillerFactory.getSpillsCount(), 100_003);
+    }
+
     private void assertSpilledPages(
             List<Type> types,
             PartitioningSpiller spiller,
@@ -14,6 +14,7 @@
 package com.facebook.presto.spiller;
 
 import com.facebook.airlift.configuration.testing.ConfigAssertions;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.google.common.collect.ImmutableMap;
 import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
@@ -36,6 +37,7 @@ public class TestNodeSpillConfig
                 .setMaxRevocableMemoryPerNode(new DataSize(16, GIGABYTE))
                 .setQueryMaxSpillPerNode(new DataSize(100, GIGABYTE))
                 .setSpillCompressionEnabled(false)
+                .setSpillCompressionCodec(CompressionCodec.LZ4)
                 .setSpillEncryptionEnabled(false)
                 .setTempStorageBufferSize(new DataSize(4, KILOBYTE)));
     }
@@ -48,6 +50,7 @@ public class TestNodeSpillConfig
                 .put("experimental.max-revocable-memory-per-node", "24MB")
                 .put("experimental.query-max-spill-per-node", "15 MB")
                 .put("experimental.spill-compression-enabled", "true")
+                .put("experimental.spill-compression-codec", "SNAPPY")
                 .put("experimental.spill-encryption-enabled", "true")
                 .put("experimental.temp-storage-buffer-size", "24MB")
                 .build();
@@ -57,6 +60,7 @@ public class TestNodeSpillConfig
                 .setMaxRevocableMemoryPerNode(new DataSize(24, MEGABYTE))
                 .setQueryMaxSpillPerNode(new DataSize(15, MEGABYTE))
                 .setSpillCompressionEnabled(true)
+                .setSpillCompressionCodec(CompressionCodec.SNAPPY)
                 .setSpillEncryptionEnabled(true)
                 .setTempStorageBufferSize(new DataSize(24, MEGABYTE));
 
@@ -15,6 +15,7 @@ package com.facebook.presto.sql.analyzer;
 
 import com.facebook.airlift.configuration.ConfigurationFactory;
 import com.facebook.airlift.configuration.testing.ConfigAssertions;
+import com.facebook.presto.execution.buffer.CompressionCodec;
 import com.facebook.presto.operator.aggregation.arrayagg.ArrayAggGroupImplementation;
 import com.facebook.presto.operator.aggregation.histogram.HistogramGroupImplementation;
 import com.facebook.presto.operator.aggregation.multimapagg.MultimapAggGroupImplementation;
@@ -44,6 +45,7 @@ import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrate
 import static com.facebook.presto.sql.analyzer.FeaturesConfig.TaskSpillingStrategy.PER_TASK_MEMORY_THRESHOLD;
 import static com.facebook.presto.sql.analyzer.RegexLibrary.JONI;
 import static com.facebook.presto.sql.analyzer.RegexLibrary.RE2J;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static io.airlift.units.DataSize.Unit.GIGABYTE;
 import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static io.airlift.units.DataSize.Unit.MEGABYTE;
@@ -69,6 +71,7 @@ public class TestFeaturesConfig
                 .setMaxStageRetries(0)
                 .setConcurrentLifespansPerTask(0)
                 .setFastInequalityJoins(true)
+                .setJoinOffHeapHashTableEnabled(false)
                 .setColocatedJoinsEnabled(true)
                 .setSpatialJoinsEnabled(true)
                 .setJoinReorderingStrategy(JoinReorderingStrategy.AUTOMATIC)
@@ -86,6 +89,10 @@ public class TestFeaturesConfig
                 .setOptimizeHashGeneration(true)
                 .setPushTableWriteThroughUnion(true)
                 .setDictionaryAggregation(false)
+                .setAdaptivePartialAggregationEnabled(false)
+                .setAdaptivePartialAggregationMinRows(100_000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.8)
+                .setLockFreeLocalExchangeEnabled(false)
                 .setAggregationPartitioningMergingStrategy(LEGACY)
                 .setLegacyArrayAgg(false)
                 .setUseAlternativeFunctionSignatures(false)
@@ -105,7 +112,12 @@ public class TestFeaturesConfig
                 .setOrderByAggregationSpillEnabled(true)
                 .setWindowSpillEnabled(true)
                 .setOrderBySpillEnabled(true)
+                .setTopNRowNumberSpillEnabled(true)
+                .setMarkDistinctSpillEnabled(true)
+                .setDistinctLimitSpillEnabled(true)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("4MB"))
+                .setNestedLoopJoinSpillBlockSize(DataSize.valueOf("16MB"))
+                .setSpillPartitionCount(16)
                 .setSpillerSpillPaths("")
                 .setSpillerThreads(4)
                 .setSpillMaxUsedSpaceThreshold(0.9)
@@ -125,7 +137,9 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(100)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(10, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(0)
+                .setDynamicFilteringBloomFilterSize(new DataSize(0, BYTE))
                 .setFragmentResultCachingEnabled(false)
+                .setQueryResultCachingEnabled(false)
                 .setEnableStatsCalculator(true)
                 .setEnableStatsCollectionForTemporaryTable(false)
                 .setIgnoreStatsCalculatorFailures(true)
@@ -133,6 +147,9 @@ public class TestFeaturesConfig
                 .setDefaultFilterFactorEnabled(false)
                 .setExchangeCompressionEnabled(false)
                 .setExchangeChecksumEnabled(false)
+                .setExchangeCompressionCodec(CompressionCodec.LZ4)
+                .setExchangeZstdCompressionLevel(3)
+                .setExchangeAdaptiveCompressionEnabled(false)
                 .setLegacyTimestamp(true)
                 .setLegacyRowFieldOrdinalAccess(false)
                 .setLegacyCharToVarcharCoercion(false)
@@ -165,6 +182,7 @@ public class TestFeaturesConfig
                 .setTableWriterMergeOperatorEnabled(true)
                 .setIndexLoaderTimeout(new Duration(20, SECONDS))
                 .setOptimizedRepartitioningEnabled(false)
+                .setOptimizedRepartitioningPreserveDictionaries(false)
                 .setListBuiltInFunctionsOnly(true)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.AUTOMATIC)
                 .setExperimentalFunctionsEnabled(false)
@@ -183,6 +201,7 @@ public class TestFeaturesConfig
                 .setLogFormattedQueryEnabled(false)
                 .setSpoolingOutputBufferEnabled(false)
                 .setSpoolingOutputBufferThreshold(new DataSize(8, MEGABYTE))
+                .setSpoolingOutputBufferPrefetchSize(new DataSize(0, MEGABYTE))
                 .setSpoolingOutputBufferTempStorage("local")
                 .setPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled(false)
                 .setPartialResultsEnabled(false)
@@ -219,7 +238,9 @@ public class TestFeaturesConfig
                 .put("experimental.dynamic-filtering-max-per-driver-row-count", "256")
                 .put("experimental.dynamic-filtering-max-per-driver-size", "64kB")
                 .put("experimental.dynamic-filtering-range-row-limit-per-driver", "1000")
+                .put("experimental.dynamic-filtering-bloom-filter-size", "1MB")
                 .put("experimental.fragment-result-caching-enabled", "true")
+                .put("experimental.query-result-caching-enabled", "true")
                 .put("experimental.enable-stats-calculator", "false")
                 .put("experimental.enable-stats-collection-for-temporary-table", "true")
                 .put("optimizer.ignore-stats-calculator-failures", "false")
@@ -244,6 +265,7 @@ public class TestFeaturesConfig
                 .put("max-stage-retries", "10")
                 .put("concurrent-lifespans-per-task", "1")
                 .put("fast-inequality-joins", "false")
+                .put("experimental.join-off-heap-hash-table-enabled", "true")
                 .put("colocated-joins-enabled", "false")
                 .put("spatial-joins-enabled", "false")
                 .put("optimizer.join-reordering-strategy", "NONE")
@@ -262,6 +284,10 @@ public class TestFeaturesConfig
                 .put("optimizer.optimize-mixed-distinct-aggregations", "true")
                 .put("optimizer.push-table-write-through-union", "false")
                 .put("optimizer.dictionary-aggregation", "true")
+                .put("experimental.adaptive-partial-aggregation-enabled", "true")
+                .put("experimental.adaptive-partial-aggregation-min-rows", "1000")
+                .put("experimental.adaptive-partial-aggregation-unique-rows-ratio-threshold", "0.5")
+                .put("experimental.lock-free-local-exchange-enabled", "true")
                 .put("optimizer.push-aggregation-through-join", "false")
                 .put("optimizer.aggregation-partition-merging", "top_down")
                 .put("regex-library", "RE2J")
@@ -277,7 +303,12 @@ public class TestFeaturesConfig
                 .put("experimental.order-by-aggregation-spill-enabled", "false")
                 .put("experimental.window-spill-enabled", "false")
                 .put("experimental.order-by-spill-enabled", "false")
+                .put("experimental.topn-row-number-spill-enabled", "false")
+                .put("experimental.mark-distinct-spill-enabled", "false")
+                .put("experimental.distinct-limit-spill-enabled", "false")
                 .put("experimental.aggregation-operator-unspill-memory-limit", "100MB")
+                .put("experimental.nested-loop-join-spill-block-size", "64MB")
+                .put("experimental.spill-partition-count", "32")
                 .put("experimental.spiller-spill-path", "/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .put("experimental.spiller-threads", "42")
                 .put("experimental.spiller-max-used-space-threshold", "0.8")
@@ -290,6 +321,9 @@ public class TestFeaturesConfig
                 .put("experimental.spiller.max-revocable-task-memory", "1GB")
                 .put("exchange.compression-enabled", "true")
                 .put("exchange.checksum-enabled", "true")
+                .put("exchange.compression-codec", "ZSTD")
+                .put("exchange.zstd-compression-level", "6")
+                .put("exchange.adaptive-compression-enabled", "true")
                 .put("deprecated.legacy-timestamp", "false")
                 .put("optimizer.enable-intermediate-aggregations", "true")
                 .put("parse-decimal-literals-as-double", "true")
@@ -318,6 +352,7 @@ public class TestFeaturesConfig
                 .put("experimental.table-writer-merge-operator-enabled", "false")
                 .put("index-loader-timeout", "10s")
                 .put("experimental.optimized-repartitioning", "true")
+                .put("experimental.optimized-repartitioning-preserve-dictionaries", "true")
                 .put("list-built-in-functions-only", "false")
                 .put("partitioning-precision-strategy", "PREFER_EXACT_PARTITIONING")
                 .put("experimental-functions-enabled", "true")
@@ -336,6 +371,7 @@ public class TestFeaturesConfig
                 .put("log-formatted-query-enabled", "true")
                 .put("spooling-output-buffer-enabled", "true")
                 .put("spooling-output-buffer-threshold", "16MB")
+                .put("spooling-output-buffer-prefetch-size", "32MB")
                 .put("spooling-output-buffer-temp-storage", "tempfs")
                 .put("spark.assign-bucket-to-partition-for-partitioned-table-write-enabled", "true")
                 .put("partial-results-enabled", "true")
@@ -369,7 +405,9 @@ public class TestFeaturesConfig
                 .setDynamicFilteringMaxPerDriverRowCount(256)
                 .setDynamicFilteringMaxPerDriverSize(new DataSize(64, KILOBYTE))
                 .setDynamicFilteringRangeRowLimitPerDriver(1000)
+                .setDynamicFilteringBloomFilterSize(new DataSize(1, MEGABYTE))
                 .setFragmentResultCachingEnabled(true)
+                .setQueryResultCachingEnabled(true)
                 .setEnableStatsCalculator(false)
                 .setEnableStatsCollectionForTemporaryTable(true)
                 .setIgnoreStatsCalculatorFailures(false)
@@ -384,6 +422,7 @@ public class TestFeaturesConfig
                 .setMaxStageRetries(10)
                 .setConcurrentLifespansPerTask(1)
                 .setFastInequalityJoins(false)
+                .setJoinOffHeapHashTableEnabled(true)
                 .setColocatedJoinsEnabled(false)
                 .setSpatialJoinsEnabled(false)
                 .setJoinReorderingStrategy(NONE)
@@ -402,6 +441,10 @@ public class TestFeaturesConfig
                 .setOptimizeMixedDistinctAggregations(true)
                 .setPushTableWriteThroughUnion(false)
                 .setDictionaryAggregation(true)
+                .setAdaptivePartialAggregationEnabled(true)
+                .setAdaptivePartialAggregationMinRows(1000)
+                .setAdaptivePartialAggregationUniqueRowsRatioThreshold(0.5)
+                .setLockFreeLocalExchangeEnabled(true)
                 .setAggregationPartitioningMergingStrategy(TOP_DOWN)
                 .setPushAggregationThroughJoin(false)
                 .setLegacyArrayAgg(true)
@@ -422,7 +465,12 @@ public class TestFeaturesConfig
                 .setOrderByAggregationSpillEnabled(false)
                 .setWindowSpillEnabled(false)
                 .setOrderBySpillEnabled(false)
+                .setTopNRowNumberSpillEnabled(false)
+                .setMarkDistinctSpillEnabled(false)
+                .setDistinctLimitSpillEnabled(false)
                 .setAggregationOperatorUnspillMemoryLimit(DataSize.valueOf("100MB"))
+                .setNestedLoopJoinSpillBlockSize(DataSize.valueOf("64MB"))
+                .setSpillPartitionCount(32)
                 .setSpillerSpillPaths("/tmp/custom/spill/path1,/tmp/custom/spill/path2")
                 .setSpillerThreads(42)
                 .setSpillMaxUsedSpaceThreshold(0.8)
@@ -436,6 +484,9 @@ public class TestFeaturesConfig
                 .setLegacyLogFunction(true)
                 .setExchangeCompressionEnabled(true)
                 .setExchangeChecksumEnabled(true)
+                .setExchangeCompressionCodec(CompressionCodec.ZSTD)
+                .setExchangeZstdCompressionLevel(6)
+                .setExchangeAdaptiveCompressionEnabled(true)
                 .setLegacyTimestamp(false)
                 .setLegacyRowFieldOrdinalAccess(true)
                 .setLegacyCharToVarcharCoercion(true)
@@ -468,6 +519,7 @@ public class TestFeaturesConfig
                 .setTableWriterMergeOperatorEnabled(false)
                 .setIndexLoaderTimeout(new Duration(10, SECONDS))
                 .setOptimizedRepartitioningEnabled(true)
+                .setOptimizedRepartitioningPreserveDictionaries(true)
                 .setListBuiltInFunctionsOnly(false)
                 .setPartitioningPrecisionStrategy(PartitioningPrecisionStrategy.PREFER_EXACT_PARTITIONING)
                 .setExperimentalFunctionsEnabled(true)
@@ -487,6 +539,7 @@ public class TestFeaturesConfig
                 .setLogFormattedQueryEnabled(true)
                 .setSpoolingOutputBufferEnabled(true)
                 .setSpoolingOutputBufferThreshold(new DataSize(16, MEGABYTE))
+                .setSpoolingOutputBufferPrefetchSize(new DataSize(32, MEGABYTE))
                 .setSpoolingOutputBufferTempStorage("tempfs")
                 .setPrestoSparkAssignBucketToPartitionForPartitionedTableWriteEnabled(true)
                 .setPartialResultsEnabled(true)
@@ -15,9 +15,11 @@
 package com.facebook.presto.sql.planner;
 
 import com.facebook.presto.Session;
+import com.facebook.presto.common.block.Block;
 import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.expressions.DynamicFilters.DynamicFilterPlaceholder;
+import com.facebook.presto.operator.DynamicFilterBloomFilter;
 import com.facebook.presto.spi.relation.VariableReferenceExpression;
 import com.facebook.presto.sql.planner.assertions.BasePlanTest;
 import com.facebook.presto.sql.planner.optimizations.PlanNodeSearcher;
@@ -25,8 +27,10 @@ import com.facebook.presto.sql.planner.plan.JoinNode;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.ImmutableMultimap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Iterables;
 import com.google.common.util.concurrent.ListenableFuture;
+import io.airlift.units.DataSize;
 import org.testng.annotations.Test;
 
 import java.util.List;
@@ -39,12 +43,16 @@ import java.util.function.Consumer;
 import static com.facebook.presto.SystemSessionProperties.ENABLE_DYNAMIC_FILTERING;
 import static com.facebook.presto.SystemSessionProperties.FORCE_SINGLE_NODE_OUTPUT;
 import static com.facebook.presto.SystemSessionProperties.JOIN_DISTRIBUTION_TYPE;
+import static com.facebook.presto.block.BlockAssertions.createIntsBlock;
 import static com.facebook.presto.common.function.OperatorType.EQUAL;
+import static com.facebook.presto.common.function.OperatorType.GREATER_THAN;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.testing.assertions.Assert.assertEquals;
 import static com.google.common.collect.ImmutableList.toImmutableList;
+import static io.airlift.units.DataSize.Unit.KILOBYTE;
 import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertTrue;
 
 public class TestLocalDynamicFilter
         extends BasePlanTest
@@ -122,6 +130,48 @@ public class TestLocalDynamicFilter
                 new VariableReferenceExpression(Optional.empty(), "a", INTEGER), Domain.multipleValues(INTEGER, ImmutableList.of(10L, 20L)))));
     }
 
+    @Test
+    public void testBloomFilterPartitions()
+            throws ExecutionException, InterruptedException
+    {
+        VariableReferenceExpression equalVariable = new VariableReferenceExpression(Optional.empty(), "a", INTEGER);
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of(
+                        "123", new DynamicFilterPlaceholder("123", equalVariable, EQUAL),
+                        "123", new DynamicFilterPlaceholder("123", new VariableReferenceExpression(Optional.empty(), "b", INTEGER), GREATER_THAN)),
+                ImmutableMap.of("123", 0),
+                2);
+        Consumer<Map<String, DynamicFilterBloomFilter>> consumer = filter.getBloomFilterConsumer();
+        ListenableFuture<Map<VariableReferenceExpression, DynamicFilterBloomFilter>> result = filter.getBloomFilterResultFuture();
+
+        assertFalse(result.isDone());
+        consumer.accept(ImmutableMap.of("123", createBloomFilter(10)));
+        assertFalse(result.isDone());
+        consumer.accept(ImmutableMap.of("123", createBloomFilter(20)));
+
+        // only the equality comparison can be filtered with a bloom filter
+        Map<VariableReferenceExpression, DynamicFilterBloomFilter> bloomFilters = result.get();
+        assertEquals(bloomFilters.keySet(), ImmutableSet.of(equalVariable));
+        Block values = createIntsBlock(10, 20);
+        assertTrue(bloomFilters.get(equalVariable).mightContain(values, 0));
+        assertTrue(bloomFilters.get(equalVariable).mightContain(values, 1));
+    }
+
+    @Test
+    public void testBloomFilterMissingInPartition()
+            throws ExecutionException, InterruptedException
+    {
+        LocalDynamicFilter filter = new LocalDynamicFilter(
+                ImmutableMultimap.of("123", new DynamicFilterPlaceholder("123", new VariableReferenceExpression(Optional.empty(), "a", INTEGER), EQUAL)),
+                ImmutableMap.of("123", 0),
+                2);
+        Consumer<Map<String, DynamicFilterBloomFilter>> consumer = filter.getBloomFilterConsumer();
+        consumer.accept(ImmutableMap.of("123", createBloomFilter(10)));
+        // the second partition had too many values for a bloom filter
+        consumer.accept(ImmutableMap.of());
+        assertEquals(filter.getBloomFilterResultFuture().get(), ImmutableMap.of());
+    }
+
     @Test
     public void testNone()
             throws ExecutionException, InterruptedException
@@ -308,4 +358,11 @@ public class TestLocalDynamicFilter
                 .searchFrom(fragment.getRoot())
                 .where(node -> node instanceof JoinNode);
     }
+
+    private static DynamicFilterBloomFilter createBloomFilter(int value)
+    {
+        DynamicFilterBloomFilter bloomFilter = new DynamicFilterBloomFilter(INTEGER, new DataSize(1, KILOBYTE));
+        bloomFilter.add(createIntsBlock(value), 0);
+        return bloomFilter;
+    }
 }
@@ -54,6 +54,7 @@ import java.util.Map;
 import java.util.Optional;
 import java.util.OptionalInt;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.stream.Collectors;
 
 import static com.facebook.presto.orc.AbstractOrcRecordReader.LinearProbeRangeFinder.createTinyStripesRangeFinder;
@@ -79,6 +80,9 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
     private static final int INSTANCE_SIZE = ClassLayout.parseClass(AbstractOrcRecordReader.class).instanceSize();
 
     private final OrcDataSource orcDataSource;
+    private final Optional<ReadAheadOrcDataSource> readAheadOrcDataSource;
+    // the footer of the next stripe is decompressed on the read ahead thread
+    private final Optional<OrcDecompressor> readAheadDecompressor;
 
     private final T[] streamReaders;
 
@@ -138,6 +142,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             long splitLength,
             List<OrcType> types,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             Optional<EncryptionLibrary> encryptionLibrary,
             Map<Integer, Integer> dwrfEncryptionGroupMap,
             Map<Integer, Slice> columnToIntermediateKeyMap,
@@ -148,6 +153,8 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             DataSize maxMergeDistance,
             DataSize tinyStripeThreshold,
             DataSize maxBlockSize,
+            DataSize maxReadAheadSize,
+            Optional<Executor> readAheadExecutor,
             Map<String, Slice> userMetadata,
             OrcAggregatedMemoryContext systemMemoryUsage,
             Optional<OrcWriteValidation> writeValidation,
@@ -164,6 +171,7 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         requireNonNull(orcDataSource, "orcDataSource is null");
         requireNonNull(types, "types is null");
         requireNonNull(decompressor, "decompressor is null");
+        this.readAheadDecompressor = requireNonNull(readAheadDecompressor, "readAheadDecompressor is null");
         requireNonNull(encryptionLibrary, "encryptionLibrary is null");
         requireNonNull(dwrfEncryptionGroupMap, "dwrfEncryptionGroupMap is null");
         requireNonNull(columnToIntermediateKeyMap, "columnToIntermediateKeyMap is null");
@@ -230,6 +238,20 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
         this.stripeFilePositions = stripeFilePositions.build();
 
         orcDataSource = wrapWithCacheIfTinyStripes(orcDataSource, this.stripes, maxMergeDistance, tinyStripeThreshold, systemMemoryUsage);
+        // tiny stripes are already read together by the caching data source
+        if (readAheadExecutor.isPresent() && maxReadAheadSize.toBytes() > 0 && this.stripes.size() > 1 && !(orcDataSource instanceof CachingOrcDataSource)) {
+            ReadAheadOrcDataSource readAheadOrcDataSource = new ReadAheadOrcDataSource(
+                    orcDataSource,
+                    readAheadExecutor.get(),
+                    maxMergeDistance,
+                    maxReadAheadSize,
+                    systemMemoryUsage.newOrcLocalMemoryContext(ReadAheadOrcDataSource.class.getSimpleName()));
+            this.readAheadOrcDataSource = Optional.of(readAheadOrcDataSource);
+            orcDataSource = readAheadOrcDataSource;
+        }
+        else {
+            this.readAheadOrcDataSource = Optional.empty();
+        }
         this.orcDataSource = orcDataSource;
         this.splitLength = splitLength;
 
@@ -675,6 +697,26 @@ abstract class AbstractOrcRecordReader<T extends StreamReader>
             rowGroups = stripe.getRowGroups().iterator();
         }
         fileIntrospector.ifPresent(introspector -> introspector.onStripe(stripeInformation, stripe));
+
+        readAheadNextStripe();
+    }
+
+    private void readAheadNextStripe()
+            throws IOException
+    {
+        if (!readAheadOrcDataSource.isPresent()) {
+            return;
+        }
+        if (currentStripe + 1 >= stripes.size()) {
+            readAheadOrcDataSource.get().stopReadAhead();
+            return;
+        }
+
+        // the footer is read in the background too, and gives the streams of the included columns
+        StripeInformation stripe = stripes.get(currentStripe + 1);
+        DiskRange stripeRange = new DiskRange(stripe.getOffset(), toIntExact(stripe.getTotalLength()));
+        DiskRange footerRange = new DiskRange(stripe.getOffset() + stripe.getIndexLength() + stripe.getDataLength(), toIntExact(stripe.getFooterLength()));
+        readAheadOrcDataSource.get().readAhead(stripeRange, footerRange, footer -> stripeReader.getStripeDiskRanges(stripe, footer, readAheadDecompressor));
     }
 
     @VisibleForTesting
@@ -54,6 +54,7 @@ public class OrcBatchRecordReader
             long splitLength,
             List<OrcType> types,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             Optional<EncryptionLibrary> encryptionLibrary,
             Map<Integer, Integer> dwrfEncryptionGroupMap,
             Map<Integer, Slice> intermediateKeyMetadata,
@@ -90,6 +91,7 @@ public class OrcBatchRecordReader
                 splitLength,
                 types,
                 decompressor,
+                readAheadDecompressor,
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 intermediateKeyMetadata,
@@ -100,6 +102,8 @@ public class OrcBatchRecordReader
                 options.getMaxMergeDistance(),
                 options.getTinyStripeThreshold(),
                 options.getMaxBlockSize(),
+                options.getMaxReadAheadSize(),
+                options.getReadAheadExecutor(),
                 userMetadata,
                 systemMemoryUsage,
                 writeValidation,
@@ -350,6 +350,7 @@ public class OrcReader
                 length,
                 footer.getTypes(),
                 decompressor,
+                createReadAheadDecompressor(),
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 columnsToIntermediateKeys,
@@ -404,6 +405,7 @@ public class OrcReader
                 length,
                 footer.getTypes(),
                 decompressor,
+                createReadAheadDecompressor(),
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 columnsToIntermediateKeys,
@@ -423,6 +425,15 @@ public class OrcReader
                 fileIntrospector);
     }
 
+    private Optional<OrcDecompressor> createReadAheadDecompressor()
+    {
+        // the read ahead decompresses stripe footers on another thread, and decompressors are not thread safe
+        if (!orcReaderOptions.getReadAheadExecutor().isPresent() || orcReaderOptions.getMaxReadAheadSize().toBytes() == 0) {
+            return Optional.empty();
+        }
+        return createOrcDecompressor(orcDataSource.getId(), compressionKind, bufferSize, orcReaderOptions.isOrcZstdJniDecompressionEnabled());
+    }
+
     private static OrcDataSource wrapWithCacheIfTiny(OrcDataSource dataSource, DataSize maxCacheSize, OrcAggregatedMemoryContext systemMemoryContext)
     {
         if (dataSource instanceof CachingOrcDataSource) {
@@ -15,7 +15,11 @@ package com.facebook.presto.orc;
 
 import io.airlift.units.DataSize;
 
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
 
 public class OrcReaderOptions
@@ -34,6 +38,13 @@ public class OrcReaderOptions
      */
     private final boolean readMapStatistics;
 
+    /**
+     * Read the next stripe in the background on the executor while the current one is decoded,
+     * buffering at most maxReadAheadSize. Disabled when there is no executor or the size is zero.
+     */
+    private final DataSize maxReadAheadSize;
+    private final Optional<Executor> readAheadExecutor;
+
     private OrcReaderOptions(
             DataSize maxMergeDistance,
             DataSize tinyStripeThreshold,
@@ -41,7 +52,9 @@ public class OrcReaderOptions
             boolean zstdJniDecompressionEnabled,
             boolean mapNullKeysEnabled,
             boolean appendRowNumber,
-            boolean readMapStatistics)
+            boolean readMapStatistics,
+            DataSize maxReadAheadSize,
+            Optional<Executor> readAheadExecutor)
     {
         this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
         this.maxBlockSize = requireNonNull(maxBlockSize, "maxBlockSize is null");
@@ -50,6 +63,8 @@ public class OrcReaderOptions
         this.mapNullKeysEnabled = mapNullKeysEnabled;
         this.appendRowNumber = appendRowNumber;
         this.readMapStatistics = readMapStatistics;
+        this.maxReadAheadSize = requireNonNull(maxReadAheadSize, "maxReadAheadSize is null");
+        this.readAheadExecutor = requireNonNull(readAheadExecutor, "readAheadExecutor is null");
     }
 
     public DataSize getMaxMergeDistance()
@@ -87,6 +102,16 @@ public class OrcReaderOptions
         return readMapStatistics;
     }
 
+    public DataSize getMaxReadAheadSize()
+    {
+        return maxReadAheadSize;
+    }
+
+    public Optional<Executor> getReadAheadExecutor()
+    {
+        return readAheadExecutor;
+    }
+
     @Override
     public String toString()
     {
@@ -98,6 +123,7 @@ public class OrcReaderOptions
                 .add("mapNullKeysEnabled", mapNullKeysEnabled)
                 .add("appendRowNumber", appendRowNumber)
                 .add("readMapStatistics", readMapStatistics)
+                .add("maxReadAheadSize", maxReadAheadSize)
                 .toString();
     }
 
@@ -115,6 +141,8 @@ public class OrcReaderOptions
         private boolean mapNullKeysEnabled;
         private boolean appendRowNumber;
         private boolean readMapStatistics;
+        private DataSize maxReadAheadSize = new DataSize(0, BYTE);
+        private Optional<Executor> readAheadExecutor = Optional.empty();
 
         private Builder() {}
 
@@ -160,6 +188,18 @@ public class OrcReaderOptions
             return this;
         }
 
+        public Builder withMaxReadAheadSize(DataSize maxReadAheadSize)
+        {
+            this.maxReadAheadSize = requireNonNull(maxReadAheadSize, "maxReadAheadSize is null");
+            return this;
+        }
+
+        public Builder withReadAheadExecutor(Executor readAheadExecutor)
+        {
+            this.readAheadExecutor = Optional.of(requireNonNull(readAheadExecutor, "readAheadExecutor is null"));
+            return this;
+        }
+
         public OrcReaderOptions build()
         {
             return new OrcReaderOptions(
@@ -169,7 +209,9 @@ public class OrcReaderOptions
                     zstdJniDecompressionEnabled,
                     mapNullKeysEnabled,
                     appendRowNumber,
-                    readMapStatistics);
+                    readMapStatistics,
+                    maxReadAheadSize,
+                    readAheadExecutor);
         }
     }
 }
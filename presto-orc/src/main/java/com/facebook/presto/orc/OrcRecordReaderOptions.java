@@ -15,6 +15,10 @@ package com.facebook.presto.orc;
 
 import io.airlift.units.DataSize;
 
+import java.util.Optional;
+import java.util.concurrent.Executor;
+
+import static io.airlift.units.DataSize.Unit.BYTE;
 import static java.util.Objects.requireNonNull;
 
 public class OrcRecordReaderOptions
@@ -24,10 +28,19 @@ public class OrcRecordReaderOptions
     private final DataSize maxBlockSize;
     private final boolean mapNullKeysEnabled;
     private final boolean appendRowNumber;
+    private final DataSize maxReadAheadSize;
+    private final Optional<Executor> readAheadExecutor;
 
     public OrcRecordReaderOptions(OrcReaderOptions options)
     {
-        this(options.getMaxMergeDistance(), options.getTinyStripeThreshold(), options.getMaxBlockSize(), options.mapNullKeysEnabled(), options.appendRowNumber());
+        this(
+                options.getMaxMergeDistance(),
+                options.getTinyStripeThreshold(),
+                options.getMaxBlockSize(),
+                options.mapNullKeysEnabled(),
+                options.appendRowNumber(),
+                options.getMaxReadAheadSize(),
+                options.getReadAheadExecutor());
     }
 
     public OrcRecordReaderOptions(
@@ -36,12 +49,26 @@ public class OrcRecordReaderOptions
             DataSize maxBlockSize,
             boolean mapNullKeysEnabled,
             boolean appendRowNumber)
+    {
+        this(maxMergeDistance, tinyStripeThreshold, maxBlockSize, mapNullKeysEnabled, appendRowNumber, new DataSize(0, BYTE), Optional.empty());
+    }
+
+    public OrcRecordReaderOptions(
+            DataSize maxMergeDistance,
+            DataSize tinyStripeThreshold,
+            DataSize maxBlockSize,
+            boolean mapNullKeysEnabled,
+            boolean appendRowNumber,
+            DataSize maxReadAheadSize,
+            Optional<Executor> readAheadExecutor)
     {
         this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
         this.maxBlockSize = requireNonNull(maxBlockSize, "maxBlockSize is null");
         this.tinyStripeThreshold = requireNonNull(tinyStripeThreshold, "tinyStripeThreshold is null");
         this.mapNullKeysEnabled = mapNullKeysEnabled;
         this.appendRowNumber = appendRowNumber;
+        this.maxReadAheadSize = requireNonNull(maxReadAheadSize, "maxReadAheadSize is null");
+        this.readAheadExecutor = requireNonNull(readAheadExecutor, "readAheadExecutor is null");
     }
 
     public DataSize getMaxMergeDistance()
@@ -68,4 +95,14 @@ public class OrcRecordReaderOptions
     {
         return appendRowNumber;
     }
+
+    public DataSize getMaxReadAheadSize()
+    {
+        return maxReadAheadSize;
+    }
+
+    public Optional<Executor> getReadAheadExecutor()
+    {
+        return readAheadExecutor;
+    }
 }
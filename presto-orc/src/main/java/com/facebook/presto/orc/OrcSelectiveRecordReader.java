@@ -172,6 +172,7 @@ public class OrcSelectiveRecordReader
             long length,
             List<OrcType> types,
             Optional<OrcDecompressor> decompressor,
+            Optional<OrcDecompressor> readAheadDecompressor,
             Optional<EncryptionLibrary> encryptionLibrary,
             Map<Integer, Integer> dwrfEncryptionGroupMap,
             Map<Integer, Slice> intermediateKeyMetadata,
@@ -215,6 +216,7 @@ public class OrcSelectiveRecordReader
                 length,
                 types,
                 decompressor,
+                readAheadDecompressor,
                 encryptionLibrary,
                 dwrfEncryptionGroupMap,
                 intermediateKeyMetadata,
@@ -225,6 +227,8 @@ public class OrcSelectiveRecordReader
                 options.getMaxMergeDistance(),
                 options.getTinyStripeThreshold(),
                 options.getMaxBlockSize(),
+                options.getMaxReadAheadSize(),
+                options.getReadAheadExecutor(),
                 userMetadata,
                 systemMemoryUsage,
                 writeValidation,
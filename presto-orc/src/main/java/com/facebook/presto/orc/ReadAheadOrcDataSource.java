@@ -0,0 +1,370 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.SettableFuture;
+import io.airlift.slice.Slice;
+import io.airlift.slice.Slices;
+import io.airlift.units.DataSize;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.facebook.presto.orc.OrcDataSourceUtils.mergeAdjacentDiskRanges;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.util.concurrent.Uninterruptibles.getUninterruptibly;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Reads the next stripe in the background, so it is fetched while the current one is decoded.
+ * <p>
+ * A read ahead is a single task, and it only starts after the one before it finished, so each reader has at most
+ * one read in flight. The task first reads the head range of the stripe (its footer), which tells the rest of the
+ * disk ranges to read. These are merged like the small ranges of {@link AbstractOrcDataSource}, and only as many
+ * merged ranges as fit in {@code maxReadAheadSize} are read. The whole {@code maxReadAheadSize} is accounted from the
+ * time the task is submitted until it finishes. The buffers of a stripe stay accounted until the stripe
+ * after it is opened, since the streams of the stripe keep referencing them. Reads that are not fully contained in a
+ * buffered range go to the underlying data source, which must support reads from more than one thread.
+ */
+public class ReadAheadOrcDataSource
+        implements OrcDataSource
+{
+    private final OrcDataSource dataSource;
+    private final Executor executor;
+    private final DataSize maxMergeDistance;
+    private final DataSize maxReadAheadSize;
+    private final OrcLocalMemoryContext systemMemoryContext;
+
+    // the stripe being decoded, whose buffers can still be referenced by its streams
+    private Optional<ReadAhead> current = Optional.empty();
+    // the stripe read in the background
+    private Optional<ReadAhead> next = Optional.empty();
+
+    public ReadAheadOrcDataSource(OrcDataSource dataSource, Executor executor, DataSize maxMergeDistance, DataSize maxReadAheadSize, OrcLocalMemoryContext systemMemoryContext)
+    {
+        this.dataSource = requireNonNull(dataSource, "dataSource is null");
+        this.executor = requireNonNull(executor, "executor is null");
+        this.maxMergeDistance = requireNonNull(maxMergeDistance, "maxMergeDistance is null");
+        this.maxReadAheadSize = requireNonNull(maxReadAheadSize, "maxReadAheadSize is null");
+        checkArgument(maxReadAheadSize.toBytes() > 0, "maxReadAheadSize must be positive");
+        this.systemMemoryContext = requireNonNull(systemMemoryContext, "systemMemoryContext is null");
+    }
+
+    @Override
+    public OrcDataSourceId getId()
+    {
+        return dataSource.getId();
+    }
+
+    @Override
+    public long getReadBytes()
+    {
+        return dataSource.getReadBytes();
+    }
+
+    @Override
+    public long getReadTimeNanos()
+    {
+        return dataSource.getReadTimeNanos();
+    }
+
+    @Override
+    public long getSize()
+    {
+        return dataSource.getSize();
+    }
+
+    /**
+     * Called after a stripe is opened. Releases the buffers of the stripe before it, and starts reading
+     * the stripe in {@code stripeRange} in the background. The task reads {@code headRange} and then the disk ranges
+     * returned by the loader for it.
+     */
+    public void readAhead(DiskRange stripeRange, DiskRange headRange, DiskRangesLoader diskRangesLoader)
+            throws InterruptedIOException
+    {
+        requireNonNull(stripeRange, "stripeRange is null");
+        requireNonNull(headRange, "headRange is null");
+        requireNonNull(diskRangesLoader, "diskRangesLoader is null");
+        checkArgument(stripeRange.contains(headRange), "stripeRange does not contain headRange");
+
+        advance();
+        if (current.isPresent()) {
+            // the read ahead of the stripe was usually consumed when the stripe was opened
+            current.get().getBuffers();
+        }
+        if (headRange.getLength() <= maxReadAheadSize.toBytes()) {
+            // the maximum size is reserved before the task starts, so the bytes it reads are accounted while they are read
+            ReadAhead readAhead = new ReadAhead(stripeRange, headRange, diskRangesLoader);
+            next = Optional.of(readAhead);
+            updateMemoryUsage();
+            try {
+                executor.execute(readAhead);
+            }
+            catch (RejectedExecutionException e) {
+                // the stripe is read when it is needed
+                next = Optional.empty();
+            }
+        }
+        updateMemoryUsage();
+    }
+
+    /**
+     * Called after the last stripe is opened. Releases the buffers of the stripe before it.
+     */
+    public void stopReadAhead()
+    {
+        advance();
+        updateMemoryUsage();
+    }
+
+    private void advance()
+    {
+        current.ifPresent(ReadAhead::release);
+        current = next;
+        next = Optional.empty();
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer)
+            throws IOException
+    {
+        readFully(position, buffer, 0, buffer.length);
+    }
+
+    @Override
+    public void readFully(long position, byte[] buffer, int bufferOffset, int length)
+            throws IOException
+    {
+        Slice slice = getBufferedSlice(new DiskRange(position, length));
+        if (slice != null) {
+            slice.getBytes(0, buffer, bufferOffset, length);
+            return;
+        }
+        dataSource.readFully(position, buffer, bufferOffset, length);
+    }
+
+    @Override
+    public <K> Map<K, OrcDataSourceInput> readFully(Map<K, DiskRange> diskRanges)
+            throws IOException
+    {
+        ImmutableMap.Builder<K, OrcDataSourceInput> inputs = ImmutableMap.builder();
+        Map<K, DiskRange> remainingRanges = new LinkedHashMap<>();
+        for (Map.Entry<K, DiskRange> entry : diskRanges.entrySet()) {
+            Slice slice = getBufferedSlice(entry.getValue());
+            if (slice != null) {
+                inputs.put(entry.getKey(), new OrcDataSourceInput(slice.getInput(), slice.length()));
+            }
+            else {
+                remainingRanges.put(entry.getKey(), entry.getValue());
+            }
+        }
+        if (!remainingRanges.isEmpty()) {
+            inputs.putAll(dataSource.readFully(remainingRanges));
+        }
+        return inputs.build();
+    }
+
+    private Slice getBufferedSlice(DiskRange diskRange)
+            throws InterruptedIOException
+    {
+        Slice slice = getBufferedSlice(current, diskRange);
+        if (slice == null) {
+            slice = getBufferedSlice(next, diskRange);
+        }
+        return slice;
+    }
+
+    private Slice getBufferedSlice(Optional<ReadAhead> readAhead, DiskRange diskRange)
+            throws InterruptedIOException
+    {
+        // only wait for the read ahead of the stripe that is read
+        if (!readAhead.isPresent() || !readAhead.get().getStripeRange().contains(diskRange)) {
+            return null;
+        }
+        Map<DiskRange, byte[]> buffers = readAhead.get().getBuffers();
+        updateMemoryUsage();
+        for (Map.Entry<DiskRange, byte[]> entry : buffers.entrySet()) {
+            DiskRange bufferRange = entry.getKey();
+            if (bufferRange.contains(diskRange)) {
+                int offset = toIntExact(diskRange.getOffset() - bufferRange.getOffset());
+                return Slices.wrappedBuffer(entry.getValue(), offset, diskRange.getLength());
+            }
+        }
+        return null;
+    }
+
+    private void updateMemoryUsage()
+    {
+        long bytes = 0;
+        if (current.isPresent()) {
+            bytes += current.get().getRetainedBytes();
+        }
+        if (next.isPresent()) {
+            bytes += next.get().getRetainedBytes();
+        }
+        systemMemoryContext.setBytes(bytes);
+    }
+
+    @Override
+    public void close()
+            throws IOException
+    {
+        // wait for the reads in flight, so the data source is not closed under them
+        current.ifPresent(ReadAhead::release);
+        next.ifPresent(ReadAhead::release);
+        current = Optional.empty();
+        next = Optional.empty();
+        systemMemoryContext.close();
+        dataSource.close();
+    }
+
+    @Override
+    public String toString()
+    {
+        return dataSource.toString();
+    }
+
+    public interface DiskRangesLoader
+    {
+        /**
+         * Returns the disk ranges to read after the head range. This is called from the read ahead thread.
+         */
+        List<DiskRange> getDiskRanges(Slice head)
+                throws IOException;
+    }
+
+    private class ReadAhead
+            implements Runnable
+    {
+        private final DiskRange stripeRange;
+        private final DiskRange headRange;
+        private final DiskRangesLoader diskRangesLoader;
+
+        // set by the task when it starts, or by the reader to drop a task that has not started
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final SettableFuture<Map<DiskRange, byte[]>> buffers = SettableFuture.create();
+        private volatile boolean released;
+
+        public ReadAhead(DiskRange stripeRange, DiskRange headRange, DiskRangesLoader diskRangesLoader)
+        {
+            this.stripeRange = stripeRange;
+            this.headRange = headRange;
+            this.diskRangesLoader = diskRangesLoader;
+        }
+
+        public DiskRange getStripeRange()
+        {
+            return stripeRange;
+        }
+
+        @Override
+        public void run()
+        {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                ImmutableMap.Builder<DiskRange, byte[]> buffers = ImmutableMap.builder();
+                byte[] head = new byte[headRange.getLength()];
+                dataSource.readFully(headRange.getOffset(), head);
+                buffers.put(headRange, head);
+                long bufferedBytes = head.length;
+
+                List<DiskRange> diskRanges = diskRangesLoader.getDiskRanges(Slices.wrappedBuffer(head));
+                for (DiskRange mergedRange : mergeAdjacentDiskRanges(diskRanges, maxMergeDistance, maxReadAheadSize)) {
+                    if (released || bufferedBytes + mergedRange.getLength() > maxReadAheadSize.toBytes()) {
+                        // the remaining ranges are read when they are needed
+                        break;
+                    }
+                    byte[] buffer = new byte[mergedRange.getLength()];
+                    dataSource.readFully(mergedRange.getOffset(), buffer);
+                    buffers.put(mergedRange, buffer);
+                    bufferedBytes += buffer.length;
+                }
+                this.buffers.set(buffers.build());
+            }
+            catch (Throwable t) {
+                this.buffers.setException(t);
+            }
+        }
+
+        /**
+         * Returns the buffers read ahead, waiting for the task if it is running. A task that has not started yet
+         * is dropped, as reading the stripe directly is faster than waiting for a thread.
+         */
+        public Map<DiskRange, byte[]> getBuffers()
+                throws InterruptedIOException
+        {
+            if (claimed.compareAndSet(false, true)) {
+                buffers.set(ImmutableMap.of());
+            }
+            try {
+                return buffers.get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a read ahead");
+            }
+            catch (ExecutionException e) {
+                // the ranges are read again from the data source, which reports the failure if it persists
+                return ImmutableMap.of();
+            }
+        }
+
+        /**
+         * The bytes read ahead, or the maximum size while the task is running.
+         */
+        public long getRetainedBytes()
+        {
+            if (!buffers.isDone()) {
+                return maxReadAheadSize.toBytes();
+            }
+            try {
+                return getUninterruptibly(buffers).values().stream()
+                        .mapToLong(buffer -> buffer.length)
+                        .sum();
+            }
+            catch (ExecutionException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Stops the task and waits for its read in flight to finish.
+         */
+        public void release()
+        {
+            released = true;
+            if (claimed.compareAndSet(false, true)) {
+                buffers.set(ImmutableMap.of());
+                return;
+            }
+            try {
+                getUninterruptibly(buffers);
+            }
+            catch (ExecutionException ignored) {
+            }
+        }
+    }
+}
@@ -61,6 +61,7 @@ import java.util.Optional;
 import java.util.Set;
 import java.util.SortedMap;
 
+import static com.facebook.presto.orc.NoopOrcAggregatedMemoryContext.NOOP_ORC_AGGREGATED_MEMORY_CONTEXT;
 import static com.facebook.presto.orc.NoopOrcLocalMemoryContext.NOOP_ORC_LOCAL_MEMORY_CONTEXT;
 import static com.facebook.presto.orc.checkpoint.Checkpoints.getDictionaryStreamCheckpoint;
 import static com.facebook.presto.orc.checkpoint.Checkpoints.getStreamCheckpoints;
@@ -485,6 +486,12 @@ public class StripeReader
 
         // read the footer
         Slice footerSlice = stripeMetadataSource.getStripeFooterSlice(orcDataSource, stripeId, footerOffset, footerLength, cacheable);
+        return readStripeFooter(footerSlice, decompressor, systemMemoryUsage);
+    }
+
+    private StripeFooter readStripeFooter(Slice footerSlice, Optional<OrcDecompressor> decompressor, OrcAggregatedMemoryContext systemMemoryUsage)
+            throws IOException
+    {
         try (InputStream inputStream = new OrcInputStream(
                 orcDataSource.getId(),
                 // Memory is not accounted as the buffer is expected to be tiny and will be immediately discarded
@@ -493,11 +500,36 @@ public class StripeReader
                 decompressor,
                 Optional.empty(),
                 systemMemoryUsage,
-                footerLength)) {
+                footerSlice.length())) {
             return metadataReader.readStripeFooter(orcDataSource.getId(), types, inputStream);
         }
     }
 
+    /**
+     * Returns the file ranges of the unencrypted streams of the included columns, given the stripe footer.
+     * The streams of encrypted columns are only known after decrypting the stripe footer.
+     * <p>
+     * This is called from the read ahead thread, so the footer is decompressed with the given decompressor,
+     * and its memory is not accounted.
+     */
+    public List<DiskRange> getStripeDiskRanges(StripeInformation stripe, Slice footerSlice, Optional<OrcDecompressor> decompressor)
+            throws IOException
+    {
+        StripeFooter stripeFooter = readStripeFooter(footerSlice, decompressor, NOOP_ORC_AGGREGATED_MEMORY_CONTEXT);
+
+        Map<StreamId, Stream> includedStreams = new HashMap<>();
+        addIncludedStreams(stripeFooter.getColumnEncodings(), stripeFooter.getStreams(), includedStreams);
+
+        ImmutableList.Builder<DiskRange> diskRanges = ImmutableList.builder();
+        for (Entry<StreamId, DiskRange> entry : getDiskRanges(ImmutableList.of(stripeFooter.getStreams())).entrySet()) {
+            if (includedStreams.containsKey(entry.getKey())) {
+                DiskRange diskRange = entry.getValue();
+                diskRanges.add(new DiskRange(stripe.getOffset() + diskRange.getOffset(), diskRange.getLength()));
+            }
+        }
+        return diskRanges.build();
+    }
+
     static boolean isIndexStream(Stream stream)
     {
         return stream.getStreamKind().getStreamArea() == INDEX;
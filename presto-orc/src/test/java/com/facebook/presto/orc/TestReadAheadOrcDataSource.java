@@ -0,0 +1,393 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.orc;
+
+import com.facebook.presto.common.RuntimeStats;
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.orc.cache.StorageOrcFileTailSource;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import io.airlift.slice.FixedLengthSliceInput;
+import io.airlift.units.DataSize;
+import org.testng.annotations.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Stream;
+
+import static com.facebook.airlift.testing.Assertions.assertGreaterThanOrEqual;
+import static com.facebook.presto.common.type.VarcharType.VARCHAR;
+import static com.facebook.presto.orc.DwrfEncryptionProvider.NO_ENCRYPTION;
+import static com.facebook.presto.orc.NoopOrcAggregatedMemoryContext.NOOP_ORC_AGGREGATED_MEMORY_CONTEXT;
+import static com.facebook.presto.orc.OrcEncoding.ORC;
+import static com.facebook.presto.orc.OrcReader.INITIAL_BATCH_SIZE;
+import static com.facebook.presto.orc.OrcTester.Format.ORC_12;
+import static com.facebook.presto.orc.OrcTester.HIVE_STORAGE_TIME_ZONE;
+import static com.facebook.presto.orc.OrcTester.writeOrcFileColumnHive;
+import static com.facebook.presto.orc.TestCachingOrcDataSource.createOrcRecordWriter;
+import static com.facebook.presto.orc.metadata.CompressionKind.ZLIB;
+import static com.google.common.collect.ImmutableList.toImmutableList;
+import static com.google.common.collect.Iterables.getOnlyElement;
+import static com.google.common.util.concurrent.MoreExecutors.directExecutor;
+import static io.airlift.units.DataSize.Unit.BYTE;
+import static io.airlift.units.DataSize.Unit.MEGABYTE;
+import static java.lang.Math.toIntExact;
+import static java.util.concurrent.Executors.newCachedThreadPool;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory.javaStringObjectInspector;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertFalse;
+import static org.testng.Assert.assertThrows;
+import static org.testng.Assert.assertTrue;
+
+public class TestReadAheadOrcDataSource
+{
+    private static final DataSize SIZE = new DataSize(1, MEGABYTE);
+
+    @Test
+    public void testReadAhead()
+            throws IOException
+    {
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(new InMemoryOrcDataSource(createData(1000)));
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(testingOrcDataSource, directExecutor(), 100, systemMemoryContext);
+
+        // the footer is read first, then the ranges it gives, with the first two merged
+        readAheadOrcDataSource.readAhead(
+                new DiskRange(0, 300),
+                new DiskRange(280, 20),
+                footer -> ImmutableList.of(new DiskRange(0, 10), new DiskRange(15, 10), new DiskRange(200, 10)));
+        assertEquals(testingOrcDataSource.getReadRanges(), ImmutableList.of(new DiskRange(280, 20), new DiskRange(0, 25), new DiskRange(200, 10)));
+        assertEquals(systemMemoryContext.getBytes(), 55);
+
+        byte[] buffer = new byte[20];
+        readAheadOrcDataSource.readFully(280, buffer);
+        assertBytes(buffer, 280);
+
+        Map<String, OrcDataSourceInput> inputs = readAheadOrcDataSource.readFully(ImmutableMap.of(
+                "a", new DiskRange(0, 10),
+                "b", new DiskRange(15, 10),
+                "c", new DiskRange(202, 5)));
+        assertEquals(testingOrcDataSource.getReadCount(), 3);
+        assertInput(inputs.get("a"), new DiskRange(0, 10));
+        assertInput(inputs.get("b"), new DiskRange(15, 10));
+        assertInput(inputs.get("c"), new DiskRange(202, 5));
+
+        // ranges that are not read ahead are read from the data source
+        inputs = readAheadOrcDataSource.readFully(ImmutableMap.of("a", new DiskRange(5, 10), "b", new DiskRange(250, 10)));
+        assertEquals(testingOrcDataSource.getLastReadRanges(), ImmutableList.of(new DiskRange(250, 10)));
+        assertInput(inputs.get("a"), new DiskRange(5, 10));
+        assertInput(inputs.get("b"), new DiskRange(250, 10));
+    }
+
+    @Test
+    public void testMemoryAccounting()
+            throws IOException
+    {
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(new InMemoryOrcDataSource(createData(1000)));
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(testingOrcDataSource, directExecutor(), 100, systemMemoryContext);
+
+        readAheadOrcDataSource.readAhead(new DiskRange(0, 300), new DiskRange(290, 10), footer -> ImmutableList.of(new DiskRange(0, 30)));
+        assertEquals(systemMemoryContext.getBytes(), 40);
+
+        // the buffers of the stripe that was opened stay accounted while its streams are decoded
+        readAheadOrcDataSource.readAhead(new DiskRange(300, 300), new DiskRange(590, 10), footer -> ImmutableList.of(new DiskRange(300, 10)));
+        assertEquals(systemMemoryContext.getBytes(), 60);
+
+        // and are released when the stripe after it is opened
+        readAheadOrcDataSource.stopReadAhead();
+        assertEquals(systemMemoryContext.getBytes(), 20);
+        readAheadOrcDataSource.stopReadAhead();
+        assertEquals(systemMemoryContext.getBytes(), 0);
+
+        readAheadOrcDataSource.readAhead(new DiskRange(600, 300), new DiskRange(890, 10), footer -> ImmutableList.of(new DiskRange(600, 10)));
+        assertEquals(systemMemoryContext.getBytes(), 20);
+        readAheadOrcDataSource.close();
+        assertEquals(systemMemoryContext.getBytes(), 0);
+    }
+
+    @Test
+    public void testMemoryAccountedBeforeReadStarts()
+            throws IOException
+    {
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(new InMemoryOrcDataSource(createData(100)));
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        List<Long> bytesWhenSubmitted = new ArrayList<>();
+        Executor executor = command -> {
+            bytesWhenSubmitted.add(systemMemoryContext.getBytes());
+            command.run();
+        };
+        ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(testingOrcDataSource, executor, 100, systemMemoryContext);
+
+        // the task can read up to the maximum size, which is accounted before it runs
+        readAheadOrcDataSource.readAhead(new DiskRange(0, 100), new DiskRange(90, 10), footer -> ImmutableList.of(new DiskRange(0, 10)));
+        assertEquals(bytesWhenSubmitted, ImmutableList.of(100L));
+        assertEquals(systemMemoryContext.getBytes(), 20);
+    }
+
+    @Test
+    public void testMaxReadAheadSize()
+            throws IOException
+    {
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(new InMemoryOrcDataSource(createData(1000)));
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(testingOrcDataSource, directExecutor(), 30, systemMemoryContext);
+
+        // the third range does not fit in the remaining size and is read when it is needed
+        readAheadOrcDataSource.readAhead(
+                new DiskRange(0, 300),
+                new DiskRange(290, 5),
+                footer -> ImmutableList.of(new DiskRange(0, 20), new DiskRange(100, 5), new DiskRange(200, 10)));
+        assertEquals(testingOrcDataSource.getReadRanges(), ImmutableList.of(new DiskRange(290, 5), new DiskRange(0, 20), new DiskRange(100, 5)));
+        assertEquals(systemMemoryContext.getBytes(), 30);
+
+        Map<String, OrcDataSourceInput> inputs = readAheadOrcDataSource.readFully(ImmutableMap.of("a", new DiskRange(0, 20), "b", new DiskRange(200, 10)));
+        assertEquals(testingOrcDataSource.getLastReadRanges(), ImmutableList.of(new DiskRange(200, 10)));
+        assertInput(inputs.get("a"), new DiskRange(0, 20));
+        assertInput(inputs.get("b"), new DiskRange(200, 10));
+    }
+
+    @Test
+    public void testRejectedReadAhead()
+            throws IOException
+    {
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(new InMemoryOrcDataSource(createData(100)));
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        Executor rejectingExecutor = command -> {
+            throw new RejectedExecutionException();
+        };
+        ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(testingOrcDataSource, rejectingExecutor, 100, systemMemoryContext);
+
+        readAheadOrcDataSource.readAhead(new DiskRange(0, 100), new DiskRange(90, 10), footer -> ImmutableList.of(new DiskRange(0, 10)));
+        assertEquals(testingOrcDataSource.getReadCount(), 0);
+        assertEquals(systemMemoryContext.getBytes(), 0);
+
+        byte[] buffer = new byte[10];
+        readAheadOrcDataSource.readFully(0, buffer);
+        assertEquals(testingOrcDataSource.getReadCount(), 1);
+        assertBytes(buffer, 0);
+    }
+
+    @Test
+    public void testQueuedReadAheadIsDropped()
+            throws IOException
+    {
+        TestingOrcDataSource testingOrcDataSource = new TestingOrcDataSource(new InMemoryOrcDataSource(createData(100)));
+        OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+        List<Runnable> queue = new ArrayList<>();
+        ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(testingOrcDataSource, queue::add, 100, systemMemoryContext);
+
+        // the maximum size is accounted until the read ahead finishes
+        readAheadOrcDataSource.readAhead(new DiskRange(0, 100), new DiskRange(90, 10), footer -> ImmutableList.of(new DiskRange(0, 10)));
+        assertEquals(queue.size(), 1);
+        assertEquals(systemMemoryContext.getBytes(), 100);
+
+        // a reader does not wait for a read ahead that has not started
+        byte[] buffer = new byte[10];
+        readAheadOrcDataSource.readFully(0, buffer);
+        assertEquals(testingOrcDataSource.getReadRanges(), ImmutableList.of(new DiskRange(0, 10)));
+        assertBytes(buffer, 0);
+        assertEquals(systemMemoryContext.getBytes(), 0);
+
+        getOnlyElement(queue).run();
+        assertEquals(testingOrcDataSource.getReadCount(), 1);
+    }
+
+    @Test(timeOut = 10_000)
+    public void testCloseWaitsForReadInFlight()
+            throws Exception
+    {
+        CountDownLatch readStarted = new CountDownLatch(1);
+        CountDownLatch finishRead = new CountDownLatch(1);
+        BlockingOrcDataSource blockingOrcDataSource = new BlockingOrcDataSource(createData(100), readStarted, finishRead);
+        ExecutorService executor = newCachedThreadPool();
+        try {
+            OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+            ReadAheadOrcDataSource readAheadOrcDataSource = createReadAheadOrcDataSource(blockingOrcDataSource, executor, 100, systemMemoryContext);
+            readAheadOrcDataSource.readAhead(new DiskRange(0, 100), new DiskRange(90, 10), footer -> ImmutableList.of(new DiskRange(0, 10)));
+            readStarted.await();
+            assertEquals(systemMemoryContext.getBytes(), 100);
+
+            Future<?> close = executor.submit(() -> {
+                readAheadOrcDataSource.close();
+                return null;
+            });
+            assertThrows(TimeoutException.class, () -> close.get(100, MILLISECONDS));
+            assertFalse(blockingOrcDataSource.isClosed());
+
+            finishRead.countDown();
+            close.get();
+            assertTrue(blockingOrcDataSource.isClosed());
+            assertEquals(systemMemoryContext.getBytes(), 0);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testIntegration()
+            throws Exception
+    {
+        Random random = new Random(0);
+        List<String> values = Stream.generate(() -> Long.toHexString(random.nextLong())).limit(50_000).collect(toImmutableList());
+        ExecutorService executor = newCachedThreadPool();
+        try (TempFile tempFile = new TempFile()) {
+            writeOrcFileColumnHive(tempFile.getFile(), ORC_12, createOrcRecordWriter(tempFile.getFile(), ORC_12, ZLIB, javaStringObjectInspector), VARCHAR, values);
+
+            OrcReader orcReader = new OrcReader(
+                    new FileOrcDataSource(tempFile.getFile(), SIZE, SIZE, SIZE, true),
+                    ORC,
+                    new StorageOrcFileTailSource(),
+                    new StorageStripeMetadataSource(),
+                    NOOP_ORC_AGGREGATED_MEMORY_CONTEXT,
+                    OrcReaderOptions.builder()
+                            .withMaxMergeDistance(SIZE)
+                            .withTinyStripeThreshold(new DataSize(1, BYTE))
+                            .withMaxBlockSize(SIZE)
+                            .withMaxReadAheadSize(new DataSize(8, MEGABYTE))
+                            .withReadAheadExecutor(executor)
+                            .build(),
+                    false,
+                    NO_ENCRYPTION,
+                    DwrfKeyProvider.EMPTY,
+                    new RuntimeStats());
+            assertGreaterThanOrEqual(orcReader.getFooter().getStripes().size(), 3);
+
+            OrcAggregatedMemoryContext systemMemoryContext = new TestingHiveOrcAggregatedMemoryContext();
+            List<String> actualValues = new ArrayList<>();
+            try (OrcBatchRecordReader recordReader = orcReader.createBatchRecordReader(
+                    ImmutableMap.of(0, VARCHAR),
+                    (numberOfRows, statisticsByColumnIndex) -> true,
+                    HIVE_STORAGE_TIME_ZONE,
+                    systemMemoryContext,
+                    INITIAL_BATCH_SIZE)) {
+                while (recordReader.nextBatch() > 0) {
+                    Block block = recordReader.readBlock(0);
+                    for (int position = 0; position < block.getPositionCount(); position++) {
+                        actualValues.add(VARCHAR.getSlice(block, position).toStringUtf8());
+                    }
+                }
+            }
+            assertEquals(actualValues, values);
+            assertEquals(systemMemoryContext.getBytes(), 0);
+        }
+        finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static ReadAheadOrcDataSource createReadAheadOrcDataSource(OrcDataSource dataSource, Executor executor, long maxReadAheadBytes, OrcAggregatedMemoryContext systemMemoryContext)
+    {
+        return new ReadAheadOrcDataSource(
+                dataSource,
+                executor,
+                new DataSize(10, BYTE),
+                new DataSize(maxReadAheadBytes, BYTE),
+                systemMemoryContext.newOrcLocalMemoryContext(ReadAheadOrcDataSource.class.getSimpleName()));
+    }
+
+    private static byte[] createData(int size)
+    {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    private static void assertInput(OrcDataSourceInput input, DiskRange diskRange)
+    {
+        FixedLengthSliceInput sliceInput = input.getInput();
+        assertEquals(sliceInput.length(), diskRange.getLength());
+        byte[] buffer = new byte[diskRange.getLength()];
+        sliceInput.readBytes(buffer);
+        assertBytes(buffer, diskRange.getOffset());
+    }
+
+    private static void assertBytes(byte[] buffer, long position)
+    {
+        for (int i = 0; i < buffer.length; i++) {
+            assertEquals(buffer[i], (byte) (position + i));
+        }
+    }
+
+    private static class InMemoryOrcDataSource
+            extends AbstractOrcDataSource
+    {
+        private final byte[] data;
+
+        public InMemoryOrcDataSource(byte[] data)
+        {
+            super(new OrcDataSourceId("memory"), data.length, SIZE, SIZE, SIZE, false);
+            this.data = data;
+        }
+
+        @Override
+        protected void readInternal(long position, byte[] buffer, int bufferOffset, int bufferLength)
+        {
+            System.arraycopy(data, toIntExact(position), buffer, bufferOffset, bufferLength);
+        }
+    }
+
+    private static class BlockingOrcDataSource
+            extends InMemoryOrcDataSource
+    {
+        private final CountDownLatch readStarted;
+        private final CountDownLatch finishRead;
+        private volatile boolean closed;
+
+        public BlockingOrcDataSource(byte[] data, CountDownLatch readStarted, CountDownLatch finishRead)
+        {
+            super(data);
+            this.readStarted = readStarted;
+            this.finishRead = finishRead;
+        }
+
+        @Override
+        protected void readInternal(long position, byte[] buffer, int bufferOffset, int bufferLength)
+        {
+            readStarted.countDown();
+            try {
+                finishRead.await();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            }
+            super.readInternal(position, buffer, bufferOffset, bufferLength);
+        }
+
+        @Override
+        public void close()
+        {
+            closed = true;
+        }
+
+        public boolean isClosed()
+        {
+            return closed;
+        }
+    }
+}
@@ -43,6 +43,7 @@ import com.facebook.presto.spi.PrestoException;
 import java.util.Optional;
 
 import static com.facebook.presto.parquet.ParquetTypeUtils.createDecimalType;
+import static com.facebook.presto.parquet.ParquetTypeUtils.isShortDecimalType;
 import static com.facebook.presto.parquet.ParquetTypeUtils.isTimeStampMicrosType;
 import static com.facebook.presto.spi.StandardErrorCode.NOT_SUPPORTED;
 import static org.apache.parquet.schema.OriginalType.DECIMAL;
@@ -56,8 +57,7 @@ public class ColumnReaderFactory
 
     public static ColumnReader createReader(RichColumnDescriptor descriptor, boolean batchReadEnabled)
     {
-        // decimal is not supported in batch readers
-        if (batchReadEnabled && descriptor.getPrimitiveType().getOriginalType() != DECIMAL) {
+        if (batchReadEnabled && isBatchReadSupported(descriptor)) {
             final boolean isNested = descriptor.getPath().length > 1;
             switch (descriptor.getPrimitiveType().getPrimitiveTypeName()) {
                 case BOOLEAN:
@@ -74,7 +74,15 @@ public class ColumnReaderFactory
                 case INT96:
                     return isNested ? new TimestampNestedBatchReader(descriptor) : new TimestampFlatBatchReader(descriptor);
                 case BINARY:
+                    if (isShortDecimalType(descriptor)) {
+                        return isNested ? new Int64NestedBatchReader(descriptor) : new Int64FlatBatchReader(descriptor);
+                    }
                     return isNested ? new BinaryNestedBatchReader(descriptor) : new BinaryFlatBatchReader(descriptor);
+                case FIXED_LEN_BYTE_ARRAY:
+                    if (isShortDecimalType(descriptor)) {
+                        return isNested ? new Int64NestedBatchReader(descriptor) : new Int64FlatBatchReader(descriptor);
+                    }
+                    break;
             }
         }
 
@@ -104,6 +112,17 @@ public class ColumnReaderFactory
         }
     }
 
+    private static boolean isBatchReadSupported(RichColumnDescriptor descriptor)
+    {
+        if (descriptor.getPrimitiveType().getOriginalType() != DECIMAL) {
+            return true;
+        }
+
+        // Short decimals are read as their unscaled values by the integer batch readers, whether they are stored as
+        // INT32, INT64, BINARY or FIXED_LEN_BYTE_ARRAY. Long decimals do not have batch readers yet.
+        return isShortDecimalType(descriptor);
+    }
+
     private static Optional<AbstractColumnReader> createDecimalColumnReader(RichColumnDescriptor descriptor)
     {
         Optional<Type> type = createDecimalType(descriptor);
@@ -37,6 +37,7 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 
+import static com.facebook.presto.common.type.Decimals.MAX_SHORT_PRECISION;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.collect.Iterables.getOnlyElement;
 import static java.util.stream.Collectors.joining;
@@ -255,16 +256,21 @@ public final class ParquetTypeUtils
 
     // copied from presto-hive DecimalUtils
     public static long getShortDecimalValue(byte[] bytes)
+    {
+        return getShortDecimalValue(bytes, 0, bytes.length);
+    }
+
+    public static long getShortDecimalValue(byte[] bytes, int offset, int length)
     {
         long value = 0;
-        if ((bytes[0] & 0x80) != 0) {
-            for (int i = 0; i < 8 - bytes.length; ++i) {
+        if ((bytes[offset] & 0x80) != 0) {
+            for (int i = 0; i < 8 - length; ++i) {
                 value |= 0xFFL << (8 * (7 - i));
             }
         }
 
-        for (int i = 0; i < bytes.length; i++) {
-            value |= ((long) bytes[bytes.length - i - 1] & 0xFFL) << (8 * i);
+        for (int i = 0; i < length; i++) {
+            value |= ((long) bytes[offset + length - i - 1] & 0xFFL) << (8 * i);
         }
 
         return value;
@@ -335,4 +341,10 @@ public final class ParquetTypeUtils
     {
         return TIMESTAMP_MICROS.equals(descriptor.getPrimitiveType().getOriginalType());
     }
+
+    public static boolean isShortDecimalType(ColumnDescriptor descriptor)
+    {
+        return DECIMAL.equals(descriptor.getPrimitiveType().getOriginalType())
+                && descriptor.getPrimitiveType().getDecimalMetadata().getPrecision() <= MAX_SHORT_PRECISION;
+    }
 }
@@ -0,0 +1,247 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.batchreader;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.parquet.ColumnReader;
+import com.facebook.presto.parquet.Field;
+import com.facebook.presto.parquet.RichColumnDescriptor;
+import com.facebook.presto.parquet.reader.ColumnChunk;
+import com.facebook.presto.parquet.reader.PageReader;
+import it.unimi.dsi.fastutil.ints.IntArrayList;
+import it.unimi.dsi.fastutil.ints.IntList;
+import it.unimi.dsi.fastutil.longs.LongArrayList;
+import it.unimi.dsi.fastutil.longs.LongList;
+import org.apache.parquet.internal.column.columnindex.OffsetIndex;
+import org.apache.parquet.internal.filter2.columnindex.RowRanges;
+
+import java.util.PrimitiveIterator;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+import static java.lang.Math.min;
+import static java.lang.Math.toIntExact;
+import static java.util.Objects.requireNonNull;
+
+/**
+ * Returns only the rows selected by the column index filter out of a batch reader. The batch readers decode the pages
+ * kept by the offset index as one consecutive stream of rows, so the row ranges are translated into ranges of positions
+ * in that stream. Each batch reads the span of positions covering its selected rows and drops the rows in between.
+ */
+public class RowRangesBatchReader
+        implements ColumnReader
+{
+    private final ColumnReader delegate;
+    private final RichColumnDescriptor columnDescriptor;
+    private final long rowGroupRowCount;
+
+    private Field field;
+    // selected positions in the stream of rows of the pages, as [start, end) ranges
+    private long[] rangeStarts;
+    private long[] rangeEnds;
+    private int rangeIndex;
+    // next selected position
+    private long position;
+    // next position to be read by the delegate
+    private long delegatePosition;
+    private int readOffset;
+    private int nextBatchSize;
+
+    public RowRangesBatchReader(ColumnReader delegate, RichColumnDescriptor columnDescriptor, long rowGroupRowCount)
+    {
+        this.delegate = requireNonNull(delegate, "delegate is null");
+        this.columnDescriptor = requireNonNull(columnDescriptor, "columnDescriptor is null");
+        checkArgument(rowGroupRowCount > 0, "rowGroupRowCount must be positive");
+        this.rowGroupRowCount = rowGroupRowCount;
+    }
+
+    @Override
+    public boolean isInitialized()
+    {
+        return delegate.isInitialized();
+    }
+
+    @Override
+    public void init(PageReader pageReader, Field field, RowRanges rowRanges)
+    {
+        requireNonNull(rowRanges, "rowRanges is null");
+        this.field = requireNonNull(field, "field is null");
+        calculatePositionRanges(rowRanges, pageReader.getOffsetIndex());
+        position = rangeStarts.length == 0 ? 0 : rangeStarts[0];
+        delegate.init(pageReader, field, null);
+    }
+
+    @Override
+    public void prepareNextRead(int batchSize)
+    {
+        readOffset = readOffset + nextBatchSize;
+        nextBatchSize = batchSize;
+    }
+
+    @Override
+    public ColumnChunk readNext()
+    {
+        skipSelectedPositions(readOffset);
+
+        // the span of positions from the first to the last selected position of the batch
+        long spanStart = position;
+        IntList selectedRanges = new IntArrayList();
+        int remainingInBatch = nextBatchSize;
+        while (remainingInBatch > 0) {
+            checkState(rangeIndex < rangeStarts.length, "Row ranges have fewer rows than requested for column %s", columnDescriptor);
+            int chunkSize = toIntExact(min(remainingInBatch, rangeEnds[rangeIndex] - position));
+            selectedRanges.add(toIntExact(position - spanStart));
+            selectedRanges.add(toIntExact(position - spanStart + chunkSize));
+            advance(chunkSize);
+            remainingInBatch -= chunkSize;
+        }
+        int spanSize = selectedRanges.isEmpty() ? 0 : selectedRanges.getInt(selectedRanges.size() - 1);
+
+        delegate.prepareNextRead(toIntExact(spanStart - delegatePosition));
+        delegate.prepareNextRead(spanSize);
+        ColumnChunk columnChunk = delegate.readNext();
+        delegatePosition = spanStart + spanSize;
+
+        readOffset = 0;
+        nextBatchSize = 0;
+        if (selectedRanges.size() <= 2) {
+            return columnChunk;
+        }
+        if (columnDescriptor.getPath().length > 1) {
+            return selectNestedRows(columnChunk, selectedRanges);
+        }
+        return selectFlatRows(columnChunk, selectedRanges);
+    }
+
+    private void skipSelectedPositions(int count)
+    {
+        int remaining = count;
+        while (remaining > 0) {
+            checkState(rangeIndex < rangeStarts.length, "Row ranges have fewer rows than requested for column %s", columnDescriptor);
+            int chunkSize = toIntExact(min(remaining, rangeEnds[rangeIndex] - position));
+            advance(chunkSize);
+            remaining -= chunkSize;
+        }
+    }
+
+    private void advance(int count)
+    {
+        position += count;
+        if (position == rangeEnds[rangeIndex]) {
+            rangeIndex++;
+            if (rangeIndex < rangeStarts.length) {
+                position = rangeStarts[rangeIndex];
+            }
+        }
+    }
+
+    private static ColumnChunk selectFlatRows(ColumnChunk columnChunk, IntList selectedRanges)
+    {
+        IntList positions = new IntArrayList();
+        for (int i = 0; i < selectedRanges.size(); i += 2) {
+            for (int position = selectedRanges.getInt(i); position < selectedRanges.getInt(i + 1); position++) {
+                positions.add(position);
+            }
+        }
+        Block block = columnChunk.getBlock().copyPositions(positions.toIntArray(), 0, positions.size());
+        return new ColumnChunk(block, columnChunk.getDefinitionLevels(), columnChunk.getRepetitionLevels());
+    }
+
+    /**
+     * A row of a nested column has one repetition and definition level per value, and the block only has a position
+     * for the levels of non-null values (or of null values when the field is optional).
+     */
+    private ColumnChunk selectNestedRows(ColumnChunk columnChunk, IntList selectedRanges)
+    {
+        int[] definitionLevels = columnChunk.getDefinitionLevels();
+        int[] repetitionLevels = columnChunk.getRepetitionLevels();
+        int maxDefinitionLevel = columnDescriptor.getMaxDefinitionLevel();
+        int minValueDefinitionLevel = field.isRequired() ? maxDefinitionLevel : maxDefinitionLevel - 1;
+
+        IntList selectedDefinitionLevels = new IntArrayList(definitionLevels.length);
+        IntList selectedRepetitionLevels = new IntArrayList(repetitionLevels.length);
+        IntList positions = new IntArrayList();
+        int row = -1;
+        int range = 0;
+        int blockPosition = 0;
+        for (int i = 0; i < repetitionLevels.length; i++) {
+            if (repetitionLevels[i] == 0) {
+                row++;
+                if (range < selectedRanges.size() && row == selectedRanges.getInt(range + 1)) {
+                    range += 2;
+                }
+            }
+            boolean selected = range < selectedRanges.size() && row >= selectedRanges.getInt(range);
+            boolean hasPosition = definitionLevels[i] >= minValueDefinitionLevel;
+            if (selected) {
+                selectedDefinitionLevels.add(definitionLevels[i]);
+                selectedRepetitionLevels.add(repetitionLevels[i]);
+                if (hasPosition) {
+                    positions.add(blockPosition);
+                }
+            }
+            if (hasPosition) {
+                blockPosition++;
+            }
+        }
+
+        Block block = columnChunk.getBlock().copyPositions(positions.toIntArray(), 0, positions.size());
+        return new ColumnChunk(block, selectedDefinitionLevels.toIntArray(), selectedRepetitionLevels.toIntArray());
+    }
+
+    /**
+     * The pages kept by the offset index (all the pages when there is none) hold consecutive rows, so the position of
+     * a row is its offset in its page plus the number of rows of the kept pages before it.
+     */
+    private void calculatePositionRanges(RowRanges rowRanges, OffsetIndex offsetIndex)
+    {
+        LongList starts = new LongArrayList();
+        LongList ends = new LongArrayList();
+
+        int pageIndex = 0;
+        long pageFirstRow = 0;
+        long pageLastRow = rowGroupRowCount - 1;
+        long pageFirstPosition = 0;
+        if (offsetIndex != null) {
+            pageFirstRow = offsetIndex.getFirstRowIndex(pageIndex);
+            pageLastRow = offsetIndex.getLastRowIndex(pageIndex, rowGroupRowCount);
+        }
+
+        PrimitiveIterator.OfLong rows = rowRanges.iterator();
+        while (rows.hasNext()) {
+            long row = rows.nextLong();
+            while (row > pageLastRow) {
+                checkState(offsetIndex != null && pageIndex + 1 < offsetIndex.getPageCount(), "Row %s is not in the pages of column %s", row, columnDescriptor);
+                pageFirstPosition += pageLastRow - pageFirstRow + 1;
+                pageIndex++;
+                pageFirstRow = offsetIndex.getFirstRowIndex(pageIndex);
+                pageLastRow = offsetIndex.getLastRowIndex(pageIndex, rowGroupRowCount);
+            }
+            checkState(row >= pageFirstRow, "Row %s is not in the pages of column %s", row, columnDescriptor);
+
+            long position = pageFirstPosition + row - pageFirstRow;
+            if (!ends.isEmpty() && ends.getLong(ends.size() - 1) == position) {
+                ends.set(ends.size() - 1, position + 1);
+            }
+            else {
+                starts.add(position);
+                ends.add(position + 1);
+            }
+        }
+
+        rangeStarts = starts.toLongArray();
+        rangeEnds = ends.toLongArray();
+        rangeIndex = 0;
+    }
+}
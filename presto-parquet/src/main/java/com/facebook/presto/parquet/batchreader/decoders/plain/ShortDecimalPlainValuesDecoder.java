@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.batchreader.decoders.plain;
+
+import com.facebook.presto.parquet.batchreader.BytesUtils;
+import com.facebook.presto.parquet.batchreader.decoders.ValuesDecoder.Int64ValuesDecoder;
+
+import static com.facebook.presto.parquet.ParquetTypeUtils.getShortDecimalValue;
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkState;
+
+/**
+ * Decodes the unscaled values of short decimals stored as BINARY, where each value is
+ * prefixed with its length, or as FIXED_LEN_BYTE_ARRAY, where every value has the same length.
+ */
+public class ShortDecimalPlainValuesDecoder
+        implements Int64ValuesDecoder
+{
+    private final byte[] byteBuffer;
+    private final int bufferEnd;
+    // the length of every value, or 0 if each value is prefixed with its length
+    private final int typeLength;
+
+    private int bufferOffset;
+
+    public ShortDecimalPlainValuesDecoder(byte[] byteBuffer, int bufferOffset, int length, int typeLength)
+    {
+        checkArgument(typeLength >= 0, "invalid type length %s", typeLength);
+        this.byteBuffer = byteBuffer;
+        this.bufferOffset = bufferOffset;
+        this.bufferEnd = bufferOffset + length;
+        this.typeLength = typeLength;
+    }
+
+    @Override
+    public void readNext(long[] values, int offset, int length)
+    {
+        checkArgument(length >= 0 && offset >= 0, "invalid read request: offset %s, length %s", offset, length);
+
+        final int endOffset = offset + length;
+        final byte[] localByteBuffer = byteBuffer;
+        int localBufferOffset = bufferOffset;
+
+        if (typeLength > 0) {
+            checkArgument(localBufferOffset + length * typeLength <= bufferEnd, "End of stream: invalid read request");
+            while (offset < endOffset) {
+                values[offset++] = getShortDecimalValue(localByteBuffer, localBufferOffset, typeLength);
+                localBufferOffset += typeLength;
+            }
+        }
+        else {
+            while (offset < endOffset) {
+                checkState(localBufferOffset < bufferEnd, "End of stream: invalid read request");
+                int valueLength = BytesUtils.getInt(localByteBuffer, localBufferOffset);
+                localBufferOffset += 4;
+                values[offset++] = getShortDecimalValue(localByteBuffer, localBufferOffset, valueLength);
+                localBufferOffset += valueLength;
+            }
+        }
+
+        bufferOffset = localBufferOffset;
+    }
+
+    @Override
+    public void skip(int length)
+    {
+        checkArgument(length >= 0, "invalid length %s", length);
+        if (typeLength > 0) {
+            checkArgument(bufferOffset + length * typeLength <= bufferEnd, "End of stream: invalid read request");
+            bufferOffset += length * typeLength;
+            return;
+        }
+
+        while (length > 0) {
+            checkState(bufferOffset < bufferEnd, "End of stream: invalid read request");
+            bufferOffset += 4 + BytesUtils.getInt(byteBuffer, bufferOffset);
+            length--;
+        }
+    }
+}
@@ -14,14 +14,23 @@
 package com.facebook.presto.parquet.batchreader.dictionary;
 
 import com.facebook.presto.parquet.DictionaryPage;
+import com.facebook.presto.parquet.dictionary.BinaryDictionary;
 import com.facebook.presto.parquet.dictionary.Dictionary;
 import com.facebook.presto.parquet.dictionary.IntegerDictionary;
 import com.facebook.presto.parquet.dictionary.LongDictionary;
 import com.facebook.presto.spi.PrestoException;
 import org.apache.parquet.column.ColumnDescriptor;
 import org.apache.parquet.io.ParquetDecodingException;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+
+import java.io.IOException;
 
 import static com.facebook.presto.parquet.ParquetErrorCode.PARQUET_UNSUPPORTED_ENCODING;
+import static com.facebook.presto.parquet.ParquetTypeUtils.getShortDecimalValue;
+import static com.facebook.presto.parquet.ParquetTypeUtils.isShortDecimalType;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.BINARY;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY;
 
 public class Dictionaries
 {
@@ -32,7 +41,12 @@ public class Dictionaries
     public static Dictionary createDictionary(ColumnDescriptor columnDescriptor, DictionaryPage dictionaryPage)
     {
         try {
-            switch (columnDescriptor.getPrimitiveType().getPrimitiveTypeName()) {
+            PrimitiveTypeName type = columnDescriptor.getPrimitiveType().getPrimitiveTypeName();
+            if (isShortDecimalType(columnDescriptor) && (type == BINARY || type == FIXED_LEN_BYTE_ARRAY)) {
+                return createShortDecimalDictionary(columnDescriptor, dictionaryPage);
+            }
+
+            switch (type) {
                 case INT32:
                 case FLOAT:
                     return new IntegerDictionary(dictionaryPage);
@@ -55,4 +69,21 @@ public class Dictionaries
 
         throw new PrestoException(PARQUET_UNSUPPORTED_ENCODING, String.format("Dictionary encoding is not supported: %s", columnDescriptor));
     }
+
+    // the unscaled values of short decimals are decoded once, so that the values decoder looks them up as longs
+    private static LongDictionary createShortDecimalDictionary(ColumnDescriptor columnDescriptor, DictionaryPage dictionaryPage)
+            throws IOException
+    {
+        Integer typeLength = null;
+        if (columnDescriptor.getPrimitiveType().getPrimitiveTypeName() == FIXED_LEN_BYTE_ARRAY) {
+            typeLength = columnDescriptor.getPrimitiveType().getTypeLength();
+        }
+        BinaryDictionary binaryDictionary = new BinaryDictionary(dictionaryPage, typeLength);
+        long[] values = new long[dictionaryPage.getDictionarySize()];
+        for (int i = 0; i < values.length; i++) {
+            Binary value = binaryDictionary.decodeToBinary(i);
+            values[i] = getShortDecimalValue(value.getBytes());
+        }
+        return new LongDictionary(dictionaryPage.getEncoding(), values);
+    }
 }
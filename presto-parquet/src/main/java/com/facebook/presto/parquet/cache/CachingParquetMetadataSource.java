@@ -18,7 +18,9 @@ import com.facebook.presto.parquet.ParquetDataSource;
 import com.facebook.presto.parquet.ParquetDataSourceId;
 import com.google.common.cache.Cache;
 import com.google.common.util.concurrent.UncheckedExecutionException;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.apache.parquet.crypto.InternalFileDecryptor;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
 
 import java.io.IOException;
 import java.util.Optional;
@@ -31,11 +33,21 @@ public class CachingParquetMetadataSource
         implements ParquetMetadataSource
 {
     private final Cache<ParquetDataSourceId, ParquetFileMetadata> cache;
+    private final Optional<Cache<BloomFilterCacheKey, Optional<BloomFilter>>> bloomFilterCache;
     private final ParquetMetadataSource delegate;
 
     public CachingParquetMetadataSource(Cache<ParquetDataSourceId, ParquetFileMetadata> cache, ParquetMetadataSource delegate)
+    {
+        this(cache, Optional.empty(), delegate);
+    }
+
+    public CachingParquetMetadataSource(
+            Cache<ParquetDataSourceId, ParquetFileMetadata> cache,
+            Optional<Cache<BloomFilterCacheKey, Optional<BloomFilter>>> bloomFilterCache,
+            ParquetMetadataSource delegate)
     {
         this.cache = requireNonNull(cache, "cache is null");
+        this.bloomFilterCache = requireNonNull(bloomFilterCache, "bloomFilterCache is null");
         this.delegate = requireNonNull(delegate, "delegate is null");
     }
 
@@ -67,4 +79,23 @@ public class CachingParquetMetadataSource
             throw new IOException("Unexpected error in parquet metadata reading after cache miss", e.getCause());
         }
     }
+
+    @Override
+    public Optional<BloomFilter> getBloomFilter(ParquetDataSource parquetDataSource, ColumnChunkMetaData columnMetaData, boolean cacheable, long modificationTime)
+            throws IOException
+    {
+        if (!cacheable || !bloomFilterCache.isPresent()) {
+            return delegate.getBloomFilter(parquetDataSource, columnMetaData, cacheable, modificationTime);
+        }
+
+        try {
+            return bloomFilterCache.get().get(
+                    new BloomFilterCacheKey(parquetDataSource.getId(), columnMetaData.getBloomFilterOffset(), modificationTime),
+                    () -> delegate.getBloomFilter(parquetDataSource, columnMetaData, cacheable, modificationTime));
+        }
+        catch (ExecutionException | UncheckedExecutionException e) {
+            throwIfInstanceOf(e.getCause(), IOException.class);
+            throw new IOException("Unexpected error in parquet bloom filter reading after cache miss", e.getCause());
+        }
+    }
 }
@@ -18,6 +18,8 @@ import com.facebook.presto.parquet.ParquetDataSource;
 import com.facebook.presto.parquet.ParquetDataSourceId;
 import io.airlift.slice.BasicSliceInput;
 import io.airlift.slice.Slice;
+import org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.apache.parquet.crypto.AesCipher;
 import org.apache.parquet.crypto.AesGcmEncryptor;
 import org.apache.parquet.crypto.HiddenColumnChunkMetaData;
@@ -28,6 +30,7 @@ import org.apache.parquet.crypto.ModuleCipherFactory.ModuleType;
 import org.apache.parquet.crypto.ParquetCryptoRuntimeException;
 import org.apache.parquet.crypto.TagVerificationException;
 import org.apache.parquet.format.BlockCipher.Decryptor;
+import org.apache.parquet.format.BloomFilterHeader;
 import org.apache.parquet.format.ColumnChunk;
 import org.apache.parquet.format.ColumnCryptoMetaData;
 import org.apache.parquet.format.ColumnMetaData;
@@ -93,6 +96,7 @@ public final class MetadataReader
     private static final int EXPECTED_FOOTER_SIZE = 16 * 1024;
     private static final ParquetMetadataConverter PARQUET_METADATA_CONVERTER = new ParquetMetadataConverter();
     private static final long MODIFICATION_TIME_NOT_SET = 0L;
+    private static final int BLOOM_FILTER_HEADER_SIZE_ESTIMATE = 64;
 
     public static ParquetFileMetadata readFooter(ParquetDataSource parquetDataSource, long fileSize, Optional<InternalFileDecryptor> fileDecryptor)
             throws IOException
@@ -240,6 +244,9 @@ public final class MetadataReader
                     ColumnChunkMetaData column = buildColumnChunkMetaData(metaData, columnPath, messageType.getType(columnPath.toArray()).asPrimitiveType());
                     column.setColumnIndexReference(toColumnIndexReference(columnChunk));
                     column.setOffsetIndexReference(toOffsetIndexReference(columnChunk));
+                    if (metaData.isSetBloom_filter_offset()) {
+                        column.setBloomFilterOffset(metaData.getBloom_filter_offset());
+                    }
                     blockMetaData.addColumn(column);
                 }
                 blockMetaData.setPath(filePath);
@@ -476,6 +483,13 @@ public final class MetadataReader
         return readFooter(parquetDataSource, fileSize, modificationTime, fileDecryptor);
     }
 
+    @Override
+    public Optional<BloomFilter> getBloomFilter(ParquetDataSource parquetDataSource, ColumnChunkMetaData columnMetaData, boolean cacheable, long modificationTime)
+            throws IOException
+    {
+        return readBloomFilter(parquetDataSource, columnMetaData);
+    }
+
     private static IndexReference toColumnIndexReference(ColumnChunk columnChunk)
     {
         if (columnChunk.isSetColumn_index_offset() && columnChunk.isSetColumn_index_length()) {
@@ -492,6 +506,37 @@ public final class MetadataReader
         return null;
     }
 
+    /**
+     * Reads the split block bloom filter of a column chunk, if the writer stored one in a format this reader supports.
+     */
+    public static Optional<BloomFilter> readBloomFilter(ParquetDataSource parquetDataSource, ColumnChunkMetaData columnMetaData)
+            throws IOException
+    {
+        long offset = columnMetaData.getBloomFilterOffset();
+        if (offset <= 0) {
+            return Optional.empty();
+        }
+
+        // the header is a few bytes long and is followed by the bitset; bloom filters are written before the footer, so the read stays in the file
+        byte[] headerBuffer = new byte[BLOOM_FILTER_HEADER_SIZE_ESTIMATE];
+        parquetDataSource.readFully(offset, headerBuffer);
+        ByteArrayInputStream headerStream = new ByteArrayInputStream(headerBuffer);
+        BloomFilterHeader header = Util.readBloomFilterHeader(headerStream);
+        int headerSize = headerBuffer.length - headerStream.available();
+
+        int numBytes = header.getNumBytes();
+        if (numBytes <= 0 || numBytes > BlockSplitBloomFilter.UPPER_BOUND_BYTES ||
+                !header.getAlgorithm().isSetBLOCK() ||
+                !header.getHash().isSetXXHASH() ||
+                !header.getCompression().isSetUNCOMPRESSED()) {
+            return Optional.empty();
+        }
+
+        byte[] bitset = new byte[numBytes];
+        parquetDataSource.readFully(offset + headerSize, bitset);
+        return Optional.of(new BlockSplitBloomFilter(bitset));
+    }
+
     public static Optional<Integer> findFirstNonHiddenColumnId(BlockMetaData block)
     {
         List<ColumnChunkMetaData> columns = block.getColumns();
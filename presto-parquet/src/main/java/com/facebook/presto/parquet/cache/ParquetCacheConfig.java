@@ -28,6 +28,7 @@ public class ParquetCacheConfig
     private boolean metadataCacheEnabled;
     private DataSize metadataCacheSize = new DataSize(0, BYTE);
     private Duration metadataCacheTtlSinceLastAccess = new Duration(0, SECONDS);
+    private DataSize bloomFilterCacheSize = new DataSize(0, BYTE);
 
     public boolean isMetadataCacheEnabled()
     {
@@ -69,4 +70,18 @@ public class ParquetCacheConfig
         this.metadataCacheTtlSinceLastAccess = metadataCacheTtlSinceLastAccess;
         return this;
     }
+
+    @MinDataSize("0B")
+    public DataSize getBloomFilterCacheSize()
+    {
+        return bloomFilterCacheSize;
+    }
+
+    @Config("parquet.bloom-filter-cache-size")
+    @ConfigDescription("Size of the parquet bloom filter cache, used when the metadata cache is enabled")
+    public ParquetCacheConfig setBloomFilterCacheSize(DataSize bloomFilterCacheSize)
+    {
+        this.bloomFilterCacheSize = bloomFilterCacheSize;
+        return this;
+    }
 }
@@ -14,6 +14,7 @@
 package com.facebook.presto.parquet.dictionary;
 
 import com.facebook.presto.parquet.DictionaryPage;
+import com.facebook.presto.parquet.ParquetEncoding;
 import com.google.common.collect.ImmutableList;
 import org.apache.parquet.bytes.ByteBufferInputStream;
 import org.apache.parquet.column.values.plain.PlainValuesReader.LongPlainValuesReader;
@@ -21,6 +22,7 @@ import org.apache.parquet.column.values.plain.PlainValuesReader.LongPlainValuesR
 import java.io.IOException;
 
 import static com.google.common.base.MoreObjects.toStringHelper;
+import static java.util.Objects.requireNonNull;
 
 public class LongDictionary
         extends Dictionary
@@ -40,6 +42,12 @@ public class LongDictionary
         }
     }
 
+    public LongDictionary(ParquetEncoding encoding, long[] content)
+    {
+        super(encoding);
+        this.content = requireNonNull(content, "content is null");
+    }
+
     @Override
     public long decodeToLong(int id)
     {
@@ -0,0 +1,31 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.predicate;
+
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.hadoop.metadata.ColumnChunkMetaData;
+
+import java.io.IOException;
+import java.util.Optional;
+
+public interface BloomFilterSource
+{
+    BloomFilterSource NONE = columnMetaData -> Optional.empty();
+
+    /**
+     * Returns the bloom filter of the column chunk, or empty if the file does not have one.
+     */
+    Optional<BloomFilter> getBloomFilter(ColumnChunkMetaData columnMetaData)
+            throws IOException;
+}
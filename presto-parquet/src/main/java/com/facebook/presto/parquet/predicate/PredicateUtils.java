@@ -13,6 +13,7 @@
  */
 package com.facebook.presto.parquet.predicate;
 
+import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.parquet.DictionaryPage;
@@ -30,6 +31,7 @@ import org.apache.parquet.column.ColumnDescriptor;
 import org.apache.parquet.column.Encoding;
 import org.apache.parquet.column.EncodingStats;
 import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.apache.parquet.crypto.HiddenColumnChunkMetaData;
 import org.apache.parquet.format.DictionaryPageHeader;
 import org.apache.parquet.format.PageHeader;
@@ -54,6 +56,7 @@ import static com.facebook.presto.common.type.SmallintType.SMALLINT;
 import static com.facebook.presto.common.type.TinyintType.TINYINT;
 import static com.facebook.presto.parquet.ParquetCompressionUtils.decompress;
 import static com.facebook.presto.parquet.ParquetTypeUtils.getParquetEncoding;
+import static com.facebook.presto.parquet.predicate.TupleDomainParquetPredicate.extractDiscreteValues;
 import static com.google.common.base.Verify.verify;
 import static io.airlift.slice.Slices.wrappedBuffer;
 import static java.lang.Math.toIntExact;
@@ -88,6 +91,12 @@ public final class PredicateUtils
 
     public static boolean predicateMatches(Predicate parquetPredicate, BlockMetaData block, ParquetDataSource dataSource, Map<List<String>, RichColumnDescriptor> descriptorsByPath, TupleDomain<ColumnDescriptor> parquetTupleDomain, Optional<ColumnIndexStore> columnIndexStore, boolean readColumnIndex)
             throws ParquetCorruptionException
+    {
+        return predicateMatches(parquetPredicate, block, dataSource, descriptorsByPath, parquetTupleDomain, columnIndexStore, readColumnIndex, BloomFilterSource.NONE);
+    }
+
+    public static boolean predicateMatches(Predicate parquetPredicate, BlockMetaData block, ParquetDataSource dataSource, Map<List<String>, RichColumnDescriptor> descriptorsByPath, TupleDomain<ColumnDescriptor> parquetTupleDomain, Optional<ColumnIndexStore> columnIndexStore, boolean readColumnIndex, BloomFilterSource bloomFilterSource)
+            throws ParquetCorruptionException
     {
         Map<ColumnDescriptor, Statistics<?>> columnStatistics = getStatistics(block, descriptorsByPath);
         if (!parquetPredicate.matches(block.getRowCount(), columnStatistics, dataSource.getId())) {
@@ -99,6 +108,11 @@ public final class PredicateUtils
             return false;
         }
 
+        // Bloom filters are much smaller than the column chunks read to check the dictionaries, so check them first.
+        if (!bloomFilterPredicatesMatch(parquetPredicate, block, descriptorsByPath, parquetTupleDomain, bloomFilterSource)) {
+            return false;
+        }
+
         return dictionaryPredicatesMatch(parquetPredicate, block, dataSource, descriptorsByPath, parquetTupleDomain);
     }
 
@@ -135,6 +149,39 @@ public final class PredicateUtils
         return true;
     }
 
+    private static boolean bloomFilterPredicatesMatch(Predicate parquetPredicate, BlockMetaData blockMetadata, Map<List<String>, RichColumnDescriptor> descriptorsByPath, TupleDomain<ColumnDescriptor> parquetTupleDomain, BloomFilterSource bloomFilterSource)
+    {
+        for (ColumnChunkMetaData columnMetaData : blockMetadata.getColumns()) {
+            if (!HiddenColumnChunkMetaData.isHiddenColumn(columnMetaData) && columnMetaData.getBloomFilterOffset() > 0) {
+                RichColumnDescriptor descriptor = descriptorsByPath.get(Arrays.asList(columnMetaData.getPath().toArray()));
+                if (descriptor != null && isBloomFilterPredicate(descriptor, parquetTupleDomain)) {
+                    Optional<BloomFilter> bloomFilter;
+                    try {
+                        bloomFilter = bloomFilterSource.getBloomFilter(columnMetaData);
+                    }
+                    catch (IOException ignored) {
+                        continue;
+                    }
+                    //  Early abort, predicate already filters block so no more bloom filters need be read
+                    if (bloomFilter.isPresent() && !parquetPredicate.matches(descriptor, bloomFilter.get())) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Only equality and IN predicates on columns that can not be null can be checked against bloom filters.
+     */
+    private static boolean isBloomFilterPredicate(ColumnDescriptor columnDescriptor, TupleDomain<ColumnDescriptor> parquetTupleDomain)
+    {
+        verify(parquetTupleDomain.getDomains().isPresent(), "parquetTupleDomain is empty");
+        Domain domain = parquetTupleDomain.getDomains().get().get(columnDescriptor);
+        return domain != null && !domain.isNullAllowed() && extractDiscreteValues(domain.getValues()).isPresent();
+    }
+
     private static Optional<DictionaryPage> readDictionaryPage(byte[] data, CompressionCodecName codecName)
     {
         try {
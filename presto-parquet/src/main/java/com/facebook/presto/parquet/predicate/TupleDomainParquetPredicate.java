@@ -17,6 +17,7 @@ import com.facebook.presto.common.predicate.Domain;
 import com.facebook.presto.common.predicate.Range;
 import com.facebook.presto.common.predicate.TupleDomain;
 import com.facebook.presto.common.predicate.ValueSet;
+import com.facebook.presto.common.type.DecimalType;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.parquet.DictionaryPage;
 import com.facebook.presto.parquet.ParquetCorruptionException;
@@ -30,6 +31,7 @@ import io.airlift.slice.Slice;
 import io.airlift.slice.Slices;
 import org.apache.parquet.column.ColumnDescriptor;
 import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
 import org.apache.parquet.filter2.predicate.FilterApi;
 import org.apache.parquet.filter2.predicate.FilterPredicate;
 import org.apache.parquet.filter2.predicate.UserDefinedPredicate;
@@ -37,12 +39,16 @@ import org.apache.parquet.hadoop.metadata.ColumnPath;
 import org.apache.parquet.internal.column.columnindex.ColumnIndex;
 import org.apache.parquet.internal.filter2.columnindex.ColumnIndexStore;
 import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.DecimalMetadata;
 import org.apache.parquet.schema.PrimitiveType;
 import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
 
 import java.io.Serializable;
+import java.math.BigInteger;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -52,15 +58,19 @@ import java.util.function.Function;
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.Decimals.decodeUnscaledValue;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.RealType.REAL;
 import static com.facebook.presto.common.type.SmallintType.SMALLINT;
 import static com.facebook.presto.common.type.TinyintType.TINYINT;
+import static com.facebook.presto.common.type.VarbinaryType.VARBINARY;
 import static com.facebook.presto.common.type.Varchars.isVarcharType;
 import static com.facebook.presto.parquet.predicate.PredicateUtils.isStatisticsOverflow;
 import static com.google.common.base.Preconditions.checkArgument;
 import static java.lang.Float.floatToRawIntBits;
+import static java.lang.Float.intBitsToFloat;
+import static java.lang.Math.toIntExact;
 import static java.lang.String.format;
 import static java.nio.ByteOrder.LITTLE_ENDIAN;
 import static java.util.Objects.requireNonNull;
@@ -175,6 +185,124 @@ public class TupleDomainParquetPredicate
         return true;
     }
 
+    @Override
+    public boolean matches(ColumnDescriptor column, BloomFilter bloomFilter)
+    {
+        requireNonNull(bloomFilter, "bloomFilter is null");
+        if (effectivePredicate.isNone()) {
+            return false;
+        }
+
+        Map<ColumnDescriptor, Domain> effectivePredicateDomains = effectivePredicate.getDomains()
+                .orElseThrow(() -> new IllegalStateException("Effective predicate other than none should have domains"));
+
+        Domain effectivePredicateDomain = effectivePredicateDomains.get(column);
+        // nulls are not recorded in the bloom filter
+        if (effectivePredicateDomain == null || effectivePredicateDomain.isNullAllowed()) {
+            return true;
+        }
+
+        Optional<Collection<Object>> discreteValues = extractDiscreteValues(effectivePredicateDomain.getValues());
+        if (!discreteValues.isPresent()) {
+            return true;
+        }
+
+        // if none of the discrete predicate values are found in the bloom filter, the section can be skipped
+        PrimitiveType primitiveType = column.getPrimitiveType();
+        return discreteValues.get().stream().anyMatch(value -> checkInBloomFilter(bloomFilter, value, effectivePredicateDomain.getType(), primitiveType));
+    }
+
+    @VisibleForTesting
+    public static Optional<Collection<Object>> extractDiscreteValues(ValueSet valueSet)
+    {
+        return valueSet.getValuesProcessor().transform(
+                ranges -> {
+                    ImmutableList.Builder<Object> discreteValues = ImmutableList.builder();
+                    for (Range range : ranges.getOrderedRanges()) {
+                        if (!range.isSingleValue()) {
+                            return Optional.empty();
+                        }
+                        discreteValues.add(range.getSingleValue());
+                    }
+                    return Optional.of(discreteValues.build());
+                },
+                discreteValues -> Optional.of(discreteValues.getValues()),
+                allOrNone -> allOrNone.isAll() ? Optional.empty() : Optional.of(ImmutableList.of()));
+    }
+
+    /**
+     * Checks whether a value of the effective predicate may be in the bloom filter. Values are hashed
+     * in their physical representation, the same way the writer hashed them.
+     * <p>
+     * Integers, dates, reals, doubles, varchars, varbinaries and decimals stored as INT32, INT64 or
+     * FIXED_LEN_BYTE_ARRAY are checked. Other values always match: timestamps are read with a precision
+     * or a time zone conversion that differs from the hashed value, chars are compared after removing
+     * the trailing spaces the writer may have hashed, and decimals stored as BINARY have no canonical length.
+     */
+    @VisibleForTesting
+    public static boolean checkInBloomFilter(BloomFilter bloomFilter, Object predicateValue, Type type, PrimitiveType primitiveType)
+    {
+        PrimitiveTypeName primitiveTypeName = primitiveType.getPrimitiveTypeName();
+        if (type.equals(BIGINT) || type.equals(INTEGER) || type.equals(SMALLINT) || type.equals(TINYINT) || type.equals(DATE)) {
+            return checkInBloomFilter(bloomFilter, BigInteger.valueOf(asLong(predicateValue)), primitiveType);
+        }
+
+        if (type.equals(REAL) && primitiveTypeName == FLOAT) {
+            return bloomFilter.findHash(bloomFilter.hash(intBitsToFloat(toIntExact((long) predicateValue))));
+        }
+
+        if (type.equals(DOUBLE) && primitiveTypeName == PrimitiveTypeName.DOUBLE) {
+            return bloomFilter.findHash(bloomFilter.hash((double) predicateValue));
+        }
+
+        if ((isVarcharType(type) || type.equals(VARBINARY)) && primitiveTypeName == BINARY) {
+            return bloomFilter.findHash(bloomFilter.hash(Binary.fromConstantByteArray(((Slice) predicateValue).getBytes())));
+        }
+
+        if (type instanceof DecimalType) {
+            DecimalType decimalType = (DecimalType) type;
+            DecimalMetadata decimalMetadata = primitiveType.getDecimalMetadata();
+            // the unscaled values are only comparable if the file has the scale of the table
+            if (decimalMetadata == null || decimalMetadata.getScale() != decimalType.getScale()) {
+                return true;
+            }
+            BigInteger unscaledValue = decimalType.isShort() ? BigInteger.valueOf((long) predicateValue) : decodeUnscaledValue((Slice) predicateValue);
+            return checkInBloomFilter(bloomFilter, unscaledValue, primitiveType);
+        }
+
+        return true;
+    }
+
+    private static boolean checkInBloomFilter(BloomFilter bloomFilter, BigInteger value, PrimitiveType primitiveType)
+    {
+        switch (primitiveType.getPrimitiveTypeName()) {
+            case INT32:
+                if (value.bitLength() < Integer.SIZE) {
+                    return bloomFilter.findHash(bloomFilter.hash(value.intValue()));
+                }
+                return true;
+            case INT64:
+                if (value.bitLength() < Long.SIZE) {
+                    return bloomFilter.findHash(bloomFilter.hash(value.longValue()));
+                }
+                return true;
+            case FIXED_LEN_BYTE_ARRAY: {
+                // big endian two's complement, sign extended to the length of the column
+                byte[] bytes = value.toByteArray();
+                int length = primitiveType.getTypeLength();
+                if (bytes.length > length) {
+                    return true;
+                }
+                byte[] fixedLengthBytes = new byte[length];
+                Arrays.fill(fixedLengthBytes, 0, length - bytes.length, value.signum() < 0 ? (byte) -1 : 0);
+                System.arraycopy(bytes, 0, fixedLengthBytes, length - bytes.length, bytes.length);
+                return bloomFilter.findHash(bloomFilter.hash(Binary.fromConstantByteArray(fixedLengthBytes)));
+            }
+            default:
+                return true;
+        }
+    }
+
     private static boolean effectivePredicateMatches(Domain effectivePredicateDomain, DictionaryDescriptor dictionary)
     {
         return !effectivePredicateDomain.intersect(getDomain(effectivePredicateDomain.getType(), dictionary)).isNone();
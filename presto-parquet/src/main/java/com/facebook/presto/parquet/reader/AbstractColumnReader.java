@@ -116,6 +116,7 @@ public abstract class AbstractColumnReader
         checkArgument(pageReader.getTotalValueCount() > 0, "page is empty");
         totalValueCount = pageReader.getTotalValueCount();
         indexIterator = (rowRanges == null) ? null : rowRanges.iterator();
+        currentRow = -1;
     }
 
     @Override
@@ -162,7 +163,7 @@ public abstract class AbstractColumnReader
 
     private void skipValues(int valuesToRead)
     {
-        processValues(valuesToRead, ignored -> skipValue(), false);
+        processValues(valuesToRead, ignored -> skipValue(), indexIterator != null);
     }
 
     /**
@@ -331,12 +332,10 @@ public abstract class AbstractColumnReader
 
         try {
             valuesReader.initFromPage(valueCount, inputStream);
+            // pages read without an offset index are consecutive, so the row count continues from the previous page
             if (firstRowIndex != -1) {
                 currentRow = firstRowIndex - 1;
             }
-            else {
-                currentRow = -1;
-            }
             return valuesReader;
         }
         catch (IOException e) {
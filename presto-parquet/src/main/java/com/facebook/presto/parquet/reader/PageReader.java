@@ -88,6 +88,14 @@ public class PageReader
         return valueCount;
     }
 
+    /**
+     * Returns the offset index of the pages of this reader, or null if the column chunk is read without one.
+     */
+    public OffsetIndex getOffsetIndex()
+    {
+        return offsetIndex;
+    }
+
     public DataPage readPage()
     {
         if (compressedPages.isEmpty()) {
@@ -20,6 +20,7 @@ import com.facebook.presto.common.block.IntArrayBlock;
 import com.facebook.presto.common.block.LongArrayBlock;
 import com.facebook.presto.common.block.RowBlock;
 import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.type.DecimalType;
 import com.facebook.presto.common.type.MapType;
 import com.facebook.presto.common.type.Type;
 import com.facebook.presto.common.type.TypeSignatureParameter;
@@ -34,6 +35,7 @@ import com.facebook.presto.parquet.ParquetDataSource;
 import com.facebook.presto.parquet.ParquetResultVerifierUtils;
 import com.facebook.presto.parquet.PrimitiveField;
 import com.facebook.presto.parquet.RichColumnDescriptor;
+import com.facebook.presto.parquet.batchreader.RowRangesBatchReader;
 import com.facebook.presto.parquet.predicate.Predicate;
 import com.facebook.presto.parquet.predicate.TupleDomainParquetPredicate;
 import com.facebook.presto.parquet.reader.ColumnIndexFilterUtils.OffsetRange;
@@ -67,6 +69,7 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.PrimitiveIterator;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -109,6 +112,8 @@ public class ParquetReader
      */
     private Optional<Long> firstRowIndexInGroup = Optional.empty();
     private RowRanges currentGroupRowRanges;
+    private PrimitiveIterator.OfLong selectedRowIndexes;
+    private long selectedRowPosition;
     private long nextRowInGroup;
     private int batchSize;
 
@@ -194,12 +199,34 @@ public class ParquetReader
     }
 
     /**
-     * Get the global row index of the first row in the last batch.
+     * Get the global row indexes of the rows in the last batch. The rows skipped by the column index filter
+     * are not part of any batch, so the indexes are not necessarily consecutive.
      */
-    public long lastBatchStartRow()
+    public long[] lastBatchRowIndexes()
     {
         long baseIndex = firstRowIndexInGroup.orElseThrow(() -> new IllegalStateException("row index unavailable"));
-        return baseIndex + nextRowInGroup - batchSize;
+        long[] rowIndexes = new long[batchSize];
+        if (currentGroupRowRanges == null) {
+            long batchStartRow = baseIndex + nextRowInGroup - batchSize;
+            for (int position = 0; position < batchSize; position++) {
+                rowIndexes[position] = batchStartRow + position;
+            }
+            return rowIndexes;
+        }
+
+        if (selectedRowIndexes == null) {
+            selectedRowIndexes = currentGroupRowRanges.iterator();
+            selectedRowPosition = 0;
+        }
+        // skip the rows of the batches for which the row indexes were not requested
+        for (; selectedRowPosition < nextRowInGroup - batchSize; selectedRowPosition++) {
+            selectedRowIndexes.nextLong();
+        }
+        for (int position = 0; position < batchSize; position++) {
+            rowIndexes[position] = baseIndex + selectedRowIndexes.nextLong();
+        }
+        selectedRowPosition += batchSize;
+        return rowIndexes;
     }
 
     public int nextBatch()
@@ -227,29 +254,35 @@ public class ParquetReader
 
     private boolean advanceToNextRowGroup()
     {
-        currentBlock++;
-        currentRowGroupMemoryContext.close();
-        currentRowGroupMemoryContext = systemMemoryContext.newAggregatedMemoryContext();
+        do {
+            currentBlock++;
+            currentRowGroupMemoryContext.close();
+            currentRowGroupMemoryContext = systemMemoryContext.newAggregatedMemoryContext();
 
-        if (currentBlock == blocks.size()) {
-            return false;
-        }
-        currentBlockMetadata = blocks.get(currentBlock);
-        firstRowIndexInGroup = firstRowsOfBlocks.map(firstRows -> firstRows.get(currentBlock));
-
-        if (filter != null && columnIndexFilterEnabled) {
-            ColumnIndexStore columnIndexStore = blockIndexStores.get(currentBlock);
-            if (columnIndexStore != null) {
-                currentGroupRowRanges = getRowRanges(currentBlock);
-                long rowCount = currentGroupRowRanges.rowCount();
-                if (rowCount == 0) {
-                    return false;
+            if (currentBlock == blocks.size()) {
+                return false;
+            }
+            currentBlockMetadata = blocks.get(currentBlock);
+            firstRowIndexInGroup = firstRowsOfBlocks.map(firstRows -> firstRows.get(currentBlock));
+            currentGroupRowCount = currentBlockMetadata.getRowCount();
+            currentGroupRowRanges = null;
+            selectedRowIndexes = null;
+
+            if (filter != null && columnIndexFilterEnabled) {
+                ColumnIndexStore columnIndexStore = blockIndexStores.get(currentBlock);
+                if (columnIndexStore != null) {
+                    RowRanges rowRanges = getRowRanges(currentBlock);
+                    // Only the rows selected by the column indexes are returned, so batches are sized by their count
+                    if (rowRanges.rowCount() < currentGroupRowCount) {
+                        currentGroupRowRanges = rowRanges;
+                        currentGroupRowCount = rowRanges.rowCount();
+                    }
                 }
             }
         }
+        while (currentGroupRowCount == 0);
 
         nextRowInGroup = 0L;
-        currentGroupRowCount = currentBlockMetadata.getRowCount();
         initializeColumnReaders();
         return true;
     }
@@ -324,8 +357,8 @@ public class ParquetReader
             long startingPosition = metadata.getStartingPos();
             int totalSize = toIntExact(metadata.getTotalSize());
 
-            if (shouldUseColumnIndex(metadata.getPath())) {
-                OffsetIndex offsetIndex = blockIndexStores.get(currentBlock).getOffsetIndex(metadata.getPath());
+            OffsetIndex offsetIndex = getOffsetIndex(metadata.getPath());
+            if (offsetIndex != null) {
                 OffsetIndex filteredOffsetIndex = ColumnIndexFilterUtils.filterOffsetIndex(offsetIndex, currentGroupRowRanges, blocks.get(currentBlock).getRowCount());
                 List<OffsetRange> offsetRanges = ColumnIndexFilterUtils.calculateOffsetRanges(filteredOffsetIndex, metadata, offsetIndex.getOffset(0), startingPosition);
                 List<OffsetRange> consecutiveRanges = concatRanges(offsetRanges);
@@ -344,15 +377,16 @@ public class ParquetReader
                 }
             }
             else {
+                // without an offset index all the pages are read, but the rows outside of the row ranges are still skipped
                 byte[] buffer = allocateBlock(totalSize);
                 dataSource.readFully(startingPosition, buffer);
                 PageReader pageReader = createPageReader(buffer, totalSize, metadata, columnDescriptor);
-                columnReader.init(pageReader, field, null);
+                columnReader.init(pageReader, field, currentGroupRowRanges);
 
                 if (enableVerification) {
                     ColumnReader verificationColumnReader = verificationColumnReaders[field.getId()];
                     PageReader pageReaderVerification = createPageReader(buffer, totalSize, metadata, columnDescriptor);
-                    verificationColumnReader.init(pageReaderVerification, field, null);
+                    verificationColumnReader.init(pageReaderVerification, field, currentGroupRowRanges);
                 }
             }
         }
@@ -377,14 +411,17 @@ public class ParquetReader
         return columnChunk;
     }
 
-    private boolean shouldUseColumnIndex(ColumnPath path)
+    /**
+     * Returns the offset index of the column if the column index filter skips rows of the current group. The offset index
+     * is used for every projected column, not only the filtered ones, so that the pages without any selected row are
+     * never read.
+     */
+    private OffsetIndex getOffsetIndex(ColumnPath path)
     {
-        return filter != null &&
-                columnIndexFilterEnabled &&
-                currentGroupRowRanges != null &&
-                currentGroupRowRanges.rowCount() < currentGroupRowCount &&
-                blockIndexStores.get(currentBlock) != null &&
-                blockIndexStores.get(currentBlock).getColumnIndex(path) != null;
+        if (currentGroupRowRanges == null) {
+            return null;
+        }
+        return blockIndexStores.get(currentBlock).getOffsetIndex(path);
     }
 
     private List<ByteBuffer> allocateBlocks(List<OffsetRange> pageRanges)
@@ -452,7 +489,11 @@ public class ParquetReader
     {
         for (PrimitiveColumnIO columnIO : columns) {
             RichColumnDescriptor column = new RichColumnDescriptor(columnIO.getColumnDescriptor(), columnIO.getType().asPrimitiveType());
-            columnReaders[columnIO.getId()] = ColumnReaderFactory.createReader(column, batchReadEnabled);
+            ColumnReader columnReader = ColumnReaderFactory.createReader(column, batchReadEnabled);
+            if (batchReadEnabled && currentGroupRowRanges != null) {
+                columnReader = new RowRangesBatchReader(columnReader, column, currentBlockMetadata.getRowCount());
+            }
+            columnReaders[columnIO.getId()] = columnReader;
 
             if (enableVerification) {
                 verificationColumnReaders[columnIO.getId()] = ColumnReaderFactory.createReader(column, false);
@@ -517,7 +558,7 @@ public class ParquetReader
                 newBlock = rewriteLongArrayBlock((LongArrayBlock) columnChunk.getBlock(), outputType);
             }
         }
-        else if (BIGINT.equals(outputType) && physicalDataType == PrimitiveTypeName.INT32) {
+        else if ((BIGINT.equals(outputType) || isShortDecimal(outputType)) && physicalDataType == PrimitiveTypeName.INT32) {
             if (columnChunk.getBlock() instanceof IntArrayBlock) {
                 newBlock = rewriteIntegerArrayBlock((IntArrayBlock) columnChunk.getBlock(), outputType);
             }
@@ -530,6 +571,11 @@ public class ParquetReader
         return columnChunk;
     }
 
+    private static boolean isShortDecimal(Type type)
+    {
+        return type instanceof DecimalType && ((DecimalType) type).isShort();
+    }
+
     private static Block rewriteIntegerArrayBlock(IntArrayBlock intArrayBlock, Type targetType)
     {
         int positionCount = intArrayBlock.getPositionCount();
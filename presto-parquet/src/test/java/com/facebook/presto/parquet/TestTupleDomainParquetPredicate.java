@@ -31,11 +31,17 @@ import org.apache.parquet.column.statistics.FloatStatistics;
 import org.apache.parquet.column.statistics.IntStatistics;
 import org.apache.parquet.column.statistics.LongStatistics;
 import org.apache.parquet.column.statistics.Statistics;
+import org.apache.parquet.column.values.bloomfilter.BlockSplitBloomFilter;
+import org.apache.parquet.column.values.bloomfilter.BloomFilter;
+import org.apache.parquet.io.api.Binary;
 import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.Types;
 import org.testng.annotations.DataProvider;
 import org.testng.annotations.Test;
 
 import java.io.ByteArrayOutputStream;
+import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Optional;
 
@@ -47,6 +53,8 @@ import static com.facebook.presto.common.predicate.TupleDomain.withColumnDomains
 import static com.facebook.presto.common.type.BigintType.BIGINT;
 import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
 import static com.facebook.presto.common.type.DateType.DATE;
+import static com.facebook.presto.common.type.DecimalType.createDecimalType;
+import static com.facebook.presto.common.type.Decimals.encodeUnscaledValue;
 import static com.facebook.presto.common.type.DoubleType.DOUBLE;
 import static com.facebook.presto.common.type.IntegerType.INTEGER;
 import static com.facebook.presto.common.type.RealType.REAL;
@@ -63,9 +71,11 @@ import static java.lang.Float.floatToRawIntBits;
 import static java.util.Collections.singletonList;
 import static java.util.Collections.singletonMap;
 import static org.apache.parquet.column.statistics.Statistics.getStatsBasedOnType;
+import static org.apache.parquet.schema.OriginalType.DECIMAL;
 import static org.apache.parquet.schema.OriginalType.UTF8;
 import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
 import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.BINARY;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY;
 import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.FLOAT;
 import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.INT32;
 import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.INT64;
@@ -354,6 +364,86 @@ public class TestTupleDomainParquetPredicate
         assertTrue(parquetPredicate.matches(new DictionaryDescriptor(column, Optional.of(page))));
     }
 
+    @Test
+    public void testBigintMatchesWithBloomFilter()
+    {
+        RichColumnDescriptor column = new RichColumnDescriptor(
+                new ColumnDescriptor(new String[] {"path"}, INT64, 0, 0),
+                new PrimitiveType(OPTIONAL, INT64, "Test column"));
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(42L));
+        bloomFilter.insertHash(bloomFilter.hash(43L));
+
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 42L), false), bloomFilter));
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 404L, 43L), false), bloomFilter));
+        assertFalse(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 404L, 405L), false), bloomFilter));
+        // nulls and ranges can not be checked against the bloom filter
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.of(BIGINT, 404L), true), bloomFilter));
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.ofRanges(range(BIGINT, 400L, true, 500L, true)), false), bloomFilter));
+    }
+
+    @Test(dataProvider = "typeForParquetInt32")
+    public void testIntegerMatchesWithBloomFilter(Type typeForParquetInt32)
+    {
+        RichColumnDescriptor column = new RichColumnDescriptor(
+                new ColumnDescriptor(new String[] {"path"}, INT32, 0, 0),
+                new PrimitiveType(OPTIONAL, INT32, "Test column"));
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(42));
+
+        assertTrue(bloomFilterMatches(column, Domain.create(ValueSet.of(typeForParquetInt32, 42L), false), bloomFilter));
+        assertFalse(bloomFilterMatches(column, Domain.create(ValueSet.of(typeForParquetInt32, 43L, 112L), false), bloomFilter));
+    }
+
+    @Test
+    public void testVarcharMatchesWithBloomFilter()
+    {
+        RichColumnDescriptor column = new RichColumnDescriptor(
+                new ColumnDescriptor(new String[] {"path"}, BINARY, 0, 0),
+                new PrimitiveType(OPTIONAL, BINARY, "Test column"));
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(Binary.fromString("apple")));
+
+        assertTrue(bloomFilterMatches(column, singleValue(createUnboundedVarcharType(), utf8Slice("apple")), bloomFilter));
+        assertFalse(bloomFilterMatches(column, singleValue(createUnboundedVarcharType(), utf8Slice("banana")), bloomFilter));
+    }
+
+    @Test
+    public void testShortDecimalMatchesWithBloomFilter()
+    {
+        PrimitiveType type = Types.optional(INT64).as(DECIMAL).precision(10).scale(2).named("Test column");
+        RichColumnDescriptor column = new RichColumnDescriptor(new ColumnDescriptor(new String[] {"path"}, type, 0, 0), type);
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        bloomFilter.insertHash(bloomFilter.hash(12345L));
+
+        assertTrue(bloomFilterMatches(column, singleValue(createDecimalType(10, 2), 12345L), bloomFilter));
+        assertFalse(bloomFilterMatches(column, singleValue(createDecimalType(10, 2), 12346L), bloomFilter));
+        // the unscaled values of another scale are not comparable
+        assertTrue(bloomFilterMatches(column, singleValue(createDecimalType(10, 3), 12346L), bloomFilter));
+    }
+
+    @Test
+    public void testLongDecimalMatchesWithBloomFilter()
+    {
+        PrimitiveType type = Types.optional(FIXED_LEN_BYTE_ARRAY).length(16).as(DECIMAL).precision(38).scale(2).named("Test column");
+        RichColumnDescriptor column = new RichColumnDescriptor(new ColumnDescriptor(new String[] {"path"}, type, 0, 0), type);
+        BloomFilter bloomFilter = new BlockSplitBloomFilter(1024);
+        // -2 sign extended to 16 bytes
+        byte[] bytes = new byte[16];
+        Arrays.fill(bytes, (byte) 0xFF);
+        bytes[15] = (byte) 0xFE;
+        bloomFilter.insertHash(bloomFilter.hash(Binary.fromConstantByteArray(bytes)));
+
+        assertTrue(bloomFilterMatches(column, singleValue(createDecimalType(38, 2), encodeUnscaledValue(BigInteger.valueOf(-2))), bloomFilter));
+        assertFalse(bloomFilterMatches(column, singleValue(createDecimalType(38, 2), encodeUnscaledValue(BigInteger.valueOf(2))), bloomFilter));
+    }
+
+    private static boolean bloomFilterMatches(RichColumnDescriptor column, Domain domain, BloomFilter bloomFilter)
+    {
+        TupleDomainParquetPredicate parquetPredicate = new TupleDomainParquetPredicate(withColumnDomains(ImmutableMap.<ColumnDescriptor, Domain>of(column, domain)), singletonList(column));
+        return parquetPredicate.matches(column, bloomFilter);
+    }
+
     private TupleDomain<ColumnDescriptor> getEffectivePredicate(RichColumnDescriptor column, VarcharType type, Slice value)
     {
         ColumnDescriptor predicateColumn = new ColumnDescriptor(column.getPath(), column.getType(), 0, 0);
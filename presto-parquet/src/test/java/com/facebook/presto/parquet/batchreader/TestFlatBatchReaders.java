@@ -0,0 +1,448 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.batchreader;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.RunLengthEncodedBlock;
+import com.facebook.presto.common.type.DecimalType;
+import com.facebook.presto.common.type.Type;
+import com.facebook.presto.parquet.ColumnReader;
+import com.facebook.presto.parquet.ColumnReaderFactory;
+import com.facebook.presto.parquet.DataPage;
+import com.facebook.presto.parquet.DataPageV1;
+import com.facebook.presto.parquet.DictionaryPage;
+import com.facebook.presto.parquet.Field;
+import com.facebook.presto.parquet.ParquetEncoding;
+import com.facebook.presto.parquet.PrimitiveField;
+import com.facebook.presto.parquet.RichColumnDescriptor;
+import com.facebook.presto.parquet.reader.PageReader;
+import org.apache.parquet.bytes.BytesInput;
+import org.apache.parquet.bytes.BytesUtils;
+import org.apache.parquet.bytes.HeapByteBufferAllocator;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.column.Encoding;
+import org.apache.parquet.column.values.ValuesWriter;
+import org.apache.parquet.column.values.deltastrings.DeltaByteArrayWriter;
+import org.apache.parquet.column.values.plain.BooleanPlainValuesWriter;
+import org.apache.parquet.column.values.plain.FixedLenByteArrayPlainValuesWriter;
+import org.apache.parquet.column.values.plain.PlainValuesWriter;
+import org.apache.parquet.column.values.rle.RunLengthBitPackingHybridEncoder;
+import org.apache.parquet.io.api.Binary;
+import org.apache.parquet.schema.PrimitiveType;
+import org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName;
+import org.apache.parquet.schema.Types;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+
+import static com.facebook.presto.common.type.BigintType.BIGINT;
+import static com.facebook.presto.common.type.BooleanType.BOOLEAN;
+import static com.facebook.presto.common.type.DecimalType.createDecimalType;
+import static com.facebook.presto.parquet.ParquetEncoding.DELTA_BYTE_ARRAY;
+import static com.facebook.presto.parquet.ParquetEncoding.PLAIN;
+import static com.facebook.presto.parquet.ParquetEncoding.PLAIN_DICTIONARY;
+import static com.facebook.presto.parquet.ParquetEncoding.RLE;
+import static io.airlift.slice.Slices.wrappedBuffer;
+import static java.lang.Math.toIntExact;
+import static org.apache.parquet.bytes.BytesUtils.getWidthFromMaxInt;
+import static org.apache.parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
+import static org.apache.parquet.schema.OriginalType.DECIMAL;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.BINARY;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.FIXED_LEN_BYTE_ARRAY;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.INT64;
+import static org.apache.parquet.schema.Type.Repetition.OPTIONAL;
+import static org.apache.parquet.schema.Type.Repetition.REQUIRED;
+import static org.testng.Assert.assertEquals;
+import static org.testng.Assert.assertTrue;
+
+public class TestFlatBatchReaders
+{
+    private static final int PAGE_ROW_COUNT = 10;
+    private static final int DICTIONARY_SIZE = 4;
+    private static final DecimalType SHORT_DECIMAL = createDecimalType(18, 2);
+    private static final int DECIMAL_TYPE_LENGTH = 8;
+    private static final long DECIMAL_STEP = 1_000_000_007L;
+
+    @Test
+    public void testInt64Plain()
+            throws IOException
+    {
+        List<Long> values = int64Values(40, false);
+        assertInt64Reads(false, values, false);
+        assertInt64Reads(true, values, false);
+    }
+
+    @Test
+    public void testInt64Nulls()
+            throws IOException
+    {
+        List<Long> values = int64Values(40, true);
+        assertInt64Reads(true, values, false);
+        assertInt64Reads(true, values, true);
+    }
+
+    @Test
+    public void testInt64Dictionary()
+            throws IOException
+    {
+        List<Long> values = int64Values(40, false);
+        assertInt64Reads(false, values, true);
+        assertInt64Reads(true, values, true);
+    }
+
+    @Test
+    public void testAllNulls()
+            throws IOException
+    {
+        List<Long> values = Arrays.asList(new Long[PAGE_ROW_COUNT * 2]);
+        ColumnReader reader = createInt64Reader(true, values, false);
+        reader.prepareNextRead(15);
+        Block block = reader.readNext().getBlock();
+        assertTrue(block instanceof RunLengthEncodedBlock);
+        assertBlock(BIGINT, block, values.subList(0, 15));
+    }
+
+    @Test
+    public void testBooleanNulls()
+            throws IOException
+    {
+        List<Boolean> values = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            values.add(i % 3 == 0 ? null : i % 2 == 0);
+        }
+
+        PrimitiveType type = new PrimitiveType(OPTIONAL, PrimitiveTypeName.BOOLEAN, "c");
+        LinkedList<DataPage> pages = new LinkedList<>();
+        for (List<Boolean> pageValues : partition(values)) {
+            pages.add(dataPage(true, pageValues, PLAIN, BooleanPlainValuesWriter::new, (writer, value) -> writer.writeBoolean(value)));
+        }
+        ColumnReader reader = new BooleanFlatBatchReader(descriptor(type));
+        reader.init(new PageReader(UNCOMPRESSED, pages, null), field(BOOLEAN, type), null);
+
+        assertReads(BOOLEAN, reader, values);
+    }
+
+    @Test
+    public void testShortDecimalBinary()
+            throws IOException
+    {
+        List<Long> values = shortDecimalValues(40);
+        assertReads(SHORT_DECIMAL, createShortDecimalReader(BINARY, values, PLAIN), values);
+        assertReads(SHORT_DECIMAL, createShortDecimalReader(BINARY, values, PLAIN_DICTIONARY), values);
+        assertReads(SHORT_DECIMAL, createShortDecimalReader(BINARY, values, DELTA_BYTE_ARRAY), values);
+    }
+
+    @Test
+    public void testShortDecimalFixedLenByteArray()
+            throws IOException
+    {
+        List<Long> values = shortDecimalValues(40);
+        assertReads(SHORT_DECIMAL, createShortDecimalReader(FIXED_LEN_BYTE_ARRAY, values, PLAIN), values);
+        assertReads(SHORT_DECIMAL, createShortDecimalReader(FIXED_LEN_BYTE_ARRAY, values, PLAIN_DICTIONARY), values);
+    }
+
+    private static void assertInt64Reads(boolean nullable, List<Long> values, boolean dictionary)
+            throws IOException
+    {
+        assertReads(BIGINT, createInt64Reader(nullable, values, dictionary), values);
+    }
+
+    /**
+     * Reads a batch within a page, a batch across two pages, then skips into the next page and reads the rest.
+     */
+    private static <T> void assertReads(Type prestoType, ColumnReader reader, List<T> values)
+    {
+        reader.prepareNextRead(3);
+        assertBlock(prestoType, reader.readNext().getBlock(), values.subList(0, 3));
+
+        reader.prepareNextRead(14);
+        assertBlock(prestoType, reader.readNext().getBlock(), values.subList(3, 17));
+
+        // 8 rows are skipped, across the end of the second page
+        reader.prepareNextRead(8);
+        reader.prepareNextRead(values.size() - 25);
+        assertBlock(prestoType, reader.readNext().getBlock(), values.subList(25, values.size()));
+    }
+
+    private static <T> void assertBlock(Type prestoType, Block block, List<T> expected)
+    {
+        assertEquals(block.getPositionCount(), expected.size());
+        for (int position = 0; position < expected.size(); position++) {
+            if (expected.get(position) == null) {
+                assertTrue(block.isNull(position));
+            }
+            else if (prestoType == BOOLEAN) {
+                assertEquals(BOOLEAN.getBoolean(block, position), expected.get(position));
+            }
+            else {
+                assertEquals(prestoType.getLong(block, position), expected.get(position));
+            }
+        }
+    }
+
+    private static List<Long> int64Values(int count, boolean withNulls)
+    {
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // the values repeat so that they fit in a small dictionary
+            values.add(withNulls && i % 3 == 0 ? null : (long) (i % DICTIONARY_SIZE) * 1000);
+        }
+        return values;
+    }
+
+    private static List<Long> shortDecimalValues(int count)
+    {
+        List<Long> values = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            // negative and positive unscaled values of several bytes, which repeat so that they fit in a small dictionary
+            values.add(i % 3 == 0 ? null : (i % DICTIONARY_SIZE - 2) * DECIMAL_STEP);
+        }
+        return values;
+    }
+
+    /**
+     * Creates a reader of pages of {@code PAGE_ROW_COUNT} rows. With a dictionary, only the first half of the pages is
+     * dictionary encoded, like a writer falling back to plain encoding when the dictionary grows too large.
+     */
+    private static ColumnReader createInt64Reader(boolean nullable, List<Long> values, boolean dictionary)
+            throws IOException
+    {
+        PrimitiveType type = new PrimitiveType(nullable ? OPTIONAL : REQUIRED, INT64, "c");
+        LinkedList<DataPage> pages = new LinkedList<>();
+        DictionaryPage dictionaryPage = null;
+        List<List<Long>> pageValues = partition(values);
+        for (int i = 0; i < pageValues.size(); i++) {
+            if (dictionary && i < pageValues.size() / 2) {
+                pages.add(dataPage(nullable, pageValues.get(i), PLAIN_DICTIONARY, TestFlatBatchReaders::dictionaryIdWriter, (writer, value) -> writer.writeInteger(toIntExact(value / 1000))));
+            }
+            else {
+                pages.add(dataPage(nullable, pageValues.get(i), PLAIN, TestFlatBatchReaders::plainWriter, ValuesWriter::writeLong));
+            }
+        }
+        if (dictionary) {
+            ValuesWriter dictionaryWriter = plainWriter();
+            for (int id = 0; id < DICTIONARY_SIZE; id++) {
+                dictionaryWriter.writeLong(id * 1000L);
+            }
+            dictionaryPage = new DictionaryPage(wrappedBuffer(dictionaryWriter.getBytes().toByteArray()), DICTIONARY_SIZE, PLAIN_DICTIONARY);
+        }
+
+        ColumnReader reader = new Int64FlatBatchReader(descriptor(type));
+        reader.init(new PageReader(UNCOMPRESSED, pages, dictionaryPage), field(BIGINT, type), null);
+        return reader;
+    }
+
+    /**
+     * Creates a batch reader of a nullable short decimal column stored as BINARY or FIXED_LEN_BYTE_ARRAY. With a dictionary,
+     * only the first half of the pages is dictionary encoded.
+     */
+    private static ColumnReader createShortDecimalReader(PrimitiveTypeName physicalType, List<Long> values, ParquetEncoding encoding)
+            throws IOException
+    {
+        PrimitiveType type = Types.optional(physicalType)
+                .length(DECIMAL_TYPE_LENGTH)
+                .as(DECIMAL)
+                .precision(SHORT_DECIMAL.getPrecision())
+                .scale(SHORT_DECIMAL.getScale())
+                .named("c");
+        WriterFactory plainWriterFactory = physicalType == BINARY ? TestFlatBatchReaders::plainWriter : TestFlatBatchReaders::fixedLengthPlainWriter;
+        LinkedList<DataPage> pages = new LinkedList<>();
+        DictionaryPage dictionaryPage = null;
+        List<List<Long>> pageValues = partition(values);
+        for (int i = 0; i < pageValues.size(); i++) {
+            if (encoding == PLAIN_DICTIONARY && i < pageValues.size() / 2) {
+                pages.add(dataPage(true, pageValues.get(i), PLAIN_DICTIONARY, TestFlatBatchReaders::dictionaryIdWriter, (writer, value) -> writer.writeInteger(toIntExact(value / DECIMAL_STEP + 2))));
+            }
+            else if (encoding == DELTA_BYTE_ARRAY) {
+                pages.add(dataPage(true, pageValues.get(i), DELTA_BYTE_ARRAY, () -> new DeltaByteArrayWriter(1024, 1024, new HeapByteBufferAllocator()), (writer, value) -> writer.writeBytes(decimalBinary(physicalType, value))));
+            }
+            else {
+                pages.add(dataPage(true, pageValues.get(i), PLAIN, plainWriterFactory, (writer, value) -> writer.writeBytes(decimalBinary(physicalType, value))));
+            }
+        }
+        if (encoding == PLAIN_DICTIONARY) {
+            ValuesWriter dictionaryWriter = plainWriterFactory.create();
+            for (int id = 0; id < DICTIONARY_SIZE; id++) {
+                dictionaryWriter.writeBytes(decimalBinary(physicalType, (id - 2) * DECIMAL_STEP));
+            }
+            dictionaryPage = new DictionaryPage(wrappedBuffer(dictionaryWriter.getBytes().toByteArray()), DICTIONARY_SIZE, PLAIN_DICTIONARY);
+        }
+
+        ColumnReader reader = ColumnReaderFactory.createReader(descriptor(type), true);
+        assertTrue(reader instanceof Int64FlatBatchReader);
+        reader.init(new PageReader(UNCOMPRESSED, pages, dictionaryPage), field(SHORT_DECIMAL, type), null);
+        return reader;
+    }
+
+    /**
+     * Encodes an unscaled value as big endian two's complement, in as few bytes as possible for BINARY
+     * and sign extended to the type length for FIXED_LEN_BYTE_ARRAY.
+     */
+    private static Binary decimalBinary(PrimitiveTypeName physicalType, long value)
+    {
+        byte[] bytes = BigInteger.valueOf(value).toByteArray();
+        if (physicalType == FIXED_LEN_BYTE_ARRAY) {
+            byte[] fixedLengthBytes = new byte[DECIMAL_TYPE_LENGTH];
+            Arrays.fill(fixedLengthBytes, value < 0 ? (byte) -1 : 0);
+            System.arraycopy(bytes, 0, fixedLengthBytes, DECIMAL_TYPE_LENGTH - bytes.length, bytes.length);
+            bytes = fixedLengthBytes;
+        }
+        return Binary.fromConstantByteArray(bytes);
+    }
+
+    private static <T> DataPage dataPage(boolean nullable, List<T> values, ParquetEncoding encoding, WriterFactory writerFactory, ValueWriter<T> valueWriter)
+            throws IOException
+    {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        if (nullable) {
+            RunLengthBitPackingHybridEncoder definitionLevels = new RunLengthBitPackingHybridEncoder(1, 200, 1024, new HeapByteBufferAllocator());
+            for (T value : values) {
+                definitionLevels.writeInt(value == null ? 0 : 1);
+            }
+            byte[] bytes = definitionLevels.toBytes().toByteArray();
+            BytesUtils.writeIntLittleEndian(output, bytes.length);
+            output.write(bytes);
+        }
+
+        ValuesWriter writer = writerFactory.create();
+        for (T value : values) {
+            if (value != null) {
+                valueWriter.write(writer, value);
+            }
+        }
+        output.write(writer.getBytes().toByteArray());
+        byte[] bytes = output.toByteArray();
+        return new DataPageV1(wrappedBuffer(bytes), values.size(), bytes.length, -1, null, RLE, RLE, encoding);
+    }
+
+    private static ValuesWriter plainWriter()
+    {
+        return new PlainValuesWriter(1024, 1024, new HeapByteBufferAllocator());
+    }
+
+    private static ValuesWriter fixedLengthPlainWriter()
+    {
+        return new FixedLenByteArrayPlainValuesWriter(DECIMAL_TYPE_LENGTH, 1024, 1024, new HeapByteBufferAllocator());
+    }
+
+    private static ValuesWriter dictionaryIdWriter()
+    {
+        return new DictionaryIdWriter(getWidthFromMaxInt(DICTIONARY_SIZE - 1));
+    }
+
+    private static RichColumnDescriptor descriptor(PrimitiveType type)
+    {
+        int maxDefinitionLevel = type.getRepetition() == OPTIONAL ? 1 : 0;
+        return new RichColumnDescriptor(new ColumnDescriptor(new String[] {"c"}, type, 0, maxDefinitionLevel), type);
+    }
+
+    private static Field field(Type prestoType, PrimitiveType type)
+    {
+        boolean required = type.getRepetition() == REQUIRED;
+        return new PrimitiveField(prestoType, 0, required ? 0 : 1, required, descriptor(type), 0);
+    }
+
+    private static <T> List<List<T>> partition(List<T> values)
+    {
+        List<List<T>> pages = new ArrayList<>();
+        for (int start = 0; start < values.size(); start += PAGE_ROW_COUNT) {
+            pages.add(values.subList(start, Math.min(start + PAGE_ROW_COUNT, values.size())));
+        }
+        return pages;
+    }
+
+    private interface WriterFactory
+    {
+        ValuesWriter create();
+    }
+
+    private interface ValueWriter<T>
+    {
+        void write(ValuesWriter writer, T value);
+    }
+
+    /**
+     * Writes dictionary ids as the data pages of a dictionary encoded column: the bit width on one byte, then the RLE ids.
+     */
+    private static class DictionaryIdWriter
+            extends ValuesWriter
+    {
+        private final int bitWidth;
+        private final RunLengthBitPackingHybridEncoder encoder;
+
+        DictionaryIdWriter(int bitWidth)
+        {
+            this.bitWidth = bitWidth;
+            this.encoder = new RunLengthBitPackingHybridEncoder(bitWidth, 200, 1024, new HeapByteBufferAllocator());
+        }
+
+        @Override
+        public void writeInteger(int value)
+        {
+            try {
+                encoder.writeInt(value);
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public BytesInput getBytes()
+        {
+            try {
+                return BytesInput.concat(BytesInput.from(new byte[] {(byte) bitWidth}), encoder.toBytes());
+            }
+            catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        @Override
+        public long getBufferedSize()
+        {
+            return encoder.getBufferedSize();
+        }
+
+        @Override
+        public long getAllocatedSize()
+        {
+            return encoder.getAllocatedSize();
+        }
+
+        @Override
+        public Encoding getEncoding()
+        {
+            return Encoding.RLE_DICTIONARY;
+        }
+
+        @Override
+        public void reset()
+        {
+            encoder.reset();
+        }
+
+        @Override
+        public String memUsageString(String prefix)
+        {
+            return prefix + " DictionaryIdWriter";
+        }
+    }
+}
@@ -0,0 +1,299 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.facebook.presto.parquet.batchreader;
+
+import com.facebook.presto.common.block.Block;
+import com.facebook.presto.common.block.IntArrayBlock;
+import com.facebook.presto.parquet.ColumnReader;
+import com.facebook.presto.parquet.Field;
+import com.facebook.presto.parquet.PrimitiveField;
+import com.facebook.presto.parquet.RichColumnDescriptor;
+import com.facebook.presto.parquet.reader.ColumnChunk;
+import com.facebook.presto.parquet.reader.PageReader;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
+import org.apache.parquet.bytes.BytesUtils;
+import org.apache.parquet.column.ColumnDescriptor;
+import org.apache.parquet.filter2.compat.FilterCompat;
+import org.apache.parquet.hadoop.metadata.ColumnPath;
+import org.apache.parquet.internal.column.columnindex.ColumnIndex;
+import org.apache.parquet.internal.column.columnindex.ColumnIndexBuilder;
+import org.apache.parquet.internal.column.columnindex.OffsetIndex;
+import org.apache.parquet.internal.column.columnindex.OffsetIndexBuilder;
+import org.apache.parquet.internal.filter2.columnindex.ColumnIndexStore;
+import org.apache.parquet.internal.filter2.columnindex.RowRanges;
+import org.apache.parquet.schema.PrimitiveType;
+import org.testng.annotations.Test;
+
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Optional;
+
+import static com.facebook.presto.common.type.IntegerType.INTEGER;
+import static org.apache.parquet.filter2.predicate.FilterApi.gtEq;
+import static org.apache.parquet.filter2.predicate.FilterApi.intColumn;
+import static org.apache.parquet.filter2.predicate.FilterApi.lt;
+import static org.apache.parquet.filter2.predicate.FilterApi.or;
+import static org.apache.parquet.hadoop.metadata.CompressionCodecName.UNCOMPRESSED;
+import static org.apache.parquet.internal.column.columnindex.BoundaryOrder.ASCENDING;
+import static org.apache.parquet.internal.filter2.columnindex.ColumnIndexFilter.calculateRowRanges;
+import static org.apache.parquet.schema.PrimitiveType.PrimitiveTypeName.INT32;
+import static org.apache.parquet.schema.Type.Repetition.OPTIONAL;
+import static org.testng.Assert.assertEquals;
+
+public class TestRowRangesBatchReader
+{
+    private static final long ROW_COUNT = 40;
+    private static final PrimitiveType TYPE = new PrimitiveType(OPTIONAL, INT32, "c");
+
+    // 4 pages of 10 rows, the values of the column are the row numbers
+    private static final ColumnIndex COLUMN_INDEX = ColumnIndexBuilder.build(
+            TYPE,
+            ASCENDING,
+            ImmutableList.of(false, false, false, false),
+            ImmutableList.of(0L, 0L, 0L, 0L),
+            ImmutableList.of(intBuffer(0), intBuffer(10), intBuffer(20), intBuffer(30)),
+            ImmutableList.of(intBuffer(9), intBuffer(19), intBuffer(29), intBuffer(39)));
+    private static final OffsetIndex OFFSET_INDEX = offsetIndex(10, 10, 10, 10);
+
+    private static final ColumnIndexStore STORE = new ColumnIndexStore()
+    {
+        @Override
+        public ColumnIndex getColumnIndex(ColumnPath column)
+        {
+            return COLUMN_INDEX;
+        }
+
+        @Override
+        public OffsetIndex getOffsetIndex(ColumnPath column)
+        {
+            return OFFSET_INDEX;
+        }
+    };
+
+    // the rows [0, 9] and [30, 39]
+    private static final RowRanges ROW_RANGES = calculateRowRanges(
+            FilterCompat.get(or(lt(intColumn("c"), 10), gtEq(intColumn("c"), 30))),
+            STORE,
+            ImmutableSet.of(ColumnPath.get("c")),
+            ROW_COUNT);
+
+    @Test
+    public void testSkippedPages()
+    {
+        // only the first and the last pages are read, so the selected rows are consecutive in the stream of rows
+        ColumnReader reader = createReader(new SelectedPagesOffsetIndex(new long[] {0, 30}, new long[] {9, 39}), false);
+        reader.prepareNextRead(15);
+        assertValues(reader.readNext(), range(0, 15));
+        reader.prepareNextRead(5);
+        assertValues(reader.readNext(), range(15, 20));
+    }
+
+    @Test
+    public void testSkippedRowsInsidePages()
+    {
+        // pages of 20 rows are all read, so the rows [10, 29] are dropped from the batches
+        ColumnReader reader = createReader(offsetIndex(20, 20), false);
+        reader.prepareNextRead(3);
+        reader.prepareNextRead(10);
+        assertValues(reader.readNext(), concat(range(3, 10), range(30, 33)));
+        reader.prepareNextRead(7);
+        assertValues(reader.readNext(), range(33, 40));
+    }
+
+    @Test
+    public void testWithoutOffsetIndex()
+    {
+        ColumnReader reader = createReader(null, false);
+        reader.prepareNextRead(20);
+        assertValues(reader.readNext(), concat(range(0, 10), range(30, 40)));
+    }
+
+    @Test
+    public void testNestedRows()
+    {
+        // every row has two values, the second one is null
+        ColumnReader reader = createReader(offsetIndex(20, 20), true);
+        reader.prepareNextRead(2);
+        reader.prepareNextRead(10);
+        ColumnChunk columnChunk = reader.readNext();
+        assertValues(columnChunk, concat(range(4, 20), range(60, 64)));
+        assertEquals(columnChunk.getRepetitionLevels().length, 20);
+        for (int i = 0; i < 20; i += 2) {
+            assertEquals(columnChunk.getRepetitionLevels()[i], 0);
+            assertEquals(columnChunk.getRepetitionLevels()[i + 1], 1);
+            assertEquals(columnChunk.getDefinitionLevels()[i], 2);
+            assertEquals(columnChunk.getDefinitionLevels()[i + 1], 1);
+        }
+    }
+
+    private static ColumnReader createReader(OffsetIndex offsetIndex, boolean nested)
+    {
+        String[] path = nested ? new String[] {"c", "list", "element"} : new String[] {"c"};
+        RichColumnDescriptor descriptor = new RichColumnDescriptor(new ColumnDescriptor(path, TYPE, nested ? 1 : 0, nested ? 2 : 1), TYPE);
+        Field field = new PrimitiveField(INTEGER, nested ? 1 : 0, nested ? 2 : 1, false, descriptor, 0);
+
+        ColumnReader reader = new RowRangesBatchReader(new PositionColumnReader(nested), descriptor, ROW_COUNT);
+        reader.init(new PageReader(UNCOMPRESSED, new LinkedList<>(), null, offsetIndex, Optional.empty(), null, -1, -1), field, ROW_RANGES);
+        return reader;
+    }
+
+    private static void assertValues(ColumnChunk columnChunk, int[] expected)
+    {
+        Block block = columnChunk.getBlock();
+        assertEquals(block.getPositionCount(), expected.length);
+        for (int position = 0; position < expected.length; position++) {
+            assertEquals(block.getInt(position), expected[position]);
+        }
+    }
+
+    private static int[] range(int start, int end)
+    {
+        int[] values = new int[end - start];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = start + i;
+        }
+        return values;
+    }
+
+    private static int[] concat(int[] first, int[] second)
+    {
+        int[] values = new int[first.length + second.length];
+        System.arraycopy(first, 0, values, 0, first.length);
+        System.arraycopy(second, 0, values, first.length, second.length);
+        return values;
+    }
+
+    private static ByteBuffer intBuffer(int value)
+    {
+        return ByteBuffer.wrap(BytesUtils.intToBytes(value));
+    }
+
+    private static OffsetIndex offsetIndex(long... pageRowCounts)
+    {
+        OffsetIndexBuilder builder = OffsetIndexBuilder.getBuilder();
+        for (long rowCount : pageRowCounts) {
+            builder.add(100, rowCount);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Reads the positions in the stream of rows as values. A nested row has two values, a non-null and a null one.
+     */
+    private static class PositionColumnReader
+            implements ColumnReader
+    {
+        private final boolean nested;
+        private boolean initialized;
+        private int position;
+        private int readOffset;
+        private int nextBatchSize;
+
+        PositionColumnReader(boolean nested)
+        {
+            this.nested = nested;
+        }
+
+        @Override
+        public boolean isInitialized()
+        {
+            return initialized;
+        }
+
+        @Override
+        public void init(PageReader pageReader, Field field, RowRanges rowRanges)
+        {
+            initialized = true;
+        }
+
+        @Override
+        public void prepareNextRead(int batchSize)
+        {
+            readOffset = readOffset + nextBatchSize;
+            nextBatchSize = batchSize;
+        }
+
+        @Override
+        public ColumnChunk readNext()
+        {
+            position += readOffset;
+            int valuesPerRow = nested ? 2 : 1;
+            int[] values = new int[nextBatchSize * valuesPerRow];
+            int[] definitionLevels = new int[nested ? values.length : 0];
+            int[] repetitionLevels = new int[nested ? values.length : 0];
+            for (int row = 0; row < nextBatchSize; row++) {
+                for (int i = 0; i < valuesPerRow; i++) {
+                    int index = row * valuesPerRow + i;
+                    values[index] = (position + row) * valuesPerRow + i;
+                    if (nested) {
+                        repetitionLevels[index] = i;
+                        definitionLevels[index] = 2 - i;
+                    }
+                }
+            }
+            position += nextBatchSize;
+            readOffset = 0;
+            nextBatchSize = 0;
+            return new ColumnChunk(new IntArrayBlock(values.length, Optional.empty(), values), definitionLevels, repetitionLevels);
+        }
+    }
+
+    /**
+     * The offset index of the pages left after the column index filter, with gaps between their rows.
+     */
+    private static class SelectedPagesOffsetIndex
+            implements OffsetIndex
+    {
+        private final long[] firstRowIndexes;
+        private final long[] lastRowIndexes;
+
+        SelectedPagesOffsetIndex(long[] firstRowIndexes, long[] lastRowIndexes)
+        {
+            this.firstRowIndexes = firstRowIndexes;
+            this.lastRowIndexes = lastRowIndexes;
+        }
+
+        @Override
+        public int getPageCount()
+        {
+            return firstRowIndexes.length;
+        }
+
+        @Override
+        public long getOffset(int pageIndex)
+        {
+            return pageIndex * 100L;
+        }
+
+        @Override
+        public int getCompressedPageSize(int pageIndex)
+        {
+            return 100;
+        }
+
+        @Override
+        public long getFirstRowIndex(int pageIndex)
+        {
+            return firstRowIndexes[pageIndex];
+        }
+
+        @Override
+        public long getLastRowIndex(int pageIndex, long totalRowCount)
+        {
+            return lastRowIndexes[pageIndex];
+        }
+    }
+}
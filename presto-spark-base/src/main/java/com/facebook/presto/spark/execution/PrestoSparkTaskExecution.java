@@ -468,6 +468,12 @@ public class PrestoSparkTaskExecution
             return (partitionedSplit == null) ? "" : partitionedSplit.getSplit().getInfo().toString();
         }
 
+        @Override
+        public boolean isBlocking()
+        {
+            return partitionedSplit != null && partitionedSplit.getSplit().getConnectorSplit().isBlocking();
+        }
+
         @Override
         public void close()
         {
@@ -64,4 +64,14 @@ public interface ConnectorSplit
     {
         return SplitWeight.standard();
     }
+
+    /**
+     * Indicates that reading the split spends most of its time blocked on I/O, for example waiting
+     * for a remote database. The engine may run such splits on separate threads, so that they do not
+     * hold the threads running CPU bound splits.
+     */
+    default boolean isBlocking()
+    {
+        return false;
+    }
 }
@@ -211,6 +211,16 @@ public interface ConnectorMetadata
         return Optional.empty();
     }
 
+    /**
+     * Return an identifier of the version of the data read through the specified table handle, such as a snapshot id,
+     * which changes whenever the data of the table changes. Results read from a table without a version are not reused
+     * across queries.
+     */
+    default Optional<String> getTableVersion(ConnectorSession session, ConnectorTableHandle tableHandle)
+    {
+        return Optional.empty();
+    }
+
     /**
      * List table names, possibly filtered by schema. An empty list is returned if none match.
      *
@@ -33,6 +33,7 @@ import static com.facebook.presto.spi.page.PagesSerdeUtil.computeSerializedPageC
 import static com.facebook.presto.spi.page.PagesSerdeUtil.readRawPage;
 import static com.facebook.presto.spi.page.PagesSerdeUtil.writeRawPage;
 import static io.airlift.slice.SizeOf.sizeOf;
+import static java.lang.Math.min;
 import static java.lang.Math.toIntExact;
 import static java.util.Objects.requireNonNull;
 import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
@@ -41,14 +42,19 @@ import static sun.misc.Unsafe.ARRAY_BYTE_BASE_OFFSET;
 public class PagesSerde
 {
     private static final double MINIMUM_COMPRESSION_RATIO = 0.8;
+    private static final int MAX_UNCOMPRESSED_PAGES_AFTER_FAILED_COMPRESSION = 64;
 
     private final BlockEncodingSerde blockEncodingSerde;
     private final Optional<PageCompressor> compressor;
     private final Optional<PageDecompressor> decompressor;
     private final Optional<SpillCipher> spillCipher;
     private final boolean checksumEnabled;
+    private final boolean adaptiveCompression;
 
     private byte[] compressionBuffer;
+    // with adaptive compression, number of pages that are not compressed, because the last compressed page did not compress well
+    private int pagesToSkipCompression;
+    private int skipCompressionPageCount = 1;
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<PageCompressor> compressor, Optional<PageDecompressor> decompressor, Optional<SpillCipher> spillCipher)
     {
@@ -56,6 +62,22 @@ public class PagesSerde
     }
 
     public PagesSerde(BlockEncodingSerde blockEncodingSerde, Optional<PageCompressor> compressor, Optional<PageDecompressor> decompressor, Optional<SpillCipher> spillCipher, boolean checksumEnabled)
+    {
+        this(blockEncodingSerde, compressor, decompressor, spillCipher, checksumEnabled, false);
+    }
+
+    /**
+     * @param adaptiveCompression if true, pages are not compressed for a while after a page did not compress well.
+     * The number of skipped pages doubles with every page that does not compress well, up to
+     * {@value #MAX_UNCOMPRESSED_PAGES_AFTER_FAILED_COMPRESSION} pages, and is reset when a page compresses well again.
+     */
+    public PagesSerde(
+            BlockEncodingSerde blockEncodingSerde,
+            Optional<PageCompressor> compressor,
+            Optional<PageDecompressor> decompressor,
+            Optional<SpillCipher> spillCipher,
+            boolean checksumEnabled,
+            boolean adaptiveCompression)
     {
         this.blockEncodingSerde = requireNonNull(blockEncodingSerde, "blockEncodingSerde is null");
         checkArgument(compressor.isPresent() == decompressor.isPresent(), "compressor and decompressor must both be present or both be absent");
@@ -64,6 +86,7 @@ public class PagesSerde
         this.spillCipher = requireNonNull(spillCipher, "spillCipher is null");
         checkState(!spillCipher.isPresent() || !spillCipher.get().isDestroyed(), "spillCipher is already destroyed");
         this.checksumEnabled = checksumEnabled;
+        this.adaptiveCompression = adaptiveCompression;
     }
 
     public SerializedPage serialize(Page page)
@@ -122,7 +145,7 @@ public class PagesSerde
         int uncompressedSize = slice.length();
         byte markers = PageCodecMarker.none();
 
-        if (compressor.isPresent()) {
+        if (compressor.isPresent() && shouldCompress()) {
             int maxCompressedSize = compressor.get().maxCompressedLength(uncompressedSize);
             compressionBuffer = ensureCapacity(compressionBuffer, maxCompressedSize);
             int compressedSize = compressor.get().compress(
@@ -136,6 +159,11 @@ public class PagesSerde
             if (compressedSize / (double) uncompressedSize <= MINIMUM_COMPRESSION_RATIO) {
                 slice = Slices.copyOf(Slices.wrappedBuffer(compressionBuffer, 0, compressedSize));
                 markers = COMPRESSED.set(markers);
+                skipCompressionPageCount = 1;
+            }
+            else if (adaptiveCompression) {
+                pagesToSkipCompression = skipCompressionPageCount;
+                skipCompressionPageCount = min(skipCompressionPageCount * 2, MAX_UNCOMPRESSED_PAGES_AFTER_FAILED_COMPRESSION);
             }
         }
 
@@ -156,6 +184,15 @@ public class PagesSerde
         return new SerializedPage(slice, markers, positionCount, uncompressedSize, checksum);
     }
 
+    private boolean shouldCompress()
+    {
+        if (pagesToSkipCompression > 0) {
+            pagesToSkipCompression--;
+            return false;
+        }
+        return true;
+    }
+
     private static void checkArgument(boolean condition, String message)
     {
         if (!condition) {
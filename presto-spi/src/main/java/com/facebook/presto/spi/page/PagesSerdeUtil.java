@@ -19,7 +19,12 @@ import com.facebook.presto.common.block.BlockEncodingSerde;
 import io.airlift.slice.Slice;
 import io.airlift.slice.SliceInput;
 import io.airlift.slice.SliceOutput;
+import io.airlift.slice.Slices;
 
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 import java.util.zip.CRC32;
@@ -187,6 +192,15 @@ public class PagesSerdeUtil
         return new SerializedPageReader(sliceInput);
     }
 
+    /**
+     * Reads the pages directly from the stream into their slices, without copying the data
+     * through the intermediate buffer of a {@link SliceInput}.
+     */
+    public static Iterator<SerializedPage> readSerializedPagesFromStream(InputStream inputStream)
+    {
+        return new InputStreamSerializedPageReader(inputStream);
+    }
+
     private static class SerializedPageReader
             implements Iterator<SerializedPage>
     {
@@ -212,4 +226,76 @@ public class PagesSerdeUtil
             return readSerializedPage(input);
         }
     }
+
+    private static class InputStreamSerializedPageReader
+            implements Iterator<SerializedPage>
+    {
+        private final InputStream input;
+        private final byte[] metadata = new byte[PAGE_METADATA_SIZE];
+        private final Slice metadataSlice = Slices.wrappedBuffer(metadata);
+        private boolean metadataRead;
+        private boolean finished;
+
+        InputStreamSerializedPageReader(InputStream input)
+        {
+            this.input = requireNonNull(input, "input is null");
+        }
+
+        @Override
+        public boolean hasNext()
+        {
+            if (!metadataRead && !finished) {
+                int length = readFully(input, metadata);
+                if (length == 0) {
+                    finished = true;
+                }
+                else if (length < metadata.length) {
+                    throw new UncheckedIOException(new EOFException("Unexpected end of stream while reading the page metadata"));
+                }
+                else {
+                    metadataRead = true;
+                }
+            }
+            return metadataRead;
+        }
+
+        @Override
+        public SerializedPage next()
+        {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            metadataRead = false;
+
+            int positionCount = metadataSlice.getInt(0);
+            byte codecMarker = metadataSlice.getByte(SIZE_OF_INT);
+            int uncompressedSizeInBytes = metadataSlice.getInt(SIZE_OF_INT + SIZE_OF_BYTE);
+            int sizeInBytes = metadataSlice.getInt(SIZE_OF_INT * 2 + SIZE_OF_BYTE);
+            long checksum = metadataSlice.getLong(SIZE_OF_INT * 3 + SIZE_OF_BYTE);
+
+            byte[] data = new byte[sizeInBytes];
+            if (readFully(input, data) < sizeInBytes) {
+                throw new UncheckedIOException(new EOFException("Unexpected end of stream while reading the page data"));
+            }
+            return new SerializedPage(Slices.wrappedBuffer(data), codecMarker, positionCount, uncompressedSizeInBytes, checksum);
+        }
+
+        private static int readFully(InputStream input, byte[] buffer)
+        {
+            try {
+                int offset = 0;
+                while (offset < buffer.length) {
+                    int length = input.read(buffer, offset, buffer.length - offset);
+                    if (length < 0) {
+                        break;
+                    }
+                    offset += length;
+                }
+                return offset;
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
 }
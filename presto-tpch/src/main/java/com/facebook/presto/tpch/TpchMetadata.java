@@ -296,6 +296,13 @@ public class TpchMetadata
         return new ConnectorTableMetadata(tableName, columns.build());
     }
 
+    @Override
+    public Optional<String> getTableVersion(ConnectorSession session, ConnectorTableHandle tableHandle)
+    {
+        // the data is generated from the scale factor, so it never changes
+        return Optional.of(String.valueOf(((TpchTableHandle) tableHandle).getScaleFactor()));
+    }
+
     @Override
     public Map<String, ColumnHandle> getColumnHandles(ConnectorSession session, ConnectorTableHandle tableHandle)
     {